@@ -321,7 +321,8 @@ CREATE TABLE ofPubsubItem (
   jid                 VARCHAR(255)  NOT NULL,
   creationDate        CHAR(15)      NOT NULL,
   payload             MEDIUMTEXT    NULL,
-  PRIMARY KEY (serviceID, nodeID, id)
+  PRIMARY KEY (serviceID, nodeID, id),
+  INDEX ofPubsubItem_cdate_idx (serviceID, nodeID, creationDate, id)
 );
 
 CREATE TABLE ofPubsubSubscription (
@@ -365,6 +366,14 @@ CREATE TABLE ofPubsubDefaultConf (
   PRIMARY KEY (serviceID, leaf)
 );
 
+CREATE TABLE ofEntityCapabilities (
+  ver                 VARCHAR(255)  NOT NULL,
+  hashAlgorithm       VARCHAR(50)   NOT NULL,
+  discoInfo           TEXT          NOT NULL,
+  creationDate        CHAR(15)      NOT NULL,
+  PRIMARY KEY (ver)
+);
+
 # Finally, insert default table values.
 
 INSERT INTO ofID (idType, id) VALUES (18, 1);
@@ -381,4 +390,4 @@ INSERT INTO ofUser (username, plainPassword, name, email, creationDate, modifica
 INSERT INTO ofMucService (serviceID, subdomain, isHidden) VALUES (1, 'conference', 0);
 
 # Do this last, as it is used by a continuous integration check to verify that the entire script was executed successfully.
-INSERT INTO ofVersion (name, version) VALUES ('openfire', 37);
+INSERT INTO ofVersion (name, version) VALUES ('openfire', 39);
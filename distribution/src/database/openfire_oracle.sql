@@ -331,6 +331,7 @@ CREATE TABLE ofPubsubItem (
   payload             CLOB           NULL,
   CONSTRAINT ofPubsubItem_pk PRIMARY KEY (serviceID, nodeID, id)
 );
+CREATE INDEX ofPubsubItem_cdate_idx ON ofPubsubItem (serviceID, nodeID, creationDate, id);
 
 CREATE TABLE ofPubsubSubscription (
   serviceID           VARCHAR2(100)  NOT NULL,
@@ -373,6 +374,14 @@ CREATE TABLE ofPubsubDefaultConf (
   CONSTRAINT ofPubsubDefaultConf_pk PRIMARY KEY (serviceID, leaf)
 );
 
+CREATE TABLE ofEntityCapabilities (
+  ver                 VARCHAR2(255) NOT NULL,
+  hashAlgorithm       VARCHAR2(50)  NOT NULL,
+  discoInfo           CLOB          NOT NULL,
+  creationDate        CHAR(15)      NOT NULL,
+  CONSTRAINT ofEntityCapabilities_pk PRIMARY KEY (ver)
+);
+
 -- Finally, insert default table values.
 
 INSERT INTO ofID (idType, id) VALUES (18, 1);
@@ -389,6 +398,6 @@ INSERT INTO ofUser (username, plainPassword, name, email, creationDate, modifica
 INSERT INTO ofMucService (serviceID, subdomain, isHidden) VALUES (1, 'conference', 0);
 
 -- Do this last, as it is used by a continuous integration check to verify that the entire script was executed successfully.
-INSERT INTO ofVersion (name, version) VALUES ('openfire', 37);
+INSERT INTO ofVersion (name, version) VALUES ('openfire', 39);
 
 commit;
@@ -336,6 +336,7 @@ CREATE TABLE ofPubsubItem (
   payload             TEXT           NULL,
   CONSTRAINT ofPubsubItem_pk PRIMARY KEY (serviceID, nodeID, id)
 )
+CREATE INDEX ofPubsubItem_cdate_idx ON ofPubsubItem (serviceID, nodeID, creationDate, id)
 
 CREATE TABLE ofPubsubSubscription (
   serviceID           NVARCHAR(100)  NOT NULL,
@@ -378,6 +379,14 @@ CREATE TABLE ofPubsubDefaultConf (
   CONSTRAINT ofPubsubDefaultConf_pk PRIMARY KEY (serviceID, leaf)
 )
 
+CREATE TABLE ofEntityCapabilities (
+  ver                 NVARCHAR(255) NOT NULL,
+  hashAlgorithm       NVARCHAR(50)  NOT NULL,
+  discoInfo           TEXT          NOT NULL,
+  creationDate        CHAR(15)      NOT NULL,
+  CONSTRAINT ofEntityCapabilities_pk PRIMARY KEY (ver)
+)
+
 /* Finally, insert default table values. */
 
 INSERT INTO ofID (idType, id) VALUES (18, 1)
@@ -394,4 +403,4 @@ INSERT INTO ofUser (username, plainPassword, name, email, creationDate, modifica
 INSERT INTO ofMucService (serviceID, subdomain, isHidden) VALUES (1, 'conference', 0)
 
 /* Do this last, as it is used by a continuous integration check to verify that the entire script was executed successfully. */
-INSERT INTO ofVersion (name, version) VALUES ('openfire', 37)
+INSERT INTO ofVersion (name, version) VALUES ('openfire', 39)
@@ -0,0 +1,5 @@
+CREATE INDEX ofPubsubItem_cdate_idx ON ofPubsubItem (serviceID, nodeID, creationDate, id);
+
+UPDATE ofVersion SET version = 38 WHERE name = 'openfire';
+
+COMMIT;
@@ -0,0 +1,9 @@
+CREATE TABLE ofEntityCapabilities (
+  ver                 VARCHAR(255)  NOT NULL,
+  hashAlgorithm       VARCHAR(50)   NOT NULL,
+  discoInfo           TEXT          NOT NULL,
+  creationDate        CHAR(15)      NOT NULL,
+  PRIMARY KEY (ver)
+);
+
+UPDATE ofVersion SET version = 39 WHERE name = 'openfire';
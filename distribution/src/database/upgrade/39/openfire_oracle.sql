@@ -0,0 +1,11 @@
+CREATE TABLE ofEntityCapabilities (
+  ver                 VARCHAR2(255) NOT NULL,
+  hashAlgorithm       VARCHAR2(50)  NOT NULL,
+  discoInfo           CLOB          NOT NULL,
+  creationDate        CHAR(15)      NOT NULL,
+  CONSTRAINT ofEntityCapabilities_pk PRIMARY KEY (ver)
+);
+
+UPDATE ofVersion SET version = 39 WHERE name = 'openfire';
+
+COMMIT;
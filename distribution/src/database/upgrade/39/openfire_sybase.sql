@@ -0,0 +1,9 @@
+CREATE TABLE ofEntityCapabilities (
+  ver                 NVARCHAR(255) NOT NULL,
+  hashAlgorithm       NVARCHAR(50)  NOT NULL,
+  discoInfo           TEXT          NOT NULL,
+  creationDate        CHAR(15)      NOT NULL,
+  CONSTRAINT ofEntityCapabilities_pk PRIMARY KEY (ver)
+)
+
+UPDATE ofVersion SET version = 39 WHERE name = 'openfire';
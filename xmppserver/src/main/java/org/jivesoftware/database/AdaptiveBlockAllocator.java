@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out unique IDs from blocks of IDs that are reserved from a {@link BlockSource}, typically the database.
+ *
+ * IDs are handed out by atomically incrementing a counter, without acquiring a lock. A lock is acquired only when a
+ * block is exhausted, to replace it with the next block. To prevent threads from having to wait for the database at
+ * that point, the next block is reserved asynchronously as soon as half of the current block has been handed out.
+ *
+ * The size of the blocks that are reserved adapts to the rate in which IDs are handed out: when a block is exhausted
+ * sooner than the target interval, the next block is twice as large (up to a maximum). When it takes longer than four
+ * times the target interval to exhaust a block, the next block is half the size (down to a minimum). As the next
+ * block is reserved before the current block is exhausted, a change in size applies to the block after that.
+ */
+class AdaptiveBlockAllocator
+{
+    private static final Logger Log = LoggerFactory.getLogger(AdaptiveBlockAllocator.class);
+
+    /**
+     * Reserves a block of unique IDs.
+     */
+    @FunctionalInterface
+    interface BlockSource
+    {
+        /**
+         * Reserves a block of IDs.
+         *
+         * @param size the amount of IDs to reserve.
+         * @return the first ID of the reserved block. The block ends (exclusive) at this value plus the size.
+         */
+        long reserve(int size);
+    }
+
+    /**
+     * A range of IDs, of which IDs are handed out by incrementing a counter.
+     */
+    static class Block
+    {
+        final long start;
+        final long end;
+        final AtomicLong next;
+        final long halfway;
+
+        Block(final long start, final long end)
+        {
+            this.start = start;
+            this.end = end;
+            this.next = new AtomicLong(start);
+            this.halfway = start + (end - start) / 2;
+        }
+    }
+
+    private final BlockSource source;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final int minBlockSize;
+    private final int maxBlockSize;
+    private final Duration targetInterval;
+
+    private final Object rolloverLock = new Object();
+
+    /**
+     * The block from which IDs are currently handed out. Null until the first ID is requested.
+     */
+    private volatile Block current;
+
+    /**
+     * The reservation of the block that will replace the current block. Guarded by 'rolloverLock'.
+     */
+    private CompletableFuture<Block> prefetch;
+
+    /**
+     * The size of the block that will be reserved next. Guarded by 'rolloverLock'.
+     */
+    private int blockSize;
+
+    /**
+     * The time (as provided by the clock) at which the current block started to be used. Guarded by 'rolloverLock'.
+     */
+    private long currentSince;
+
+    /**
+     * Creates a new allocator.
+     *
+     * @param source the source of blocks of IDs.
+     * @param executor the executor used to reserve blocks asynchronously.
+     * @param clock provides the current time in milliseconds.
+     * @param minBlockSize the minimum (and initial) size of a block.
+     * @param maxBlockSize the maximum size of a block.
+     * @param targetInterval the time in which a block is ideally exhausted.
+     */
+    AdaptiveBlockAllocator(@Nonnull final BlockSource source, @Nonnull final Executor executor, @Nonnull final LongSupplier clock, final int minBlockSize, final int maxBlockSize, @Nonnull final Duration targetInterval)
+    {
+        this.source = source;
+        this.executor = executor;
+        this.clock = clock;
+        this.minBlockSize = Math.max(1, minBlockSize);
+        this.maxBlockSize = Math.max(this.minBlockSize, maxBlockSize);
+        this.targetInterval = targetInterval;
+        this.blockSize = this.minBlockSize;
+    }
+
+    /**
+     * Returns the next unique ID.
+     *
+     * @return a unique ID.
+     */
+    long nextID()
+    {
+        while (true) {
+            final Block block = current;
+            if (block != null) {
+                final long id = block.next.getAndIncrement();
+                if (id < block.end) {
+                    if (id == block.halfway) {
+                        startPrefetch();
+                    }
+                    return id;
+                }
+            }
+            rollover(block);
+        }
+    }
+
+    /**
+     * Returns the size of the block that will be reserved next.
+     *
+     * @return an amount of IDs.
+     */
+    int getBlockSize()
+    {
+        synchronized (rolloverLock) {
+            return blockSize;
+        }
+    }
+
+    /**
+     * Starts the asynchronous reservation of the block that is to replace the current block, unless such a reservation
+     * is already in progress.
+     */
+    private void startPrefetch()
+    {
+        synchronized (rolloverLock) {
+            if (prefetch == null) {
+                final int size = blockSize;
+                prefetch = CompletableFuture.supplyAsync(() -> reserve(size), executor);
+            }
+        }
+    }
+
+    /**
+     * Replaces an exhausted block with the next block.
+     *
+     * @param exhausted the block that was found to be exhausted (null if no block has been reserved yet).
+     */
+    private void rollover(final Block exhausted)
+    {
+        synchronized (rolloverLock) {
+            if (current != exhausted) {
+                // Another thread already replaced the block.
+                return;
+            }
+
+            final long now = clock.getAsLong();
+            if (exhausted != null) {
+                adaptBlockSize(now - currentSince);
+            }
+
+            Block next = null;
+            if (prefetch != null) {
+                try {
+                    next = prefetch.join();
+                } catch (CompletionException e) {
+                    Log.warn("Unable to reserve a block of IDs asynchronously. Retrying synchronously.", e.getCause());
+                }
+                prefetch = null;
+            }
+            if (next == null) {
+                next = reserve(blockSize);
+            }
+            current = next;
+            currentSince = now;
+        }
+    }
+
+    /**
+     * Adjusts the size of the next block, based on the time it took to exhaust the previous block.
+     *
+     * @param elapsed the time (in milliseconds) it took to exhaust the previous block.
+     */
+    private void adaptBlockSize(final long elapsed)
+    {
+        final long target = targetInterval.toMillis();
+        final int old = blockSize;
+        if (elapsed < target) {
+            blockSize = (int) Math.min(maxBlockSize, (long) blockSize * 2);
+        } else if (elapsed > target * 4) {
+            blockSize = Math.max(minBlockSize, blockSize / 2);
+        }
+        if (old != blockSize) {
+            Log.debug("Changed block size from {} to {}, as the previous block was exhausted in {} ms.", old, blockSize, elapsed);
+        }
+    }
+
+    private Block reserve(final int size)
+    {
+        final long start = source.reserve(size);
+        return new Block(start, start + size);
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2017-2020 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,12 +21,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 
 import org.jivesoftware.util.JiveConstants;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
 import org.jivesoftware.util.cache.Cache;
 import org.jivesoftware.util.cache.CacheFactory;
 import org.slf4j.Logger;
@@ -49,6 +53,11 @@ import org.slf4j.LoggerFactory;
  * Each sequence type that this class manages has a different block size value. Objects that aren't
  * created often have a block size of 1, while frequently created objects such as entries and
  * comments have larger block sizes.
+ * <p>
+ * When {@link #ADAPTIVE_ENABLED} is set, each sequence manager hands out ID's from blocks that are reserved by this
+ * virtual machine only, without acquiring a (cluster-wide) lock. The next block is reserved in the background before
+ * the current block is exhausted, and the block size grows with the rate in which ID's are requested. In that mode,
+ * the block size of a sequence is its minimum block size.</p>
  *
  * @author Matt Tucker
  * @author Bruce Ritchie
@@ -66,6 +75,36 @@ public class SequenceManager {
     private static final String UPDATE_ID =
             "UPDATE ofID SET id=? WHERE idType=? AND id=?";
 
+    /**
+     * Enables lock-free ID allocation from blocks of adaptive size that are reserved in the background.
+     */
+    public static final SystemProperty<Boolean> ADAPTIVE_ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("sequence.adaptive.enabled")
+        .setDefaultValue(false)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum size of a block of ID's, when adaptive ID allocation is enabled.
+     */
+    public static final SystemProperty<Integer> ADAPTIVE_MAX_BLOCK_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("sequence.adaptive.maxblocksize")
+        .setDefaultValue(10000)
+        .setMinValue(1)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The time in which a block of ID's is ideally exhausted, when adaptive ID allocation is enabled. Block sizes grow
+     * when blocks are exhausted quicker, and shrink when they last much longer.
+     */
+    public static final SystemProperty<Duration> ADAPTIVE_TARGET_INTERVAL = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("sequence.adaptive.targetinterval")
+        .setDefaultValue(Duration.ofSeconds(10))
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(false)
+        .build();
+
     // Statically startup a sequence manager for each of the sequence counters.
     private static final Map<Integer, SequenceManager> managers = new ConcurrentHashMap<>();
 
@@ -144,6 +183,7 @@ public class SequenceManager {
 
     private final int type;
     private int blockSize;
+    private volatile AdaptiveBlockAllocator allocator;
 
     /**
      * Creates a new DbSequenceManager.
@@ -163,6 +203,10 @@ public class SequenceManager {
      * @return the next sequence number
      */
     public long nextUniqueID() {
+        if (ADAPTIVE_ENABLED.getValue()) {
+            return getAllocator().nextID();
+        }
+
         final Lock lock = sequenceBlocks.getLock(type);
         lock.lock();
         try {
@@ -180,6 +224,74 @@ public class SequenceManager {
         }
     }
 
+    private AdaptiveBlockAllocator getAllocator() {
+        AdaptiveBlockAllocator result = allocator;
+        if (result == null) {
+            synchronized (this) {
+                result = allocator;
+                if (result == null) {
+                    result = new AdaptiveBlockAllocator(this::reserveBlock, task -> TaskEngine.getInstance().submit(task),
+                        System::currentTimeMillis, blockSize, ADAPTIVE_MAX_BLOCK_SIZE.getValue(), ADAPTIVE_TARGET_INTERVAL.getValue());
+                    allocator = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reserves a block of ID's for use by this virtual machine only. Unlike {@link #getNextBlock()}, this does not
+     * require a lock to be acquired: when another process updated the database row concurrently, the reservation is
+     * retried.
+     *
+     * @param size the amount of ID's to reserve.
+     * @return the first ID of the reserved block.
+     */
+    private long reserveBlock(int size) {
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = DbConnectionManager.getConnection();
+            for (int attempt = 0; attempt < 10; attempt++) {
+                pstmt = con.prepareStatement(LOAD_ID);
+                pstmt.setInt(1, type);
+                rs = pstmt.executeQuery();
+
+                long currentID = 1;
+                if (rs.next()) {
+                    currentID = rs.getLong(1);
+                }
+                else {
+                    createNewID(con, type);
+                }
+                DbConnectionManager.fastcloseStmt(rs, pstmt);
+                rs = null;
+
+                pstmt = con.prepareStatement(UPDATE_ID);
+                pstmt.setLong(1, currentID + size);
+                pstmt.setInt(2, type);
+                pstmt.setLong(3, currentID);
+                final boolean updated = pstmt.executeUpdate() == 1;
+                DbConnectionManager.fastcloseStmt(pstmt);
+                pstmt = null;
+                if (updated) {
+                    return currentID;
+                }
+                Log.debug("Another process reserved ID's of type {} concurrently. Retrying.", type);
+            }
+            throw new IllegalStateException("Failed at attempt to obtain an ID, aborting...");
+        }
+        catch (SQLException e) {
+            Log.error("An exception occurred while trying to obtain new sequence values from the database for type {}", type, e);
+            throw new IllegalStateException("Failed at attempt to obtain an ID, aborting...", e);
+        }
+        finally {
+            DbConnectionManager.closeConnection(rs, pstmt, con);
+        }
+    }
+
     /**
      * Performs a lookup to get the next available ID block. The algorithm is as follows:
      * <ol>
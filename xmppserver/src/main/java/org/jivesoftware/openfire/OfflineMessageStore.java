@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2016-2022 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,15 +16,22 @@
 
 package org.jivesoftware.openfire;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.dom4j.Element;
 import org.dom4j.Namespace;
 import org.dom4j.QName;
 import org.jivesoftware.database.DbConnectionManager;
 import org.jivesoftware.database.SequenceManager;
+import org.jivesoftware.openfire.archive.Archiver;
 import org.jivesoftware.openfire.cluster.ClusterManager;
 import org.jivesoftware.openfire.container.BasicModule;
 import org.jivesoftware.openfire.event.UserEventDispatcher;
 import org.jivesoftware.openfire.event.UserEventListener;
+import org.jivesoftware.openfire.session.ClientSession;
+import org.jivesoftware.openfire.session.LocalClientSession;
+import org.jivesoftware.openfire.session.LocalSession;
+import org.jivesoftware.openfire.streammanagement.StreamManager;
 import org.jivesoftware.openfire.user.User;
 import org.jivesoftware.openfire.user.UserManager;
 import org.jivesoftware.util.*;
@@ -43,7 +50,9 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -60,11 +69,19 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
 
     private static final Logger Log = LoggerFactory.getLogger(OfflineMessageStore.class);
 
+    /**
+     * Mutex used to serialize the delivery of offline messages per user.
+     */
+    private static final Interner<String> deliveryMutex = Interners.newWeakInterner();
+
     private static final String INSERT_OFFLINE =
         "INSERT INTO ofOffline (username, messageID, creationDate, messageSize, stanza) " +
         "VALUES (?, ?, ?, ?, ?)";
     private static final String LOAD_OFFLINE =
         "SELECT stanza, creationDate FROM ofOffline WHERE username=? ORDER BY creationDate ASC";
+    private static final String LOAD_OFFLINE_PAGE =
+        "SELECT stanza, creationDate, messageID FROM ofOffline WHERE username=? " +
+        "AND (creationDate > ? OR (creationDate = ? AND messageID > ?)) ORDER BY creationDate ASC, messageID ASC";
     private static final String LOAD_OFFLINE_MESSAGE =
         "SELECT stanza FROM ofOffline WHERE username=? AND creationDate=?";
     private static final String SELECT_COUNT_OFFLINE =
@@ -77,6 +94,8 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
         "DELETE FROM ofOffline WHERE username=?";
     private static final String DELETE_OFFLINE_MESSAGE =
         "DELETE FROM ofOffline WHERE username=? AND creationDate=?";
+    private static final String DELETE_OFFLINE_UNTIL =
+        "DELETE FROM ofOffline WHERE username=? AND (creationDate < ? OR (creationDate = ? AND messageID <= ?))";
     private static final String DELETE_OFFLINE_MESSAGE_BEFORE =
         "DELETE FROM ofOffline WHERE creationDate < ?";
     private static final String SELECT_SIZE_OFFLINE_ALL_USERS =
@@ -108,8 +127,132 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
     .setDynamic(false)
     .build();
 
+    /**
+     * Enables write-behind storage of offline messages. When enabled, offline messages are queued and written to the
+     * database in batches by a background thread, instead of being written one by one by the thread that routes them.
+     */
+    public static final SystemProperty<Boolean> WRITE_BEHIND_ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.offline.writebehind.enabled")
+        .setDefaultValue(false)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The maximum amount of offline messages that are written to the database in one batch.
+     */
+    public static final SystemProperty<Integer> WRITE_BEHIND_BATCH_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.offline.writebehind.batchsize")
+        .setDefaultValue(100)
+        .setMinValue(1)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The maximum time between database writes of batches of offline messages.
+     */
+    public static final SystemProperty<Duration> WRITE_BEHIND_MAX_BATCH_INTERVAL = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.offline.writebehind.maxbatchinterval")
+        .setDefaultValue(Duration.ofSeconds(1))
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The maximum time to wait for a next offline message to arrive, before writing a batch to the database.
+     */
+    public static final SystemProperty<Duration> WRITE_BEHIND_GRACE_PERIOD = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.offline.writebehind.graceperiod")
+        .setDefaultValue(Duration.ofMillis(50))
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The maximum amount of offline messages that can be queued to be written to the database. When this many messages
+     * are queued, storing another offline message blocks until queued messages have been written.
+     */
+    public static final SystemProperty<Integer> WRITE_BEHIND_QUEUE_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.offline.writebehind.queuesize")
+        .setDefaultValue(10000)
+        .setMinValue(1)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The maximum time to wait for queued offline messages of a user to be written to the database, before reading or
+     * deleting the offline messages of that user.
+     */
+    public static final SystemProperty<Duration> WRITE_BEHIND_FLUSH_TIMEOUT = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.offline.writebehind.flushtimeout")
+        .setDefaultValue(Duration.ofSeconds(5))
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum amount of offline messages that are loaded from the database at once, when offline messages are
+     * delivered to a user that comes online.
+     */
+    public static final SystemProperty<Integer> DELIVERY_PAGE_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.offline.delivery.pagesize")
+        .setDefaultValue(100)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum time to wait for a client that uses Stream Management to acknowledge a page of delivered offline
+     * messages. When the client does not acknowledge the page in time, delivery of offline messages stops.
+     */
+    public static final SystemProperty<Duration> DELIVERY_ACK_TIMEOUT = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.offline.delivery.acktimeout")
+        .setDefaultValue(Duration.ofSeconds(30))
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum amount of messages that are held for a session while offline messages are delivered to it. When more
+     * messages are routed to the session, the held messages are delivered, and messages are no longer held.
+     */
+    public static final SystemProperty<Integer> DELIVERY_HOLD_MAX_MESSAGES = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.offline.delivery.hold.maxmessages")
+        .setDefaultValue(1000)
+        .setMinValue(0)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum time that messages are held for a session while offline messages are delivered to it. When offline
+     * messages are still being delivered after this time, the held messages are delivered, and messages are no longer
+     * held.
+     */
+    public static final SystemProperty<Duration> DELIVERY_HOLD_TIMEOUT = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.offline.delivery.hold.timeout")
+        .setDefaultValue(Duration.ofMinutes(2))
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The number of times that writing a batch of offline messages in one transaction is attempted, before the
+     * messages are written one by one.
+     */
+    private static final int STORE_BATCH_ATTEMPTS = 3;
+
+    /**
+     * The delay before writing a batch of offline messages is retried for the first time. This doubles for every
+     * next attempt.
+     */
+    private static final Duration STORE_BATCH_RETRY_DELAY = Duration.ofMillis(250);
+
     private Timer timer = null;
 
+    /**
+     * Writes offline messages to the database in batches, when write-behind storage is enabled. Null otherwise.
+     */
+    private OfflineMessageArchiver archiver = null;
+
     /**
      * Pattern to use for detecting invalid XML characters. Invalid XML characters will
      * be removed from the stored offline messages.
@@ -178,38 +321,164 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
         // Get the message in XML format.
         String msgXML = message.getElement().asXML();
 
+        final PendingOfflineMessage pending = new PendingOfflineMessage(username, messageID, new Date(), msgXML);
+        final OfflineMessageArchiver archiver = this.archiver;
+        if (archiver == null || !archiver.enqueue(pending)) {
+            // Write-behind storage is disabled, or the message could not be queued: write it directly.
+            if (!storeMessage(pending)) {
+                return null;
+            }
+        }
+
+        updateSizeCache(username, msgXML);
+        return new OfflineMessage(pending.creationDate, message.getElement());
+    }
+
+    /**
+     * Writes one offline message to the database.
+     *
+     * @param pending the message to write.
+     * @return true if the message was written, otherwise false.
+     */
+    private static boolean storeMessage(PendingOfflineMessage pending) {
         Connection con = null;
         PreparedStatement pstmt = null;
-        OfflineMessage offlineMessage = null;
         try {
             con = DbConnectionManager.getConnection();
             pstmt = con.prepareStatement(INSERT_OFFLINE);
-
-            Date creationDate = new java.util.Date();
-            pstmt.setString(1, username);
-            pstmt.setLong(2, messageID);
-            pstmt.setString(3, StringUtils.dateToMillis(creationDate));
-            pstmt.setInt(4, msgXML.length());
-            pstmt.setString(5, msgXML);
+            pstmt.setString(1, pending.username);
+            pstmt.setLong(2, pending.messageID);
+            pstmt.setString(3, StringUtils.dateToMillis(pending.creationDate));
+            pstmt.setInt(4, pending.msgXML.length());
+            pstmt.setString(5, pending.msgXML);
             pstmt.executeUpdate();
-
-            offlineMessage = new OfflineMessage(creationDate, message.getElement());
+            return true;
         }
         catch (Exception e) {
             Log.error(LocaleUtils.getLocalizedString("admin.error"), e);
-            return null;
+            return false;
         }
         finally {
             DbConnectionManager.closeConnection(pstmt, con);
         }
+    }
 
+    private void updateSizeCache(String username, String msgXML) {
         // Update the cached size if it exists.
         if (sizeCache.containsKey(username)) {
             int size = sizeCache.get(username);
             size += msgXML.length();
             sizeCache.put(username, size);
         }
-        return offlineMessage;
+    }
+
+    /**
+     * Writes a batch of offline messages to the database. The batch is written in one transaction. When that fails, it
+     * is retried (after an increasing delay) up to {@link #STORE_BATCH_ATTEMPTS} times, after which the messages are
+     * written one by one.
+     *
+     * @param batch the messages to write.
+     * @return the messages that could not be written. Possibly empty.
+     */
+    private static List<PendingOfflineMessage> storeBatch(List<PendingOfflineMessage> batch) {
+        for (int attempt = 1; attempt <= STORE_BATCH_ATTEMPTS; attempt++) {
+            if (storeBatchInTransaction(batch)) {
+                return Collections.emptyList();
+            }
+            if (attempt < STORE_BATCH_ATTEMPTS) {
+                try {
+                    Thread.sleep(STORE_BATCH_RETRY_DELAY.toMillis() << (attempt - 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        Log.warn("Unable to write a batch of {} offline messages in one transaction. Writing them one by one instead.", batch.size());
+        final List<PendingOfflineMessage> failed = new ArrayList<>();
+        for (final PendingOfflineMessage pending : batch) {
+            if (!storeMessage(pending)) {
+                failed.add(pending);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Writes a batch of offline messages to the database, in one transaction.
+     *
+     * @param batch the messages to write.
+     * @return true if the messages were written, false if the transaction was rolled back.
+     */
+    private static boolean storeBatchInTransaction(List<PendingOfflineMessage> batch) {
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        boolean abortTransaction = true;
+        try {
+            con = DbConnectionManager.getTransactionConnection();
+            pstmt = con.prepareStatement(INSERT_OFFLINE);
+
+            for (PendingOfflineMessage pending : batch) {
+                pstmt.setString(1, pending.username);
+                pstmt.setLong(2, pending.messageID);
+                pstmt.setString(3, StringUtils.dateToMillis(pending.creationDate));
+                pstmt.setInt(4, pending.msgXML.length());
+                pstmt.setString(5, pending.msgXML);
+                pstmt.addBatch();
+            }
+
+            pstmt.executeBatch();
+            abortTransaction = false;
+        }
+        catch (SQLException sqle) {
+            Log.warn("Error saving batch of {} offline messages", batch.size(), sqle);
+        }
+        finally {
+            DbConnectionManager.closeTransactionConnection(pstmt, con, abortTransaction);
+        }
+        return !abortTransaction;
+    }
+
+    /**
+     * Waits until all offline messages for a user that are queued for write-behind storage have been written to the
+     * database. This is a no-op when write-behind storage is disabled.
+     *
+     * When the messages have not been written within {@link #WRITE_BEHIND_FLUSH_TIMEOUT}, the messages of the user that
+     * are still queued are written on the calling thread, after which the messages that are being written by the
+     * write-behind thread are waited for. This method returns before all messages have been written only when writing
+     * them on the calling thread fails.
+     *
+     * @param username the username of the user for which to wait.
+     */
+    private void flushPending(String username) {
+        final OfflineMessageArchiver archiver = this.archiver;
+        if (archiver == null) {
+            return;
+        }
+        final Duration timeout = WRITE_BEHIND_FLUSH_TIMEOUT.getValue();
+        try {
+            while (!archiver.awaitStored(username, timeout)) {
+                Log.debug("Timed out after {} while waiting for queued offline messages of user '{}' to be written to the database. Writing them directly.", timeout, username);
+                if (!archiver.storeQueued(username)) {
+                    Log.warn("Unable to write queued offline messages of user '{}' to the database.", username);
+                    break;
+                }
+            }
+
+            // In a cluster, other cluster nodes may have queued messages for this user too.
+            if (ClusterManager.isClusteringStarted()) {
+                final Instant now = Instant.now();
+                final Instant deadline = now.plus(timeout);
+                Duration eta;
+                while (!(eta = archiver.availabilityETA(now)).isZero() && Instant.now().isBefore(deadline)) {
+                    Thread.sleep(Math.max(1, Math.min(eta.toMillis(), 50)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.warn("Interrupted while waiting for queued offline messages of user '{}' to be written to the database.", username, e);
+        }
     }
 
     /**
@@ -222,6 +491,7 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
      * @return An iterator of packets containing all offline messages.
      */
     public Collection<OfflineMessage> getMessages(String username, boolean delete) {
+        flushPending(username);
         List<OfflineMessage> messages = new ArrayList<>();
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -236,37 +506,14 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
                 Date creationDate = new Date(Long.parseLong(rs.getString(2).trim()));
                 OfflineMessage message;
                 try {
-                    message = new OfflineMessage(creationDate, SAXReaderUtil.readRootElement(msgXML));
-                } catch (ExecutionException e) {
-                    // Try again after removing invalid XML chars (e.g. &#12;)
-                    Matcher matcher = pattern.matcher(msgXML);
-                    if (matcher.find()) {
-                        msgXML = matcher.replaceAll("");
-                    }
-                    try {
-                        message = new OfflineMessage(creationDate, SAXReaderUtil.readRootElement(msgXML));
-                    } catch (ExecutionException de) {
-                        Log.error("Failed to route packet (offline message): " + msgXML, de);
-                        continue; // skip and process remaining offline messages
-                    } catch (InterruptedException de) {
-                        Thread.currentThread().interrupt();
-                        Log.error("Offline Message retrieval interrupted", de);
-                        break; // Skip all further offline messages
-                    }
-                }
-                catch (InterruptedException e) {
+                    message = parseOfflineMessage(msgXML, creationDate);
+                } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     Log.error("Offline Message retrieval interrupted", e);
                     break; // Skip all further offline messages
                 }
-
-                // if there is already a delay stamp, we shouldn't add another.
-                Element delaytest = message.getChildElement("delay", "urn:xmpp:delay");
-                if (delaytest == null) {
-                    // Add a delayed delivery (XEP-0203) element to the message.
-                    Element delay = message.addChildElement("delay", "urn:xmpp:delay");
-                    delay.addAttribute("from", XMPPServer.getInstance().getServerInfo().getXMPPDomain());
-                    delay.addAttribute("stamp", XMPPDateTimeFormat.format(creationDate));
+                if (message == null) {
+                    continue; // skip and process remaining offline messages
                 }
                 messages.add(message);
             }
@@ -297,6 +544,194 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
         return messages;
     }
 
+    /**
+     * Delivers all messages in the store for a user to a session of that user in the background, using
+     * {@link #deliverMessages(String, ClientSession)}. Messages that are routed to the session while this happens are
+     * held until all offline messages have been delivered, so that they are not received before the offline messages.
+     *
+     * @param username the username of the user who's messages are to be delivered.
+     * @param session the session to which the messages are delivered.
+     */
+    public void deliverMessagesInBackground(String username, ClientSession session) {
+        final LocalClientSession localSession = session instanceof LocalClientSession ? (LocalClientSession) session : null;
+        if (localSession != null) {
+            localSession.holdMessages();
+        }
+        try {
+            TaskEngine.getInstance().submit(() -> {
+                try {
+                    deliverMessages(username, session);
+                } finally {
+                    if (localSession != null) {
+                        localSession.releaseHeldMessages();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            if (localSession != null) {
+                localSession.releaseHeldMessages();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Delivers all messages in the store for a user to a session of that user, deleting them from the store as they
+     * are delivered.
+     *
+     * Unlike {@link #getMessages(String, boolean)}, this method does not load all messages in memory at once. Messages
+     * are loaded, delivered and deleted in pages (the size of which is defined by {@link #DELIVERY_PAGE_SIZE}). When
+     * the session uses Stream Management, the client is requested to acknowledge each page, and the page is deleted
+     * only after the client did so. This also prevents a new page from being sent before the client processed the
+     * previous one. When the session closes before the page is acknowledged, Stream Management routes the
+     * unacknowledged stanzas again, and the page is deleted. When the client does not acknowledge the page within
+     * {@link #DELIVERY_ACK_TIMEOUT}, delivery stops and the page remains in the store.
+     *
+     * Delivery stops when the session is closed. Messages that have not been delivered remain in the store. Delivery
+     * of messages of one user is serialized, to prevent that the same messages are delivered more than once.
+     *
+     * As this method can block while waiting for acknowledgements, it should not be invoked by the thread that
+     * processes data received from the session.
+     *
+     * @param username the username of the user who's messages are to be delivered.
+     * @param session the session to which the messages are delivered.
+     * @return the amount of messages that were delivered.
+     */
+    public int deliverMessages(String username, ClientSession session) {
+        synchronized (deliveryMutex.intern(username)) {
+            return deliverMessagesInPages(username, session);
+        }
+    }
+
+    private int deliverMessagesInPages(String username, ClientSession session) {
+        flushPending(username);
+        final StreamManager streamManager = session instanceof LocalSession ? ((LocalSession) session).getStreamManager() : null;
+
+        int delivered = 0;
+        String lastCreationDate = "";
+        long lastMessageID = -1;
+        try {
+            while (!session.isClosed()) {
+                final int pageSize = DELIVERY_PAGE_SIZE.getValue();
+                final List<OfflineMessage> page = new ArrayList<>();
+                Connection con = null;
+                PreparedStatement pstmt = null;
+                ResultSet rs = null;
+                try {
+                    con = DbConnectionManager.getConnection();
+                    pstmt = con.prepareStatement(LOAD_OFFLINE_PAGE);
+                    DbConnectionManager.limitRowsAndFetchSize(pstmt, 0, pageSize);
+                    pstmt.setString(1, username);
+                    pstmt.setString(2, lastCreationDate);
+                    pstmt.setString(3, lastCreationDate);
+                    pstmt.setLong(4, lastMessageID);
+                    rs = pstmt.executeQuery();
+                    int rows = 0;
+                    while (rs.next() && rows++ < pageSize) {
+                        lastCreationDate = rs.getString(2);
+                        lastMessageID = rs.getLong(3);
+                        final OfflineMessage message = parseOfflineMessage(rs.getString(1), new Date(Long.parseLong(lastCreationDate.trim())));
+                        if (message != null) {
+                            page.add(message);
+                        }
+                    }
+                    if (rows == 0) {
+                        break;
+                    }
+                }
+                finally {
+                    DbConnectionManager.closeConnection(rs, pstmt, con);
+                }
+
+                for (final OfflineMessage message : page) {
+                    session.process(message);
+                }
+                delivered += page.size();
+
+                if (streamManager != null && streamManager.isEnabled()
+                    && !streamManager.awaitAcknowledgement(streamManager.getLastSentStanzaSequence(), DELIVERY_ACK_TIMEOUT.getValue())
+                    && streamManager.isEnabled()) {
+                    Log.debug("Session {} did not acknowledge delivery of a page of offline messages within {}. Delivery stops.", session.getAddress(), DELIVERY_ACK_TIMEOUT.getValue());
+                    break;
+                }
+
+                deleteMessagesUntil(username, lastCreationDate, lastMessageID);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.error("Offline Message delivery interrupted", e);
+        }
+        catch (Exception e) {
+            Log.error("Error delivering offline messages of username: " + username, e);
+        }
+        return delivered;
+    }
+
+    /**
+     * Deletes messages of a user, up to and including the message that is identified by a creation date and message ID.
+     *
+     * @param username the username of the user who's messages are to be deleted.
+     * @param creationDate the creation date (as stored in the database) of the last message to delete.
+     * @param messageID the message ID of the last message to delete.
+     */
+    private void deleteMessagesUntil(String username, String creationDate, long messageID) {
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        try {
+            con = DbConnectionManager.getConnection();
+            pstmt = con.prepareStatement(DELETE_OFFLINE_UNTIL);
+            pstmt.setString(1, username);
+            pstmt.setString(2, creationDate);
+            pstmt.setString(3, creationDate);
+            pstmt.setLong(4, messageID);
+            pstmt.executeUpdate();
+            removeUsernameFromSizeCache(username);
+        }
+        catch (Exception e) {
+            Log.error("Error deleting offline messages of username: " + username, e);
+        }
+        finally {
+            DbConnectionManager.closeConnection(pstmt, con);
+        }
+    }
+
+    /**
+     * Parses a message that was stored in the database, adding a delayed delivery element to it.
+     *
+     * @param msgXML the stored message.
+     * @param creationDate the date when the message was stored.
+     * @return the parsed message, or null if the message could not be parsed.
+     */
+    private OfflineMessage parseOfflineMessage(String msgXML, Date creationDate) throws InterruptedException {
+        OfflineMessage message;
+        try {
+            message = new OfflineMessage(creationDate, SAXReaderUtil.readRootElement(msgXML));
+        } catch (ExecutionException e) {
+            // Try again after removing invalid XML chars (e.g. &#12;)
+            Matcher matcher = pattern.matcher(msgXML);
+            if (matcher.find()) {
+                msgXML = matcher.replaceAll("");
+            }
+            try {
+                message = new OfflineMessage(creationDate, SAXReaderUtil.readRootElement(msgXML));
+            } catch (ExecutionException de) {
+                Log.error("Failed to route packet (offline message): " + msgXML, de);
+                return null;
+            }
+        }
+
+        // if there is already a delay stamp, we shouldn't add another.
+        Element delaytest = message.getChildElement("delay", "urn:xmpp:delay");
+        if (delaytest == null) {
+            // Add a delayed delivery (XEP-0203) element to the message.
+            Element delay = message.addChildElement("delay", "urn:xmpp:delay");
+            delay.addAttribute("from", XMPPServer.getInstance().getServerInfo().getXMPPDomain());
+            delay.addAttribute("stamp", XMPPDateTimeFormat.format(creationDate));
+        }
+        return message;
+    }
+
     /**
      * Returns the offline message of the specified user with the given creation date. The
      * returned message will NOT be deleted from the database.
@@ -306,6 +741,7 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
      * @return the offline message of the specified user with the given creation stamp.
      */
     public OfflineMessage getMessage(String username, Date creationDate) {
+        flushPending(username);
         OfflineMessage message = null;
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -344,6 +780,7 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
      * @param username the username of the user who's messages are going to be deleted.
      */
     public void deleteMessages(String username) {
+        flushPending(username);
         Connection con = null;
         PreparedStatement pstmt = null;
         try {
@@ -375,6 +812,7 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
      * @param creationDate the date when the offline message was stored in the database.
      */
     public void deleteMessage(String username, Date creationDate) {
+        flushPending(username);
         Connection con = null;
         PreparedStatement pstmt = null;
         try {
@@ -407,6 +845,7 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
     public int getCount(String username) {
         // No cache: this needs to be more accurate than the 'size' method (that does have a cache).
         // Maintaining a cache would likely add more overhead than that the cache would save.
+        flushPending(username);
         int count = 0;
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -516,6 +955,12 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
         // Add this module as a user event listener so we can delete
         // all offline messages when a user is deleted
         UserEventDispatcher.addListener(this);
+
+        if (WRITE_BEHIND_ENABLED.getValue()) {
+            archiver = new OfflineMessageArchiver("Offline Message Store", WRITE_BEHIND_BATCH_SIZE.getValue(), WRITE_BEHIND_MAX_BATCH_INTERVAL.getValue(), WRITE_BEHIND_GRACE_PERIOD.getValue(), WRITE_BEHIND_QUEUE_SIZE.getValue());
+            XMPPServer.getInstance().getArchiveManager().add(archiver);
+        }
+
         //start timer if enabled
         if (OFFLINE_AUTOCLEAN_ENABLE.getValue())
         {
@@ -530,6 +975,14 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
         UserEventDispatcher.removeListener(this);
         //stop timer if started
         cancelTimer();
+
+        final OfflineMessageArchiver archiver = this.archiver;
+        if (archiver != null) {
+            this.archiver = null;
+            XMPPServer.getInstance().getArchiveManager().remove(archiver);
+            // Write messages that are still queued, to prevent them from being lost.
+            archiver.drain();
+        }
     }
 
     /**
@@ -697,4 +1150,152 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
             DbConnectionManager.closeConnection(pstmt, con);
         }
     }
+
+    /**
+     * An offline message that is queued to be written to the database.
+     */
+    private static class PendingOfflineMessage {
+        final String username;
+        final long messageID;
+        final Date creationDate;
+        final String msgXML;
+
+        PendingOfflineMessage(String username, long messageID, Date creationDate, String msgXML) {
+            this.username = username;
+            this.messageID = messageID;
+            this.creationDate = creationDate;
+            this.msgXML = msgXML;
+        }
+    }
+
+    /**
+     * Writes offline messages to the database in batches.
+     *
+     * The amount of messages that can be queued is bounded: when the queue is full, queueing another message blocks
+     * until queued messages have been written. For each user, the amount of queued messages is tracked, which allows
+     * callers to wait until the messages of a particular user have been written before reading them.
+     *
+     * Messages that cannot be written (eg: because the database is unavailable) are queued again, to be retried with a
+     * later batch. They remain accounted for in the bounded queue, and as messages that are not yet written.
+     */
+    private static class OfflineMessageArchiver extends Archiver<PendingOfflineMessage> {
+
+        private final Semaphore capacity;
+
+        private final Map<String, Integer> pendingByUser = new ConcurrentHashMap<>();
+
+        OfflineMessageArchiver(String id, int maxWorkQueueSize, Duration maxPurgeInterval, Duration gracePeriod, int queueSize) {
+            super(id, maxWorkQueueSize, maxPurgeInterval, gracePeriod);
+            this.capacity = new Semaphore(queueSize);
+        }
+
+        /**
+         * Queues a message to be written to the database, blocking while the queue is full.
+         *
+         * @param pending the message to queue.
+         * @return true if the message was queued, false if the thread was interrupted while waiting for the queue.
+         */
+        boolean enqueue(PendingOfflineMessage pending) {
+            try {
+                capacity.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            pendingByUser.merge(pending.username, 1, Integer::sum);
+            super.archive(pending);
+            return true;
+        }
+
+        /**
+         * Waits until all queued messages for a user have been written to the database.
+         *
+         * @param username the user for which to wait.
+         * @param timeout the maximum time to wait.
+         * @return true if all queued messages for the user have been written, false if the timeout elapsed.
+         */
+        synchronized boolean awaitStored(String username, Duration timeout) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + timeout.toMillis();
+            while (pendingByUser.containsKey(username)) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+
+        /**
+         * Writes the messages of a user that are queued, but have not yet been picked up for storage, on the calling
+         * thread. Messages that cannot be written are queued again.
+         *
+         * @param username the user for which to write messages.
+         * @return true if all messages were written, false if some could not be written.
+         */
+        boolean storeQueued(String username) {
+            final List<PendingOfflineMessage> queued = removeQueued(pending -> pending.username.equals(username));
+            boolean stored = true;
+            for (int i = 0; i < queued.size(); i += getMaxWorkQueueSize()) {
+                stored &= write(queued.subList(i, Math.min(i + getMaxWorkQueueSize(), queued.size())));
+            }
+            return stored;
+        }
+
+        @Override
+        protected void store(List<PendingOfflineMessage> batch) {
+            write(batch);
+        }
+
+        /**
+         * Writes a batch of messages, queueing messages that cannot be written again.
+         *
+         * @param batch the messages to write.
+         * @return true if all messages were written, false if some could not be written.
+         */
+        private boolean write(List<PendingOfflineMessage> batch) {
+            if (batch.isEmpty()) {
+                return true;
+            }
+            final List<PendingOfflineMessage> failed = storeBatch(batch);
+            if (!failed.isEmpty()) {
+                Log.error("Unable to write {} offline messages to the database. They will be retried.", failed.size());
+                failed.forEach(super::archive);
+            }
+            final Set<PendingOfflineMessage> retried = Collections.newSetFromMap(new IdentityHashMap<>());
+            retried.addAll(failed);
+            synchronized (this) {
+                for (final PendingOfflineMessage pending : batch) {
+                    if (!retried.contains(pending)) {
+                        pendingByUser.computeIfPresent(pending.username, (username, count) -> count > 1 ? count - 1 : null);
+                    }
+                }
+                notifyAll();
+            }
+            capacity.release(batch.size() - failed.size());
+            return failed.isEmpty();
+        }
+
+        /**
+         * Writes all messages that are still queued, on the calling thread. Messages that still cannot be written are
+         * retried for as long as at least some messages are written. After that, the content of the remaining messages
+         * is logged, as the server is stopping.
+         */
+        @Override
+        public void drain() {
+            int queued = getQueueSize();
+            while (queued > 0) {
+                super.drain();
+                final int remaining = getQueueSize();
+                if (remaining >= queued) {
+                    break;
+                }
+                queued = remaining;
+            }
+
+            for (final PendingOfflineMessage pending : removeQueued()) {
+                Log.error("Unable to write an offline message for user '{}' to the database before shutting down: {}", pending.username, pending.msgXML);
+            }
+        }
+    }
 }
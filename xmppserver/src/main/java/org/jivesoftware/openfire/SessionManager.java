@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -848,10 +848,9 @@ public class SessionManager extends BasicModule implements ClusterEventListener
         // User sessions had negative presence before this change so deliver messages
         if (!session.isAnonymousUser() && session.canFloodOfflineMessages()) {
             OfflineMessageStore messageStore = server.getOfflineMessageStore();
-            Collection<OfflineMessage> messages = messageStore.getMessages(session.getAuthToken().getUsername(), true);
-            for (Message message : messages) {
-                session.process(message);
-            }
+            final String username = session.getAuthToken().getUsername();
+            // Delivery may wait for acknowledgements from the client, which are processed by the current thread.
+            messageStore.deliverMessagesInBackground(username, session);
         }
     }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2016-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -70,6 +70,7 @@ import org.jivesoftware.openfire.user.UserManager;
 import org.jivesoftware.openfire.vcard.VCardManager;
 import org.jivesoftware.util.*;
 import org.jivesoftware.util.cache.CacheFactory;
+import org.jivesoftware.util.cache.CacheSnapshotManager;
 import org.jivesoftware.util.cert.CertificateExpiryChecker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -800,6 +801,7 @@ public class XMPPServer {
         loadModule(SoftwareVersionManager.class.getName());
         loadModule(SoftwareServerVersionManager.class.getName());
         loadModule(CertificateExpiryChecker.class.getName());
+        loadModule(CacheSnapshotManager.class.getName());
 
         // Load this module always last since we don't want to start listening for clients
         // before the rest of the modules have been started
@@ -1734,6 +1736,17 @@ public class XMPPServer {
         return (CertificateExpiryChecker) modules.get(CertificateExpiryChecker.class);
     }
 
+    /**
+     * Returns the <code>CacheSnapshotManager</code> registered with this server. The
+     * <code>CacheSnapshotManager</code> was registered with the server as a module while starting up
+     * the server.
+     *
+     * @return the <code>CacheSnapshotManager</code> registered with this server.
+     */
+    public CacheSnapshotManager getCacheSnapshotManager() {
+        return (CacheSnapshotManager) modules.get(CacheSnapshotManager.class);
+    }
+
     /**
      * Returns the locator to use to find sessions hosted in other cluster nodes. When not running
      * in a cluster a {@code null} value is returned.
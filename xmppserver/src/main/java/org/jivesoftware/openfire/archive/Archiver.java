@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2019-2020 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2019-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -164,6 +165,29 @@ public abstract class Archiver<E> implements Runnable
         running = false;
     }
 
+    /**
+     * Stores all data that is queued, but has not yet been picked up for storage, on the calling thread. The data is
+     * stored in batches that are no larger than the maximum work queue size.
+     *
+     * This is intended to be used after this archiver has been stopped, to prevent queued data from being lost. Data
+     * that has already been picked up by the archiver thread is not affected by this method. Data that is queued while
+     * this method executes (for example, by an implementation of {@link #store(List)}) is not stored by it.
+     */
+    public void drain()
+    {
+        final List<ArchiveCandidate<E>> pending = new ArrayList<>();
+        queue.drainTo( pending );
+        Collections.sort( pending );
+        for ( int i = 0; i < pending.size(); i += maxWorkQueueSize )
+        {
+            final List<E> batch = pending.subList( i, Math.min( i + maxWorkQueueSize, pending.size() ) ).stream()
+                .map( ArchiveCandidate::getElement )
+                .collect( Collectors.toList() );
+            store( batch );
+        }
+        Log.trace( "Stored all remaining queued work in the database. Work size: {}", pending.size() );
+    }
+
     /**
      * Returns an estimation on how long it takes for all data that arrived before a certain instant will have become
      * available in the data store. When data is immediately available, 'zero', is returned;
@@ -251,6 +275,48 @@ public abstract class Archiver<E> implements Runnable
         }
     }
 
+    /**
+     * Returns the amount of data that is queued, but has not yet been picked up for storage.
+     *
+     * @return an amount of data elements.
+     */
+    protected int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Removes all data that is queued, but has not yet been picked up for storage, from the queue.
+     *
+     * @return the removed data, in the order in which it was queued.
+     */
+    protected List<E> removeQueued()
+    {
+        final List<ArchiveCandidate<E>> pending = new ArrayList<>();
+        queue.drainTo( pending );
+        Collections.sort( pending );
+        return pending.stream()
+            .map( ArchiveCandidate::getElement )
+            .collect( Collectors.toList() );
+    }
+
+    /**
+     * Removes the data that is queued, but has not yet been picked up for storage, and that matches a filter, from the
+     * queue.
+     *
+     * @param filter Selects the data to remove.
+     * @return the removed data, in the order in which it was queued.
+     */
+    protected List<E> removeQueued( final Predicate<E> filter )
+    {
+        final List<ArchiveCandidate<E>> pending = new ArrayList<>();
+        queue.removeIf( candidate -> filter.test( candidate.getElement() ) && pending.add( candidate ) );
+        Collections.sort( pending );
+        return pending.stream()
+            .map( ArchiveCandidate::getElement )
+            .collect( Collectors.toList() );
+    }
+
     public int getMaxWorkQueueSize()
     {
         return maxWorkQueueSize;
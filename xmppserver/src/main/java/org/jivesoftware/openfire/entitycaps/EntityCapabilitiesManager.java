@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2024 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.jivesoftware.openfire.entitycaps;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.SetMultimap;
 import org.dom4j.Element;
@@ -26,8 +27,13 @@ import org.jivesoftware.openfire.container.BasicModule;
 import org.jivesoftware.openfire.disco.ServerFeaturesProvider;
 import org.jivesoftware.openfire.event.UserEventDispatcher;
 import org.jivesoftware.openfire.event.UserEventListener;
+import org.jivesoftware.openfire.stats.Statistic;
+import org.jivesoftware.openfire.stats.StatisticsManager;
 import org.jivesoftware.openfire.user.User;
+import org.jivesoftware.util.LocaleUtils;
 import org.jivesoftware.util.StringUtils;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
 import org.jivesoftware.util.cache.Cache;
 import org.jivesoftware.util.cache.CacheFactory;
 import org.slf4j.Logger;
@@ -39,8 +45,13 @@ import org.xmpp.packet.Presence;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
@@ -58,6 +69,12 @@ import java.util.stream.Collectors;
  * combination of identities and features, a Discover Information query is
  * sent to that client and its reply is cached for future use by clients
  * sharing those same entity capabilities.
+ *
+ * At most one Discover Information query is outstanding for a particular 'ver'
+ * hash. Other entities that advertise the same hash while that query is
+ * outstanding are registered when the query is answered (or are queried
+ * themselves, when it fails). Verified replies are stored in the database, so
+ * that these survive a restart of the server.
  * 
  * @author Armando Jagucki
  * @see <a href="https://xmpp.org/extensions/xep-0115.html>XEP-0115: Entity Capabilities</a>
@@ -82,6 +99,28 @@ public class EntityCapabilitiesManager extends BasicModule implements IQResultLi
      */
     public static final String OPENFIRE_IDENTIFIER_NODE = "https://www.igniterealtime.org/projects/openfire/";
 
+    /**
+     * Controls if verified entity capabilities are stored in the database, so that these need not be queried again
+     * after a restart of the server.
+     */
+    public static final SystemProperty<Boolean> STORE_ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.entitycaps.store.enabled")
+        .setDefaultValue(true)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The period for which verified entity capabilities are retained in the database.
+     */
+    public static final SystemProperty<Duration> STORE_RETENTION = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.entitycaps.store.retention")
+        .setDefaultValue(Duration.ofDays(90))
+        .setChronoUnit(ChronoUnit.DAYS)
+        .setDynamic(true)
+        .build();
+
+    private static final String HIT_RATE_STAT_KEY = "entitycaps_hit_rate";
+
     /**
      * Entity Capabilities cache map. This cache stores entity capabilities
      * that may be shared among users.
@@ -128,18 +167,83 @@ public class EntityCapabilitiesManager extends BasicModule implements IQResultLi
      * combination of entity capabilities. This hash string, representing a
      * particular identities+features combination, is found in the 'ver'
      * attribute of the caps element in a presence packet (caps packet).
-     * 
-     * Each unrecognized caps packet that is encountered has its verAttribute
-     * added to this map. Since results to our disco#info queries can be
-     * received in any order, the map is used by {@link #isValid(IQ)} so the
-     * method can be sure it is comparing its generated 'ver' hash to the
-     * correct 'ver' hash in the map, that was previously encountered in the
-     * caps packet.
-     * 
+     *
+     * Each unrecognized 'ver' hash that is encountered is added to this map,
+     * until it has been resolved. Entities that advertise a 'ver' hash that is
+     * already in this map are added to the existing entry, rather than causing
+     * another disco#info query to be sent.
+     *
+     * Operations on this map, and on its values, should be guarded by
+     * synchronizing on the map.
+     *
+     * Key:   The 'ver' hash string from the original caps packet.
+     * Value: The resolution of the 'ver' hash that is in progress.
+     */
+    private final Map<String, PendingResolution> pendingResolutions = new HashMap<>();
+
+    /**
+     * The 'ver' hashes for which a disco#info query is outstanding. Since
+     * results to our disco#info queries can be received in any order, this map
+     * is used to find the resolution that a result applies to.
+     *
+     * Operations on this map should be guarded by synchronizing on
+     * {@link #pendingResolutions}.
+     *
      * Key:   Packet ID of our disco#info request.
      * Value: The 'ver' hash string from the original caps packet.
      */
-    private Map<String, EntityCapabilities> verAttributes;
+    private final Map<String, String> pendingQueries = new HashMap<>();
+
+    /**
+     * The 'ver' hash that is being resolved for an entity, which is used to
+     * disregard the entity when it goes offline, or advertises another 'ver'
+     * hash before the resolution completes.
+     *
+     * Operations on this map should be guarded by synchronizing on
+     * {@link #pendingResolutions}.
+     *
+     * Key:   The full JID of the entity.
+     * Value: The 'ver' hash string that was advertised by the entity.
+     */
+    private final Map<JID, String> pendingEntities = new HashMap<>();
+
+    /**
+     * Stores the capabilities of verified 'ver' hashes.
+     */
+    @VisibleForTesting
+    EntityCapabilitiesStore store = new EntityCapabilitiesStore();
+
+    /**
+     * Executes lookups in the store, and the verification of disco#info results, which are kept out of the threads
+     * that process presence and IQ stanzas.
+     */
+    @VisibleForTesting
+    Executor executor = task -> TaskEngine.getInstance().submit(task);
+
+    /**
+     * The number of times that an entity advertised a 'ver' hash that was already known.
+     */
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    /**
+     * The number of times that an unknown 'ver' hash was resolved from the store.
+     */
+    private final AtomicLong storeHits = new AtomicLong();
+
+    /**
+     * The number of times that an entity advertised a 'ver' hash that was being resolved already.
+     */
+    private final AtomicLong deduplicatedResolutions = new AtomicLong();
+
+    /**
+     * The number of disco#info queries sent to resolve a 'ver' hash.
+     */
+    private final AtomicLong queriesSent = new AtomicLong();
+
+    /**
+     * The number of disco#info results (or timeouts) that did not verify the 'ver' hash that they were queried for.
+     */
+    private final AtomicLong verificationFailures = new AtomicLong();
 
     /**
      * Listeners that are invoked when new or changed capabilities for an entity are detected.
@@ -162,10 +266,26 @@ public class EntityCapabilitiesManager extends BasicModule implements IQResultLi
         entityCapabilitiesMap = CacheFactory.createLocalCache("Entity Capabilities");
         entityCapabilitiesUserMap = CacheFactory.createLocalCache("Entity Capabilities Users");
         capabilitiesBeingUpdated = new HashMap<>();
-        verAttributes = new HashMap<>();
         UserEventDispatcher.addListener( this );
     }
 
+    @Override
+    public void start()
+    {
+        super.start();
+        addHitRateStatistic();
+        if ( STORE_ENABLED.getValue() ) {
+            executor.execute( () -> store.purge( Instant.now().minus( STORE_RETENTION.getValue() ) ) );
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        super.stop();
+        StatisticsManager.getInstance().removeStatistic( HIT_RATE_STAT_KEY );
+    }
+
     @Override
     public void destroy()
     {
@@ -188,6 +308,8 @@ public class EntityCapabilitiesManager extends BasicModule implements IQResultLi
                     lock.unlock();
                 }
 
+                disregardPendingResolution( packet.getFrom() );
+
                 if ( oldVer != null ) {
                     checkObsolete( oldVer );
                 }
@@ -219,6 +341,8 @@ public class EntityCapabilitiesManager extends BasicModule implements IQResultLi
             return;
         }
 
+        disregardPendingResolution( packet.getFrom() );
+
         // Check to see if the 'ver' hash is already in our cache.
         EntityCapabilities caps;
         if ((caps = entityCapabilitiesMap.get(newVerAttribute)) != null) {
@@ -226,6 +350,7 @@ public class EntityCapabilitiesManager extends BasicModule implements IQResultLi
             // entityCapabilitiesUserMap for the user that sent the caps
             // packet.
             Log.trace( "Registering 'ver' (for recognized caps) for {}", packet.getFrom() );
+            cacheHits.incrementAndGet();
             registerCapabilities( packet.getFrom(), caps );
         }
         else {
@@ -251,69 +376,162 @@ public class EntityCapabilitiesManager extends BasicModule implements IQResultLi
                 lock.unlock();
             }
 
-            // The 'ver' hash is not in the cache so send out a disco#info query
-            // so that we may begin recognizing this 'ver' hash.
-            IQ iq = new IQ(IQ.Type.get);
-            iq.setTo(packet.getFrom());
+            // The 'ver' hash is not in the cache, so resolve it.
+            resolve( packet.getFrom(), hashAttribute, newVerAttribute );
+        }
+    }
 
-            String serverName = XMPPServer.getInstance().getServerInfo().getXMPPDomain();
-            iq.setFrom(serverName);
+    /**
+     * Resolves the capabilities that are represented by a 'ver' hash that was advertised by an entity.
+     *
+     * When the 'ver' hash is already being resolved, the entity is registered once that completes. Otherwise, the
+     * capabilities are looked up in the store, or else are queried from the entity.
+     *
+     * @param entity the entity that advertised the 'ver' hash.
+     * @param hashAttribute the hashing algorithm used to generate the 'ver' hash.
+     * @param verAttribute the 'ver' hash.
+     */
+    private void resolve( @Nonnull final JID entity, @Nonnull final String hashAttribute, @Nonnull final String verAttribute )
+    {
+        final PendingResolution resolution;
+        final EntityCapabilities caps;
+        synchronized ( pendingResolutions ) {
+            // The 'ver' hash might have been resolved after the cache was checked by the caller.
+            caps = entityCapabilitiesMap.get( verAttribute );
+            if ( caps == null ) {
+                    final PendingResolution existing = pendingResolutions.get( verAttribute );
+                if ( existing != null ) {
+                    Log.trace( "Deferring registration of 'ver' for {}, as that is already being resolved.", entity );
+                    deduplicatedResolutions.incrementAndGet();
+                    existing.entities.add( entity );
+                    existing.candidates.add( entity );
+                    pendingEntities.put( entity, verAttribute );
+                    return;
+                }
 
-            iq.setChildElement("query", "http://jabber.org/protocol/disco#info");
+                resolution = new PendingResolution( hashAttribute, verAttribute );
+                resolution.entities.add( entity );
+                resolution.candidates.add( entity );
+                pendingResolutions.put( verAttribute, resolution );
+                pendingEntities.put( entity, verAttribute );
+            } else {
+                resolution = null;
+            }
+        }
+
+        if ( caps != null ) {
+            cacheHits.incrementAndGet();
+            registerCapabilities( entity, caps );
+            return;
+        }
 
-            String packetId = iq.getID();
-            
-            caps = new EntityCapabilities();
-            caps.setHashAttribute(hashAttribute);
-            caps.setVerAttribute(newVerAttribute);
-            Log.trace( "Querying 'ver' for unrecognized caps. Querying: {}", packet.getFrom() );
-            verAttributes.put(packetId, caps);
+        executor.execute( () -> {
+            final IQ stored = STORE_ENABLED.getValue() ? store.load( verAttribute ) : null;
+            if ( stored != null ) {
+                Log.trace( "Resolved 'ver' for unrecognized caps from the store, for {}", entity );
+                storeHits.incrementAndGet();
+                complete( resolution, stored );
+            } else {
+                query( resolution );
+            }
+        } );
+    }
 
-            final IQRouter iqRouter = XMPPServer.getInstance().getIQRouter();
-            iqRouter.addIQResultListener(packetId, this);
-            iqRouter.route(iq);
+    /**
+     * Removes an entity from the resolution of the 'ver' hash that it previously advertised (if any), which causes the
+     * capabilities that result from that resolution not to be registered for the entity.
+     *
+     * @param entity the entity that is no longer interested in a pending resolution.
+     */
+    private void disregardPendingResolution( @Nonnull final JID entity )
+    {
+        synchronized ( pendingResolutions ) {
+            final String verAttribute = pendingEntities.remove( entity );
+            final PendingResolution resolution = verAttribute == null ? null : pendingResolutions.get( verAttribute );
+            if ( resolution != null ) {
+                resolution.entities.remove( entity );
+                resolution.candidates.remove( entity );
+            }
         }
     }
 
     /**
-     * Determines whether or not a particular 'ver' attribute is stored in the
-     * {@link #entityCapabilitiesMap} cache.
-     * 
-     * @param verAttribute the 'ver' hash to check for.
-     * @return true if the caps cache contains the 'ver' hash already, false if not.
+     * Sends a disco#info query to the next entity that advertised the 'ver' hash that is being resolved. When there
+     * is no such entity, the resolution is abandoned.
+     *
+     * @param resolution the resolution for which to send a query.
      */
-    private boolean isInCapsCache(String verAttribute) {
-        return entityCapabilitiesMap.containsKey(verAttribute);
+    private void query( @Nonnull final PendingResolution resolution )
+    {
+        final IQ iq = new IQ(IQ.Type.get);
+        synchronized ( pendingResolutions ) {
+            final JID candidate = resolution.candidates.poll();
+            if ( candidate == null ) {
+                Log.trace( "Unable to resolve 'ver' hash '{}', as there are no more entities to query.", resolution.caps.getVerAttribute() );
+                if ( pendingResolutions.remove( resolution.caps.getVerAttribute(), resolution ) ) {
+                    resolution.entities.forEach( pendingEntities::remove );
+                }
+                return;
+            }
+            iq.setTo( candidate );
+            pendingQueries.put( iq.getID(), resolution.caps.getVerAttribute() );
+        }
+
+        String serverName = XMPPServer.getInstance().getServerInfo().getXMPPDomain();
+        iq.setFrom(serverName);
+        iq.setChildElement("query", "http://jabber.org/protocol/disco#info");
+
+        Log.trace( "Querying 'ver' for unrecognized caps. Querying: {}", iq.getTo() );
+        queriesSent.incrementAndGet();
+
+        final IQRouter iqRouter = XMPPServer.getInstance().getIQRouter();
+        iqRouter.addIQResultListener(iq.getID(), this);
+        iqRouter.route(iq);
     }
 
     /**
-     * Determines whether the packet received from a disco#info result
-     * was valid by comparing its 'ver' hash (identities+features encapsulated
-     * hash) with the 'ver' hash of the original caps packet that the
-     * disco#info query was sent on behalf of.
-     * 
-     * @param packet the disco#info result packet.
-     * @return true if the packet's generated 'ver' hash matches the 'ver'
-     *         hash of the original CAPS packet.
+     * Completes the resolution of a 'ver' hash, registering the resulting capabilities for all entities that
+     * advertised it.
+     *
+     * @param resolution the resolution to complete.
+     * @param discoInfo the disco#info result that verifies the 'ver' hash.
      */
-    private boolean isValid(IQ packet) {
-        if (packet.getType() != IQ.Type.result)
-            return false;
+    private void complete( @Nonnull final PendingResolution resolution, @Nonnull final IQ discoInfo )
+    {
+        // Add the resolved identities and features to the entity capabilities object.
+        final EntityCapabilities caps = resolution.caps;
+        getIdentitiesFrom( discoInfo ).forEach( caps::addIdentity );
+        getFeaturesFrom( discoInfo ).forEach( caps::addFeature );
+
+        final Set<JID> entities;
+        synchronized ( pendingResolutions ) {
+            entityCapabilitiesMap.put( caps.getVerAttribute(), caps );
+            pendingResolutions.remove( caps.getVerAttribute(), resolution );
+            entities = new LinkedHashSet<>( resolution.entities );
+            entities.forEach( pendingEntities::remove );
+        }
 
-        final EntityCapabilities original = verAttributes.get(packet.getID());
-        if (original == null) {
-            return false;
+        for ( final JID entity : entities ) {
+            registerCapabilities( entity, caps );
         }
-        final String newVerHash = generateVerHash(packet, original.getHashAttribute());
+    }
 
-        return newVerHash.equals(original.getVerAttribute());
+    /**
+     * Determines whether or not a particular 'ver' attribute is stored in the
+     * {@link #entityCapabilitiesMap} cache.
+     * 
+     * @param verAttribute the 'ver' hash to check for.
+     * @return true if the caps cache contains the 'ver' hash already, false if not.
+     */
+    private boolean isInCapsCache(String verAttribute) {
+        return entityCapabilitiesMap.containsKey(verAttribute);
     }
 
     /**
      * Generates a 'ver' hash attribute used in validation to help prevent
      * poisoning of entity capabilities information.
      * 
-     * @see #isValid(IQ)
+     * @see #receivedAnswer(IQ)
      * 
      * The value of the 'ver' attribute is generated according to the method
      * outlined in XEP-0115.
@@ -370,42 +588,46 @@ public class EntityCapabilitiesManager extends BasicModule implements IQResultLi
 
     @Override
     public void answerTimeout(String packetId) {
-        // If we never received an answer, we can discard the cached
-        // 'ver' attribute.
-        verAttributes.remove(packetId);
+        final PendingResolution resolution;
+        synchronized ( pendingResolutions ) {
+            final String verAttribute = pendingQueries.remove( packetId );
+            resolution = verAttribute == null ? null : pendingResolutions.get( verAttribute );
+        }
+        if ( resolution != null ) {
+            // If we never received an answer, query the next entity that advertised the 'ver' hash (if any).
+            verificationFailures.incrementAndGet();
+            executor.execute( () -> query( resolution ) );
+        }
     }
 
     @Override
     public void receivedAnswer(IQ packet) {
-        String packetId = packet.getID();
-
-        if (isValid(packet)) {
-            // The packet was validated, so it can be added to the Entity
-            // Capabilities cache map.
-
-            // Add the resolved identities and features to the entity 
-            // EntityCapabilitiesManager.capabilities object and add it 
-            // to the cache map...
-            EntityCapabilities caps = verAttributes.get(packetId);
-
-            // Store identities.
-            List<String> identities = getIdentitiesFrom(packet);
-            for (String identity : identities) {
-                caps.addIdentity(identity);
-            }
-
-            // Store features.
-            List<String> features = getFeaturesFrom(packet);
-            for (String feature : features) {
-                caps.addFeature(feature);
-            }
-
-            Log.trace( "Received response to querying 'ver'. Caps now recognized. Received response from: {}", packet.getFrom() );
-            registerCapabilities( packet.getFrom(), caps );
+        final PendingResolution resolution;
+        synchronized ( pendingResolutions ) {
+            final String verAttribute = pendingQueries.remove( packet.getID() );
+            resolution = verAttribute == null ? null : pendingResolutions.get( verAttribute );
+        }
+        if ( resolution == null ) {
+            return;
         }
 
-        // Remove cached 'ver' attribute.
-        verAttributes.remove(packetId);
+        // Verify the result asynchronously, as generating its 'ver' hash can be costly.
+        executor.execute( () -> {
+            // Compare the 'ver' hash generated from the result with the 'ver' hash of the original caps packet that
+            // the disco#info query was sent on behalf of, to help prevent poisoning of entity capabilities information.
+            final EntityCapabilities original = resolution.caps;
+            if ( packet.getType() == IQ.Type.result && original.getVerAttribute().equals( generateVerHash( packet, original.getHashAttribute() ) ) ) {
+                Log.trace( "Received response to querying 'ver'. Caps now recognized. Received response from: {}", packet.getFrom() );
+                if ( STORE_ENABLED.getValue() ) {
+                    store.save( original, packet );
+                }
+                complete( resolution, packet );
+            } else {
+                Log.trace( "Received response to querying 'ver' that does not verify the hash. Received response from: {}", packet.getFrom() );
+                verificationFailures.incrementAndGet();
+                query( resolution );
+            }
+        } );
     }
 
     /**
@@ -788,15 +1010,138 @@ public class EntityCapabilitiesManager extends BasicModule implements IQResultLi
         return null;
     }
 
+    /**
+     * Returns the number of times that an entity advertised a 'ver' hash that was already known.
+     *
+     * @return the number of cache hits.
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Returns the number of times that a 'ver' hash that was unknown was resolved from the database.
+     *
+     * @return the number of hits in the database.
+     */
+    public long getStoreHits() {
+        return storeHits.get();
+    }
+
+    /**
+     * Returns the number of times that an entity advertised a 'ver' hash that was being resolved already, which did
+     * therefore not cause another disco#info query to be sent.
+     *
+     * @return the number of deduplicated resolutions.
+     */
+    public long getDeduplicatedResolutions() {
+        return deduplicatedResolutions.get();
+    }
+
+    /**
+     * Returns the number of disco#info queries that were sent to resolve a 'ver' hash.
+     *
+     * @return the number of queries sent.
+     */
+    public long getQueriesSent() {
+        return queriesSent.get();
+    }
+
+    /**
+     * Returns the number of disco#info results (or timeouts) that did not verify the 'ver' hash that they were queried
+     * for.
+     *
+     * @return the number of failed verifications.
+     */
+    public long getVerificationFailures() {
+        return verificationFailures.get();
+    }
+
+    private void addHitRateStatistic() {
+        final Statistic statistic = new Statistic() {
+            private long lastHits = 0;
+            private long lastQueries = 0;
+
+            @Override
+            public String getName() {
+                return LocaleUtils.getLocalizedString("entitycaps.stats.hit_rate.name");
+            }
+
+            @Override
+            public Type getStatType() {
+                return Type.count;
+            }
+
+            @Override
+            public String getDescription() {
+                return LocaleUtils.getLocalizedString("entitycaps.stats.hit_rate.desc");
+            }
+
+            @Override
+            public String getUnits() {
+                return LocaleUtils.getLocalizedString("entitycaps.stats.hit_rate.units");
+            }
+
+            @Override
+            public synchronized double sample() {
+                // The percentage of advertised 'ver' hashes that were resolved without a disco#info query, since the last sample.
+                final long hits = getCacheHits() + getStoreHits() + getDeduplicatedResolutions();
+                final long queries = getQueriesSent();
+                final long deltaHits = hits - lastHits;
+                final long total = deltaHits + (queries - lastQueries);
+                lastHits = hits;
+                lastQueries = queries;
+                return total == 0 ? 100 : 100.0 * deltaHits / total;
+            }
+
+            @Override
+            public boolean isPartialSample() {
+                return true;
+            }
+        };
+        StatisticsManager.getInstance().addStatistic(HIT_RATE_STAT_KEY, statistic);
+    }
+
     /** Exposed for test use only */
     void clearCaches()
     {
         entityCapabilitiesMap.clear();
         entityCapabilitiesUserMap.clear();
-        verAttributes.clear();
+        synchronized ( pendingResolutions ) {
+            pendingResolutions.clear();
+            pendingQueries.clear();
+            pendingEntities.clear();
+        }
         capabilitiesBeingUpdated.clear();
     }
 
+    /**
+     * The resolution of a 'ver' hash that is in progress.
+     */
+    private static class PendingResolution
+    {
+        /**
+         * The capabilities that are being resolved, which initially hold only the 'ver' hash and its hash algorithm.
+         */
+        final EntityCapabilities caps = new EntityCapabilities();
+
+        /**
+         * All entities that advertised the 'ver' hash, for which the capabilities are to be registered.
+         */
+        final Set<JID> entities = new LinkedHashSet<>();
+
+        /**
+         * The entities that advertised the 'ver' hash that have not been queried yet.
+         */
+        final Deque<JID> candidates = new ArrayDeque<>();
+
+        PendingResolution( @Nonnull final String hashAttribute, @Nonnull final String verAttribute )
+        {
+            caps.setHashAttribute( hashAttribute );
+            caps.setVerAttribute( verAttribute );
+        }
+    }
+
     @Override
     public Iterator<String> getFeatures()
     {
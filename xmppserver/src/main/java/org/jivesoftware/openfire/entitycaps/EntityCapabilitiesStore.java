@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.entitycaps;
+
+import org.dom4j.Element;
+import org.jivesoftware.database.DbConnectionManager;
+import org.jivesoftware.util.SAXReaderUtil;
+import org.jivesoftware.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.IQ;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Persists the service discovery information of 'ver' hashes that have been verified, so that these need not be
+ * queried again after a restart of the server.
+ *
+ * As a 'ver' hash is derived from the service discovery information that it represents, stored information never
+ * needs to be updated. It is removed after a retention period, after which the 'ver' hash is queried (and verified)
+ * again when it is next encountered.
+ */
+public class EntityCapabilitiesStore
+{
+    private static final Logger Log = LoggerFactory.getLogger(EntityCapabilitiesStore.class);
+
+    private static final String LOAD_CAPABILITIES =
+        "SELECT hashAlgorithm, discoInfo FROM ofEntityCapabilities WHERE ver=?";
+    private static final String ADD_CAPABILITIES =
+        "INSERT INTO ofEntityCapabilities (ver, hashAlgorithm, discoInfo, creationDate) VALUES (?,?,?,?)";
+    private static final String DELETE_CAPABILITIES_BEFORE =
+        "DELETE FROM ofEntityCapabilities WHERE creationDate < ?";
+
+    /**
+     * Returns the service discovery information that was stored for a 'ver' hash.
+     *
+     * @param verAttribute the 'ver' hash.
+     * @return the disco#info result that was verified for the 'ver' hash, or null if none was stored.
+     */
+    @Nullable
+    public IQ load(@Nonnull final String verAttribute)
+    {
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            con = DbConnectionManager.getConnection();
+            pstmt = con.prepareStatement(LOAD_CAPABILITIES);
+            pstmt.setString(1, verAttribute);
+            rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            final String hashAlgorithm = rs.getString(1);
+            final String discoInfo = DbConnectionManager.getLargeTextField(rs, 2);
+
+            final Element query = SAXReaderUtil.readRootElement(discoInfo);
+            final IQ result = new IQ(IQ.Type.result);
+            result.setChildElement(query);
+
+            // Guard against the stored data having been corrupted (or tampered with).
+            if (!verAttribute.equals(EntityCapabilitiesManager.generateVerHash(result, hashAlgorithm))) {
+                Log.warn("Ignoring the stored service discovery information for 'ver' hash '{}', as it does not match the hash.", verAttribute);
+                return null;
+            }
+            return result;
+        } catch (SQLException e) {
+            Log.warn("Unable to load the stored service discovery information for 'ver' hash '{}'.", verAttribute, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Log.warn("Unable to parse the stored service discovery information for 'ver' hash '{}'.", verAttribute, e);
+        } finally {
+            DbConnectionManager.closeConnection(rs, pstmt, con);
+        }
+        return null;
+    }
+
+    /**
+     * Stores the service discovery information of a 'ver' hash, after it has been verified.
+     *
+     * @param capabilities the capabilities that were verified.
+     * @param discoInfo the disco#info result from which the capabilities were verified.
+     */
+    public void save(@Nonnull final EntityCapabilities capabilities, @Nonnull final IQ discoInfo)
+    {
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        try {
+            con = DbConnectionManager.getConnection();
+            pstmt = con.prepareStatement(ADD_CAPABILITIES);
+            pstmt.setString(1, capabilities.getVerAttribute());
+            pstmt.setString(2, capabilities.getHashAttribute());
+            DbConnectionManager.setLargeTextField(pstmt, 3, discoInfo.getChildElement().asXML());
+            pstmt.setString(4, StringUtils.dateToMillis(new Date()));
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            // This is expected when another cluster node stored the same 'ver' hash concurrently.
+            Log.debug("Unable to store the service discovery information for 'ver' hash '{}'.", capabilities.getVerAttribute(), e);
+        } finally {
+            DbConnectionManager.closeConnection(pstmt, con);
+        }
+    }
+
+    /**
+     * Removes all service discovery information that was stored before a particular instant.
+     *
+     * @param before the instant before which stored information is to be removed.
+     */
+    public void purge(@Nonnull final Instant before)
+    {
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        try {
+            con = DbConnectionManager.getConnection();
+            pstmt = con.prepareStatement(DELETE_CAPABILITIES_BEFORE);
+            pstmt.setString(1, StringUtils.dateToMillis(Date.from(before)));
+            final int count = pstmt.executeUpdate();
+            Log.debug("Removed {} stored entity capabilities that were verified before {}.", count, before);
+        } catch (SQLException e) {
+            Log.warn("Unable to remove stored entity capabilities that were verified before {}.", before, e);
+        } finally {
+            DbConnectionManager.closeConnection(pstmt, con);
+        }
+    }
+}
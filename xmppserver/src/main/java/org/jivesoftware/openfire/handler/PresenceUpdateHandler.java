@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -265,11 +265,9 @@ public class PresenceUpdateHandler extends BasicModule implements ChannelHandler
                 }
             }
             if (session.canFloodOfflineMessages()) {
-                // deliver offline messages if any
-                Collection<OfflineMessage> messages = messageStore.getMessages(username, true);
-                for (Message message : messages) {
-                    session.process(message);
-                }
+                // deliver offline messages if any. Delivery may wait for acknowledgements from the client, which are
+                // processed by the current thread.
+                messageStore.deliverMessagesInBackground(username, session);
             }
         }
     }
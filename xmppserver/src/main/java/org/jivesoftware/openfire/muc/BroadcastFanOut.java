@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc;
+
+import org.jivesoftware.openfire.stats.Statistic;
+import org.jivesoftware.openfire.stats.StatisticsManager;
+import org.jivesoftware.util.LocaleUtils;
+import org.jivesoftware.util.NamedThreadFactory;
+import org.jivesoftware.util.SystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Delivers a stanza that is broadcast in a MUC room to each of the occupants of that room.
+ *
+ * For rooms that have fewer occupants than a configurable threshold, stanzas are delivered to each occupant in turn,
+ * by the thread that broadcasts the stanza. For larger rooms, the occupants are split into chunks that are delivered in
+ * parallel by a dedicated thread pool. The broadcasting thread delivers the first chunk itself, and waits for the
+ * delivery of all other chunks to be completed before it returns. As every occupant is in exactly one chunk, and a
+ * broadcast is completed before a next broadcast by the same thread starts, the order in which stanzas are delivered
+ * to an occupant is retained.
+ *
+ * The time it takes to deliver a broadcast is recorded, grouped by room size. The average latency of each group is
+ * registered as a statistic with the {@link StatisticsManager}.
+ */
+public final class BroadcastFanOut
+{
+    private static final Logger Log = LoggerFactory.getLogger(BroadcastFanOut.class);
+
+    /**
+     * The minimum amount of occupants that a room must have for its broadcasts to be delivered in parallel.
+     */
+    public static final SystemProperty<Integer> PARALLEL_THRESHOLD = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.muc.broadcast.parallel.threshold")
+        .setDefaultValue(1000)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The amount of occupants in each chunk of occupants that is delivered to by one thread, when a broadcast is
+     * delivered in parallel.
+     */
+    public static final SystemProperty<Integer> PARALLEL_CHUNK_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.muc.broadcast.parallel.chunksize")
+        .setDefaultValue(250)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The amount of threads that deliver broadcasts in parallel.
+     */
+    public static final SystemProperty<Integer> PARALLEL_THREADS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.muc.broadcast.parallel.threads")
+        .setDefaultValue(Runtime.getRuntime().availableProcessors())
+        .setMinValue(1)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The upper bounds (inclusive) of the room sizes for which broadcast latency is recorded separately.
+     */
+    private static final int[] ROOM_SIZE_BUCKETS = { 10, 100, 1000, 10000, Integer.MAX_VALUE };
+
+    /**
+     * Prefix of the keys of the statistics, which are suffixed with the maximum room size of their range.
+     */
+    private static final String latencyStatKeyPrefix = "muc_broadcast_latency_";
+
+    private static final Metrics[] METRICS = new Metrics[ROOM_SIZE_BUCKETS.length];
+    static {
+        for (int i = 0; i < ROOM_SIZE_BUCKETS.length; i++) {
+            METRICS[i] = new Metrics(ROOM_SIZE_BUCKETS[i]);
+        }
+    }
+
+    /**
+     * Set for threads that are executing a chunk of a broadcast, to prevent a nested broadcast from waiting for the
+     * thread pool that it is running in.
+     */
+    private static final ThreadLocal<Boolean> IN_POOL = ThreadLocal.withInitial(() -> false);
+
+    private static final class ExecutorHolder
+    {
+        private static final ExecutorService EXECUTOR;
+        static {
+            final int threads = PARALLEL_THREADS.getValue();
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("muc-broadcast-", null, true, Thread.NORM_PRIORITY));
+            executor.allowCoreThreadTimeOut(true);
+            EXECUTOR = executor;
+        }
+    }
+
+    private BroadcastFanOut()
+    {
+    }
+
+    /**
+     * Delivers a stanza to each of the provided occupants.
+     *
+     * The delivery is performed by consumers that are obtained from the provided supplier. A distinct consumer is
+     * obtained for each chunk of occupants that is delivered to in parallel. As a consumer is used by one thread only,
+     * it can hold stanza instances that are modified when they're delivered (eg: by setting the 'to' address).
+     *
+     * @param occupants The occupants to deliver to.
+     * @param deliverers Provides consumers that deliver the stanza to one occupant.
+     */
+    public static void deliver(@Nonnull final Collection<MUCOccupant> occupants, @Nonnull final Supplier<Consumer<MUCOccupant>> deliverers)
+    {
+        final long start = System.nanoTime();
+        final int size = occupants.size();
+        final int chunkSize = PARALLEL_CHUNK_SIZE.getValue();
+
+        if (size < PARALLEL_THRESHOLD.getValue() || size <= chunkSize || IN_POOL.get()) {
+            final Consumer<MUCOccupant> deliverer = deliverers.get();
+            occupants.forEach(deliverer);
+        } else {
+            final List<MUCOccupant> all = new ArrayList<>(occupants);
+            final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            final List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int from = chunkSize; from < size; from += chunkSize) {
+                final List<MUCOccupant> chunk = all.subList(from, Math.min(size, from + chunkSize));
+                final Consumer<MUCOccupant> deliverer = deliverers.get();
+                futures.add(CompletableFuture.runAsync(() -> {
+                    // Retain the context class loader of the broadcasting thread, which is needed when routing in a cluster.
+                    final Thread thread = Thread.currentThread();
+                    final ClassLoader original = thread.getContextClassLoader();
+                    thread.setContextClassLoader(contextClassLoader);
+                    IN_POOL.set(true);
+                    try {
+                        chunk.forEach(deliverer);
+                    } finally {
+                        IN_POOL.set(false);
+                        thread.setContextClassLoader(original);
+                    }
+                }, ExecutorHolder.EXECUTOR));
+            }
+
+            // Deliver the first chunk on this thread.
+            final Consumer<MUCOccupant> deliverer = deliverers.get();
+            all.subList(0, Math.min(size, chunkSize)).forEach(deliverer);
+
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            } catch (Exception e) {
+                Log.warn("An unexpected exception occurred while delivering a broadcast to {} occupants in parallel.", size, e);
+            }
+        }
+
+        recordLatency(size, System.nanoTime() - start);
+    }
+
+    private static void recordLatency(final int roomSize, final long nanos)
+    {
+        for (final Metrics metrics : METRICS) {
+            if (roomSize <= metrics.maxRoomSize) {
+                metrics.count.increment();
+                metrics.totalNanos.add(nanos);
+                metrics.maxNanos.accumulate(nanos);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the broadcast latency metrics, one for each range of room sizes, ordered by room size.
+     *
+     * @return broadcast latency metrics.
+     */
+    @Nonnull
+    public static List<Metrics> getMetrics()
+    {
+        return List.of(METRICS);
+    }
+
+    /**
+     * Resets all broadcast latency metrics.
+     */
+    public static void resetMetrics()
+    {
+        for (final Metrics metrics : METRICS) {
+            metrics.count.reset();
+            metrics.totalNanos.reset();
+            metrics.maxNanos.reset();
+            synchronized (metrics) {
+                metrics.sampledCount = 0;
+                metrics.sampledNanos = 0;
+            }
+        }
+    }
+
+    /**
+     * Registers the average broadcast latency of each range of room sizes as a statistic.
+     */
+    public static void addStatistics()
+    {
+        for (int i = 0; i < METRICS.length; i++) {
+            final Metrics metrics = METRICS[i];
+            final String description = metrics.maxRoomSize == Integer.MAX_VALUE
+                ? LocaleUtils.getLocalizedString("muc.stats.broadcast_latency.description.largest", List.of(ROOM_SIZE_BUCKETS[i - 1]))
+                : LocaleUtils.getLocalizedString("muc.stats.broadcast_latency.description", List.of(metrics.maxRoomSize));
+            final Statistic statistic = new Statistic() {
+                @Override
+                public String getName() {
+                    return LocaleUtils.getLocalizedString("muc.stats.broadcast_latency.name");
+                }
+
+                @Override
+                public Type getStatType() {
+                    return Type.count;
+                }
+
+                @Override
+                public String getDescription() {
+                    return description;
+                }
+
+                @Override
+                public String getUnits() {
+                    return LocaleUtils.getLocalizedString("muc.stats.broadcast_latency.label");
+                }
+
+                @Override
+                public double sample() {
+                    return metrics.sampleAverageLatency();
+                }
+
+                @Override
+                public boolean isPartialSample() {
+                    // An average cannot be added up with the value of other cluster nodes.
+                    return false;
+                }
+            };
+            StatisticsManager.getInstance().addStatistic(latencyStatKeyPrefix + metrics.maxRoomSize, statistic);
+        }
+    }
+
+    /**
+     * Removes the statistics that were registered by {@link #addStatistics()}.
+     */
+    public static void removeStatistics()
+    {
+        for (final Metrics metrics : METRICS) {
+            StatisticsManager.getInstance().removeStatistic(latencyStatKeyPrefix + metrics.maxRoomSize);
+        }
+    }
+
+    /**
+     * Broadcast latency, recorded for rooms up to a particular size (and larger than the size of the preceding range).
+     */
+    public static final class Metrics
+    {
+        private final int maxRoomSize;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        // The count and total at the time of the previous sample.
+        private long sampledCount;
+        private long sampledNanos;
+
+        private Metrics(final int maxRoomSize)
+        {
+            this.maxRoomSize = maxRoomSize;
+        }
+
+        /**
+         * The maximum (inclusive) room size for which metrics are recorded by this instance.
+         *
+         * @return an amount of occupants.
+         */
+        public int getMaxRoomSize()
+        {
+            return maxRoomSize;
+        }
+
+        /**
+         * The amount of broadcasts that have been recorded.
+         *
+         * @return an amount of broadcasts.
+         */
+        public long getCount()
+        {
+            return count.sum();
+        }
+
+        /**
+         * The average time that it took to deliver a broadcast.
+         *
+         * @return a duration.
+         */
+        @Nonnull
+        public Duration getAverageLatency()
+        {
+            final long c = count.sum();
+            return c == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos.sum() / c);
+        }
+
+        /**
+         * The average time in milliseconds that it took to deliver a broadcast, since the previous invocation of this
+         * method.
+         *
+         * @return an amount of milliseconds, or zero when no broadcasts have been recorded since the previous sample.
+         */
+        synchronized double sampleAverageLatency()
+        {
+            final long c = count.sum();
+            final long nanos = totalNanos.sum();
+            final long deltaCount = c - sampledCount;
+            final long deltaNanos = nanos - sampledNanos;
+            sampledCount = c;
+            sampledNanos = nanos;
+            return deltaCount <= 0 ? 0 : deltaNanos / (deltaCount * 1_000_000.0);
+        }
+
+        /**
+         * The longest time that it took to deliver a broadcast.
+         *
+         * @return a duration.
+         */
+        @Nonnull
+        public Duration getMaxLatency()
+        {
+            return Duration.ofNanos(maxNanos.get());
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.dom4j.Element;
+import org.dom4j.QName;
+import org.jivesoftware.util.SAXReaderUtil;
+import org.jivesoftware.util.cache.CacheSizes;
+import org.jivesoftware.util.cache.CannotCalculateSizeException;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Presence;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * An immutable, compact representation of the presence of a MUC occupant.
+ *
+ * The parts of the presence stanza that are specific to an occupant (the 'from' address, the occupant-id and the
+ * 'muc#user' extended information, all of which can be derived from the occupant itself, as well as the stanza ID and
+ * a 'to' address that differs from the address of the occupant) are stored separately. The remainder of the stanza is
+ * stored in serialized form. This serialized form is interned: occupants that have identical presence information (as
+ * is typical for silent listeners in a large room) share the same instance.
+ *
+ * A {@link Presence} instance is materialized only when it is requested. To prevent repeated parsing when the
+ * presence of many occupants is broadcast, a parsed form of each shared template is retained for as long as memory
+ * permits.
+ */
+final class CompactPresence
+{
+    static final QName MUC_USER = QName.get("x", "http://jabber.org/protocol/muc#user");
+    static final QName OCCUPANT_ID = QName.get("occupant-id", "urn:xmpp:occupant-id:0");
+
+    private static final Interner<Template> TEMPLATES = Interners.newWeakInterner();
+
+    /**
+     * The shared, serialized part of the presence stanza.
+     */
+    private final Template template;
+
+    /**
+     * The stanza ID, or null if the stanza has none.
+     */
+    @Nullable
+    private final String id;
+
+    /**
+     * The 'to' address of the stanza, if it is not equal to the address of the occupant (or null if it is).
+     */
+    @Nullable
+    private final JID to;
+
+    /**
+     * Indicates that the 'to' address of the stanza is equal to the address of the occupant.
+     */
+    private final boolean toOccupant;
+
+    /**
+     * Indicates that the stanza contains the occupant-id of the occupant.
+     */
+    private final boolean hasOccupantId;
+
+    private CompactPresence(@Nonnull final Template template, @Nullable final String id, @Nullable final JID to, final boolean toOccupant, final boolean hasOccupantId)
+    {
+        this.template = template;
+        this.id = id;
+        this.to = to;
+        this.toOccupant = toOccupant;
+        this.hasOccupantId = hasOccupantId;
+    }
+
+    /**
+     * Creates a compact representation of the presence of an occupant. The provided stanza is not modified.
+     *
+     * Any 'muc#user' extended information in the stanza is discarded, as it is expected to be recalculated for the
+     * occupant when the presence is materialized.
+     *
+     * @param presence the presence stanza.
+     * @param occupantJID the address of the occupant in the room.
+     * @param occupantId the occupant-id of the occupant.
+     * @return a compact representation of the presence.
+     */
+    @Nonnull
+    static CompactPresence of(@Nonnull final Presence presence, @Nonnull final JID occupantJID, @Nullable final String occupantId)
+    {
+        final Element element = presence.getElement().createCopy();
+        final String id = element.attributeValue("id");
+        final String toValue = element.attributeValue("to");
+        final boolean toOccupant = toValue != null && toValue.equals(occupantJID.toString());
+        final JID to = toValue == null || toOccupant ? null : new JID(toValue);
+        for (final String attribute : new String[] { "id", "to", "from" }) {
+            if (element.attribute(attribute) != null) {
+                element.remove(element.attribute(attribute));
+            }
+        }
+
+        element.elements(MUC_USER).forEach(element::remove);
+
+        boolean hasOccupantId = false;
+        final List<Element> occupantIds = element.elements(OCCUPANT_ID);
+        if (occupantId != null && occupantIds.size() == 1 && occupantId.equals(occupantIds.get(0).attributeValue("id"))) {
+            element.remove(occupantIds.get(0));
+            hasOccupantId = true;
+        }
+
+        final Template template = TEMPLATES.intern(new Template(element.asXML().getBytes(StandardCharsets.UTF_8)));
+        if (template.parsed == null) {
+            template.parsed = new SoftReference<>(element);
+        }
+        return new CompactPresence(template, id, to, toOccupant, hasOccupantId);
+    }
+
+    /**
+     * Materializes the presence of an occupant.
+     *
+     * @param occupantJID the address of the occupant in the room.
+     * @param occupantId the occupant-id of the occupant.
+     * @param extendedInformation the 'muc#user' extended information to add to the stanza, or null to add none.
+     * @return a new presence stanza.
+     */
+    @Nonnull
+    Presence materialize(@Nonnull final JID occupantJID, @Nullable final String occupantId, @Nullable final Element extendedInformation)
+    {
+        final Presence result = new Presence(template.element().createCopy(), true);
+        result.setFrom(occupantJID);
+        if (toOccupant) {
+            result.setTo(occupantJID);
+        } else if (to != null) {
+            result.setTo(to);
+        }
+        if (id != null) {
+            result.setID(id);
+        }
+        if (hasOccupantId && occupantId != null) {
+            result.getElement().addElement(OCCUPANT_ID).addAttribute("id", occupantId);
+        }
+        if (extendedInformation != null) {
+            result.getElement().add(extendedInformation);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a modified copy of this presence.
+     *
+     * @param occupantJID the address of the occupant in the room.
+     * @param occupantId the occupant-id of the occupant.
+     * @param modification the modification to apply.
+     * @return a compact representation of the modified presence.
+     */
+    @Nonnull
+    CompactPresence modify(@Nonnull final JID occupantJID, @Nullable final String occupantId, @Nonnull final Consumer<Presence> modification)
+    {
+        final Presence presence = materialize(occupantJID, occupantId, null);
+        modification.accept(presence);
+        return of(presence, occupantJID, occupantId);
+    }
+
+    /**
+     * Checks if this presence shares its serialized form with another.
+     *
+     * @param other the presence to compare with.
+     * @return true if both presences use the same shared serialized form.
+     */
+    boolean sharesTemplateWith(@Nonnull final CompactPresence other)
+    {
+        return template == other.template;
+    }
+
+    /**
+     * Returns the approximate size of this instance in memory, excluding the shared serialized form.
+     *
+     * @return a size, in bytes.
+     */
+    int getCachedSize() throws CannotCalculateSizeException
+    {
+        int size = CacheSizes.sizeOfObject();
+        size += CacheSizes.sizeOfObject(); // reference to the shared template.
+        size += CacheSizes.sizeOfString(id);
+        size += CacheSizes.sizeOfAnything(to);
+        size += CacheSizes.sizeOfBoolean() * 2;
+        return size;
+    }
+
+    /**
+     * The shared, serialized part of presence stanzas.
+     */
+    private static final class Template
+    {
+        private final byte[] xml;
+        private final int hash;
+
+        /**
+         * A parsed form of the serialized data. Must not be modified.
+         */
+        private volatile SoftReference<Element> parsed;
+
+        private Template(@Nonnull final byte[] xml)
+        {
+            this.xml = xml;
+            this.hash = Arrays.hashCode(xml);
+        }
+
+        @Nonnull
+        private Element element()
+        {
+            final SoftReference<Element> reference = parsed;
+            Element result = reference == null ? null : reference.get();
+            if (result == null) {
+                try {
+                    result = SAXReaderUtil.readRootElement(new String(xml, StandardCharsets.UTF_8));
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Unable to parse the serialized form of a presence stanza.", e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while parsing the serialized form of a presence stanza.", e);
+                }
+                parsed = new SoftReference<>(result);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Template template = (Template) o;
+            return hash == template.hash && Arrays.equals(xml, template.xml);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2016-2024 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,8 +19,7 @@ package org.jivesoftware.openfire.muc;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.List;
 
 import org.dom4j.Element;
 import org.jivesoftware.util.XMPPDateTimeFormat;
@@ -143,57 +142,8 @@ public class HistoryRequest {
                 // The user requested to receive no history
                 return;
             }
-            int accumulatedChars = 0;
-            int accumulatedStanzas = 0;
-            Element delayInformation;
-            LinkedList<Message> historyToSend = new LinkedList<>();
-            ListIterator<Message> iterator = roomHistory.getReverseMessageHistory();
-            while (iterator.hasPrevious()) {
-                Message message = iterator.previous();
-                // Update number of characters to send
-                String text = message.getBody() == null ? message.getSubject() : message.getBody();
-                if (text == null) {
-                    // Skip this message since it has no body and no subject  
-                    continue;
-                }
-                accumulatedChars += text.length();
-                if (getMaxChars() > -1 && accumulatedChars > getMaxChars()) {
-                    // Stop collecting history since we have exceded a limit
-                    break;
-                }
-                // Update number of messages to send
-                accumulatedStanzas ++;
-                if (getMaxStanzas() > -1 && accumulatedStanzas > getMaxStanzas()) {
-                    // Stop collecting history since we have exceded a limit
-                    break;
-                }
-
-                if (getSeconds() > -1 || getSince() != null) {
-                    delayInformation = message.getChildElement("delay", "urn:xmpp:delay");
-                    try {
-                        // Get the date when the historic message was sent
-                        Date delayedDate = xmppDateTime.parseString(delayInformation.attributeValue("stamp"));
-                        if (getSince() != null && delayedDate != null && delayedDate.before(getSince())) {
-                            // Stop collecting history since we have exceded a limit
-                            break;
-                        }
-                        if (getSeconds() > -1) {
-                            Date current = new Date();
-                            long diff = (current.getTime() - delayedDate.getTime()) / 1000;
-                            if (getSeconds() <= diff) {
-                                // Stop collecting history since we have exceded a limit
-                                break;
-                            }
-                        }
-                    }
-                    catch (Exception e) {
-                        Log.error("Error parsing date from historic message", e);
-                    }
-
-                }
-
-                historyToSend.addFirst(message);
-            }
+            // The request is evaluated against the index of the history, so that only the messages to send are parsed.
+            final List<Message> historyToSend = roomHistory.getMessageHistory(this);
             // Send the smallest amount of traffic to the user
             for (final Message aHistoryToSend : historyToSend) {
                 // OF-2163: Create a defensive copy of the message, to prevent the address that it is sent to to leak back into the archive.
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2016-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,9 @@ import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.muc.spi.MUCPersistenceManager;
 import org.jivesoftware.util.CacheableOptional;
 import org.jivesoftware.util.JiveGlobals;
+import org.jivesoftware.util.SAXReaderUtil;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.XMPPDateTimeFormat;
 import org.jivesoftware.util.cache.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,13 +33,18 @@ import org.xmpp.packet.Message;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -60,6 +68,16 @@ public class HistoryStrategy implements Externalizable {
      */
     private static final Cache<JID, CacheableOptional<Messages>> MUC_HISTORY_CACHE = CacheFactory.createCache("MUC History");
 
+    /**
+     * Controls if the (encoded) historic messages of rooms are stored outside of the Java heap. Changes apply to
+     * messages that are added after the change.
+     */
+    public static final SystemProperty<Boolean> OFF_HEAP = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.muc.history.offheap")
+        .setDefaultValue(false)
+        .setDynamic(true)
+        .build();
+
     /**
      * The address of the room (expected to be a bare JID) for which this instance records message history.
      */
@@ -253,7 +271,8 @@ public class HistoryStrategy implements Externalizable {
      *
      * @return The historic messages for this room.
      */
-    protected Queue<Message> getHistoryFromCache() {
+    @Nonnull
+    protected Messages getHistoryFromCache() {
         // Ensure room history is in cache. Doing this outside of the lock below, to reduce the likelihood of deadlocks occurring.
         if (!MUC_HISTORY_CACHE.containsKey(roomJID)) {
             try {
@@ -270,9 +289,9 @@ public class HistoryStrategy implements Externalizable {
         try {
             final CacheableOptional<Messages> optional = MUC_HISTORY_CACHE.get(roomJID);
             if (optional == null || optional.isAbsent()) {
-                return new Messages().asCollection();
+                return new Messages();
             } else {
-                return optional.get().asCollection();
+                return optional.get();
             }
         } finally {
             lock.unlock();
@@ -285,10 +304,7 @@ public class HistoryStrategy implements Externalizable {
      * @return An iterator of Message objects to be sent to the new room member.
      */
     public Iterator<Message> getMessageHistory(){
-        final LinkedList<Message> list = new LinkedList<>(getHistoryFromCache());
-        // Sort messages. Messages may be out of order when running inside of a cluster
-        list.sort(new MessageComparator());
-        return list.iterator();
+        return getHistoryFromCache().asCollection().iterator();
     }
 
     /**
@@ -299,12 +315,46 @@ public class HistoryStrategy implements Externalizable {
      * @return A list iterator of Message objects positioned at the end of the list.
      */
     public ListIterator<Message> getReverseMessageHistory(){
-        final LinkedList<Message> list = new LinkedList<>(getHistoryFromCache());
-        // Sort messages. Messages may be out of order when running inside of a cluster
-        list.sort(new MessageComparator());
+        final LinkedList<Message> list = new LinkedList<>(getHistoryFromCache().asCollection());
         return list.listIterator(list.size());
     }
 
+    /**
+     * Obtain the part of the current history that is requested by a new room member. The request is evaluated against
+     * an index of the history, which means that only the messages that are returned need to be parsed.
+     *
+     * @param request the amount of history that is requested.
+     * @return the requested messages, in chronological order.
+     */
+    @Nonnull
+    public List<Message> getMessageHistory(@Nonnull final HistoryRequest request) {
+        return getHistoryFromCache().select(request.getMaxChars(), request.getMaxStanzas(), request.getSeconds(), request.getSince());
+    }
+
+    /**
+     * Applies a modification to each of the historic messages of the room.
+     *
+     * @param updater the modification to apply.
+     */
+    public void updateMessages(@Nonnull final Consumer<Message> updater)
+    {
+        final Lock lock = MUC_HISTORY_CACHE.getLock(roomJID);
+        lock.lock();
+        try {
+            final CacheableOptional<Messages> optional = MUC_HISTORY_CACHE.get(roomJID);
+            if (optional == null || optional.isAbsent()) {
+                return;
+            }
+            final Messages history = optional.get();
+            history.update(updater);
+
+            // Explicitly add back to cache (Hazelcast won't update-by-reference).
+            MUC_HISTORY_CACHE.put(roomJID, CacheableOptional.of(history));
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Removes all history that is maintained for this instance.
      */
@@ -450,6 +500,15 @@ public class HistoryStrategy implements Externalizable {
         return roomSubject;
     }
 
+    /**
+     * Replaces the message that changed the room's subject, without adding anything to the history of the room.
+     *
+     * @param subject the latest room subject change.
+     */
+    void setChangedSubject(@Nonnull final Message subject) {
+        roomSubject = subject;
+    }
+
     /**
      * Returns true if the given message qualifies as a subject change request for
      * the target MUC room, per XEP-0045. Note that this does not validate whether 
@@ -483,56 +542,344 @@ public class HistoryStrategy implements Externalizable {
     }
 
     /**
-     * A wrapper for a collection of Message instances that is cached.
+     * A cached collection of historic messages of a room.
+     *
+     * To reduce the amount of memory that is used by the history of a room, messages are not retained as XML element
+     * trees. Instead, each message is stored as a compact array of UTF-8 encoded bytes. Next to these bytes, a small
+     * index is kept for every message (its timestamp and the length of its text), which allows history requests to be
+     * evaluated without parsing messages. Messages are parsed back into stanzas only when they are retrieved.
+     *
+     * When messages are stored off-heap (see {@link #OFF_HEAP}), their bytes are appended to one off-heap buffer per
+     * room (an arena). When the arena is full, the bytes of the retained messages are compacted, and the arena is
+     * replaced by a larger one only when less than half of it would be free after compaction.
+     *
+     * Messages are stored in a ring buffer, ordered by their timestamp. When the amount of messages is limited, the
+     * oldest message is evicted when a new message is added to a full buffer.
      */
     public static class Messages implements Cacheable, Externalizable
     {
-        private ConcurrentLinkedQueue<Message> history = new ConcurrentLinkedQueue<>();
+        /**
+         * The value used for the timestamp of a message of which the timestamp cannot be determined.
+         */
+        private static final long UNKNOWN_TIMESTAMP = Long.MIN_VALUE;
+
+        /**
+         * The capacity (in bytes) of the arena of a room when it is first allocated.
+         */
+        private static final int INITIAL_ARENA_CAPACITY = 4096;
+
+        private static final XMPPDateTimeFormat xmppDateTime = new XMPPDateTimeFormat();
+
+        private Entry[] entries = new Entry[8];
+        private int head = 0;
+        private int size = 0;
+        private long payloadSize = 0;
+
+        /**
+         * The off-heap buffer to which the bytes of messages that are stored off-heap are appended. Null until the
+         * first message is stored off-heap.
+         */
+        private ByteBuffer arena;
+
+        /**
+         * The position in the arena at which the bytes of the next message are appended.
+         */
+        private int arenaPosition = 0;
 
         public Messages() {}
 
-        public void add(Message packet, Type strategyType, int strategyMaxNumber)
+        public synchronized void add(Message packet, Type strategyType, int strategyMaxNumber)
         {
             // store message according to active strategy
             if (strategyType == Type.all) {
-                history.add(packet);
+                append(entryOf(packet));
             } else if (strategyType == Type.number) {
-                if (history.size() >= strategyMaxNumber) {
-                    // We have to remove messages so the new message won't exceed the max history size.
-                    while (!history.isEmpty() && history.size() >= strategyMaxNumber) {
-                        history.poll();
+                // We have to remove messages so the new message won't exceed the max history size.
+                while (size > 0 && size >= strategyMaxNumber) {
+                    removeOldest();
+                }
+                append(entryOf(packet));
+            }
+        }
+
+        /**
+         * Returns all messages, ordered by their timestamp.
+         *
+         * The returned collection is a copy. Modifications applied to it, or to the messages in it, are not applied to
+         * this instance.
+         *
+         * @return all historic messages.
+         */
+        public synchronized Queue<Message> asCollection()
+        {
+            final Queue<Message> result = new LinkedList<>();
+            for (int i = 0; i < size; i++) {
+                final Message message = parse(payloadOf(get(i)));
+                if (message != null) {
+                    result.add(message);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the most recent messages that satisfy each of the limits that are provided, ordered by their
+         * timestamp. Only the messages that are returned are parsed.
+         *
+         * The messages are selected by iterating over the history, starting with the most recent message. Messages
+         * without a body and subject are ignored. Iteration stops as soon as one of the limits is exceeded.
+         *
+         * @param maxChars the maximum total length of the text of the selected messages, or -1 for no limit.
+         * @param maxStanzas the maximum amount of selected messages, or -1 for no limit.
+         * @param seconds the maximum age (in seconds) of selected messages, or -1 for no limit.
+         * @param since the oldest timestamp of selected messages, or null for no limit.
+         * @return the selected historic messages.
+         */
+        @Nonnull
+        public synchronized List<Message> select(final int maxChars, final int maxStanzas, final int seconds, @Nullable final Date since)
+        {
+            final long now = System.currentTimeMillis();
+            final LinkedList<Entry> selected = new LinkedList<>();
+            int accumulatedChars = 0;
+            for (int i = size - 1; i >= 0; i--) {
+                final Entry entry = get(i);
+                if (entry.textLength < 0) {
+                    // Skip this message since it has no body and no subject
+                    continue;
+                }
+                accumulatedChars += entry.textLength;
+                if (maxChars > -1 && accumulatedChars > maxChars) {
+                    break;
+                }
+                if (maxStanzas > -1 && selected.size() + 1 > maxStanzas) {
+                    break;
+                }
+                if (entry.timestamp != UNKNOWN_TIMESTAMP) {
+                    if (since != null && entry.timestamp < since.getTime()) {
+                        break;
+                    }
+                    if (seconds > -1 && seconds <= (now - entry.timestamp) / 1000) {
+                        break;
                     }
                 }
-                history.add(packet);
+                selected.addFirst(entry);
+            }
+
+            final List<Message> result = new ArrayList<>(selected.size());
+            for (final Entry entry : selected) {
+                final Message message = parse(payloadOf(entry));
+                if (message != null) {
+                    result.add(message);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Applies a modification to each of the messages.
+         *
+         * @param updater the modification to apply.
+         */
+        public synchronized void update(@Nonnull final Consumer<Message> updater)
+        {
+            final List<Entry> old = toList();
+            final List<byte[]> payloads = new ArrayList<>(old.size());
+            for (final Entry entry : old) {
+                payloads.add(payloadOf(entry));
+            }
+
+            entries = new Entry[entries.length];
+            head = 0;
+            size = 0;
+            payloadSize = 0;
+            arenaPosition = 0;
+            for (int i = 0; i < old.size(); i++) {
+                final Message message = parse(payloads.get(i));
+                if (message == null) {
+                    append(store(old.get(i).timestamp, old.get(i).textLength, payloads.get(i)));
+                } else {
+                    updater.accept(message);
+                    append(entryOf(message));
+                }
             }
         }
 
-        public Queue<Message> asCollection()
+        public synchronized int size()
         {
-            return history;
+            return size;
+        }
+
+        private Entry get(final int index)
+        {
+            return entries[(head + index) % entries.length];
+        }
+
+        private void set(final int index, final Entry entry)
+        {
+            entries[(head + index) % entries.length] = entry;
+        }
+
+        private void removeOldest()
+        {
+            payloadSize -= entries[head].length;
+            entries[head] = null;
+            head = (head + 1) % entries.length;
+            size--;
+        }
+
+        private void append(final Entry entry)
+        {
+            if (size == entries.length) {
+                final Entry[] grown = new Entry[entries.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = get(i);
+                }
+                entries = grown;
+                head = 0;
+            }
+            set(size, entry);
+            size++;
+            payloadSize += entry.length;
+
+            // Messages may be out of order when running inside of a cluster. Move the new message to its place.
+            for (int i = size - 1; i > 0; i--) {
+                final Entry previous = get(i - 1);
+                if (entry.timestamp == UNKNOWN_TIMESTAMP || previous.timestamp == UNKNOWN_TIMESTAMP || previous.timestamp <= entry.timestamp) {
+                    break;
+                }
+                set(i - 1, entry);
+                set(i, previous);
+            }
+        }
+
+        /**
+         * Creates the index entry of a message, storing its bytes.
+         */
+        @Nonnull
+        private Entry entryOf(@Nonnull final Message message)
+        {
+            long timestamp = UNKNOWN_TIMESTAMP;
+            final Element delay = message.getChildElement("delay", "urn:xmpp:delay");
+            if (delay != null) {
+                try {
+                    final Date date = xmppDateTime.parseString(delay.attributeValue("stamp"));
+                    if (date != null) {
+                        timestamp = date.getTime();
+                    }
+                } catch (ParseException e) {
+                    Log.debug("Unable to parse the timestamp of historic message: {}", delay.attributeValue("stamp"));
+                }
+            }
+            final String text = message.getBody() == null ? message.getSubject() : message.getBody();
+            return store(timestamp, text == null ? -1 : text.length(), message.getElement().asXML().getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Stores the bytes of a message, either on-heap or in the arena, and returns the index entry of the message.
+         */
+        @Nonnull
+        private Entry store(final long timestamp, final int textLength, @Nonnull final byte[] payload)
+        {
+            if (!OFF_HEAP.getValue()) {
+                return new Entry(timestamp, textLength, payload, -1, payload.length);
+            }
+            reserve(payload.length);
+            final Entry entry = new Entry(timestamp, textLength, null, arenaPosition, payload.length);
+            arena.put(arenaPosition, payload);
+            arenaPosition += payload.length;
+            return entry;
+        }
+
+        /**
+         * Ensures that the arena has room to append a particular amount of bytes, by compacting the bytes of the
+         * messages that are retained and, if needed, replacing the arena by a larger one.
+         */
+        private void reserve(final int length)
+        {
+            if (arena != null && arenaPosition + length <= arena.capacity()) {
+                return;
+            }
+
+            // Order the messages that are stored in the arena by their position in it.
+            final List<Entry> stored = new ArrayList<>();
+            long required = length;
+            for (int i = 0; i < size; i++) {
+                final Entry entry = get(i);
+                if (entry.bytes == null) {
+                    stored.add(entry);
+                    required += entry.length;
+                }
+            }
+            stored.sort(Comparator.comparingInt(entry -> entry.offset));
+
+            int capacity = arena == null ? INITIAL_ARENA_CAPACITY : arena.capacity();
+            while (capacity < required * 2 && capacity <= Integer.MAX_VALUE / 2) {
+                capacity *= 2;
+            }
+            final ByteBuffer target = arena != null && arena.capacity() == capacity ? arena : ByteBuffer.allocateDirect(capacity);
+
+            // Bytes only move to lower positions, which allows for the arena to be compacted in place.
+            int position = 0;
+            for (final Entry entry : stored) {
+                target.put(position, arena, entry.offset, entry.length);
+                entry.offset = position;
+                position += entry.length;
+            }
+            arena = target;
+            arenaPosition = position;
+        }
+
+        /**
+         * Returns the UTF-8 encoded bytes of a message.
+         */
+        @Nonnull
+        private byte[] payloadOf(@Nonnull final Entry entry)
+        {
+            if (entry.bytes != null) {
+                return entry.bytes;
+            }
+            final byte[] result = new byte[entry.length];
+            arena.get(entry.offset, result);
+            return result;
+        }
+
+        /**
+         * Parses a stored message.
+         *
+         * @return the message, or null if the message could not be parsed.
+         */
+        @Nullable
+        private static Message parse(@Nonnull final byte[] payload)
+        {
+            try {
+                return new Message(SAXReaderUtil.readRootElement(new ByteArrayInputStream(payload)), true);
+            } catch (ExecutionException | InterruptedException e) {
+                Log.error("Unable to parse historic message.", e);
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
         }
 
         @Override
-        public int getCachedSize() throws CannotCalculateSizeException
+        public synchronized int getCachedSize() throws CannotCalculateSizeException
         {
             int size = 0;
             size += CacheSizes.sizeOfObject();      // overhead of object
-            size += CacheSizes.sizeOfObject();      // overhead of collection.
-
-            // OF-2498: repeated calculation of the true size of each message stanza is very resource intensive.
-            //          To avoid performance issues, this implementation uses a size of 2k per message, which has
-            //          empirically been observed to be roughly correct. Mileage will probably vary considerably.
-            size += history.size() * 2048;
-
+            size += CacheSizes.sizeOfObject();      // overhead of ring buffer.
+            size += entries.length * CacheSizes.sizeOfObject(); // overhead of each (potential) entry
+            size += this.size * (CacheSizes.sizeOfLong() + 3 * CacheSizes.sizeOfInt()); // timestamp, text length, offset and length
+            size += (int) Math.min(Integer.MAX_VALUE - size, payloadSize);
             return size;
         }
 
         @Override
-        public String toString()
+        public synchronized String toString()
         {
             // Note: this value is shown in the Openfire admin console (in the 'cache values' page). Do not expose
             // privacy-sensitive data, such as message content.
-            return "A collection of " + history.size() + " message stanza(s).";
+            return "A collection of " + size + " message stanza(s).";
         }
 
         @Override
@@ -540,41 +887,115 @@ public class HistoryStrategy implements Externalizable {
         {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
-            Messages messages = (Messages) o;
-            return history.equals(messages.history);
+            final List<Object> ours;
+            synchronized (this) {
+                ours = contents();
+            }
+            final List<Object> theirs;
+            synchronized (o) {
+                theirs = ((Messages) o).contents();
+            }
+            return ours.equals(theirs);
         }
 
         @Override
-        public int hashCode()
+        public synchronized int hashCode()
         {
-            return Objects.hash(history);
+            return contents().hashCode();
         }
 
-        @Override
-        public void writeExternal(ObjectOutput out) throws IOException {
-            ExternalizableUtil.getInstance().writeLong(out, history.size());
-            for (final Message packet : history) {
-                ExternalizableUtil.getInstance().writeSerializable(out, (DefaultElement) packet.getElement());
+        private List<Entry> toList()
+        {
+            final List<Entry> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(get(i));
+            }
+            return result;
+        }
+
+        /**
+         * Returns the index data and bytes of all messages, regardless of where the bytes are stored.
+         */
+        private List<Object> contents()
+        {
+            final List<Object> result = new ArrayList<>(size * 3);
+            for (int i = 0; i < size; i++) {
+                final Entry entry = get(i);
+                result.add(entry.timestamp);
+                result.add(entry.textLength);
+                result.add(ByteBuffer.wrap(payloadOf(entry)));
             }
+            return result;
         }
 
         @Override
-        public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-            history = new ConcurrentLinkedQueue<>();
-            final long size = ExternalizableUtil.getInstance().readLong(in);
-            for (int i=0; i<size;i++) {
-                Element packetElement = (Element) ExternalizableUtil.getInstance().readSerializable(in);
-                history.add(new Message(packetElement, true));
+        public synchronized void writeExternal(ObjectOutput out) throws IOException {
+            ExternalizableUtil.getInstance().writeInt(out, size);
+            for (int i = 0; i < size; i++) {
+                final Entry entry = get(i);
+                ExternalizableUtil.getInstance().writeLong(out, entry.timestamp);
+                ExternalizableUtil.getInstance().writeInt(out, entry.textLength);
+                ExternalizableUtil.getInstance().writeByteArray(out, payloadOf(entry));
             }
         }
-    }
 
-    private static class MessageComparator implements Comparator<Message> {
         @Override
-        public int compare(Message o1, Message o2) {
-            String stamp1 = o1.getChildElement("delay", "urn:xmpp:delay").attributeValue("stamp");
-            String stamp2 = o2.getChildElement("delay", "urn:xmpp:delay").attributeValue("stamp");
-            return stamp1.compareTo(stamp2);
+        public synchronized void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+            final int count = ExternalizableUtil.getInstance().readInt(in);
+            entries = new Entry[Math.max(8, Integer.highestOneBit(Math.max(1, count)) * 2)];
+            head = 0;
+            size = 0;
+            payloadSize = 0;
+            arenaPosition = 0;
+            for (int i = 0; i < count; i++) {
+                final long timestamp = ExternalizableUtil.getInstance().readLong(in);
+                final int textLength = ExternalizableUtil.getInstance().readInt(in);
+                final byte[] payload = ExternalizableUtil.getInstance().readByteArray(in);
+                append(store(timestamp, textLength, payload));
+            }
+        }
+
+        /**
+         * The index data of one historic message, and the location of its UTF-8 encoded bytes.
+         */
+        private static final class Entry
+        {
+            /**
+             * The timestamp of the message (as recorded in its 'delay' element) in milliseconds since the epoch.
+             */
+            private final long timestamp;
+
+            /**
+             * The length of the body (or, in absence of a body, the subject) of the message, or -1 if the message has
+             * neither.
+             */
+            private final int textLength;
+
+            /**
+             * The UTF-8 encoded message, or null if it is stored in the arena.
+             */
+            @Nullable
+            private final byte[] bytes;
+
+            /**
+             * The position of the encoded message in the arena (if it is stored there). Changes when the arena is
+             * compacted.
+             */
+            private int offset;
+
+            /**
+             * The length of the encoded message.
+             */
+            private final int length;
+
+            private Entry(final long timestamp, final int textLength, @Nullable final byte[] bytes, final int offset, final int length)
+            {
+                this.timestamp = timestamp;
+                this.textLength = textLength;
+                this.bytes = bytes;
+                this.offset = offset;
+                this.length = length;
+            }
         }
     }
 
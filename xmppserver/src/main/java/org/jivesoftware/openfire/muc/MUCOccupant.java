@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -34,14 +34,17 @@ import org.xmpp.packet.Packet;
 import org.xmpp.packet.Presence;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.security.SecureRandom;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -78,10 +81,11 @@ public class MUCOccupant implements Cacheable, Externalizable {
     private String occupantId;
 
     /**
-     * The user's presence in the room.
+     * The user's presence in the room, in a compact form that shares its serialized data with occupants that have the
+     * same presence. The full stanza is materialized only when it is obtained through {@link #getPresence()}.
      */
     @GuardedBy("this")
-    private Presence presence;
+    private CompactPresence presence;
 
     /**
      * A temporary position or privilege level within a room, distinct from a user's long-lived affiliation with the
@@ -107,12 +111,6 @@ public class MUCOccupant implements Cacheable, Externalizable {
      */
     private JID occupantJID;
 
-    /**
-     * A fragment containing the x-extension for non-anonymous rooms.
-     */
-    @GuardedBy("this")
-    private Element extendedInformation;
-
     /**
      * The address of the person on the joining FMUC node, if the person joined through FMUC (otherwise null).
      */
@@ -123,6 +121,22 @@ public class MUCOccupant implements Cacheable, Externalizable {
      */
     private transient int cacheSize;
 
+    /**
+     * Source of the versions of the state of occupants. Versions are taken from one sequence that is shared by all
+     * instances, starting at a random value, so that an instance never reuses a version that was used by another
+     * instance, including an earlier instance of the same occupant (eg: one that left and rejoined the room), or an
+     * instance on another cluster node.
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong(new SecureRandom().nextLong());
+
+    /**
+     * A number that changes every time the state of this instance changes. Used to determine if an occupant changed,
+     * without comparing its entire state. This is not part of the serialized form of an occupant: an instance that is
+     * deserialized is given a new version.
+     */
+    @GuardedBy("this")
+    private long version = VERSIONS.incrementAndGet();
+
     /**
      * This constructor is provided to comply with the Externalizable interface contract. It should not be used directly.
      */
@@ -151,9 +165,6 @@ public class MUCOccupant implements Cacheable, Externalizable {
         this.occupantId = chatroom.generateOccupantId(userJid);
 
         synchronized (this) {
-            extendedInformation = DocumentHelper.createElement(QName.get("x", "http://jabber.org/protocol/muc#user"));
-            calculateExtendedInformation();
-
             // Add occupant-id to the presence stanza of the new occupant.
             final Presence modified = presence.createCopy();
 
@@ -208,7 +219,7 @@ public class MUCOccupant implements Cacheable, Externalizable {
      * @return The presence of the user in the room.
      */
     public synchronized Presence getPresence() {
-        return presence.createCopy();
+        return presence.materialize(occupantJID, occupantId, createExtendedInformation());
     }
 
     /**
@@ -224,9 +235,9 @@ public class MUCOccupant implements Cacheable, Externalizable {
             .forEach(presenceEl::remove);
 
         synchronized (this) {
-            this.presence = newPresence;
-            this.presence.setFrom(getOccupantJID());
-            updatePresence();
+            this.presence = CompactPresence.of(newPresence, getOccupantJID(), occupantId);
+            cacheSize = -1;
+            version = VERSIONS.incrementAndGet();
         }
     }
 
@@ -247,11 +258,14 @@ public class MUCOccupant implements Cacheable, Externalizable {
     {
         role = newRole;
         synchronized (this) {
-            if (Role.none == role) {
-                presence.setType(Presence.Type.unavailable);
-                presence.setStatus(null);
+            if (Role.none == role && presence != null) {
+                presence = presence.modify(occupantJID, occupantId, p -> {
+                    p.setType(Presence.Type.unavailable);
+                    p.setStatus(null);
+                });
             }
-            calculateExtendedInformation();
+            cacheSize = -1;
+            version = VERSIONS.incrementAndGet();
         }
     }
 
@@ -276,9 +290,9 @@ public class MUCOccupant implements Cacheable, Externalizable {
      */
     void setAffiliation(Affiliation newAffiliation) {
         affiliation = newAffiliation;
-        // TODO The fragment is being calculated twice (1. setting the role & 2. setting the aff)
         synchronized (this) {
-            calculateExtendedInformation();
+            cacheSize = -1;
+            version = VERSIONS.incrementAndGet();
         }
     }
 
@@ -292,6 +306,27 @@ public class MUCOccupant implements Cacheable, Externalizable {
         return affiliation;
     }
 
+    /**
+     * Returns a number that changes every time the state of this occupant changes. Two instances that represent the
+     * same occupant and that have the same version have the same state. No two instances are given the same version,
+     * unless one is a copy of the other, that was given the version of the original by {@link #setVersion(long)}.
+     *
+     * @return the version of the state of this occupant.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the state of this occupant. As the version is not part of the serialized form of an occupant,
+     * this is used to give a copy of an occupant (eg: a replica on another cluster node) the version of the original.
+     *
+     * @param version the version of the state of the occupant of which this instance is a copy.
+     */
+    public synchronized void setVersion(final long version) {
+        this.version = version;
+    }
+
     /**
      * Obtain the nickname for the user in the chatroom.
      *
@@ -320,6 +355,7 @@ public class MUCOccupant implements Cacheable, Externalizable {
         setRoleAddress(new JID(roomJid.getNode(), roomJid.getDomain(), nick));
         synchronized (this) {
             cacheSize = -1;
+            version = VERSIONS.incrementAndGet();
         }
     }
 
@@ -379,7 +415,10 @@ public class MUCOccupant implements Cacheable, Externalizable {
 
     public void setReportedFmucAddress( @Nonnull final JID reportedFmucAddress ) {
         this.reportedFmucJID = reportedFmucAddress;
-        cacheSize = -1;
+        synchronized (this) {
+            cacheSize = -1;
+            version = VERSIONS.incrementAndGet();
+        }
     }
 
     /**
@@ -393,11 +432,14 @@ public class MUCOccupant implements Cacheable, Externalizable {
     }
 
     private void setRoleAddress(JID jid) {
-        occupantJID = jid;
-        // Set the new sender of the user presence in the room
+        // The sender of the user presence in the room is derived from the new address. Retain any other addressing.
         synchronized (this) {
-            presence.setFrom(jid);
+            if (presence != null) {
+                presence = CompactPresence.of(presence.materialize(occupantJID, occupantId, null), jid, occupantId);
+            }
+            occupantJID = jid;
             cacheSize = -1;
+            version = VERSIONS.incrementAndGet();
         }
     }
 
@@ -563,29 +605,21 @@ public class MUCOccupant implements Cacheable, Externalizable {
     }
 
     /**
-     * Calculates and sets the extended presence information to add to the presence.
-     * The information to add contains the user's jid, affiliation and role.
+     * Creates the extended presence information to add to the presence. The information contains the user's jid,
+     * affiliation and role. This is not retained, as it can be derived from the state of this instance.
+     *
+     * @return A fragment containing the x-extension for non-anonymous rooms, or null if this instance represents the room itself.
      */
-    @GuardedBy("this")
-    private void calculateExtendedInformation() {
+    @Nullable
+    Element createExtendedInformation() {
+        if (userJid == null) {
+            return null;
+        }
+        final Element extendedInformation = DocumentHelper.createElement(CompactPresence.MUC_USER);
         ElementUtil.setProperty(extendedInformation, "x.item:jid", userJid.toString());
         ElementUtil.setProperty(extendedInformation, "x.item:affiliation", affiliation.toString());
         ElementUtil.setProperty(extendedInformation, "x.item:role", role.toString());
-        updatePresence();
-    }
-
-    @GuardedBy("this")
-    private void updatePresence() {
-        if (extendedInformation != null && presence != null) {
-            // Remove any previous extendedInformation, then re-add it.
-            final Element presenceEl = presence.getElement();
-            presenceEl.elements(QName.get("x", "http://jabber.org/protocol/muc#user"))
-                .forEach(presenceEl::remove);
-
-            Element exi = extendedInformation.createCopy();
-            presenceEl.add(exi);
-            cacheSize = -1;
-        }
+        return extendedInformation;
     }
 
     @Override
@@ -653,9 +687,8 @@ public class MUCOccupant implements Cacheable, Externalizable {
             size += CacheSizes.sizeOfAnything(roomJid);
             size += CacheSizes.sizeOfAnything(userJid);
             size += CacheSizes.sizeOfString(nick);
-            size += CacheSizes.sizeOfAnything(extendedInformation);
             if (presence != null) {
-                size += CacheSizes.sizeOfAnything(presence.getElement());
+                size += presence.getCachedSize();
             }
             size += CacheSizes.sizeOfAnything(role);
             size += CacheSizes.sizeOfAnything(affiliation);
@@ -681,16 +714,15 @@ public class MUCOccupant implements Cacheable, Externalizable {
             synchronized (this) {
                 ExternalizableUtil.getInstance().writeBoolean(out, presence != null);
                 if (presence != null) {
-                    ExternalizableUtil.getInstance().writeSerializable(out, (DefaultElement) presence.getElement());
+                    ExternalizableUtil.getInstance().writeSerializable(out, (DefaultElement) getPresence().getElement());
                 }
             }
             ExternalizableUtil.getInstance().writeSerializable(out, role);
             ExternalizableUtil.getInstance().writeSerializable(out, affiliation);
             ExternalizableUtil.getInstance().writeBoolean(out, voiceOnly);
             ExternalizableUtil.getInstance().writeSafeUTF(out, occupantJID.toString());
-            synchronized (this) {
-                ExternalizableUtil.getInstance().writeSerializable(out, (DefaultElement) extendedInformation);
-            }
+            // Retained for compatibility with the serialized form of earlier versions.
+            ExternalizableUtil.getInstance().writeSerializable(out, (DefaultElement) createExtendedInformation());
             ExternalizableUtil.getInstance().writeBoolean(out, reportedFmucJID != null);
             if (reportedFmucJID != null) {
                 ExternalizableUtil.getInstance().writeSafeUTF(out, reportedFmucJID.toString());
@@ -713,18 +745,20 @@ public class MUCOccupant implements Cacheable, Externalizable {
             nick = ExternalizableUtil.getInstance().readSafeUTF(in);
             occupantId = ExternalizableUtil.getInstance().readSafeUTF(in);
             synchronized (this) { // Unlikely to be needed, as this should operate on a new instance. Will prevent static analyzers from complaining at negligible cost.
+                final Presence readPresence;
                 if (ExternalizableUtil.getInstance().readBoolean(in)) {
-                    presence = new Presence((Element) ExternalizableUtil.getInstance().readSerializable(in));
+                    readPresence = new Presence((Element) ExternalizableUtil.getInstance().readSerializable(in));
                 } else {
-                    presence = null;
+                    readPresence = null;
                 }
-            }
-            role = (Role) ExternalizableUtil.getInstance().readSerializable(in);
-            affiliation = (Affiliation) ExternalizableUtil.getInstance().readSerializable(in);
-            voiceOnly = ExternalizableUtil.getInstance().readBoolean(in);
-            occupantJID = new JID(ExternalizableUtil.getInstance().readSafeUTF(in), false);
-            synchronized (this) { // Unlikely to be needed, as this should operate on a new instance. Will prevent static analyzers from complaining at negligible cost.
-                extendedInformation = (Element) ExternalizableUtil.getInstance().readSerializable(in);
+                role = (Role) ExternalizableUtil.getInstance().readSerializable(in);
+                affiliation = (Affiliation) ExternalizableUtil.getInstance().readSerializable(in);
+                voiceOnly = ExternalizableUtil.getInstance().readBoolean(in);
+                occupantJID = new JID(ExternalizableUtil.getInstance().readSafeUTF(in), false);
+                presence = readPresence == null ? null : CompactPresence.of(readPresence, occupantJID, occupantId);
+
+                // Extended information is derived from the state of this instance. The serialized value is ignored.
+                ExternalizableUtil.getInstance().readSerializable(in);
             }
             if (ExternalizableUtil.getInstance().readBoolean(in)) {
                 reportedFmucJID = new JID(ExternalizableUtil.getInstance().readSafeUTF(in), false);
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2016-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -101,9 +101,25 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
     private MultiUserChatService mucService;
 
     /**
-     * All occupants that are associated with this room.
+     * All occupants that are associated with this room. This is modified only by the methods that also maintain the
+     * indexes of occupants. Use {@link #getOccupants()} to obtain a read-only view.
      */
-    public final ArrayList<MUCOccupant> occupants = new ArrayList<>();
+    private final ArrayList<MUCOccupant> occupants = new ArrayList<>();
+
+    /**
+     * Index of the occupants of this room by their (case-folded) nickname. Maintained along with {@link #occupants}.
+     */
+    private final Map<String, List<MUCOccupant>> occupantsByNickname = new HashMap<>();
+
+    /**
+     * Index of the occupants of this room by their full (real) JID. Maintained along with {@link #occupants}.
+     */
+    private final Map<JID, List<MUCOccupant>> occupantsByFullJID = new HashMap<>();
+
+    /**
+     * Index of the occupants of this room by their bare (real) JID. Maintained along with {@link #occupants}.
+     */
+    private final Map<JID, List<MUCOccupant>> occupantsByBareJID = new HashMap<>();
 
     /**
      * The name of the room.
@@ -554,14 +570,12 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
             throw new UserNotFoundException();
         }
 
-        final List<MUCOccupant> filteredOccupants = occupants.stream()
-            .filter(occupant -> occupant.getNickname().equalsIgnoreCase(nickname))
-            .collect(Collectors.toList());
+        final List<MUCOccupant> filteredOccupants = occupantsByNickname.get(foldNickname(nickname));
 
-        if (filteredOccupants.isEmpty()) {
+        if (filteredOccupants == null) {
             throw new UserNotFoundException("Unable to find occupant with nickname '" + nickname + "' in room '" + name + "'");
         }
-        return filteredOccupants;
+        return new ArrayList<>(filteredOccupants);
     }
 
     /**
@@ -574,15 +588,13 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
      */
     public List<MUCOccupant> getOccupantsByBareJID(@Nonnull final JID userAddress) throws UserNotFoundException
     {
-        final List<MUCOccupant> filteredOccupants = occupants.stream()
-            .filter(occupant -> occupant.getUserAddress().asBareJID().equals(userAddress.asBareJID()))
-            .collect(Collectors.toList());
+        final List<MUCOccupant> filteredOccupants = occupantsByBareJID.get(userAddress.asBareJID());
 
-        if (filteredOccupants.isEmpty()) {
+        if (filteredOccupants == null) {
             throw new UserNotFoundException();
         }
 
-        return Collections.unmodifiableList(filteredOccupants);
+        return Collections.unmodifiableList(new ArrayList<>(filteredOccupants));
     }
 
     /**
@@ -594,9 +606,7 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
      */
     public MUCOccupant getOccupantByFullJID(@Nonnull final JID userAddress)
     {
-        final List<MUCOccupant> filteredOccupants = occupants.stream()
-            .filter(occupant -> occupant.getUserAddress().equals(userAddress))
-            .collect(Collectors.toList());
+        final List<MUCOccupant> filteredOccupants = occupantsByFullJID.getOrDefault(userAddress, Collections.emptyList());
 
         switch (filteredOccupants.size()) {
             case 0: return null;
@@ -633,14 +643,12 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
      */
     public boolean hasOccupant(String nickname)
     {
-        return occupants.stream()
-            .anyMatch(occupant -> occupant.getNickname().equalsIgnoreCase(nickname));
+        return nickname != null && occupantsByNickname.containsKey(foldNickname(nickname));
     }
 
     public boolean hasOccupant(final JID jid)
     {
-        return occupants.stream()
-            .anyMatch(occupant -> occupant.getUserAddress().equals(jid) || occupant.getUserAddress().asBareJID().equals(jid));
+        return occupantsByFullJID.containsKey(jid) || occupantsByBareJID.containsKey(jid);
     }
 
     /**
@@ -660,14 +668,14 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
             return null;
         }
 
-        final MUCOccupant fullJidOccupant = occupants.stream().filter(occupant -> occupant.getUserAddress().equals(userAddress)).findAny().orElse(null);
-        if (fullJidOccupant != null) {
-            return fullJidOccupant.getNickname();
+        final List<MUCOccupant> fullJidOccupants = occupantsByFullJID.get(userAddress);
+        if (fullJidOccupants != null) {
+            return fullJidOccupants.get(0).getNickname();
         }
 
-        final MUCOccupant bareJidOccupant = occupants.stream().filter(occupant -> occupant.getUserAddress().asBareJID().equals(userAddress)).findAny().orElse(null);
-        if (bareJidOccupant != null) {
-            return bareJidOccupant.getNickname();
+        final List<MUCOccupant> bareJidOccupants = occupantsByBareJID.get(userAddress);
+        if (bareJidOccupants != null) {
+            return bareJidOccupants.get(0).getNickname();
         }
 
         return getReservedNickname(userAddress);
@@ -929,8 +937,8 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
 
     public boolean alreadyJoinedWithThisNick(@Nonnull final JID realJID, @Nonnull final String nickname)
     {
-        return occupants.stream()
-            .anyMatch(occupant -> occupant.getUserAddress().equals(realJID) && occupant.getNickname().equalsIgnoreCase(nickname));
+        return occupantsByFullJID.getOrDefault(realJID, Collections.emptyList()).stream()
+            .anyMatch(occupant -> occupant.getNickname().equalsIgnoreCase(nickname));
     }
 
     /**
@@ -1038,7 +1046,8 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
     private void checkJoinRoomPreconditionNicknameInUse(@Nonnull final JID realAddress, @Nonnull String nickname) throws UserAlreadyExistsException
     {
         final JID bareJID = realAddress.asBareJID();
-        final boolean canJoin = occupants.stream().noneMatch(occupant -> !occupant.getUserAddress().asBareJID().equals(bareJID) && occupant.getNickname().equalsIgnoreCase(nickname));
+        final boolean canJoin = occupantsByNickname.getOrDefault(foldNickname(nickname), Collections.emptyList()).stream()
+            .noneMatch(occupant -> !occupant.getUserAddress().asBareJID().equals(bareJID));
         Log.trace( "{} Room join precondition 'nickname in use': User '{}' {} join room '{}'.", canJoin ? "PASS" : "FAIL", realAddress, canJoin ? "can" : "cannot", this.getJID() );
         if (!canJoin) {
             throw new UserAlreadyExistsException( "Someone else in the room uses the nickname that you want to use." );
@@ -1172,6 +1181,9 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
      * @param joinedOccupant the occupant data of the new occupant in the room.
      */
     void sendInitialPresencesToNewOccupant(MUCOccupant joinedOccupant) {
+        // The new occupant learns of occupants of which the join is still being coalesced.
+        PresenceCoalescer.onInitialPresencesSent(getJID());
+
         if (!JOIN_PRESENCE_ENABLE.getValue()) {
             Log.debug( "Skip exchanging presence between existing occupants of room '{}' and new occupant '{}' as it is disabled by configuration.", this.getJID(), joinedOccupant.getUserAddress() );
             return;
@@ -1213,11 +1225,174 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
 
         Log.trace( "Add occupant to room {}: {}", this.getJID(), occupant);
         occupants.add(occupant);
+        indexOccupant(occupant);
 
         // Fire event that occupant joined the room.
         MUCEventDispatcher.occupantJoined(occupant.getOccupantJID().asBareJID(), occupant.getUserAddress(), occupant.getNickname());
     }
 
+    /**
+     * Adds an occupant to all the internal occupants collections, without firing an event that the occupant joined
+     * the room. This is intended to be used only to restore state (eg: when joining a cluster).
+     *
+     * @param occupant the occupant to add.
+     */
+    public void addOccupantWithoutEvent(@Nonnull final MUCOccupant occupant)
+    {
+        Log.trace( "Add occupant to room {} (without event): {}", this.getJID(), occupant);
+        occupants.add(occupant);
+        indexOccupant(occupant);
+    }
+
+    /**
+     * Removes an occupant from all the internal occupants collections, without firing an event that the occupant left
+     * the room. This is intended to be used only to restore or replicate state (eg: between cluster nodes).
+     *
+     * @param occupant the occupant to remove.
+     * @return true if the occupant was removed, false if it was not an occupant of this room.
+     */
+    public boolean removeOccupantWithoutEvent(@Nonnull final MUCOccupant occupant)
+    {
+        Log.trace( "Remove occupant from room {} (without event): {}", this.getJID(), occupant);
+        if (occupants.remove(occupant)) {
+            unindexOccupant(occupant);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds an entity to the collection of entities that have a particular affiliation with this room, without firing
+     * events, sending presence updates or persisting the change. This is intended to be used only to replicate state
+     * (eg: between cluster nodes).
+     *
+     * @param bareJID The (bare) JID of the entity (which can also be a JID that represents a group).
+     * @param affiliation The affiliation (owner, admin, member or outcast).
+     * @param nickname The nickname reserved by a member (ignored for other affiliations). Can be null.
+     */
+    public void addAffiliationWithoutEvent(@Nonnull final JID bareJID, @Nonnull final Affiliation affiliation, @Nullable final String nickname)
+    {
+        switch (affiliation) {
+            case owner:
+                if (!owners.contains(bareJID)) {
+                    owners.add(bareJID);
+                }
+                break;
+            case admin:
+                if (!admins.contains(bareJID)) {
+                    admins.add(bareJID);
+                }
+                break;
+            case member:
+                members.put(bareJID, nickname == null ? "" : nickname);
+                break;
+            case outcast:
+                if (!outcasts.contains(bareJID)) {
+                    outcasts.add(bareJID);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported affiliation: " + affiliation);
+        }
+    }
+
+    /**
+     * Removes an entity from the collection of entities that have a particular affiliation with this room, without
+     * firing events, sending presence updates or persisting the change. This is intended to be used only to replicate
+     * state (eg: between cluster nodes).
+     *
+     * @param bareJID The (bare) JID of the entity (which can also be a JID that represents a group).
+     * @param affiliation The affiliation (owner, admin, member or outcast).
+     */
+    public void removeAffiliationWithoutEvent(@Nonnull final JID bareJID, @Nonnull final Affiliation affiliation)
+    {
+        switch (affiliation) {
+            case owner:
+                owners.remove(bareJID);
+                break;
+            case admin:
+                admins.remove(bareJID);
+                break;
+            case member:
+                members.remove(bareJID);
+                break;
+            case outcast:
+                outcasts.remove(bareJID);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported affiliation: " + affiliation);
+        }
+    }
+
+    /**
+     * Returns the key under which occupants are indexed by nickname. Two nicknames have the same key if, and only if,
+     * they are equal when compared with {@link String#equalsIgnoreCase(String)}, which folds each character to
+     * upper case and then to lower case.
+     *
+     * @param nickname a nickname (cannot be {@code null}).
+     * @return the case-folded nickname.
+     */
+    private static String foldNickname(@Nonnull final String nickname)
+    {
+        final StringBuilder result = new StringBuilder(nickname.length());
+        for (int i = 0; i < nickname.length(); i++) {
+            result.append(Character.toLowerCase(Character.toUpperCase(nickname.charAt(i))));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Adds an occupant to the indexes that are used to look up occupants.
+     *
+     * @param occupant the occupant to index.
+     */
+    private void indexOccupant(@Nonnull final MUCOccupant occupant)
+    {
+        if (occupant.getNickname() != null) {
+            occupantsByNickname.computeIfAbsent(foldNickname(occupant.getNickname()), k -> new ArrayList<>(1)).add(occupant);
+        }
+        if (occupant.getUserAddress() != null) {
+            occupantsByFullJID.computeIfAbsent(occupant.getUserAddress(), k -> new ArrayList<>(1)).add(occupant);
+            occupantsByBareJID.computeIfAbsent(occupant.getUserAddress().asBareJID(), k -> new ArrayList<>(1)).add(occupant);
+        }
+    }
+
+    /**
+     * Removes an occupant from the indexes that are used to look up occupants. This must be invoked before any of the
+     * indexed properties of the occupant change.
+     *
+     * @param occupant the occupant to remove from the indexes.
+     */
+    private void unindexOccupant(@Nonnull final MUCOccupant occupant)
+    {
+        if (occupant.getNickname() != null) {
+            removeFromIndex(occupantsByNickname, foldNickname(occupant.getNickname()), occupant);
+        }
+        if (occupant.getUserAddress() != null) {
+            removeFromIndex(occupantsByFullJID, occupant.getUserAddress(), occupant);
+            removeFromIndex(occupantsByBareJID, occupant.getUserAddress().asBareJID(), occupant);
+        }
+    }
+
+    private static <K> void removeFromIndex(@Nonnull final Map<K, List<MUCOccupant>> index, @Nonnull final K key, @Nonnull final MUCOccupant occupant)
+    {
+        index.computeIfPresent(key, (k, list) -> {
+            list.remove(occupant);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /**
+     * Recreates the indexes that are used to look up occupants from the collection of occupants.
+     */
+    private void reindexOccupants()
+    {
+        occupantsByNickname.clear();
+        occupantsByFullJID.clear();
+        occupantsByBareJID.clear();
+        occupants.forEach(this::indexOccupant);
+    }
+
     /**
      * Sends presence of a leaving occupant to applicable occupants of the room that is being left.
      *
@@ -1318,7 +1493,9 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
      */
     public void removeOccupant(@Nonnull final MUCOccupant occupant) {
         Log.trace( "Remove occupant from room {}: {}", this.getJID(), occupant );
-        occupants.remove(occupant);
+        if (occupants.remove(occupant)) {
+            unindexOccupant(occupant);
+        }
         MUCEventDispatcher.occupantLeft(occupant.getOccupantJID(), occupant.getUserAddress(), occupant.getNickname());
     }
 
@@ -1684,48 +1861,107 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
             throw new IllegalArgumentException("Broadcast presence stanza's 'from' JID " + presence.getFrom() + " does not match room JID: " + this.getJID());
         }
 
+        if (PresenceCoalescer.appliesTo(getOccupantsCount())) {
+            // The subject of the presence receives its self-presence without delay. Delivery to the other occupants is
+            // coalesced with other presence updates in this room.
+            sendSelfPresence(presence, isJoinPresence);
+            PresenceCoalescer.submit(this, presence, isJoinPresence);
+            return;
+        }
+
+        deliverPresence(presence, isJoinPresence, true);
+    }
+
+    /**
+     * Sends the 'self-presence' flavor of a presence stanza that is broadcast in this room to the occupant(s) that are
+     * the subject of the stanza.
+     *
+     * @param presence The presence stanza
+     * @param isJoinPresence If the presence is sent in the context of joining the room.
+     */
+    private void sendSelfPresence(final @Nonnull Presence presence, final boolean isJoinPresence)
+    {
+        List<MUCOccupant> subjects;
+        try {
+            subjects = getOccupantsByNickname(presence.getTo() == null ? null : presence.getTo().getResource());
+        } catch (UserNotFoundException e) {
+            subjects = Collections.emptyList();
+        }
+        subjects = subjects.stream().filter(occupant -> occupant.getPresence().getFrom().equals(presence.getTo())).collect(Collectors.toList());
+        if (subjects.isEmpty()) {
+            // The nickname of the subject may have changed. Fall back to evaluating all occupants.
+            subjects = getOccupants().stream().filter(occupant -> occupant.getPresence().getFrom().equals(presence.getTo())).collect(Collectors.toList());
+        }
+
+        final Presence selfTemplate = createSelfPresenceCopy(presence, isJoinPresence);
+        for (final MUCOccupant occupant : subjects) {
+            if (!occupant.isRemoteFmuc()) {
+                Log.trace( "Sending self-presence of '{}' to {}", presence.getFrom(), occupant.getUserAddress() );
+                occupant.send(selfTemplate.createCopy());
+            }
+        }
+    }
+
+    /**
+     * Delivers a presence stanza to occupants of this room that are local to the local domain (in other words, it
+     * excludes occupants that are connected via FMUC).
+     *
+     * @param presence The presence stanza
+     * @param isJoinPresence If the presence is sent in the context of joining the room.
+     * @param includeSubject If the presence is to be delivered to the occupant(s) that are the subject of the stanza.
+     */
+    void deliverPresence(final @Nonnull Presence presence, final boolean isJoinPresence, final boolean includeSubject)
+    {
         // Three distinct flavors of the presence stanzas can be sent:
         // 1. The original stanza (that includes the real JID of the user), usable when the room is not semi-anon or when the occupant is a moderator.
         // 2. One that does not include the real JID of the user (if the room is semi-anon and the occupant isn't a moderator)
         // 3. One that is reflected to the joining user (this stanza has additional status codes, signalling 'self-presence')
-        final Presence nonAnonPresence = presence.createCopy(); // create a copy, as the 'to' will be overwritten when dispatched!
-        final Presence anonPresence = createAnonCopy(presence);
-        final Presence selfPresence = createSelfPresenceCopy(presence, isJoinPresence);
+        final Presence nonAnonTemplate = presence;
+        final Presence anonTemplate = createAnonCopy(presence);
+        final Presence selfTemplate = createSelfPresenceCopy(presence, isJoinPresence);
+
+        // Large rooms are delivered to in parallel. Each chunk of occupants gets its own copies, as the 'to' will be overwritten when dispatched!
+        BroadcastFanOut.deliver(getOccupants(), () -> {
+            final Presence nonAnonPresence = nonAnonTemplate.createCopy();
+            final Presence anonPresence = anonTemplate.createCopy();
+            final Presence selfPresence = selfTemplate.createCopy();
+            return occupant -> {
+                try
+                {
+                    Log.trace("Broadcasting presence update in room {} for occupant {} to occupant {}", this.getName(), presence.getFrom(), occupant );
 
-        for (final MUCOccupant occupant : getOccupants())
-        {
-            try
-            {
-                Log.trace("Broadcasting presence update in room {} for occupant {} to occupant {}", this.getName(), presence.getFrom(), occupant );
+                    // Do not send broadcast presence to occupants hosted in other FMUC nodes.
+                    if (occupant.isRemoteFmuc()) {
+                        Log.trace( "Not sending presence update of '{}' to {}: This occupant is on another FMUC node.", presence.getFrom(), occupant.getUserAddress() );
+                        return;
+                    }
 
-                // Do not send broadcast presence to occupants hosted in other FMUC nodes.
-                if (occupant.isRemoteFmuc()) {
-                    Log.trace( "Not sending presence update of '{}' to {}: This occupant is on another FMUC node.", presence.getFrom(), occupant.getUserAddress() );
-                    continue;
-                }
+                    // Determine what stanza flavor to send to this occupant.
+                    final Presence toSend;
+                    if (occupant.getPresence().getFrom().equals(presence.getTo())) {
+                        // This occupant is the subject of the stanza. Send the 'self-presence' stanza.
+                        if (!includeSubject) {
+                            return;
+                        }
+                        Log.trace( "Sending self-presence of '{}' to {}", presence.getFrom(), occupant.getUserAddress() );
+                        toSend = selfPresence;
+                    } else if ( !canAnyoneDiscoverJID && Role.moderator != occupant.getRole() ) {
+                        Log.trace( "Sending anonymized presence of '{}' to {}: The room is semi-anon, and this occupant is not a moderator.", presence.getFrom(), occupant.getUserAddress() );
+                        toSend = anonPresence;
+                    } else {
+                        Log.trace( "Sending presence of '{}' to {}", presence.getFrom(), occupant.getUserAddress() );
+                        toSend = nonAnonPresence;
+                    }
 
-                // Determine what stanza flavor to send to this occupant.
-                final Presence toSend;
-                if (occupant.getPresence().getFrom().equals(presence.getTo())) {
-                    // This occupant is the subject of the stanza. Send the 'self-presence' stanza.
-                    Log.trace( "Sending self-presence of '{}' to {}", presence.getFrom(), occupant.getUserAddress() );
-                    toSend = selfPresence;
-                } else if ( !canAnyoneDiscoverJID && Role.moderator != occupant.getRole() ) {
-                    Log.trace( "Sending anonymized presence of '{}' to {}: The room is semi-anon, and this occupant is not a moderator.", presence.getFrom(), occupant.getUserAddress() );
-                    toSend = anonPresence;
-                } else {
-                    Log.trace( "Sending presence of '{}' to {}", presence.getFrom(), occupant.getUserAddress() );
-                    toSend = nonAnonPresence;
+                    // Send stanza to this occupant.
+                    occupant.send(toSend);
                 }
-
-                // Send stanza to this occupant.
-                occupant.send(toSend);
-            }
-            catch ( Exception e )
-            {
-                Log.warn("An unexpected exception prevented a presence update from {} to be broadcast to {}.", presence.getFrom(), occupant.getUserAddress(), e);
-            }
-        }
+                catch ( Exception e )
+                {
+                    Log.warn("An unexpected exception prevented a presence update from {} to be broadcast to {}.", presence.getFrom(), occupant.getUserAddress(), e);
+                }
+            };
+        });
     }
 
     /**
@@ -1841,26 +2077,34 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
 
         // Add message to the room history
         if (storeMsgInRoomHistory) roomHistory.addMessage(message);
+
+        // Presence updates that are being coalesced are delivered first, so that occupants do not receive a message
+        // from an occupant that has not been announced to them.
+        PresenceCoalescer.flush(getJID());
+
         // Send message to occupants connected to this JVM
 
         // Create a defensive copy of the message that will be broadcast, as the broadcast will modify it ('to' addresses
         // will be changed), and it's undesirable to see these modifications in post-processing (OF-2163).
-        final Message mutatingCopy = message.createCopy();
+        // Large rooms are delivered to in parallel, in which case each chunk of occupants gets its own copy.
         final Collection<MUCOccupant> occupants = getOccupants();
-        for (final MUCOccupant occupant : occupants) {
-            try
-            {
-                // Do not send broadcast messages to deaf occupants or occupants hosted in other FMUC nodes.
-                if ( !occupant.isVoiceOnly() && !occupant.isRemoteFmuc() )
+        BroadcastFanOut.deliver(occupants, () -> {
+            final Message mutatingCopy = message.createCopy();
+            return occupant -> {
+                try
                 {
-                    occupant.send( mutatingCopy );
+                    // Do not send broadcast messages to deaf occupants or occupants hosted in other FMUC nodes.
+                    if ( !occupant.isVoiceOnly() && !occupant.isRemoteFmuc() )
+                    {
+                        occupant.send( mutatingCopy );
+                    }
                 }
-            }
-            catch ( Exception e )
-            {
-                Log.warn("An unexpected exception prevented a message from {} to be broadcast to {}.", message.getFrom(), occupant.getUserAddress(), e);
-            }
-        }
+                catch ( Exception e )
+                {
+                    Log.warn("An unexpected exception prevented a message from {} to be broadcast to {}.", message.getFrom(), occupant.getUserAddress(), e);
+                }
+            };
+        });
         if (isLogEnabled() && storeMsgInRoomHistory) {
             JID senderAddress = getSelfRepresentation().getOccupantJID(); // default to the room being the sender of the message.
 
@@ -2614,7 +2858,9 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
         for (MUCOccupant occ : occupants) {
             // Update the role with the new info
             occ.setPresence(newPresence);
+            unindexOccupant(occ);
             occ.changeNickname(newNick);
+            indexOccupant(occ);
 
             // Fire event that user changed his nickname
             MUCEventDispatcher.nicknameChanged(getSelfRepresentation().getOccupantJID(), occ.getUserAddress(), oldNick, newNick);
@@ -3787,6 +4033,70 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
         ExternalizableUtil.getInstance().writeSerializableCollection(out, admins);
         ExternalizableUtil.getInstance().writeSerializableMap(out, members);
         ExternalizableUtil.getInstance().writeSerializableCollection(out, outcasts);
+        writeSettings(out);
+        ExternalizableUtil.getInstance().writeSerializable(out, roomHistory);
+        ExternalizableUtil.getInstance().writeSerializable(out, selfOccupantData);
+    }
+
+    /**
+     * Writes the configuration of this room: all state that is written by {@link #writeExternal(ObjectOutput)}, apart
+     * from its name, occupants, affiliations and history.
+     *
+     * @param out the stream to write the configuration to.
+     * @throws IOException if an I/O error occurs.
+     * @see #readConfiguration(ObjectInput)
+     */
+    public void writeConfiguration(ObjectOutput out) throws IOException {
+        ExternalizableUtil.getInstance().writeLong(out, startTime);
+        ExternalizableUtil.getInstance().writeLong(out, endTime);
+        ExternalizableUtil.getInstance().writeLong(out, lockedTime);
+        writeSettings(out);
+        ExternalizableUtil.getInstance().writeSerializable(out, selfOccupantData);
+    }
+
+    /**
+     * Replaces the configuration of this room with the configuration that was written by
+     * {@link #writeConfiguration(ObjectOutput)}. This is intended to be used only to replicate state (eg: between
+     * cluster nodes). No events are fired, and nothing is persisted.
+     *
+     * @param in the stream to read the configuration from.
+     * @throws IOException if an I/O error occurs.
+     * @throws ClassNotFoundException if a class of a serialized object cannot be found.
+     */
+    public void readConfiguration(ObjectInput in) throws IOException, ClassNotFoundException {
+        startTime = ExternalizableUtil.getInstance().readLong(in);
+        endTime = ExternalizableUtil.getInstance().readLong(in);
+        lockedTime = ExternalizableUtil.getInstance().readLong(in);
+        rolesToBroadcastPresence = new ArrayList<>();
+        readSettings(in);
+        selfOccupantData = (MUCOccupant) ExternalizableUtil.getInstance().readSerializable(in);
+    }
+
+    /**
+     * Writes the history of this room (which includes its subject).
+     *
+     * @param out the stream to write the history to.
+     * @throws IOException if an I/O error occurs.
+     * @see #readHistory(ObjectInput)
+     */
+    public void writeHistory(ObjectOutput out) throws IOException {
+        ExternalizableUtil.getInstance().writeSerializable(out, roomHistory);
+    }
+
+    /**
+     * Replaces the history of this room with the history that was written by {@link #writeHistory(ObjectOutput)}.
+     * This is intended to be used only to replicate state (eg: between cluster nodes). No events are fired, and nothing
+     * is persisted.
+     *
+     * @param in the stream to read the history from.
+     * @throws IOException if an I/O error occurs.
+     * @throws ClassNotFoundException if a class of a serialized object cannot be found.
+     */
+    public void readHistory(ObjectInput in) throws IOException, ClassNotFoundException {
+        roomHistory = (MUCRoomHistory) ExternalizableUtil.getInstance().readSerializable(in);
+    }
+
+    private void writeSettings(ObjectOutput out) throws IOException {
         ExternalizableUtil.getInstance().writeSafeUTF(out, naturalLanguageName);
         ExternalizableUtil.getInstance().writeSafeUTF(out, description);
         ExternalizableUtil.getInstance().writeBoolean(out, canOccupantsChangeSubject);
@@ -3832,14 +4142,13 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
         }
         ExternalizableUtil.getInstance().writeBoolean(out, savedToDB);
         ExternalizableUtil.getInstance().writeSafeUTF(out, mucService.getServiceName());
-        ExternalizableUtil.getInstance().writeSerializable(out, roomHistory);
-        ExternalizableUtil.getInstance().writeSerializable(out, selfOccupantData);
     }
 
     @Override
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
         name = ExternalizableUtil.getInstance().readSafeUTF(in);
         ExternalizableUtil.getInstance().readExternalizableCollection(in, occupants, getClass().getClassLoader());
+        reindexOccupants();
         startTime = ExternalizableUtil.getInstance().readLong(in);
         endTime = ExternalizableUtil.getInstance().readLong(in);
         lockedTime = ExternalizableUtil.getInstance().readLong(in);
@@ -3847,6 +4156,17 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
         ExternalizableUtil.getInstance().readSerializableCollection(in, admins, getClass().getClassLoader());
         ExternalizableUtil.getInstance().readSerializableMap(in, members, getClass().getClassLoader());
         ExternalizableUtil.getInstance().readSerializableCollection(in, outcasts, getClass().getClassLoader());
+        readSettings(in);
+        roomHistory = new MUCRoomHistory(this, new HistoryStrategy(getJID(), mucService.getHistoryStrategy()));
+        roomHistory = (MUCRoomHistory) ExternalizableUtil.getInstance().readSerializable(in);
+        selfOccupantData = (MUCOccupant) ExternalizableUtil.getInstance().readSerializable(in);
+
+        this.iqOwnerHandler = new IQOwnerHandler(this);
+        this.iqAdminHandler = new IQAdminHandler(this);
+        this.fmucHandler = new FMUCHandler(this);
+    }
+
+    private void readSettings(ObjectInput in) throws IOException, ClassNotFoundException {
         naturalLanguageName = ExternalizableUtil.getInstance().readSafeUTF(in);
         description = ExternalizableUtil.getInstance().readSafeUTF(in);
         canOccupantsChangeSubject = ExternalizableUtil.getInstance().readBoolean(in);
@@ -3889,22 +4209,18 @@ public class MUCRoom implements GroupEventListener, UserEventListener, Externali
         creationDate = new Date(ExternalizableUtil.getInstance().readLong(in));
         if (ExternalizableUtil.getInstance().readBoolean(in)) {
             modificationDate = new Date(ExternalizableUtil.getInstance().readLong(in));
+        } else {
+            modificationDate = null;
         }
         if (ExternalizableUtil.getInstance().readBoolean(in)) {
             emptyDate = new Date(ExternalizableUtil.getInstance().readLong(in));
+        } else {
+            emptyDate = null;
         }
         savedToDB = ExternalizableUtil.getInstance().readBoolean(in);
         String subdomain = ExternalizableUtil.getInstance().readSafeUTF(in);
         mucService = XMPPServer.getInstance().getMultiUserChatManager().getMultiUserChatService(subdomain);
         if (mucService == null) throw new IllegalArgumentException("MUC service not found for subdomain: " + subdomain);
-        roomHistory = new MUCRoomHistory(this, new HistoryStrategy(getJID(), mucService.getHistoryStrategy()));
-
-        this.iqOwnerHandler = new IQOwnerHandler(this);
-        this.iqAdminHandler = new IQAdminHandler(this);
-        this.fmucHandler = new FMUCHandler(this);
-
-        roomHistory = (MUCRoomHistory) ExternalizableUtil.getInstance().readSerializable(in);
-        selfOccupantData = (MUCOccupant) ExternalizableUtil.getInstance().readSerializable(in);
     }
 
     public void updateConfiguration(MUCRoom otherRoom) {
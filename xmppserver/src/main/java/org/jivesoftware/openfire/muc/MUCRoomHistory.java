@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2016-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -96,8 +96,7 @@ public final class MUCRoomHistory implements Externalizable {
             isNonAnonymousRoom = getRoom().canAnyoneDiscoverJID();
             // Update the "from" attribute of the delay information in the history
             // TODO Make this update in a separate thread
-            for (Iterator<Message> it = getMessageHistory(); it.hasNext();) {
-                Message message = it.next();
+            historyStrategy.updateMessages(message -> {
                 Element delayElement = message.getChildElement("delay", "urn:xmpp:delay");
                 if (getRoom().canAnyoneDiscoverJID()) {
                     // Set the Full JID as the "from" attribute // TODO: This is pretty dodgy, as it depends on the user still being in the room. JIDs _should_ have been stored with the message.
@@ -115,8 +114,7 @@ public final class MUCRoomHistory implements Externalizable {
                     // Set the Room JID as the "from" attribute
                     delayElement.addAttribute("from", message.getFrom().toString());
                 }
-            }
-
+            });
         }
 
         // Add the delay information to the message
@@ -146,6 +144,17 @@ public final class MUCRoomHistory implements Externalizable {
         return historyStrategy.getMessageHistory();
     }
 
+    /**
+     * Obtain the part of the current history that is requested by a new occupant of the room.
+     *
+     * @param request the amount of history that is requested.
+     * @return the requested messages, in chronological order.
+     */
+    @Nonnull
+    public List<Message> getMessageHistory(@Nonnull final HistoryRequest request) {
+        return historyStrategy.getMessageHistory(request);
+    }
+
     /**
      * Obtain the current history to be iterated in reverse mode. This means that the returned list
      * iterator will be positioned at the end of the history so senders of this message must
@@ -302,6 +311,17 @@ public final class MUCRoomHistory implements Externalizable {
         return historyStrategy.getChangedSubject();
     }
 
+    /**
+     * Replaces the message that changed the room's subject with one that was obtained from
+     * {@link #getChangedSubject()} of another instance of this room's history. This is intended to be used only to
+     * replicate state (eg: between cluster nodes): nothing is added to the history of the room.
+     *
+     * @param subject the latest room subject change.
+     */
+    public void setChangedSubject(@Nonnull final Message subject) {
+        historyStrategy.setChangedSubject(subject);
+    }
+
     /**
      * Returns true if the given message qualifies as a subject change request, per XEP-0045.
      *
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -127,6 +127,7 @@ public class MultiUserChatManager extends BasicModule implements MUCServicePrope
         addTotalConnectedUsers();
         addNumberIncomingMessages();
         addNumberOutgoingMessages();
+        BroadcastFanOut.addStatistics();
 
         UserEventDispatcher.addListener(this);
         MUCServicePropertyEventDispatcher.addListener(this);
@@ -148,6 +149,7 @@ public class MultiUserChatManager extends BasicModule implements MUCServicePrope
         StatisticsManager.getInstance().removeStatistic(usersStatKey);
         StatisticsManager.getInstance().removeStatistic(incomingStatKey);
         StatisticsManager.getInstance().removeStatistic(outgoingStatKey);
+        BroadcastFanOut.removeStatistics();
 
         for (MultiUserChatService service : mucServices.values()) {
             unregisterMultiUserChatService(service.getServiceName(), false);
@@ -1000,7 +1002,8 @@ public class MultiUserChatManager extends BasicModule implements MUCServicePrope
     public List<Multimap<String, String>> clusteringStateConsistencyReportForMucRoomsAndOccupant() {
         return XMPPServer.getInstance().getMultiUserChatManager().getMultiUserChatServices().stream()
             .map(mucService -> ConsistencyChecks.generateReportForMucRooms(
-                mucService.getLocalMUCRoomManager().getROOM_CACHE(),
+                mucService.getLocalMUCRoomManager().getROOM_CACHE().getName(),
+                mucService.getLocalMUCRoomManager().getSharedRooms(),
                 mucService.getLocalMUCRoomManager().getLocalRooms(),
                 mucService.getOccupantManager().getLocalOccupantsByNode(),
                 mucService.getOccupantManager().getNodeByLocalOccupant(),
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2016-2022 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import org.jivesoftware.openfire.archive.Archiver;
 import org.jivesoftware.openfire.handler.IQHandler;
 import org.jivesoftware.openfire.muc.spi.LocalMUCRoomManager;
 import org.jivesoftware.openfire.muc.spi.MUCPersistenceManager;
+import org.jivesoftware.openfire.muc.spi.MUCRoomSearchIndex;
 import org.jivesoftware.openfire.muc.spi.MUCRoomSearchInfo;
 import org.jivesoftware.openfire.muc.spi.OccupantManager;
 import org.jivesoftware.util.JiveConstants;
@@ -32,9 +33,12 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.time.Duration;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Manages groupchat conversations, chatrooms, and users. This class is designed to operate
@@ -381,6 +385,30 @@ public interface MultiUserChatService extends Component {
 
     Collection<MUCRoomSearchInfo> getAllRoomSearchInfo();
 
+    /**
+     * Returns search information for all rooms (persistent or not, in memory or not) that contain all provided terms
+     * in at least one of the provided fields, and that satisfy the provided filter.
+     *
+     * The terms are used to narrow down the rooms that are evaluated, and are matched case-insensitively. The filter is
+     * expected to apply the exact matching rules of a search. When no terms or no fields are provided, all rooms are
+     * evaluated against the filter.
+     *
+     * @param fields the fields in which the terms are to be found.
+     * @param terms the terms that all must be contained in (at least one of) the fields.
+     * @param filter the condition that the rooms in the result must satisfy.
+     * @param order the order of the result, or null if the order is irrelevant.
+     * @return search information of the matching rooms.
+     */
+    @Nonnull
+    default List<MUCRoomSearchInfo> searchRooms(@Nonnull final Set<MUCRoomSearchIndex.Field> fields, @Nonnull final Collection<String> terms, @Nonnull final Predicate<MUCRoomSearchInfo> filter, @Nullable final Comparator<MUCRoomSearchInfo> order)
+    {
+        final List<MUCRoomSearchInfo> result = getAllRoomSearchInfo().stream().filter(filter).collect(Collectors.toList());
+        if (order != null) {
+            result.sort(order);
+        }
+        return result;
+    }
+
     /**
      * Returns true if the server includes a chatroom with the requested name.
      * 
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Presence;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces presence updates that are broadcast in large MUC rooms.
+ *
+ * When enabled, presence updates of occupants in rooms that have at least {@link #THRESHOLD} occupants are not
+ * broadcast immediately. Instead, they are held for (at most) {@link #WINDOW}. Within that window, pending updates for
+ * the same occupant collapse to the latest update. An occupant that joins and leaves within the window is never
+ * announced to the other occupants, unless another occupant joined the room in the mean time (as that occupant has
+ * received the presence of all occupants upon joining, and needs to learn that the occupant has left). This prevents
+ * occupants with flapping connectivity from causing presence storms.
+ *
+ * Coalescing applies to the other occupants of the room only: the occupant that is the subject of a presence update
+ * receives its 'self-presence' without delay (see {@link MUCRoom#broadcast(Presence, boolean)}). Before a message is
+ * broadcast in a room, the pending presence updates of that room are delivered, so that occupants never receive a
+ * message from an occupant that they have not yet seen join. Pending updates are delivered while holding a per-room
+ * mutex, so that a flush that is invoked while another thread is delivering the updates of the same room returns only
+ * after those updates have been delivered.
+ *
+ * Pending updates are registered by room address, rather than with a room instance, as a clustered deployment can have
+ * more than one instance of the same room on a cluster node.
+ */
+final class PresenceCoalescer
+{
+    private static final Logger Log = LoggerFactory.getLogger(PresenceCoalescer.class);
+
+    /**
+     * The duration for which presence updates are held, to be coalesced. A zero duration disables coalescing.
+     */
+    public static final SystemProperty<Duration> WINDOW = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.muc.presence.coalesce.window")
+        .setDefaultValue(Duration.ZERO)
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The minimum amount of occupants that a room must have for its presence updates to be coalesced.
+     */
+    public static final SystemProperty<Integer> THRESHOLD = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.muc.presence.coalesce.threshold")
+        .setDefaultValue(500)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * Pending presence updates, by room address.
+     */
+    private static final Map<JID, PresenceCoalescer> PENDING = new ConcurrentHashMap<>();
+
+    /**
+     * Held, by room address, while pending presence updates are being delivered.
+     */
+    private static final Interner<JID> DELIVERY_MUTEX = Interners.newWeakInterner();
+
+    /**
+     * A presence update that has not yet been broadcast.
+     *
+     * @param presence the latest presence of the occupant.
+     * @param unannounced true if none of the other occupants have seen the occupant join the room.
+     */
+    private record Update(@Nonnull Presence presence, boolean unannounced) {}
+
+    private final JID roomJID;
+
+    // Guarded by 'this'.
+    private MUCRoom room;
+    private final Map<JID, Update> updates = new LinkedHashMap<>();
+
+    private PresenceCoalescer(@Nonnull final JID roomJID)
+    {
+        this.roomJID = roomJID;
+    }
+
+    /**
+     * Checks if presence updates in a room of the provided size are to be coalesced.
+     *
+     * @param occupantCount the amount of occupants in the room.
+     * @return true if presence updates are to be coalesced.
+     */
+    static boolean appliesTo(final int occupantCount)
+    {
+        return !WINDOW.getValue().isZero() && !WINDOW.getValue().isNegative() && occupantCount >= THRESHOLD.getValue();
+    }
+
+    /**
+     * Registers a presence update that is to be broadcast to the occupants of a room (other than the subject of the
+     * update), within the coalescing window.
+     *
+     * @param room the room in which the presence update is broadcast.
+     * @param presence the presence update.
+     * @param isJoinPresence if the presence is sent in the context of joining the room.
+     */
+    static void submit(@Nonnull final MUCRoom room, @Nonnull final Presence presence, final boolean isJoinPresence)
+    {
+        while (true) {
+            final PresenceCoalescer coalescer = PENDING.computeIfAbsent(room.getJID(), PresenceCoalescer::new);
+            final boolean first;
+            synchronized (coalescer) {
+                if (PENDING.get(room.getJID()) != coalescer) {
+                    // Flushed and discarded concurrently. Try again with a new instance.
+                    continue;
+                }
+                first = coalescer.updates.isEmpty();
+                coalescer.room = room;
+                coalescer.add(presence, isJoinPresence);
+            }
+            if (first) {
+                TaskEngine.getInstance().schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        flush(room.getJID());
+                    }
+                }, WINDOW.getValue());
+            }
+            return;
+        }
+    }
+
+    /**
+     * Broadcasts all pending presence updates of a room.
+     *
+     * @param roomJID the address of the room.
+     */
+    static void flush(@Nonnull final JID roomJID)
+    {
+        // Wait for a concurrent flush of the same room to finish delivering, before returning.
+        synchronized (DELIVERY_MUTEX.intern(roomJID)) {
+            final PresenceCoalescer coalescer = PENDING.get(roomJID);
+            if (coalescer == null) {
+                return;
+            }
+
+            final MUCRoom room;
+            final List<Update> toBroadcast;
+            synchronized (coalescer) {
+                PENDING.remove(roomJID, coalescer);
+                room = coalescer.room;
+                toBroadcast = new ArrayList<>(coalescer.updates.values());
+                coalescer.updates.clear();
+            }
+
+            Log.trace("Broadcasting {} coalesced presence updates in room {}", toBroadcast.size(), roomJID);
+            for (final Update update : toBroadcast) {
+                try {
+                    room.deliverPresence(update.presence(), false, false);
+                } catch (Exception e) {
+                    Log.warn("An unexpected exception prevented a coalesced presence update from {} to be broadcast.", update.presence().getFrom(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers that an occupant that joins a room is sent the presence of the occupants that are in the room. As that
+     * includes occupants of which the join has not been broadcast yet, these occupants can no longer leave the room
+     * unannounced.
+     *
+     * @param roomJID the address of the room.
+     */
+    static void onInitialPresencesSent(@Nonnull final JID roomJID)
+    {
+        final PresenceCoalescer coalescer = PENDING.get(roomJID);
+        if (coalescer == null) {
+            return;
+        }
+        synchronized (coalescer) {
+            coalescer.updates.replaceAll((occupant, update) -> update.unannounced() ? new Update(update.presence(), false) : update);
+        }
+    }
+
+    private void add(@Nonnull final Presence presence, final boolean isJoinPresence)
+    {
+        final JID occupant = presence.getFrom();
+        final Update pending = updates.get(occupant);
+        final boolean unavailable = presence.getType() == Presence.Type.unavailable;
+
+        if (pending != null && pending.unannounced() && unavailable) {
+            // None of the other occupants saw this occupant join. Joining and leaving cancel out.
+            updates.remove(occupant);
+            return;
+        }
+
+        final boolean unannounced = unavailable ? false : (pending != null ? pending.unannounced() : isJoinPresence);
+        updates.put(occupant, new Update(presence, unannounced));
+    }
+
+    /**
+     * Returns the amount of pending presence updates of a room.
+     *
+     * @param roomJID the address of the room.
+     * @return a count of presence updates.
+     */
+    static int getPendingCount(@Nonnull final JID roomJID)
+    {
+        final PresenceCoalescer coalescer = PENDING.get(roomJID);
+        if (coalescer == null) {
+            return 0;
+        }
+        synchronized (coalescer) {
+            return coalescer.updates.size();
+        }
+    }
+}
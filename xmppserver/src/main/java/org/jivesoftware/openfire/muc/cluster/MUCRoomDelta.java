@@ -0,0 +1,505 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc.cluster;
+
+import org.dom4j.tree.DefaultElement;
+import org.jivesoftware.openfire.muc.Affiliation;
+import org.jivesoftware.openfire.muc.MUCOccupant;
+import org.jivesoftware.util.cache.ExternalizableUtil;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A set of changes that were applied to a MUC room by one invocation of a sync of that room, which is used to replicate
+ * the state of the room between cluster nodes without having to replicate the entire room.
+ *
+ * Each delta is identified by the full snapshot of the room that it applies to, and its position in the sequence of
+ * deltas that have been applied to that snapshot. A delta records a checksum of the state of the room after the delta
+ * has been applied, which allows a cluster node to verify that its replica of the room is consistent.
+ */
+public class MUCRoomDelta implements Externalizable
+{
+    /**
+     * The type of change that is recorded in a delta.
+     */
+    public enum Type
+    {
+        /**
+         * An occupant joined the room. The change holds the occupant and the version of its state.
+         */
+        OCCUPANT_ADDED,
+
+        /**
+         * The state of an occupant (eg: its role or presence) changed. The change holds the updated occupant and the
+         * version of its state.
+         */
+        OCCUPANT_UPDATED,
+
+        /**
+         * An occupant left the room. The change holds the real (full) JID of the occupant.
+         */
+        OCCUPANT_REMOVED,
+
+        /**
+         * An entity was granted an affiliation. The change holds the bare JID of the entity, the affiliation and, for
+         * members, the reserved nickname.
+         */
+        AFFILIATION_ADDED,
+
+        /**
+         * An entity lost an affiliation. The change holds the bare JID of the entity and the affiliation.
+         */
+        AFFILIATION_REMOVED,
+
+        /**
+         * The configuration of the room changed. The change holds the configuration as written by
+         * {@link org.jivesoftware.openfire.muc.MUCRoom#writeConfiguration(ObjectOutput)}.
+         */
+        CONFIGURATION_CHANGED,
+
+        /**
+         * The history settings of the room changed. The change holds the history as written by
+         * {@link org.jivesoftware.openfire.muc.MUCRoom#writeHistory(ObjectOutput)}. Note that this does not include the
+         * historic messages of the room, which are replicated by a cache of their own.
+         */
+        HISTORY_CHANGED,
+
+        /**
+         * The subject of the room changed, without any other change to its history settings. The change holds only the
+         * message that changed the subject, and the checksum of the history of the room after the change.
+         */
+        SUBJECT_CHANGED
+    }
+
+    private String roomName;
+    private long snapshotId;
+    private long sequence;
+    private long checksum;
+    private List<Change> changes = new ArrayList<>();
+
+    /**
+     * This constructor is provided to comply with the Externalizable interface contract. It should not be used directly.
+     */
+    public MUCRoomDelta()
+    {
+    }
+
+    public MUCRoomDelta(@Nonnull final String roomName, final long snapshotId, final long sequence, @Nonnull final List<Change> changes)
+    {
+        this.roomName = roomName;
+        this.snapshotId = snapshotId;
+        this.sequence = sequence;
+        this.changes = new ArrayList<>(changes);
+    }
+
+    public String getRoomName()
+    {
+        return roomName;
+    }
+
+    /**
+     * The identifier of the full snapshot of the room that this delta applies to.
+     *
+     * @return a snapshot identifier.
+     */
+    public long getSnapshotId()
+    {
+        return snapshotId;
+    }
+
+    /**
+     * The position of this delta in the sequence of deltas that apply to the snapshot. The first delta that is applied
+     * to a snapshot has sequence number 1.
+     *
+     * @return a sequence number.
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * A checksum of the state of the room, after this delta has been applied.
+     *
+     * @return a checksum.
+     */
+    public long getChecksum()
+    {
+        return checksum;
+    }
+
+    public void setChecksum(final long checksum)
+    {
+        this.checksum = checksum;
+    }
+
+    @Nonnull
+    public List<Change> getChanges()
+    {
+        return Collections.unmodifiableList(changes);
+    }
+
+    public boolean isEmpty()
+    {
+        return changes.isEmpty();
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException
+    {
+        final ExternalizableUtil externalizableUtil = ExternalizableUtil.getInstance();
+        externalizableUtil.writeSafeUTF(out, roomName);
+        externalizableUtil.writeLong(out, snapshotId);
+        externalizableUtil.writeLong(out, sequence);
+        externalizableUtil.writeLong(out, checksum);
+        externalizableUtil.writeExternalizableCollection(out, changes);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException
+    {
+        final ExternalizableUtil externalizableUtil = ExternalizableUtil.getInstance();
+        roomName = externalizableUtil.readSafeUTF(in);
+        snapshotId = externalizableUtil.readLong(in);
+        sequence = externalizableUtil.readLong(in);
+        checksum = externalizableUtil.readLong(in);
+        changes = new ArrayList<>();
+        externalizableUtil.readExternalizableCollection(in, changes, getClass().getClassLoader());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MUCRoomDelta{roomName='" + roomName + "', snapshotId=" + snapshotId + ", sequence=" + sequence + ", changes=" + changes.size() + "}";
+    }
+
+    /**
+     * One typed change that is part of a delta.
+     */
+    public static class Change implements Externalizable
+    {
+        private Type type;
+        private JID address;
+        private MUCOccupant occupant;
+        private long occupantVersion;
+        private Affiliation affiliation;
+        private String nickname;
+        private byte[] configuration;
+        private byte[] history;
+        private Message subject;
+        private long historyChecksum;
+
+        /**
+         * This constructor is provided to comply with the Externalizable interface contract. It should not be used directly.
+         */
+        public Change()
+        {
+        }
+
+        private Change(@Nonnull final Type type)
+        {
+            this.type = type;
+        }
+
+        public static Change occupantAdded(@Nonnull final MUCOccupant occupant)
+        {
+            final Change change = new Change(Type.OCCUPANT_ADDED);
+            change.address = occupant.getUserAddress();
+            change.occupant = occupant;
+            change.occupantVersion = occupant.getVersion();
+            return change;
+        }
+
+        public static Change occupantUpdated(@Nonnull final MUCOccupant occupant)
+        {
+            final Change change = new Change(Type.OCCUPANT_UPDATED);
+            change.address = occupant.getUserAddress();
+            change.occupant = occupant;
+            change.occupantVersion = occupant.getVersion();
+            return change;
+        }
+
+        public static Change occupantRemoved(@Nonnull final JID userAddress)
+        {
+            final Change change = new Change(Type.OCCUPANT_REMOVED);
+            change.address = userAddress;
+            return change;
+        }
+
+        public static Change affiliationAdded(@Nonnull final JID bareJID, @Nonnull final Affiliation affiliation, @Nullable final String nickname)
+        {
+            final Change change = new Change(Type.AFFILIATION_ADDED);
+            change.address = bareJID;
+            change.affiliation = affiliation;
+            change.nickname = nickname;
+            return change;
+        }
+
+        public static Change affiliationRemoved(@Nonnull final JID bareJID, @Nonnull final Affiliation affiliation)
+        {
+            final Change change = new Change(Type.AFFILIATION_REMOVED);
+            change.address = bareJID;
+            change.affiliation = affiliation;
+            return change;
+        }
+
+        public static Change configurationChanged(@Nonnull final byte[] configuration)
+        {
+            final Change change = new Change(Type.CONFIGURATION_CHANGED);
+            change.configuration = configuration;
+            return change;
+        }
+
+        public static Change historyChanged(@Nonnull final byte[] history)
+        {
+            final Change change = new Change(Type.HISTORY_CHANGED);
+            change.history = history;
+            return change;
+        }
+
+        public static Change subjectChanged(@Nonnull final Message subject, final long historyChecksum)
+        {
+            final Change change = new Change(Type.SUBJECT_CHANGED);
+            change.subject = subject;
+            change.historyChecksum = historyChecksum;
+            return change;
+        }
+
+        public Type getType()
+        {
+            return type;
+        }
+
+        public JID getAddress()
+        {
+            return address;
+        }
+
+        public MUCOccupant getOccupant()
+        {
+            return occupant;
+        }
+
+        /**
+         * The version of the state of the occupant that is held by this change. The version is not part of the
+         * serialized form of an occupant, which is why it is replicated separately.
+         *
+         * @return the version of the occupant.
+         * @see MUCOccupant#getVersion()
+         */
+        public long getOccupantVersion()
+        {
+            return occupantVersion;
+        }
+
+        public Affiliation getAffiliation()
+        {
+            return affiliation;
+        }
+
+        public String getNickname()
+        {
+            return nickname;
+        }
+
+        public byte[] getConfiguration()
+        {
+            return configuration;
+        }
+
+        public byte[] getHistory()
+        {
+            return history;
+        }
+
+        public Message getSubject()
+        {
+            return subject;
+        }
+
+        public long getHistoryChecksum()
+        {
+            return historyChecksum;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException
+        {
+            final ExternalizableUtil externalizableUtil = ExternalizableUtil.getInstance();
+            externalizableUtil.writeInt(out, type.ordinal());
+            externalizableUtil.writeBoolean(out, address != null);
+            if (address != null) {
+                externalizableUtil.writeSerializable(out, address);
+            }
+            externalizableUtil.writeBoolean(out, occupant != null);
+            if (occupant != null) {
+                externalizableUtil.writeSerializable(out, occupant);
+                externalizableUtil.writeLong(out, occupantVersion);
+            }
+            externalizableUtil.writeBoolean(out, affiliation != null);
+            if (affiliation != null) {
+                externalizableUtil.writeInt(out, affiliation.ordinal());
+            }
+            externalizableUtil.writeBoolean(out, nickname != null);
+            if (nickname != null) {
+                externalizableUtil.writeSafeUTF(out, nickname);
+            }
+            externalizableUtil.writeBoolean(out, configuration != null);
+            if (configuration != null) {
+                externalizableUtil.writeByteArray(out, configuration);
+            }
+            externalizableUtil.writeBoolean(out, history != null);
+            if (history != null) {
+                externalizableUtil.writeByteArray(out, history);
+            }
+            externalizableUtil.writeBoolean(out, subject != null);
+            if (subject != null) {
+                externalizableUtil.writeSerializable(out, (DefaultElement) subject.getElement());
+                externalizableUtil.writeLong(out, historyChecksum);
+            }
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException
+        {
+            final ExternalizableUtil externalizableUtil = ExternalizableUtil.getInstance();
+            type = Type.values()[externalizableUtil.readInt(in)];
+            address = externalizableUtil.readBoolean(in) ? (JID) externalizableUtil.readSerializable(in) : null;
+            if (externalizableUtil.readBoolean(in)) {
+                occupant = (MUCOccupant) externalizableUtil.readSerializable(in);
+                occupantVersion = externalizableUtil.readLong(in);
+                occupant.setVersion(occupantVersion);
+            } else {
+                occupant = null;
+            }
+            affiliation = externalizableUtil.readBoolean(in) ? Affiliation.values()[externalizableUtil.readInt(in)] : null;
+            nickname = externalizableUtil.readBoolean(in) ? externalizableUtil.readSafeUTF(in) : null;
+            configuration = externalizableUtil.readBoolean(in) ? externalizableUtil.readByteArray(in) : null;
+            history = externalizableUtil.readBoolean(in) ? externalizableUtil.readByteArray(in) : null;
+            if (externalizableUtil.readBoolean(in)) {
+                subject = new Message((DefaultElement) externalizableUtil.readSerializable(in));
+                historyChecksum = externalizableUtil.readLong(in);
+            } else {
+                subject = null;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Change{type=" + type + ", address=" + address + ", affiliation=" + affiliation + "}";
+        }
+    }
+
+    /**
+     * Identifies the most recent state of a room that has been replicated: the full snapshot of the room, and the
+     * amount of deltas that have been applied to that snapshot.
+     *
+     * While a full snapshot is being written, a 'pending' version is recorded. The state of the room cannot be
+     * determined reliably while that is the case.
+     */
+    public static class Version implements Externalizable
+    {
+        private long snapshotId;
+        private long sequence;
+        private boolean pending;
+
+        /**
+         * This constructor is provided to comply with the Externalizable interface contract. It should not be used directly.
+         */
+        public Version()
+        {
+        }
+
+        public Version(final long snapshotId, final long sequence)
+        {
+            this.snapshotId = snapshotId;
+            this.sequence = sequence;
+        }
+
+        public static Version pending()
+        {
+            final Version version = new Version();
+            version.pending = true;
+            return version;
+        }
+
+        public long getSnapshotId()
+        {
+            return snapshotId;
+        }
+
+        public long getSequence()
+        {
+            return sequence;
+        }
+
+        public boolean isPending()
+        {
+            return pending;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Version version = (Version) o;
+            return snapshotId == version.snapshotId && sequence == version.sequence && pending == version.pending;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(snapshotId, sequence, pending);
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException
+        {
+            final ExternalizableUtil externalizableUtil = ExternalizableUtil.getInstance();
+            externalizableUtil.writeLong(out, snapshotId);
+            externalizableUtil.writeLong(out, sequence);
+            externalizableUtil.writeBoolean(out, pending);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException
+        {
+            final ExternalizableUtil externalizableUtil = ExternalizableUtil.getInstance();
+            snapshotId = externalizableUtil.readLong(in);
+            sequence = externalizableUtil.readLong(in);
+            pending = externalizableUtil.readBoolean(in);
+        }
+
+        @Override
+        public String toString()
+        {
+            return pending ? "Version{pending}" : "Version{snapshotId=" + snapshotId + ", sequence=" + sequence + "}";
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2020-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2020-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import org.dom4j.QName;
 import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.muc.*;
 import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
 import org.jivesoftware.util.XMPPDateTimeFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +30,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.text.ParseException;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.Lock;
@@ -61,6 +63,38 @@ public class FMUCHandler
         ))
         .build();
 
+    /**
+     * When enabled, stanzas that are propagated to a joined FMUC node are queued and sent in batches by a background
+     * task, rather than being routed by the thread that propagates them. In master-slave mode, several stanzas can be
+     * awaiting an echo from the joined node at the same time (see {@link #PIPELINE_WINDOW}).
+     */
+    public static final SystemProperty<Boolean> PIPELINE_ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.muc.room.fmuc.pipeline.enabled")
+        .setDynamic(true)
+        .setDefaultValue(false)
+        .build();
+
+    /**
+     * The maximum amount of stanzas that, when pipelining, are sent to a joined FMUC node without having been echo'd
+     * back. Further stanzas remain queued until echos are received. Applies to master-slave mode only.
+     */
+    public static final SystemProperty<Integer> PIPELINE_WINDOW = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.muc.room.fmuc.pipeline.window")
+        .setDynamic(true)
+        .setDefaultValue(64)
+        .setMinValue(1)
+        .build();
+
+    /**
+     * The maximum amount of queued stanzas that, when pipelining, are taken from the queue of a joined FMUC node at once.
+     */
+    public static final SystemProperty<Integer> PIPELINE_BATCH_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.muc.room.fmuc.pipeline.batchsize")
+        .setDynamic(true)
+        .setDefaultValue(32)
+        .setMinValue(1)
+        .build();
+
     /**
      * Qualified name of the element that denotes FMUC functionality, as specified by XEP-0289.
      */
@@ -300,6 +334,7 @@ public class FMUCHandler
             final JID peer = outboundJoin.getPeer();
             final Set<PendingCallback> pendingEcho = outboundJoin.pendingEcho;
             final Set<JID> theirOccupants = outboundJoin.occupants;
+            final List<OutboundJoin.QueuedSend> unsent = outboundJoin.purgeSendQueue();
 
             outboundJoin = null;
 
@@ -319,6 +354,13 @@ public class FMUCHandler
                 }
             }
 
+            // Stanzas that were queued to be pipelined to this MUC will no longer be sent. Unblock all threads waiting for their echo.
+            if ( !unsent.isEmpty() )
+            {
+                Log.trace("(room: '{}'): Discarding {} stanzas that were queued to be sent to peer '{}' that is being disconnected from.", room.getJID(), unsent.size(), peer );
+                unsent.forEach( queuedSend -> queuedSend.future.complete( null ) );
+            }
+
             // Find all the occupants that the local node contributed to the FMUC set (those are the occupants that are
             // not joined through the remote, joined node). Note that these can include occupants that are on other nodes!
             final Set<MUCOccupant> occupantsToLeave = new HashSet<>( room.getOccupants() );
@@ -636,7 +678,18 @@ public class FMUCHandler
         if ( !mustBlock ) {
             Log.trace("(room: '{}'): No need to wait for an echo back from joined FMUC node {} of the propagation of stanza sent by user '{}' (as '{}').", room.getJID(), outboundJoin.getPeer(), sender.getUserAddress(), sender.getOccupantJID() );
             result.complete( null );
-        } else {
+        }
+
+        if ( PIPELINE_ENABLED.getValue() ) {
+            // Queue the stanza. It is sent (and, in master-slave mode, registered to await an echo) by a background task.
+            Log.trace("(room: '{}'): Queuing stanza to be pipelined to joined FMUC node {}.", room.getJID(), outboundJoin.getPeer() );
+            if ( outboundJoin.enqueue( enriched, result, mustBlock ) ) {
+                scheduleOutboundDrain( outboundJoin );
+            }
+            return;
+        }
+
+        if ( mustBlock ) {
             Log.debug("(room: '{}'): An echo back from joined FMUC node {} of the propagation of stanza snet by user '{}' (as '{}') needs to be received before the join event can be propagated locally.", room.getJID(), outboundJoin.getPeer(), sender.getUserAddress(), sender.getOccupantJID() );
 
             // register callback to complete this future when echo is received back.
@@ -647,6 +700,30 @@ public class FMUCHandler
         XMPPServer.getInstance().getPacketRouter().route( enriched );
     }
 
+    /**
+     * Schedules a background task that sends the stanzas that are queued to be pipelined to a joined FMUC node. The
+     * task sends stanzas in batches, until the queue is empty or, in master-slave mode, until the amount of stanzas
+     * awaiting an echo reaches {@link #PIPELINE_WINDOW}. Only one such task is active for a joined node at any time.
+     *
+     * @param join The joined FMUC node for which to send queued stanzas.
+     */
+    private void scheduleOutboundDrain( @Nonnull final OutboundJoin join )
+    {
+        TaskEngine.getInstance().submit( () -> {
+            List<Packet> batch;
+            while ( !(batch = join.nextBatch( PIPELINE_BATCH_SIZE.getValue(), PIPELINE_WINDOW.getValue() )).isEmpty() ) {
+                Log.trace("(room: '{}'): Sending a batch of {} pipelined stanza(s) to joined FMUC node {}.", room.getJID(), batch.size(), join.getPeer() );
+                for ( final Packet stanza : batch ) {
+                    try {
+                        XMPPServer.getInstance().getPacketRouter().route( stanza );
+                    } catch ( Exception e ) {
+                        Log.warn("(room: '{}'): An exception occurred while sending a pipelined stanza to joined FMUC node {}: {}", room.getJID(), join.getPeer(), stanza, e );
+                    }
+                }
+            }
+        });
+    }
+
     /**
      * Sends a stanza to all joined FMUC node, when the local node has accepted such inbound joins from remote peers.
      *
@@ -833,7 +910,10 @@ public class FMUCHandler
             if ( stanza instanceof Presence && stanza.getElement().element(FMUC).element("left") != null ) {
                 processLeftInstruction( (Presence) stanza );
             } else {
-                outboundJoin.evaluateForCallbackCompletion(stanza);
+                if ( outboundJoin.evaluateForCallbackCompletion(stanza) ) {
+                    // An echo frees up room in the pipeline window.
+                    scheduleOutboundDrain( outboundJoin );
+                }
                 processRegularMUCStanza( stanza );
             }
         }
@@ -989,6 +1069,7 @@ public class FMUCHandler
         {
             Log.trace("(room: '{}'): Synchronizing state of local room with joined FMUC node '{}'.", room.getJID(), outboundJoinProgress.getPeer() );
             outboundJoin = new OutboundJoin(outboundJoinConfiguration);
+            outboundJoin.recordRoundTrip( System.nanoTime() - outboundJoinProgress.getStartedAt() );
 
             // Before processing the data in context of the local FMUC room, ensure that the FMUC metadata state is up-to-date.
             for ( final Packet response : outboundJoinProgress.getResponses() ) {
@@ -1588,6 +1669,22 @@ public class FMUCHandler
          */
         private final Set<PendingCallback> pendingEcho = new HashSet<>();
 
+        /**
+         * Stanzas that are queued to be pipelined to the remote FMUC node (see {@link #PIPELINE_ENABLED}).
+         */
+        private final ArrayDeque<QueuedSend> sendQueue = new ArrayDeque<>();
+
+        /**
+         * Indicates if a task is active that sends the stanzas in {@link #sendQueue}.
+         */
+        private boolean draining;
+
+        /**
+         * Smoothed round-trip time (in nanoseconds) of stanzas that are echo'd back by the remote FMUC node, or -1 when
+         * no round trip has been measured.
+         */
+        private long roundTripNanos = -1;
+
         public OutboundJoin( @Nonnull OutboundJoinConfiguration configuration ) {
             super( configuration.getPeer() );
             this.mode = configuration.getMode();
@@ -1616,7 +1713,14 @@ public class FMUCHandler
             return super.wantsStanzasSentBy(sender);
         }
 
-        public synchronized void evaluateForCallbackCompletion( @Nonnull Packet stanza )
+        /**
+         * Evaluates if a stanza that is received from the remote FMUC node is the echo of a stanza that was sent to it,
+         * completing the callback that waits for that echo.
+         *
+         * @param stanza A stanza received from the remote FMUC node.
+         * @return true if a task needs to be scheduled to send stanzas that are queued for pipelining.
+         */
+        public synchronized boolean evaluateForCallbackCompletion( @Nonnull Packet stanza )
         {
             Log.trace( "Evaluating stanza for callback completion..." );
             if ( stanza.getElement().element(FMUC) == null ) {
@@ -1629,11 +1733,13 @@ public class FMUCHandler
                 final PendingCallback item = iter.next();
                 if ( item.isMatch(stanza) ) {
                     Log.trace( "Invoking callback, as peer '{}' echo'd back stanza: {}", getPeer(), stanza.toXML() );
+                    recordRoundTrip( System.nanoTime() - item.sentAt );
                     item.complete();
                     iter.remove();
                 }
             }
             Log.trace( "Finished evaluating stanza for callback completion." );
+            return startDrainingIfNeeded();
         }
 
         public synchronized void registerEchoCallback( @Nonnull final Packet stanza, @Nonnull final CompletableFuture<?> result )
@@ -1645,6 +1751,119 @@ public class FMUCHandler
             Log.trace( "Registering callback to be invoked when peer '{}' echos back stanza {}", getPeer(), stanza.toXML() );
             pendingEcho.add( new PendingCallback( stanza, result ) );
         }
+
+        /**
+         * Queues a stanza to be pipelined to the remote FMUC node.
+         *
+         * @param stanza The stanza to send, which must have an FMUC child element.
+         * @param result The future to complete when the stanza is echo'd back (if an echo is awaited).
+         * @param awaitEcho Whether the stanza needs to be echo'd back by the remote FMUC node.
+         * @return true if a task needs to be scheduled to send the queued stanzas.
+         */
+        public synchronized boolean enqueue( @Nonnull final Packet stanza, @Nonnull final CompletableFuture<?> result, final boolean awaitEcho )
+        {
+            sendQueue.add( new QueuedSend( stanza, result, awaitEcho ) );
+            return startDrainingIfNeeded();
+        }
+
+        /**
+         * Takes the next batch of queued stanzas that are to be pipelined to the remote FMUC node. Stanzas for which an
+         * echo is awaited are registered as such, as long as the amount of stanzas awaiting an echo is smaller than
+         * the window size.
+         *
+         * When this method returns an empty list, the task that invoked it is expected to stop sending stanzas.
+         *
+         * @param batchSize The maximum amount of stanzas to return.
+         * @param window The maximum amount of stanzas awaiting an echo.
+         * @return The stanzas to send, in order (possibly empty).
+         */
+        public synchronized List<Packet> nextBatch( final int batchSize, final int window )
+        {
+            final List<Packet> result = new ArrayList<>();
+            while ( result.size() < batchSize && !sendQueue.isEmpty() ) {
+                final QueuedSend next = sendQueue.peek();
+                if ( next.awaitEcho ) {
+                    if ( pendingEcho.size() >= window ) {
+                        break;
+                    }
+                    registerEchoCallback( next.stanza, next.future );
+                }
+                sendQueue.poll();
+                result.add( next.stanza );
+            }
+            if ( result.isEmpty() ) {
+                draining = false;
+            }
+            return result;
+        }
+
+        /**
+         * Removes all stanzas that were queued to be pipelined to the remote FMUC node, but that have not been sent.
+         *
+         * @return The stanzas that were removed from the queue (possibly empty).
+         */
+        public synchronized List<QueuedSend> purgeSendQueue()
+        {
+            final List<QueuedSend> result = new ArrayList<>( sendQueue );
+            sendQueue.clear();
+            return result;
+        }
+
+        private boolean startDrainingIfNeeded()
+        {
+            if ( draining || sendQueue.isEmpty() ) {
+                return false;
+            }
+            draining = true;
+            return true;
+        }
+
+        synchronized void recordRoundTrip( final long nanos )
+        {
+            // Exponentially weighted moving average, weighing the latest measurement for one eighth.
+            roundTripNanos = roundTripNanos < 0 ? nanos : roundTripNanos + (nanos - roundTripNanos) / 8;
+        }
+
+        /**
+         * Returns the amount of stanzas that are queued to be pipelined to the remote FMUC node.
+         *
+         * @return a queue depth.
+         */
+        public synchronized int getQueueDepth() {
+            return sendQueue.size();
+        }
+
+        /**
+         * Returns the amount of stanzas that were sent to the remote FMUC node, for which an echo is awaited.
+         *
+         * @return a count of stanzas.
+         */
+        public synchronized int getAwaitingEchoCount() {
+            return pendingEcho.size();
+        }
+
+        /**
+         * Returns the smoothed round-trip time of stanzas that were sent to the remote FMUC node, based on the duration
+         * of the join and, in master-slave mode, on the time it took for stanzas to be echo'd back.
+         *
+         * @return a round-trip time, or null if none has been measured.
+         */
+        @Nullable
+        public synchronized Duration getRoundTripTime() {
+            return roundTripNanos < 0 ? null : Duration.ofNanos( roundTripNanos );
+        }
+
+        static class QueuedSend {
+            final Packet stanza;
+            final CompletableFuture<?> future;
+            final boolean awaitEcho;
+
+            QueuedSend( final Packet stanza, final CompletableFuture<?> future, final boolean awaitEcho ) {
+                this.stanza = stanza;
+                this.future = future;
+                this.awaitEcho = awaitEcho;
+            }
+        }
     }
 
     public static class OutboundJoinProgress implements Serializable
@@ -1684,6 +1903,11 @@ public class FMUCHandler
          */
         private Boolean joinResult;
 
+        /**
+         * The instant (as obtained from {@link System#nanoTime()}) at which the federation attempt was started.
+         */
+        private final long startedAt;
+
         public OutboundJoinProgress( @Nonnull final JID peer, @Nonnull final CompletableFuture<List<Packet>> callback )
         {
             Log = LoggerFactory.getLogger( this.getClass().getName() + ".[peer: " + peer + "]" );
@@ -1691,12 +1915,17 @@ public class FMUCHandler
             this.callback = callback;
             this.responses = new ArrayList<>();
             this.queue = new ArrayList<>();
+            this.startedAt = System.nanoTime();
         }
 
         public JID getPeer() {
             return peer;
         }
 
+        long getStartedAt() {
+            return startedAt;
+        }
+
         public synchronized CompletableFuture<List<Packet>> getCallback() {
             return callback;
         }
@@ -1821,7 +2050,8 @@ public class FMUCHandler
         final CompletableFuture<?> callback;
         final Class<? extends Packet> type;
         final JID remoteFMUCNode;
-        final List<Element> elements;
+        final List<String> elements;
+        final long sentAt = System.nanoTime();
 
         public <S extends Packet> PendingCallback( @Nonnull S original, @Nonnull CompletableFuture<?> callback ) {
             if (!hasFMUCElement(original)) {
@@ -1829,7 +2059,7 @@ public class FMUCHandler
             }
             this.type = getType( original );
             this.remoteFMUCNode = original.getTo().asBareJID();
-            this.elements = original.getElement().elements();
+            this.elements = asXML( original.getElement().elements() );
             this.callback = callback;
         }
 
@@ -1851,8 +2081,16 @@ public class FMUCHandler
                 return false;
             }
 
-            // All child elements of the echo'd stanza must equal the original.
-            return elements.equals( stanza.getElement().elements() );
+            // All child elements of the echo'd stanza must equal the original. DOM elements do not implement equality, compare their XML representation instead.
+            return elements.equals( asXML( stanza.getElement().elements() ) );
+        }
+
+        private static List<String> asXML( @Nonnull final List<Element> elements ) {
+            final List<String> result = new ArrayList<>( elements.size() );
+            for ( final Element element : elements ) {
+                result.add( element.asXML() );
+            }
+            return result;
         }
 
         protected static boolean hasFMUCElement( @Nonnull Packet stanza ) {
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2025-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -254,9 +254,6 @@ public class IQExtendedChannelSearchHandler
             return reply;
         }
 
-        // Search for chatrooms matching the request params.
-        List<MUCRoomSearchInfo> mucs = searchForChatrooms( params );
-
         final Key key;
         if (params.getKey() != null ) {
             // Use the value provided by the client.
@@ -266,15 +263,11 @@ public class IQExtendedChannelSearchHandler
             key = Key.valueOf(new DataForm(getDataElement().element(QName.get(DataForm.ELEMENT_NAME, DataForm.NAMESPACE))).getField(VAR_KEY).getFirstValue());
         }
 
-        switch (key) {
-            case nusers:
-                mucs = sortByUserAmount(mucs);
-                break;
-
-            case address:
-                mucs = sortByAddress(mucs);
-                break;
-        }
+        // Search for chatrooms matching the request params, ordered by the key.
+        final List<MUCRoomSearchInfo> mucs = switch (key) {
+            case nusers -> searchForChatrooms( params, MUCRoomSearchIndex.BY_OCCUPANTS );
+            case address -> searchForChatrooms( params, MUCRoomSearchIndex.BY_ADDRESS );
+        };
 
         final ResultSet<MUCRoomSearchInfo> searchResults = new ResultSetImpl<>( mucs );
 
@@ -403,67 +396,86 @@ public class IQExtendedChannelSearchHandler
     }
 
     protected List<MUCRoomSearchInfo> searchForChatrooms( final SearchParameters params )
+    {
+        return searchForChatrooms( params, null );
+    }
+
+    protected List<MUCRoomSearchInfo> searchForChatrooms( final SearchParameters params, final Comparator<MUCRoomSearchInfo> order )
     {
         Log.debug( "Searching for rooms based on search parameters." );
 
-        List<MUCRoomSearchInfo> mucs = new ArrayList<>();
-        for ( MUCRoomSearchInfo room : mucService.getAllRoomSearchInfo() )
+        final List<String> qs;
+        final Set<MUCRoomSearchIndex.Field> fields = EnumSet.noneOf( MUCRoomSearchIndex.Field.class );
+        if ( (params.getAll() == null || !params.getAll()) && params.getQ() != null && !params.getQ().isEmpty() )
         {
-            boolean find = false;
-
-            if ( params.getAll() != null && params.getAll() ) {
-                find = true;
+            qs = StringUtils.shellSplit( params.getQ() );
+            if ( params.isSinname() != null && params.isSinname() ) {
+                fields.add( MUCRoomSearchIndex.Field.NAME );
             }
-            else if ( params.getQ() != null && !params.getQ().isEmpty() )
-            {
-                final List<String> qs = StringUtils.shellSplit( params.getQ() );
+            if ( params.isSindescription() != null && params.isSindescription() ) {
+                fields.add( MUCRoomSearchIndex.Field.DESCRIPTION );
+            }
+            if ( params.isSinaddr() != null && params.isSinaddr() ) {
+                fields.add( MUCRoomSearchIndex.Field.ADDRESS );
+            }
+        }
+        else
+        {
+            qs = null;
+        }
 
-                final String naturalLanguageName = room.getNaturalLanguageName();
-                if ( params.isSinname() != null && params.isSinname() && naturalLanguageName != null )
-                {
-                    if ( qs.stream().allMatch( naturalLanguageName::contains ) )
-                    {
-                        find = true;
-                    }
-                }
+        // The index narrows down the rooms that are evaluated. The exact matching rules are applied here.
+        final List<MUCRoomSearchInfo> mucs = mucService.searchRooms( fields, qs == null ? Collections.emptyList() : qs, room -> isMatch( room, params, qs ), order );
 
-                final String description = room.getDescription();
-                if ( !find && params.isSindescription() != null && params.isSindescription() && description != null )
-                {
-                    if ( qs.stream().allMatch( description::contains ) )
-                    {
-                        find = true;
-                    }
-                }
+        Log.debug( "Search resulted in {} rooms.", mucs.size() );
+        return mucs;
+    }
+
+    private static boolean isMatch( final MUCRoomSearchInfo room, final SearchParameters params, final List<String> qs )
+    {
+        boolean find = false;
 
-                final String address = room.getJID().toString();
-                if ( !find && params.isSinaddr() != null && params.isSinaddr() && address != null )
+        if ( qs != null )
+        {
+            final String naturalLanguageName = room.getNaturalLanguageName();
+            if ( params.isSinname() != null && params.isSinname() && naturalLanguageName != null )
+            {
+                if ( qs.stream().allMatch( naturalLanguageName::contains ) )
                 {
-                    if ( qs.stream().allMatch( address::contains ) )
-                    {
-                        find = true;
-                    }
+                    find = true;
                 }
             }
-            else
-            {
-                // No search query? Every room matches.
-                find = true;
-            }
 
-            if ( params.getMinUsers() != null && room.getOccupantsCount() < params.getMinUsers() )
+            final String description = room.getDescription();
+            if ( !find && params.isSindescription() != null && params.isSindescription() && description != null )
             {
-                find = false;
+                if ( qs.stream().allMatch( description::contains ) )
+                {
+                    find = true;
+                }
             }
 
-            if ( find && canBeIncludedInResult( room ) )
+            final String address = room.getJID().toString();
+            if ( !find && params.isSinaddr() != null && params.isSinaddr() && address != null )
             {
-                mucs.add( room );
+                if ( qs.stream().allMatch( address::contains ) )
+                {
+                    find = true;
+                }
             }
         }
+        else
+        {
+            // No search query (or a request for all rooms)? Every room matches.
+            find = true;
+        }
 
-        Log.debug( "Search resulted in {} rooms.", mucs.size() );
-        return mucs;
+        if ( params.getMinUsers() != null && room.getOccupantsCount() < params.getMinUsers() )
+        {
+            find = false;
+        }
+
+        return find && canBeIncludedInResult( room );
     }
 
     static Element generateResultElement( final List<MUCRoomSearchInfo> rooms )
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import org.jivesoftware.openfire.muc.MultiUserChatService;
 import org.xmpp.forms.DataForm;
 import org.xmpp.forms.FormField;
 import org.xmpp.packet.IQ;
+import org.xmpp.packet.JID;
 import org.xmpp.packet.PacketError;
 import org.xmpp.packet.PacketError.Condition;
 import org.xmpp.resultsetmanagement.ResultSet;
@@ -29,6 +30,7 @@ import org.xmpp.resultsetmanagement.ResultSetImpl;
 
 import java.text.ParseException;
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * This class adds jabber:iq:search combined with 'result set management'
@@ -218,16 +220,19 @@ public class IQMUCSearchHandler
         }
 
         // search for chatrooms matching the request params.
-        final List<MUCRoomSearchInfo> mucs = new ArrayList<>();
-        for (MUCRoomSearchInfo room : mucService.getAllRoomSearchInfo())
-        {
+        final boolean exactMatch = nameIsExactMatch;
+        final String subjectQuery = subject;
+        final int minUsers = numUsers;
+        final int maxUsers = numMaxUsers;
+        final boolean includePasswordProtected = includePasswordProtectedRooms;
+        final Predicate<MUCRoomSearchInfo> filter = room -> {
             boolean find = false;
 
             if (!names.isEmpty())
             {
                 for (final String name : names)
                 {
-                    if (nameIsExactMatch)
+                    if (exactMatch)
                     {
                         if (name.equalsIgnoreCase(room.getNaturalLanguageName()))
                         {
@@ -246,32 +251,48 @@ public class IQMUCSearchHandler
                 }
             }
 
-            if (subject != null && !subject.trim().isEmpty()
-                    && room.getSubject().toLowerCase().contains(subject.toLowerCase()))
+            if (subjectQuery != null && !subjectQuery.trim().isEmpty()
+                    && room.getSubject().toLowerCase().contains(subjectQuery.toLowerCase()))
             {
                 find = true;
             }
 
-            if (numUsers > -1 && room.getParticipantCount() < numUsers)
+            if (minUsers > -1 && room.getParticipantCount() < minUsers)
             {
                 find = false;
             }
 
-            if (numMaxUsers > -1 && room.getMaxUsers() < numMaxUsers)
+            if (maxUsers > -1 && room.getMaxUsers() < maxUsers)
             {
                 find = false;
             }
 
-            if (!includePasswordProtectedRooms && room.isPasswordProtected())
+            if (!includePasswordProtected && room.isPasswordProtected())
             {
                 find = false;
             }
 
-            if (find && canBeIncludedInResult(room))
+            return find && canBeIncludedInResult(room);
+        };
+
+        // A room matches if it matches any of the names, or the subject. Use the index to find the candidates for each
+        // of these, rather than evaluating every room.
+        final Map<JID, MUCRoomSearchInfo> matches = new HashMap<>();
+        for (final String name : names)
+        {
+            for (final MUCRoomSearchInfo room : mucService.searchRooms(EnumSet.of(MUCRoomSearchIndex.Field.NAME), List.of(name), filter, null))
+            {
+                matches.put(room.getJID(), room);
+            }
+        }
+        if (subject != null && !subject.trim().isEmpty())
+        {
+            for (final MUCRoomSearchInfo room : mucService.searchRooms(EnumSet.of(MUCRoomSearchIndex.Field.SUBJECT), List.of(subject), filter, null))
             {
-                mucs.add(room);
+                matches.put(room.getJID(), room);
             }
         }
+        final List<MUCRoomSearchInfo> mucs = new ArrayList<>(matches.values());
 
         final ResultSet<MUCRoomSearchInfo> searchResults = new ResultSetImpl<>(
             sortByUserAmount(mucs));
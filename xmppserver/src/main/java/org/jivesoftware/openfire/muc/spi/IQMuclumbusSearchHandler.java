@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2019-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2019-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,8 +33,11 @@ import org.xmpp.resultsetmanagement.ResultSetImpl;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This class adds support for the search functionality for MUC rooms as identified by
@@ -191,12 +194,10 @@ public class IQMuclumbusSearchHandler
             return reply;
         }
 
-        // Search for chatrooms matching the request params.
-        List<MUCRoomSearchInfo> mucs = searchForChatrooms( params );
-
-        mucs = switch (params.getKey()) {
-            case nusers  -> sortByUserAmount(mucs);
-            case address -> sortByAddress(mucs);
+        // Search for chatrooms matching the request params, ordered by the key.
+        final List<MUCRoomSearchInfo> mucs = switch (params.getKey()) {
+            case nusers  -> searchForChatrooms( params, MUCRoomSearchIndex.BY_OCCUPANTS );
+            case address -> searchForChatrooms( params, MUCRoomSearchIndex.BY_ADDRESS );
         };
 
         final ResultSet<MUCRoomSearchInfo> searchResults = new ResultSetImpl<>( mucs );
@@ -315,64 +316,86 @@ public class IQMuclumbusSearchHandler
     }
 
     protected List<MUCRoomSearchInfo> searchForChatrooms( final SearchParameters params )
+    {
+        return searchForChatrooms( params, null );
+    }
+
+    protected List<MUCRoomSearchInfo> searchForChatrooms( final SearchParameters params, final Comparator<MUCRoomSearchInfo> order )
     {
         Log.debug( "Searching for rooms based on search parameters." );
 
-        List<MUCRoomSearchInfo> mucs = new ArrayList<>();
-        for ( MUCRoomSearchInfo room : mucService.getAllRoomSearchInfo() )
+        final List<String> qs;
+        final Set<MUCRoomSearchIndex.Field> fields = EnumSet.noneOf( MUCRoomSearchIndex.Field.class );
+        if ( params.getQ() != null && !params.getQ().isEmpty() )
+        {
+            qs = StringUtils.shellSplit( params.getQ() );
+            if ( params.isSinname() ) {
+                fields.add( MUCRoomSearchIndex.Field.NAME );
+            }
+            if ( params.isSindescription() ) {
+                fields.add( MUCRoomSearchIndex.Field.DESCRIPTION );
+            }
+            if ( params.isSinaddr() ) {
+                fields.add( MUCRoomSearchIndex.Field.ADDRESS );
+            }
+        }
+        else
         {
-            boolean find = false;
+            qs = null;
+        }
 
-            if ( params.getQ() != null && !params.getQ().isEmpty() )
-            {
-                final List<String> qs = StringUtils.shellSplit( params.getQ() );
+        // The index narrows down the rooms that are evaluated. The exact matching rules are applied here.
+        final List<MUCRoomSearchInfo> mucs = mucService.searchRooms( fields, qs == null ? Collections.emptyList() : qs, room -> isMatch( room, params, qs ), order );
 
-                final String naturalLanguageName = room.getNaturalLanguageName();
-                if ( params.isSinname() && naturalLanguageName != null )
-                {
-                    if ( qs.stream().allMatch( naturalLanguageName::contains ) )
-                    {
-                        find = true;
-                    }
-                }
+        Log.debug( "Search resulted in {} rooms.", mucs.size() );
+        return mucs;
+    }
 
-                final String description = room.getDescription();
-                if ( !find && params.isSindescription() && description != null )
-                {
-                    if ( qs.stream().allMatch( description::contains ) )
-                    {
-                        find = true;
-                    }
-                }
+    private static boolean isMatch( final MUCRoomSearchInfo room, final SearchParameters params, final List<String> qs )
+    {
+        boolean find = false;
 
-                final String address = room.getJID().toString();
-                if ( !find && params.isSinaddr() && address != null )
+        if ( qs != null )
+        {
+            final String naturalLanguageName = room.getNaturalLanguageName();
+            if ( params.isSinname() && naturalLanguageName != null )
+            {
+                if ( qs.stream().allMatch( naturalLanguageName::contains ) )
                 {
-                    if ( qs.stream().allMatch( address::contains ) )
-                    {
-                        find = true;
-                    }
+                    find = true;
                 }
             }
-            else
-            {
-                // No search query? Every room matches.
-                find = true;
-            }
 
-            if ( room.getOccupantsCount() < params.getMinUsers() )
+            final String description = room.getDescription();
+            if ( !find && params.isSindescription() && description != null )
             {
-                find = false;
+                if ( qs.stream().allMatch( description::contains ) )
+                {
+                    find = true;
+                }
             }
 
-            if ( find && canBeIncludedInResult( room ) )
+            final String address = room.getJID().toString();
+            if ( !find && params.isSinaddr() && address != null )
             {
-                mucs.add( room );
+                if ( qs.stream().allMatch( address::contains ) )
+                {
+                    find = true;
+                }
             }
         }
+        else
+        {
+            // No search query? Every room matches.
+            find = true;
+        }
 
-        Log.debug( "Search resulted in {} rooms.", mucs.size() );
-        return mucs;
+        if ( room.getOccupantsCount() < params.getMinUsers() )
+        {
+            find = false;
+        }
+
+        return find && canBeIncludedInResult( room );
     }
 
     static Element generateResultElement( final List<MUCRoomSearchInfo> rooms )
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2016-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package org.jivesoftware.openfire.muc.spi;
 
 import org.jivesoftware.openfire.RoutingTable;
 import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.openfire.cluster.ClusterManager;
 import org.jivesoftware.openfire.cluster.ClusteredCacheEntryListener;
 import org.jivesoftware.openfire.cluster.NodeID;
 import org.jivesoftware.openfire.event.GroupEventDispatcher;
@@ -24,6 +25,7 @@ import org.jivesoftware.openfire.event.UserEventDispatcher;
 import org.jivesoftware.openfire.muc.*;
 import org.jivesoftware.openfire.spi.RoutingTableImpl;
 import org.jivesoftware.openfire.user.UserNotFoundException;
+import org.jivesoftware.util.JiveGlobals;
 import org.jivesoftware.util.cache.Cache;
 import org.jivesoftware.util.cache.CacheFactory;
 import org.slf4j.Logger;
@@ -33,9 +35,11 @@ import org.xmpp.packet.Presence;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.sql.SQLException;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -87,6 +91,18 @@ public class LocalMUCRoomManager
      */
     private final Map<String, MUCRoom> localRooms = new HashMap<>();
 
+    /**
+     * Replicates changes to rooms as deltas, when the local server is part of a cluster. Null when delta replication is
+     * not enabled, in which case the caches that hold the deltas are not created.
+     */
+    @Nullable
+    private final MUCRoomDeltaReplicator deltaReplicator;
+
+    /**
+     * Index of the rooms of this service (both loaded and unloaded), used to search for rooms.
+     */
+    private final MUCRoomSearchIndex searchIndex;
+
     /**
      * Creates a new instance, specific for the provided MUC service.
      *
@@ -102,6 +118,44 @@ public class LocalMUCRoomManager
         ROOM_CACHE_STATS = CacheFactory.createCache("MUC Service '" + serviceName + "' Room Statistics");
         ROOM_CACHE_STATS.setMaxLifetime(-1);
         ROOM_CACHE_STATS.setMaxCacheSize(-1L);
+        deltaReplicator = MUCRoomDeltaReplicator.ENABLED.getValue() ? new MUCRoomDeltaReplicator(serviceName, ROOM_CACHE) : null;
+        searchIndex = new MUCRoomSearchIndex(new SearchIndexSource(service));
+    }
+
+    /**
+     * Returns the index that is used to search for rooms of this service.
+     *
+     * @return the search index.
+     */
+    @Nonnull
+    MUCRoomSearchIndex getSearchIndex()
+    {
+        return searchIndex;
+    }
+
+    /**
+     * Checks if changes to rooms are replicated as deltas (rather than by replacing the entire room in the cache).
+     *
+     * @return true if delta replication is in effect.
+     */
+    private boolean isDeltaReplicationActive()
+    {
+        return deltaReplicator != null && ClusterManager.isClusteringStarted();
+    }
+
+    /**
+     * Places the entire state of a room in the room cache, replacing any state that was replicated as deltas.
+     *
+     * @param room The room to place in the cache.
+     * @return the room that was previously in the cache, if any.
+     */
+    @Nullable
+    private MUCRoom putRoom(@Nonnull final MUCRoom room)
+    {
+        if (isDeltaReplicationActive()) {
+            deltaReplicator.remove(room.getName());
+        }
+        return ROOM_CACHE.put(room.getName(), room);
     }
 
     /**
@@ -143,12 +197,13 @@ public class LocalMUCRoomManager
         lock.lock();
         try {
             Log.trace("Adding room '{}' of service '{}'", room.getName(), serviceName);
-            final MUCRoom oldValue = ROOM_CACHE.put(room.getName(), room);
+            final MUCRoom oldValue = putRoom(room);
             localRooms.put(room.getName(), room);
             updateNonPersistentRoomStat(oldValue, room);
         } finally {
             lock.unlock();
         }
+        searchIndex.markDirty(room.getName());
 
         GroupEventDispatcher.addListener(room); // TODO this event listener is added only in the node where the room is created. Does this mean that events are not propagated in a cluster?
         UserEventDispatcher.addListener(room);
@@ -167,9 +222,16 @@ public class LocalMUCRoomManager
         try {
             Log.trace("Syncing room '{}' of service '{}' (destroy: {})", room.getName(), serviceName, room.isDestroyed);
             if (room.isDestroyed) {
+                if (isDeltaReplicationActive()) {
+                    deltaReplicator.remove(room.getName());
+                }
                 ROOM_CACHE.remove(room.getName());
                 localRooms.remove(room.getName());
                 updateNonPersistentRoomStat(null, room);
+            } else if (isDeltaReplicationActive()) {
+                final Boolean wasPersistent = deltaReplicator.sync(room);
+                localRooms.put(room.getName(), room);
+                updateNonPersistentRoomStat(wasPersistent, room.isPersistent());
             } else {
                 final MUCRoom oldValue = ROOM_CACHE.put(room.getName(), room);
                 localRooms.put(room.getName(), room);
@@ -178,6 +240,7 @@ public class LocalMUCRoomManager
         } finally {
             lock.unlock();
         }
+        searchIndex.markDirty(room.getName());
     }
 
     // TODO As modifications to rooms won't be persisted in the cache without the room having being explicitly put back in the cache,
@@ -186,6 +249,13 @@ public class LocalMUCRoomManager
     //      method, which would then force usage to acquire a lock before operating on a room.
     Collection<MUCRoom> getAll()
     {
+        if (isDeltaReplicationActive()) {
+            // The rooms in the cache do not reflect changes that have been replicated as deltas.
+            return ROOM_CACHE.keySet().stream()
+                .map(this::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        }
         return ROOM_CACHE.values();
     }
 
@@ -203,6 +273,9 @@ public class LocalMUCRoomManager
     @Nullable
     MUCRoom get(@Nonnull final String roomName)
     {
+        if (isDeltaReplicationActive()) {
+            return deltaReplicator.get(roomName);
+        }
         return ROOM_CACHE.get(roomName);
     }
 
@@ -222,7 +295,15 @@ public class LocalMUCRoomManager
         lock.lock();
         try {
             Log.trace("Removing room '{}' of service '{}'", roomName, serviceName);
-            final MUCRoom room = ROOM_CACHE.remove(roomName);
+            MUCRoom room = null;
+            if (isDeltaReplicationActive()) {
+                room = deltaReplicator.get(roomName);
+                deltaReplicator.remove(roomName);
+            }
+            final MUCRoom removed = ROOM_CACHE.remove(roomName);
+            if (room == null) {
+                room = removed;
+            }
             if (room != null) {
                 room.getRoomHistory().purge();
                 GroupEventDispatcher.removeListener(room);
@@ -233,6 +314,7 @@ public class LocalMUCRoomManager
             return room;
         } finally {
             lock.unlock();
+            searchIndex.markDirty(roomName);
         }
     }
 
@@ -288,6 +370,12 @@ public class LocalMUCRoomManager
 
         final Map<String, List<OccupantManager.Occupant>> localOccupantByRoom = localOccupants.stream().collect(Collectors.groupingBy(OccupantManager.Occupant::getRoomName));
 
+        // Replicas that were created before joining the cluster do not apply to the cluster.
+        if (deltaReplicator != null) {
+            deltaReplicator.clear();
+        }
+        searchIndex.invalidate();
+
         // The state of the rooms in the clustered cache should be modified to include our local occupants.
         for (Map.Entry<String, MUCRoom> localRoomEntry : localRooms.entrySet())
         {
@@ -300,11 +388,11 @@ public class LocalMUCRoomManager
                 final MUCRoom localRoom = localRoomEntry.getValue();
                 if (!ROOM_CACHE.containsKey(roomName)) {
                     Log.trace("Room was not known to the cluster. Added our representation.");
-                    ROOM_CACHE.put(roomName, localRoom);
+                    putRoom(localRoom);
                     updateNonPersistentRoomStat(null, localRoom);
                 } else {
                     Log.trace("Room was known to the cluster. Merging our local representation with cluster-provided data.");
-                    final MUCRoom roomInCluster = ROOM_CACHE.get(roomName);
+                    final MUCRoom roomInCluster = get(roomName);
 
                     // Get all occupants that were provided by the local node, and add them to the cluster-representation.
                     final List<OccupantManager.Occupant> localOccupantsToRestore = localOccupantByRoom.get(roomName);
@@ -350,7 +438,7 @@ public class LocalMUCRoomManager
                                     // But that notifies other nodes as well about the new occupant. We don't want that, this is
                                     // entirely a local affair. Therefore perform two separate steps instead, without invoking
                                     // occupant joined events.
-                                    roomInCluster.occupants.add(localOccupant);
+                                    roomInCluster.addOccupantWithoutEvent(localOccupant);
                                     occupantManager.registerOccupantJoinedLocally(localOccupant.getOccupantJID().asBareJID(), localOccupant.getUserAddress(), localOccupant.getNickname());
 
                                     // Just added. Now kick out.
@@ -381,7 +469,7 @@ public class LocalMUCRoomManager
 
                     // Sync room back to make cluster aware of changes.
                     Log.debug("Re-added local room '{}' to cache, with occupants: {}", roomName, roomInCluster.getOccupants().stream().map(MUCOccupant::getUserAddress).map(JID::toString).collect(Collectors.joining( ", " )));
-                    ROOM_CACHE.put(roomName, roomInCluster);
+                    putRoom(roomInCluster);
                     // The implementation of this method does not allow configuration to be changed that warrants a update toe ROOM_CACHE_STATS
 
                     // TODO: update the local copy of the room with occupants, maybe?
@@ -397,12 +485,17 @@ public class LocalMUCRoomManager
             @Override
             public void entryAdded(@Nonnull String key, @Nullable MUCRoom newValue, @Nonnull NodeID nodeID)
             {
+                searchIndex.markDirty(key);
             }
 
             @Override
             public void entryRemoved(@Nonnull String key, @Nullable MUCRoom oldValue, @Nonnull NodeID nodeID)
             {
                 localRooms.remove(key);
+                if (deltaReplicator != null) {
+                    deltaReplicator.forget(key);
+                }
+                searchIndex.markDirty(key);
                 final MultiUserChatService service = XMPPServer.getInstance().getMultiUserChatManager().getMultiUserChatService(serviceName);
                 if (service != null) {
                     final long roomID = -1; // Unused by OccupantManager.
@@ -413,12 +506,17 @@ public class LocalMUCRoomManager
             @Override
             public void entryUpdated(@Nonnull String key, @Nullable MUCRoom oldValue, @Nullable MUCRoom newValue, @Nonnull NodeID nodeID)
             {
+                searchIndex.markDirty(key);
             }
 
             @Override
             public void entryEvicted(@Nonnull String key, @Nullable MUCRoom oldValue, @Nonnull NodeID nodeID)
             {
                 localRooms.remove(key);
+                if (deltaReplicator != null) {
+                    deltaReplicator.forget(key);
+                }
+                searchIndex.markDirty(key);
                 final MultiUserChatService service = XMPPServer.getInstance().getMultiUserChatManager().getMultiUserChatService(serviceName);
                 if (service != null) {
                     final long roomID = -1; // Unused by OccupantManager.
@@ -429,11 +527,13 @@ public class LocalMUCRoomManager
             @Override
             public void mapCleared(@Nonnull NodeID nodeID)
             {
+                searchIndex.invalidate();
             }
 
             @Override
             public void mapEvicted(@Nonnull NodeID nodeID)
             {
+                searchIndex.invalidate();
             }
         }, false, false);
 
@@ -492,6 +592,12 @@ public class LocalMUCRoomManager
             occupantsOnRemovedNodesByRoom = occupantsOnRemovedNodes.stream().collect(Collectors.groupingBy(OccupantManager.Occupant::getRoomName));
         }
 
+        // Replicas that were created in the cluster do not apply after leaving it.
+        if (deltaReplicator != null) {
+            deltaReplicator.clear();
+        }
+        searchIndex.invalidate();
+
         for (Map.Entry<String, MUCRoom> localRoomEntry : localRooms.entrySet()) {
             final String roomName = localRoomEntry.getKey();
             Log.trace("Re-adding local room '{}' to cluster cache.", roomName);
@@ -556,10 +662,40 @@ public class LocalMUCRoomManager
         return roomNamesNotInCache;
     }
 
+    /**
+     * Returns the cache that holds the rooms that are shared in the cluster.
+     *
+     * When changes to rooms are replicated as deltas, the rooms in this cache do not reflect the changes that were
+     * replicated since the most recent snapshot of each room. Use {@link #getSharedRooms()} to obtain the current state
+     * of the rooms.
+     *
+     * @return the room cache.
+     */
     public Cache<String, MUCRoom> getROOM_CACHE() {
         return ROOM_CACHE;
     }
 
+    /**
+     * Returns the current state of the rooms that are shared in the cluster, mapped by room name. Unlike the content of
+     * {@link #getROOM_CACHE()}, this includes changes that were replicated as deltas.
+     *
+     * @return the rooms that are shared in the cluster.
+     */
+    @Nonnull
+    public Map<String, MUCRoom> getSharedRooms() {
+        if (!isDeltaReplicationActive()) {
+            return ROOM_CACHE;
+        }
+        final Map<String, MUCRoom> result = new HashMap<>();
+        for (final String roomName : ROOM_CACHE.keySet()) {
+            final MUCRoom room = get(roomName);
+            if (room != null) {
+                result.put(roomName, room);
+            }
+        }
+        return result;
+    }
+
     public Map<String, MUCRoom> getLocalRooms() {
         return localRooms;
     }
@@ -572,12 +708,24 @@ public class LocalMUCRoomManager
      * @param newValue a room that was added to {@link #ROOM_CACHE}
      */
     private void updateNonPersistentRoomStat(@Nullable final MUCRoom oldValue, @Nullable final MUCRoom newValue)
+    {
+        updateNonPersistentRoomStat(oldValue == null ? null : oldValue.isPersistent(), newValue == null ? null : newValue.isPersistent());
+    }
+
+    /**
+     * Modifies the statistic in {@link #ROOM_CACHE_STATS} that keeps a count of all non-persisted MUC rooms
+     * (key: {@link #STAT_KEY_ROOMCOUNT_NONPERSISTENT}), based on the persistence of a room before and after a change.
+     *
+     * @param oldPersistent whether the room was persistent before the change, or null if the room did not exist.
+     * @param newPersistent whether the room is persistent after the change, or null if the room no longer exists.
+     */
+    private void updateNonPersistentRoomStat(@Nullable final Boolean oldPersistent, @Nullable final Boolean newPersistent)
     {
         int delta = 0;
-        if (oldValue != null && !oldValue.isPersistent()) {
+        if (oldPersistent != null && !oldPersistent) {
             delta--;
         }
-        if (newValue != null && !newValue.isPersistent()) {
+        if (newPersistent != null && !newPersistent) {
             delta++;
         }
         if (delta < 0) {
@@ -666,4 +814,82 @@ public class LocalMUCRoomManager
             lock.unlock();
         }
     }
+
+    /**
+     * Provides the search index with the rooms of the service: rooms that are loaded are obtained from this manager,
+     * while the configuration of other rooms is obtained from the database (without loading these rooms into the
+     * service).
+     */
+    private class SearchIndexSource implements MUCRoomSearchIndex.Source
+    {
+        private final MultiUserChatService service;
+
+        private SearchIndexSource(@Nonnull final MultiUserChatService service)
+        {
+            this.service = service;
+        }
+
+        @Nullable
+        @Override
+        public MUCRoom getLoadedRoom(@Nonnull final String roomName)
+        {
+            return get(roomName);
+        }
+
+        @Nonnull
+        @Override
+        public Collection<String> getLoadedRoomNames()
+        {
+            return new HashSet<>(ROOM_CACHE.keySet());
+        }
+
+        @Nonnull
+        @Override
+        public Map<String, MUCRoomSearchInfo> getUnloadedRooms(@Nonnull final Collection<String> roomNames) throws SQLException
+        {
+            if (isSkipUnloadedRooms()) {
+                return Collections.emptyMap();
+            }
+            final Map<String, MUCRoomSearchInfo> result = new HashMap<>();
+            MUCPersistenceManager.loadRoomConfigurationsFromDB(service, roomNames).forEach((name, room) -> result.put(name, new MUCRoomSearchInfo(room)));
+            return result;
+        }
+
+        @Override
+        public void forEachUnloadedRoom(@Nonnull final Consumer<MUCRoomSearchInfo> consumer)
+        {
+            if (isSkipUnloadedRooms()) {
+                return;
+            }
+            final int batchSize = MUCRoomPreloader.BATCH_SIZE.getValue();
+            long afterRoomID = Long.MIN_VALUE;
+            while (true) {
+                final MUCPersistenceManager.RoomBatch batch;
+                try {
+                    batch = MUCPersistenceManager.loadRoomConfigurationBatchFromDB(service, afterRoomID, batchSize);
+                } catch (SQLException e) {
+                    Log.error("A database error prevented the configuration of MUC rooms of service '{}' to be loaded from the database.", serviceName, e);
+                    return;
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                for (final MUCRoom room : batch.getRooms()) {
+                    consumer.accept(new MUCRoomSearchInfo(room));
+                }
+                afterRoomID = batch.getLastRoomID();
+            }
+        }
+
+        @Override
+        public boolean isClustered()
+        {
+            return ClusterManager.isClusteringStarted();
+        }
+
+        private boolean isSkipUnloadedRooms()
+        {
+            return JiveGlobals.getBooleanProperty("xmpp.muc.search.skip-unloaded-rooms", false);
+        }
+    }
 }
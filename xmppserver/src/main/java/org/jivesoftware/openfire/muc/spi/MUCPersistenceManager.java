@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2016-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,7 @@ import org.xmpp.packet.JID;
 import org.xmpp.packet.Message;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.math.BigInteger;
 import java.sql.*;
 import java.util.Date;
@@ -78,29 +79,40 @@ public class MUCPersistenceManager {
         "canInvite, roomPassword, canDiscoverJID, logEnabled, retireOnDeletion, preserveHistOnDel, subject, " +
         "rolesToBroadcast, useReservedNick, canChangeNick, canRegister, allowpm, fmucEnabled, fmucOutboundNode, " +
         "fmucOutboundMode, fmucInboundNodes " +
-        "FROM ofMucRoom WHERE serviceID=? AND (emptyDate IS NULL or emptyDate > ?)";
+        "FROM ofMucRoom WHERE serviceID=? AND (emptyDate IS NULL or emptyDate > ?) AND roomID>? ORDER BY roomID";
     private static final String LOAD_ALL_ROOMS =
         "SELECT roomID, creationDate, modificationDate, name, naturalName, description, " +
         "lockedDate, emptyDate, canChangeSubject, maxUsers, publicRoom, moderated, membersOnly, " +
         "canInvite, roomPassword, canDiscoverJID, logEnabled, retireOnDeletion, preserveHistOnDel, subject, " +
         "rolesToBroadcast, useReservedNick, canChangeNick, canRegister, allowpm, fmucEnabled, fmucOutboundNode, " +
         "fmucOutboundMode, fmucInboundNodes " +
-        "FROM ofMucRoom WHERE serviceID=?";
+        "FROM ofMucRoom WHERE serviceID=? AND roomID>? ORDER BY roomID";
+    private static final String LOAD_ROOM_CONFIGURATIONS =
+        "SELECT roomID, creationDate, modificationDate, name, naturalName, description, " +
+        "lockedDate, emptyDate, canChangeSubject, maxUsers, publicRoom, moderated, membersOnly, " +
+        "canInvite, roomPassword, canDiscoverJID, logEnabled, retireOnDeletion, preserveHistOnDel, subject, " +
+        "rolesToBroadcast, useReservedNick, canChangeNick, canRegister, allowpm, fmucEnabled, fmucOutboundNode, " +
+        "fmucOutboundMode, fmucInboundNodes " +
+        "FROM ofMucRoom WHERE serviceID=? AND name IN ";
+    private static final int ROOM_NAMES_PER_QUERY = 100;
     private static final String COUNT_ALL_ROOMS =
         "SELECT count(*) FROM ofMucRoom WHERE serviceID=?";
     private static final String LOAD_ALL_ROOM_NAMES =
         "SELECT name FROM ofMucRoom WHERE serviceID=?";
     private static final String LOAD_ALL_AFFILIATIONS =
         "SELECT ofMucAffiliation.roomID AS roomID, ofMucAffiliation.jid AS jid, ofMucAffiliation.affiliation AS affiliation " +
-        "FROM ofMucAffiliation,ofMucRoom WHERE ofMucAffiliation.roomID = ofMucRoom.roomID AND ofMucRoom.serviceID=?";
+        "FROM ofMucAffiliation,ofMucRoom WHERE ofMucAffiliation.roomID = ofMucRoom.roomID AND ofMucRoom.serviceID=? " +
+        "AND ofMucRoom.roomID BETWEEN ? AND ? AND (ofMucRoom.emptyDate IS NULL OR ofMucRoom.emptyDate > ?)";
     private static final String LOAD_ALL_MEMBERS =
         "SELECT ofMucMember.roomID AS roomID, ofMucMember.jid AS jid, ofMucMember.nickname AS nickname FROM ofMucMember,ofMucRoom " +
-        "WHERE ofMucMember.roomID = ofMucRoom.roomID AND ofMucRoom.serviceID=?";
+        "WHERE ofMucMember.roomID = ofMucRoom.roomID AND ofMucRoom.serviceID=? AND ofMucRoom.roomID BETWEEN ? AND ? " +
+        "AND (ofMucRoom.emptyDate IS NULL OR ofMucRoom.emptyDate > ?)";
     private static final String LOAD_ALL_HISTORY =
         "SELECT ofMucConversationLog.roomID AS roomID, ofMucConversationLog.sender AS sender, ofMucConversationLog.nickname AS nickname, " +
         "ofMucConversationLog.logTime AS logTime, ofMucConversationLog.subject AS subject, ofMucConversationLog.body AS body, ofMucConversationLog.stanza AS stanza FROM " +
         "ofMucConversationLog, ofMucRoom WHERE ofMucConversationLog.roomID = ofMucRoom.roomID AND " +
-        "ofMucRoom.serviceID=? AND ofMucConversationLog.logTime>? AND (ofMucConversationLog.nickname IS NOT NULL " +
+        "ofMucRoom.serviceID=? AND ofMucRoom.roomID BETWEEN ? AND ? AND (ofMucRoom.emptyDate IS NULL OR ofMucRoom.emptyDate > ?) " +
+        "AND ofMucConversationLog.logTime>? AND (ofMucConversationLog.nickname IS NOT NULL " +
         "OR ofMucConversationLog.subject IS NOT NULL) ORDER BY ofMucConversationLog.logTime";
     private static final String UPDATE_ROOM =
         "UPDATE ofMucRoom SET modificationDate=?, naturalName=?, description=?, " +
@@ -688,20 +700,44 @@ public class MUCPersistenceManager {
      * @return a collection with all the persistent rooms.
      */
     public static Collection<MUCRoom> loadRoomsFromDB(MultiUserChatService chatserver, Date cleanupDate) {
-        Log.debug( "Loading rooms for chat service {}", chatserver.getServiceName() );
-        Long serviceID = XMPPServer.getInstance().getMultiUserChatManager().getMultiUserChatServiceID(chatserver.getServiceName());
-
-        final Map<Long, MUCRoom> rooms;
         try {
-            rooms = loadRooms(serviceID, cleanupDate, chatserver);
-            loadHistory(serviceID, rooms);
-            loadAffiliations(serviceID, rooms);
-            loadMembers(serviceID, rooms);
+            return loadRoomBatchFromDB(chatserver, cleanupDate, Long.MIN_VALUE, 0).getRooms();
         }
         catch (SQLException sqle) {
             Log.error("A database error prevented MUC rooms to be loaded from the database.", sqle);
             return Collections.emptyList();
         }
+    }
+
+    /**
+     * Loads one batch of the rooms that had occupants after a given date from the database. Rooms are loaded in order
+     * of their ID. To obtain the next batch, invoke this method again using {@link RoomBatch#getLastRoomID()} of the
+     * previous batch. All rooms have been loaded when a batch is {@link RoomBatch#isEmpty() empty}.
+     *
+     * @param chatserver the chat server that will hold the loaded rooms.
+     * @param cleanupDate rooms that hadn't been used after this date won't be loaded.
+     * @param afterRoomID only rooms with an ID larger than this value are loaded.
+     * @param batchSize the maximum amount of rooms to load, or 0 to load all rooms.
+     * @return the loaded batch of rooms.
+     * @throws SQLException when the batch could not be loaded from the database.
+     */
+    @Nonnull
+    static RoomBatch loadRoomBatchFromDB(MultiUserChatService chatserver, Date cleanupDate, long afterRoomID, int batchSize) throws SQLException {
+        Log.debug( "Loading rooms for chat service {} (after room ID {}, batch size {})", chatserver.getServiceName(), afterRoomID, batchSize );
+        Long serviceID = XMPPServer.getInstance().getMultiUserChatManager().getMultiUserChatServiceID(chatserver.getServiceName());
+
+        final RoomBatch batch = loadRooms(serviceID, cleanupDate, chatserver, afterRoomID, batchSize);
+        final Map<Long, MUCRoom> rooms = batch.rooms;
+        if (!rooms.isEmpty()) {
+            // Load the data of the rooms in this batch by range of room IDs. Rooms in that range that were not part
+            // of the batch are excluded by the same criteria as were used to select the rooms of the batch.
+            final long minRoomID = Collections.min(rooms.keySet());
+            final long maxRoomID = Collections.max(rooms.keySet());
+            final String emptyAfter = StringUtils.dateToMillis(cleanupDate != null ? cleanupDate : new Date(0));
+            loadHistory(serviceID, rooms, minRoomID, maxRoomID, emptyAfter);
+            loadAffiliations(serviceID, rooms, minRoomID, maxRoomID, emptyAfter);
+            loadMembers(serviceID, rooms, minRoomID, maxRoomID, emptyAfter);
+        }
 
         // Set now that the room's configuration is updated in the database. Note: We need to
         // set this now since otherwise the room's affiliations will be saved to the database
@@ -716,11 +752,69 @@ public class MUCPersistenceManager {
             }
         }
         Log.debug( "Loaded {} rooms for chat service {}", rooms.size(), chatserver.getServiceName() );
-        return rooms.values();
+        return batch;
     }
 
-    private static Map<Long, MUCRoom> loadRooms(Long serviceID, Date cleanupDate, MultiUserChatService chatserver) throws SQLException {
-        final Map<Long, MUCRoom> rooms = new HashMap<>();
+    /**
+     * Loads the configuration of one batch of rooms from the database, ordered by their ID. Unlike
+     * {@link #loadRoomBatchFromDB(MultiUserChatService, Date, long, int)}, this does not load the history,
+     * affiliations and members of the rooms. The returned rooms are therefore not suitable to be used by the service:
+     * they are intended to be used to obtain information about rooms that are not loaded (eg: to search for rooms).
+     *
+     * @param chatserver the chat server that holds the rooms.
+     * @param afterRoomID only rooms with an ID larger than this value are loaded.
+     * @param batchSize the maximum amount of rooms to load.
+     * @return the loaded batch of rooms.
+     * @throws SQLException when the batch could not be loaded from the database.
+     */
+    @Nonnull
+    static RoomBatch loadRoomConfigurationBatchFromDB(@Nonnull final MultiUserChatService chatserver, final long afterRoomID, final int batchSize) throws SQLException {
+        final Long serviceID = XMPPServer.getInstance().getMultiUserChatManager().getMultiUserChatServiceID(chatserver.getServiceName());
+        return loadRooms(serviceID, null, chatserver, afterRoomID, batchSize);
+    }
+
+    /**
+     * Loads the configuration of rooms from the database, by name. Like
+     * {@link #loadRoomConfigurationBatchFromDB(MultiUserChatService, long, int)}, this does not load the history,
+     * affiliations and members of the rooms. Rooms are loaded using one query for every
+     * {@value #ROOM_NAMES_PER_QUERY} names.
+     *
+     * @param chatserver the chat server that holds the rooms.
+     * @param roomNames the names of the rooms.
+     * @return the rooms that exist in the database, by name.
+     * @throws SQLException when the rooms could not be loaded from the database.
+     */
+    @Nonnull
+    static Map<String, MUCRoom> loadRoomConfigurationsFromDB(@Nonnull final MultiUserChatService chatserver, @Nonnull final Collection<String> roomNames) throws SQLException {
+        final Long serviceID = XMPPServer.getInstance().getMultiUserChatManager().getMultiUserChatServiceID(chatserver.getServiceName());
+        final Map<String, MUCRoom> rooms = new HashMap<>();
+        final List<String> names = new ArrayList<>(roomNames);
+        for (int from = 0; from < names.size(); from += ROOM_NAMES_PER_QUERY) {
+            final List<String> chunk = names.subList(from, Math.min(names.size(), from + ROOM_NAMES_PER_QUERY));
+            Connection connection = null;
+            PreparedStatement statement = null;
+            ResultSet resultSet = null;
+            try {
+                connection = DbConnectionManager.getConnection();
+                statement = connection.prepareStatement(LOAD_ROOM_CONFIGURATIONS + chunk.stream().map(name -> "?").collect(Collectors.joining(",", "(", ")")));
+                statement.setLong(1, serviceID);
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setString(i + 2, chunk.get(i));
+                }
+                resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    final MUCRoom room = parseRoom(resultSet, chatserver);
+                    rooms.put(room.getName(), room);
+                }
+            } finally {
+                DbConnectionManager.closeConnection(resultSet, statement, connection);
+            }
+        }
+        return rooms;
+    }
+
+    private static RoomBatch loadRooms(Long serviceID, Date cleanupDate, MultiUserChatService chatserver, long afterRoomID, int batchSize) throws SQLException {
+        final RoomBatch batch = new RoomBatch();
 
         Connection connection = null;
         PreparedStatement statement = null;
@@ -732,106 +826,128 @@ public class MUCPersistenceManager {
                 statement = connection.prepareStatement(RELOAD_ALL_ROOMS_WITH_RECENT_ACTIVITY);
                 statement.setLong(1, serviceID);
                 statement.setString(2, StringUtils.dateToMillis(cleanupDate));
+                statement.setLong(3, afterRoomID);
             }
             else
             {
                 statement = connection.prepareStatement(LOAD_ALL_ROOMS);
                 statement.setLong(1, serviceID);
+                statement.setLong(2, afterRoomID);
+            }
+            if (batchSize > 0) {
+                DbConnectionManager.setMaxRows(statement, batchSize);
             }
             resultSet = statement.executeQuery();
 
             while (resultSet.next()) {
+                // Keep track of rows that cannot be parsed too, so that the next batch starts after them.
+                batch.lastRoomID = resultSet.getLong("roomID");
                 try {
-                    MUCRoom room = new MUCRoom(chatserver, resultSet.getString("name"));
-                    room.setID(resultSet.getLong("roomID"));
-                    room.setCreationDate(new Date(Long.parseLong(resultSet.getString("creationDate").trim())));
-                    room.setModificationDate(new Date(Long.parseLong(resultSet.getString("modificationDate").trim())));
-                    room.setNaturalLanguageName(resultSet.getString("naturalName"));
-                    room.setDescription(resultSet.getString("description"));
-                    room.setLockedDate(new Date(Long.parseLong(resultSet.getString("lockedDate").trim())));
-                    if (resultSet.getString("emptyDate") != null) {
-                        room.setEmptyDate(new Date(Long.parseLong(resultSet.getString("emptyDate").trim())));
-                    }
-                    else {
-                        room.setEmptyDate(null);
-                    }
-                    room.setCanOccupantsChangeSubject(resultSet.getInt("canChangeSubject") == 1);
-                    room.setMaxUsers(resultSet.getInt("maxUsers"));
-                    room.setPublicRoom(resultSet.getInt("publicRoom") == 1);
-                    room.setModerated(resultSet.getInt("moderated") == 1);
-                    try {
-                        room.setMembersOnly(resultSet.getInt("membersOnly") == 1, Affiliation.owner, null);
-                    } catch (ForbiddenException | NotAllowedException e) {
-                        Log.error("Unable to set members-only when loading room from database (this is likely a bug in Openfire). Room: {}", room.getJID(), e);
-                    }
-                    room.setCanOccupantsInvite(resultSet.getInt("canInvite") == 1);
-                    room.setPassword(resultSet.getString("roomPassword"));
-                    room.setCanAnyoneDiscoverJID(resultSet.getInt("canDiscoverJID") == 1);
-                    room.setLogEnabled(resultSet.getInt("logEnabled") == 1);
-                    room.setRetireOnDeletion(resultSet.getInt("retireOnDeletion") == 1);
-                    room.setPreserveHistOnRoomDeletionEnabled(resultSet.getInt("preserveHistOnDel") == 1);
-                    room.setSubject(resultSet.getString("subject"));
-                    List<Role> rolesToBroadcast = new ArrayList<>();
-                    String roles = StringUtils.zeroPadString(Integer.toBinaryString(resultSet.getInt("rolesToBroadcast")), 3);
-                    if (roles.charAt(0) == '1') {
-                        rolesToBroadcast.add(Role.moderator);
-                    }
-                    if (roles.charAt(1) == '1') {
-                        rolesToBroadcast.add(Role.participant);
-                    }
-                    if (roles.charAt(2) == '1') {
-                        rolesToBroadcast.add(Role.visitor);
-                    }
-                    room.setRolesToBroadcastPresence(rolesToBroadcast);
-                    room.setLoginRestrictedToNickname(resultSet.getInt("useReservedNick") == 1);
-                    room.setChangeNickname(resultSet.getInt("canChangeNick") == 1);
-                    room.setRegistrationEnabled(resultSet.getInt("canRegister") == 1);
-                    switch (resultSet.getInt("allowpm")) // null returns 0.
-                    {
-                        default:
-                        case 0: room.setCanSendPrivateMessage( "anyone"       ); break;
-                        case 1: room.setCanSendPrivateMessage( "participants" ); break;
-                        case 2: room.setCanSendPrivateMessage( "moderators"   ); break;
-                        case 3: room.setCanSendPrivateMessage( "none"         ); break;
-                    }
-
-                    room.setFmucEnabled(resultSet.getInt("fmucEnabled") == 1);
-                    if ( resultSet.getString("fmucOutboundNode") != null ) {
-                        final JID fmucOutboundNode = new JID(resultSet.getString("fmucOutboundNode"));
-                        final FMUCMode fmucOutboundJoinMode = switch (resultSet.getInt("fmucOutboundMode")) // null returns 0.
-                        {
-                            case 1  -> FMUCMode.MasterSlave;
-                            default -> MasterMaster;
-                        };
-                        room.setFmucOutboundNode( fmucOutboundNode );
-                        room.setFmucOutboundMode( fmucOutboundJoinMode );
-                    } else {
-                        room.setFmucOutboundNode( null );
-                        room.setFmucOutboundMode( null );
-                    }
-                    if ( resultSet.getString("fmucInboundNodes") != null ) {
-                        final Set<JID> fmucInboundNodes = Stream.of(resultSet.getString("fmucInboundNodes").split("\n"))
-                            .map(String::trim)
-                            .map(JID::new)
-                            .collect(Collectors.toSet());
-                        // A list, which is an 'allow only on list' configuration. Note that the list can be empty (effectively: disallow all).
-                        room.setFmucInboundNodes(fmucInboundNodes);
-                    } else {
-                        // Null: this is an 'allow all' configuration.
-                        room.setFmucInboundNodes(null);
-                    }
-
-                    room.setPersistent(true);
-                    rooms.put(room.getID(), room);
+                    final MUCRoom room = parseRoom(resultSet, chatserver);
+                    batch.rooms.put(room.getID(), room);
                 } catch (SQLException e) {
-                    Log.error("A database exception prevented one particular MUC room to be loaded from the database.", e);
+                    Log.error("A database exception prevented one particular MUC room (ID {}) to be loaded from the database.", batch.lastRoomID, e);
                 }
             }
         } finally {
             DbConnectionManager.closeConnection(resultSet, statement, connection);
         }
 
-        return rooms;
+        return batch;
+    }
+
+    /**
+     * Creates a room based on the configuration that is in the current row of the result set, which is expected to
+     * contain all columns of the ofMucRoom table. Other data of the room (affiliations, members, history) is not loaded.
+     *
+     * @param resultSet the result set, positioned on a row that represents a room.
+     * @param chatserver the chat server that will hold the loaded room.
+     * @return a persistent room.
+     * @throws SQLException when the data in the row cannot be read.
+     */
+    @Nonnull
+    private static MUCRoom parseRoom(@Nonnull final ResultSet resultSet, @Nonnull final MultiUserChatService chatserver) throws SQLException {
+        final MUCRoom room = new MUCRoom(chatserver, resultSet.getString("name"));
+        room.setID(resultSet.getLong("roomID"));
+        room.setCreationDate(new Date(Long.parseLong(resultSet.getString("creationDate").trim())));
+        room.setModificationDate(new Date(Long.parseLong(resultSet.getString("modificationDate").trim())));
+        room.setNaturalLanguageName(resultSet.getString("naturalName"));
+        room.setDescription(resultSet.getString("description"));
+        room.setLockedDate(new Date(Long.parseLong(resultSet.getString("lockedDate").trim())));
+        if (resultSet.getString("emptyDate") != null) {
+            room.setEmptyDate(new Date(Long.parseLong(resultSet.getString("emptyDate").trim())));
+        }
+        else {
+            room.setEmptyDate(null);
+        }
+        room.setCanOccupantsChangeSubject(resultSet.getInt("canChangeSubject") == 1);
+        room.setMaxUsers(resultSet.getInt("maxUsers"));
+        room.setPublicRoom(resultSet.getInt("publicRoom") == 1);
+        room.setModerated(resultSet.getInt("moderated") == 1);
+        try {
+            room.setMembersOnly(resultSet.getInt("membersOnly") == 1, Affiliation.owner, null);
+        } catch (ForbiddenException | NotAllowedException e) {
+            Log.error("Unable to set members-only when loading room from database (this is likely a bug in Openfire). Room: {}", room.getJID(), e);
+        }
+        room.setCanOccupantsInvite(resultSet.getInt("canInvite") == 1);
+        room.setPassword(resultSet.getString("roomPassword"));
+        room.setCanAnyoneDiscoverJID(resultSet.getInt("canDiscoverJID") == 1);
+        room.setLogEnabled(resultSet.getInt("logEnabled") == 1);
+        room.setRetireOnDeletion(resultSet.getInt("retireOnDeletion") == 1);
+        room.setPreserveHistOnRoomDeletionEnabled(resultSet.getInt("preserveHistOnDel") == 1);
+        room.setSubject(resultSet.getString("subject"));
+        List<Role> rolesToBroadcast = new ArrayList<>();
+        String roles = StringUtils.zeroPadString(Integer.toBinaryString(resultSet.getInt("rolesToBroadcast")), 3);
+        if (roles.charAt(0) == '1') {
+            rolesToBroadcast.add(Role.moderator);
+        }
+        if (roles.charAt(1) == '1') {
+            rolesToBroadcast.add(Role.participant);
+        }
+        if (roles.charAt(2) == '1') {
+            rolesToBroadcast.add(Role.visitor);
+        }
+        room.setRolesToBroadcastPresence(rolesToBroadcast);
+        room.setLoginRestrictedToNickname(resultSet.getInt("useReservedNick") == 1);
+        room.setChangeNickname(resultSet.getInt("canChangeNick") == 1);
+        room.setRegistrationEnabled(resultSet.getInt("canRegister") == 1);
+        switch (resultSet.getInt("allowpm")) // null returns 0.
+        {
+            default:
+            case 0: room.setCanSendPrivateMessage( "anyone"       ); break;
+            case 1: room.setCanSendPrivateMessage( "participants" ); break;
+            case 2: room.setCanSendPrivateMessage( "moderators"   ); break;
+            case 3: room.setCanSendPrivateMessage( "none"         ); break;
+        }
+
+        room.setFmucEnabled(resultSet.getInt("fmucEnabled") == 1);
+        if ( resultSet.getString("fmucOutboundNode") != null ) {
+            final JID fmucOutboundNode = new JID(resultSet.getString("fmucOutboundNode"));
+            final FMUCMode fmucOutboundJoinMode = switch (resultSet.getInt("fmucOutboundMode")) // null returns 0.
+            {
+                case 1  -> FMUCMode.MasterSlave;
+                default -> MasterMaster;
+            };
+            room.setFmucOutboundNode( fmucOutboundNode );
+            room.setFmucOutboundMode( fmucOutboundJoinMode );
+        } else {
+            room.setFmucOutboundNode( null );
+            room.setFmucOutboundMode( null );
+        }
+        if ( resultSet.getString("fmucInboundNodes") != null ) {
+            final Set<JID> fmucInboundNodes = Stream.of(resultSet.getString("fmucInboundNodes").split("\n"))
+                .map(String::trim)
+                .map(JID::new)
+                .collect(Collectors.toSet());
+            // A list, which is an 'allow only on list' configuration. Note that the list can be empty (effectively: disallow all).
+            room.setFmucInboundNodes(fmucInboundNodes);
+        } else {
+            // Null: this is an 'allow all' configuration.
+            room.setFmucInboundNodes(null);
+        }
+
+        room.setPersistent(true);
+        return room;
     }
 
     /**
@@ -924,7 +1040,7 @@ public class MUCPersistenceManager {
         }
     }
 
-    private static void loadHistory(Long serviceID, Map<Long, MUCRoom> rooms) throws SQLException {
+    private static void loadHistory(Long serviceID, Map<Long, MUCRoom> rooms, long minRoomID, long maxRoomID, String emptyAfter) throws SQLException {
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
@@ -942,7 +1058,10 @@ public class MUCPersistenceManager {
                 from = System.currentTimeMillis() - (BigInteger.valueOf(86400000).multiply(BigInteger.valueOf(reloadLimitDays))).longValue();
             }
             statement.setLong(1, serviceID);
-            statement.setString(2, StringUtils.dateToMillis(new Date(from)));
+            statement.setLong(2, minRoomID);
+            statement.setLong(3, maxRoomID);
+            statement.setString(4, emptyAfter);
+            statement.setString(5, StringUtils.dateToMillis(new Date(from)));
             resultSet = statement.executeQuery();
 
             while (resultSet.next()) {
@@ -988,7 +1107,7 @@ public class MUCPersistenceManager {
         }
     }
 
-    private static void loadAffiliations(Long serviceID, Map<Long, MUCRoom> rooms) throws SQLException {
+    private static void loadAffiliations(Long serviceID, Map<Long, MUCRoom> rooms, long minRoomID, long maxRoomID, String emptyAfter) throws SQLException {
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
@@ -996,6 +1115,9 @@ public class MUCPersistenceManager {
             connection = DbConnectionManager.getConnection();
             statement = connection.prepareStatement(LOAD_ALL_AFFILIATIONS);
             statement.setLong(1, serviceID);
+            statement.setLong(2, minRoomID);
+            statement.setLong(3, maxRoomID);
+            statement.setString(4, emptyAfter);
             resultSet = statement.executeQuery();
 
             while (resultSet.next()) {
@@ -1049,7 +1171,7 @@ public class MUCPersistenceManager {
         }
     }
 
-    private static void loadMembers(Long serviceID, Map<Long, MUCRoom> rooms) throws SQLException {
+    private static void loadMembers(Long serviceID, Map<Long, MUCRoom> rooms, long minRoomID, long maxRoomID, String emptyAfter) throws SQLException {
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
@@ -1058,6 +1180,9 @@ public class MUCPersistenceManager {
             connection = DbConnectionManager.getConnection();
             statement = connection.prepareStatement(LOAD_ALL_MEMBERS);
             statement.setLong(1, serviceID);
+            statement.setLong(2, minRoomID);
+            statement.setLong(3, maxRoomID);
+            statement.setString(4, emptyAfter);
             resultSet = statement.executeQuery();
 
             while (resultSet.next()) {
@@ -1733,4 +1858,57 @@ public class MUCPersistenceManager {
             DbConnectionManager.closeConnection(resultSet, statement, connection);
         }
     }
+
+    /**
+     * One batch of rooms that is loaded from the database, as part of loading rooms in order of their ID.
+     */
+    static final class RoomBatch
+    {
+        private final Map<Long, MUCRoom> rooms = new LinkedHashMap<>();
+        private Long lastRoomID = null;
+
+        RoomBatch()
+        {
+        }
+
+        RoomBatch(@Nonnull final List<MUCRoom> rooms, @Nullable final Long lastRoomID)
+        {
+            rooms.forEach(room -> this.rooms.put(room.getID(), room));
+            this.lastRoomID = lastRoomID;
+        }
+
+        /**
+         * Returns the rooms of this batch, ordered by their ID. Rooms that could not be parsed are not included.
+         *
+         * @return the rooms of this batch.
+         */
+        @Nonnull
+        List<MUCRoom> getRooms()
+        {
+            return new ArrayList<>(rooms.values());
+        }
+
+        /**
+         * Returns the ID of the last row that was read from the database, including rows that could not be parsed into
+         * a room. The next batch is to be loaded starting after this ID.
+         *
+         * @return the ID of the last row that was read, or null if no rows were read.
+         */
+        @Nullable
+        Long getLastRoomID()
+        {
+            return lastRoomID;
+        }
+
+        /**
+         * Returns true if the database did not return any rows for this batch, which means that no rooms remain to be
+         * loaded.
+         *
+         * @return true if no rows were read, otherwise false.
+         */
+        boolean isEmpty()
+        {
+            return lastRoomID == null;
+        }
+    }
 }
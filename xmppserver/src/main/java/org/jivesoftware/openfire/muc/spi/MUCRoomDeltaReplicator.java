@@ -0,0 +1,679 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc.spi;
+
+import org.jivesoftware.openfire.muc.Affiliation;
+import org.jivesoftware.openfire.muc.MUCOccupant;
+import org.jivesoftware.openfire.muc.MUCRoom;
+import org.jivesoftware.openfire.muc.MUCRoomHistory;
+import org.jivesoftware.openfire.muc.cluster.MUCRoomDelta;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.cache.Cache;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.jivesoftware.util.cache.ExternalizableUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+
+/**
+ * Replicates the state of MUC rooms between cluster nodes by exchanging the changes that are applied to a room, rather
+ * than the entire room.
+ *
+ * A full snapshot of a room is stored in the clustered room cache. Every sync of the room that follows is compared with
+ * the most recently replicated state of the room, and the resulting typed changes (occupants that are added, updated or
+ * removed, affiliations that are added or removed, and configuration, history or subject changes) are stored as a delta in a
+ * separate clustered cache. Occupants are compared by their version (and by their state, when their version differs), the configuration and history by their checksum. A small, clustered version record identifies the snapshot and the amount of deltas that apply to it.
+ *
+ * Each cluster node maintains a local replica of the rooms that it reads, which it brings up to date by applying the
+ * deltas that it has not yet applied. The room that is returned to readers is copied from the replica only when
+ * changes were applied to the replica that the previously returned room does not reflect. Every delta carries a checksum of the state of the room after it has been
+ * applied. A node that finds that the checksum of its replica differs discards that replica. After a configurable
+ * amount of deltas, a new full snapshot is stored, which bounds the amount of deltas that are to be applied, and
+ * re-establishes a consistent state for nodes that discarded their replica.
+ *
+ * All writes are expected to be performed while holding the cluster-wide lock of the room.
+ */
+class MUCRoomDeltaReplicator
+{
+    private static final Logger Log = LoggerFactory.getLogger(MUCRoomDeltaReplicator.class);
+
+    /**
+     * Controls if changes to MUC rooms are replicated as deltas between cluster nodes. This must be configured
+     * identically on all cluster nodes. Has no effect when clustering is not enabled.
+     */
+    public static final SystemProperty<Boolean> ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.muc.cluster.delta.enabled")
+        .setDefaultValue(false)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The maximum amount of deltas that are replicated before a full snapshot of a room is replicated.
+     */
+    public static final SystemProperty<Integer> SNAPSHOT_INTERVAL = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.muc.cluster.delta.snapshotinterval")
+        .setDefaultValue(50)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The amount of times that reading the state of a room is attempted without acquiring the lock of the room.
+     */
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 5;
+
+    private final String serviceName;
+    private final Cache<String, MUCRoom> roomCache;
+    private final Cache<String, MUCRoomDelta.Version> versionCache;
+    private final Cache<String, MUCRoomDelta> deltaCache;
+
+    /**
+     * The local replicas of rooms, mapped by room name.
+     */
+    private final Map<String, Replica> replicas = new ConcurrentHashMap<>();
+
+    MUCRoomDeltaReplicator(@Nonnull final String serviceName, @Nonnull final Cache<String, MUCRoom> roomCache)
+    {
+        this(serviceName, roomCache, CacheFactory.createCache("MUC Service '" + serviceName + "' Room Versions"), CacheFactory.createCache("MUC Service '" + serviceName + "' Room Deltas"));
+        versionCache.setMaxLifetime(-1);
+        versionCache.setMaxCacheSize(-1L);
+        deltaCache.setMaxLifetime(-1);
+        deltaCache.setMaxCacheSize(-1L);
+    }
+
+    MUCRoomDeltaReplicator(@Nonnull final String serviceName, @Nonnull final Cache<String, MUCRoom> roomCache, @Nonnull final Cache<String, MUCRoomDelta.Version> versionCache, @Nonnull final Cache<String, MUCRoomDelta> deltaCache)
+    {
+        this.serviceName = serviceName;
+        this.roomCache = roomCache;
+        this.versionCache = versionCache;
+        this.deltaCache = deltaCache;
+    }
+
+    /**
+     * Replicates the state of a room, by storing the changes since the most recently replicated state as a delta, or,
+     * when that is not possible or a snapshot is due, by storing a full snapshot of the room.
+     *
+     * @param room The room to replicate.
+     * @return whether the room was persistent prior to these changes, or null if the room was not previously known.
+     */
+    @Nullable
+    Boolean sync(@Nonnull final MUCRoom room)
+    {
+        final String roomName = room.getName();
+        final MUCRoomDelta.Version version = versionCache.get(roomName);
+        if (version != null && !version.isPending() && version.getSequence() < SNAPSHOT_INTERVAL.getValue()) {
+            final Replica replica = catchUp(roomName, version);
+            if (replica != null) {
+                synchronized (replica) {
+                    if (!replica.invalid && replica.sequence == version.getSequence()) {
+                        try {
+                            final List<MUCRoomDelta.Change> changes = diff(replica, room);
+                            if (changes != null) {
+                                final boolean wasPersistent = replica.room.isPersistent();
+                                if (!changes.isEmpty()) {
+                                    final MUCRoomDelta delta = new MUCRoomDelta(roomName, replica.snapshotId, replica.sequence + 1, changes);
+                                    // Apply a copy, to prevent the replica from sharing (mutable) occupants with the room.
+                                    apply(replica, copy(delta));
+                                    delta.setChecksum(replica.checksum());
+                                    deltaCache.put(deltaKey(roomName, delta.getSnapshotId(), delta.getSequence()), delta);
+                                    versionCache.put(roomName, new MUCRoomDelta.Version(delta.getSnapshotId(), delta.getSequence()));
+                                    Log.trace("Replicated {} changes to room '{}' of service '{}' as delta {}.", changes.size(), roomName, serviceName, delta.getSequence());
+                                }
+                                // The room now reflects the state of the replica, and can be returned to readers.
+                                replica.working = room;
+                                replica.workingSequence = replica.sequence;
+                                return wasPersistent;
+                            }
+                        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                            Log.warn("Unable to replicate changes to room '{}' of service '{}' as a delta. Replicating a full snapshot instead.", roomName, serviceName, e);
+                            discard(roomName, replica);
+                        }
+                    }
+                }
+            }
+        }
+        return writeSnapshot(room, version);
+    }
+
+    /**
+     * Returns the most recently replicated state of a room. Consecutive invocations return the same instance, unless
+     * changes were replicated in the mean time.
+     *
+     * @param roomName The name of the room.
+     * @return the room, or null if no such room is replicated.
+     */
+    @Nullable
+    MUCRoom get(@Nonnull final String roomName)
+    {
+        for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+            final MUCRoomDelta.Version version = versionCache.get(roomName);
+            if (version == null) {
+                // Not replicated using deltas (yet).
+                return roomCache.get(roomName);
+            }
+            if (!version.isPending()) {
+                final MUCRoom result = workingCopyOf(catchUp(roomName, version));
+                if (result != null) {
+                    return result;
+                }
+            }
+            Thread.yield();
+        }
+
+        // A snapshot is being written, or the state of the room cannot be reconstructed. Wait for concurrent writes to finish.
+        final Lock lock = roomCache.getLock(roomName);
+        lock.lock();
+        try {
+            final MUCRoomDelta.Version version = versionCache.get(roomName);
+            if (version != null && !version.isPending()) {
+                final MUCRoom result = workingCopyOf(catchUp(roomName, version));
+                if (result != null) {
+                    return result;
+                }
+            }
+            Log.debug("Unable to reconstruct the replicated state of room '{}' of service '{}'. Using its most recent snapshot.", roomName, serviceName);
+            return roomCache.get(roomName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all replication state of a room. This is to be invoked when a room is removed, or when a room is stored in
+     * the room cache in another way than through {@link #sync(MUCRoom)}.
+     *
+     * @param roomName The name of the room.
+     */
+    void remove(@Nonnull final String roomName)
+    {
+        final MUCRoomDelta.Version version = versionCache.remove(roomName);
+        final Replica replica = replicas.remove(roomName);
+        if (replica != null) {
+            replica.invalid = true;
+        }
+        if (version != null && !version.isPending()) {
+            removeDeltas(roomName, version);
+        }
+    }
+
+    /**
+     * Removes the local replica of a room, without affecting the replicated state.
+     *
+     * @param roomName The name of the room.
+     */
+    void forget(@Nonnull final String roomName)
+    {
+        final Replica replica = replicas.remove(roomName);
+        if (replica != null) {
+            replica.invalid = true;
+        }
+    }
+
+    /**
+     * Removes all local replicas (eg: when joining or leaving a cluster).
+     */
+    void clear()
+    {
+        new HashSet<>(replicas.keySet()).forEach(this::forget);
+    }
+
+    /**
+     * Stores a full snapshot of a room, after which deltas that applied to the previous snapshot are removed.
+     *
+     * While the snapshot is being written, a 'pending' version is recorded. This allows a reader that does not hold the
+     * lock of the room to detect that the snapshot that it read might not match the version that it read.
+     */
+    @Nullable
+    private Boolean writeSnapshot(@Nonnull final MUCRoom room, @Nullable final MUCRoomDelta.Version previous)
+    {
+        final String roomName = room.getName();
+        final long snapshotId = ThreadLocalRandom.current().nextLong();
+
+        versionCache.put(roomName, MUCRoomDelta.Version.pending());
+        final MUCRoom oldValue = roomCache.put(roomName, room);
+        try {
+            final Replica replica = new Replica(copyRoom(room), snapshotId);
+            replica.working = room;
+            final Replica replaced = replicas.put(roomName, replica);
+            if (replaced != null) {
+                replaced.invalid = true;
+            }
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            Log.debug("Unable to create a local replica of room '{}' of service '{}'.", roomName, serviceName, e);
+            forget(roomName);
+        }
+        versionCache.put(roomName, new MUCRoomDelta.Version(snapshotId, 0));
+        Log.trace("Replicated a full snapshot of room '{}' of service '{}'.", roomName, serviceName);
+
+        if (previous != null && !previous.isPending()) {
+            removeDeltas(roomName, previous);
+        }
+        return oldValue == null ? null : oldValue.isPersistent();
+    }
+
+    /**
+     * Brings the local replica of a room up to date with a particular version, loading the snapshot of the room if needed.
+     *
+     * @return the replica, or null if the state of the room could not be reconstructed.
+     */
+    @Nullable
+    private Replica catchUp(@Nonnull final String roomName, @Nonnull final MUCRoomDelta.Version version)
+    {
+        Replica replica = replicas.get(roomName);
+        if (replica == null || replica.invalid || replica.snapshotId != version.getSnapshotId()) {
+            replica = loadSnapshot(roomName, version);
+            if (replica == null) {
+                return null;
+            }
+        }
+
+        synchronized (replica) {
+            if (replica.invalid) {
+                return null;
+            }
+            while (replica.sequence < version.getSequence()) {
+                final MUCRoomDelta delta = deltaCache.get(deltaKey(roomName, replica.snapshotId, replica.sequence + 1));
+                if (delta == null) {
+                    // Removed because a more recent snapshot has been written.
+                    Log.trace("Delta {} of room '{}' of service '{}' is no longer available.", replica.sequence + 1, roomName, serviceName);
+                    discard(roomName, replica);
+                    return null;
+                }
+                try {
+                    apply(replica, delta);
+                } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                    Log.warn("Unable to apply delta {} to the replica of room '{}' of service '{}'.", delta.getSequence(), roomName, serviceName, e);
+                    discard(roomName, replica);
+                    return null;
+                }
+                if (replica.checksum() != delta.getChecksum()) {
+                    Log.warn("The replica of room '{}' of service '{}' is inconsistent after applying delta {}. Discarding the replica.", roomName, serviceName, delta.getSequence());
+                    discard(roomName, replica);
+                    return null;
+                }
+            }
+        }
+        return replica;
+    }
+
+    @Nullable
+    private Replica loadSnapshot(@Nonnull final String roomName, @Nonnull final MUCRoomDelta.Version version)
+    {
+        final MUCRoom room = roomCache.get(roomName);
+
+        // Verify that the snapshot was not replaced while it was being read.
+        final MUCRoomDelta.Version check = versionCache.get(roomName);
+        if (room == null || check == null || check.isPending() || check.getSnapshotId() != version.getSnapshotId()) {
+            return null;
+        }
+
+        try {
+            final Replica replica = new Replica(room, version.getSnapshotId());
+            final Replica replaced = replicas.put(roomName, replica);
+            if (replaced != null && replaced != replica) {
+                replaced.invalid = true;
+            }
+            return replica;
+        } catch (IOException e) {
+            Log.warn("Unable to create a local replica of room '{}' of service '{}'.", roomName, serviceName, e);
+            return null;
+        }
+    }
+
+    private void discard(@Nonnull final String roomName, @Nonnull final Replica replica)
+    {
+        replica.invalid = true;
+        replicas.remove(roomName, replica);
+    }
+
+    private void removeDeltas(@Nonnull final String roomName, @Nonnull final MUCRoomDelta.Version version)
+    {
+        for (long sequence = 1; sequence <= version.getSequence(); sequence++) {
+            deltaCache.remove(deltaKey(roomName, version.getSnapshotId(), sequence));
+        }
+    }
+
+    /**
+     * Returns a room that reflects the state of a replica, copying the replica only if the room that was previously
+     * returned does not reflect its state.
+     */
+    @Nullable
+    private static MUCRoom workingCopyOf(@Nullable final Replica replica)
+    {
+        if (replica == null) {
+            return null;
+        }
+        synchronized (replica) {
+            if (replica.invalid) {
+                return null;
+            }
+            if (replica.working != null && replica.workingSequence == replica.sequence) {
+                return replica.working;
+            }
+            try {
+                replica.working = copyRoom(replica.room);
+                replica.workingSequence = replica.sequence;
+                return replica.working;
+            } catch (IOException | ClassNotFoundException e) {
+                Log.warn("Unable to copy the replica of room '{}'.", replica.room.getName(), e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Determines the changes that transform the state of the replica into the state of the room.
+     *
+     * @return the changes, or null if the changes cannot be expressed as a delta.
+     */
+    @Nullable
+    static List<MUCRoomDelta.Change> diff(@Nonnull final Replica replica, @Nonnull final MUCRoom room) throws IOException, ClassNotFoundException
+    {
+        final List<MUCRoomDelta.Change> changes = new ArrayList<>();
+
+        final byte[] configuration = configurationOf(room);
+        if (checksumOf(configuration) != replica.configurationChecksum) {
+            changes.add(MUCRoomDelta.Change.configurationChanged(configuration));
+        }
+        final byte[] history = historyOf(room);
+        final long historyChecksum = checksumOf(history);
+        if (historyChecksum != replica.historyChecksum) {
+            final Message subject = room.getRoomHistory().getChangedSubject();
+            if (subject != null && isSubjectChangeOnly(replica, subject, historyChecksum)) {
+                changes.add(MUCRoomDelta.Change.subjectChanged(subject, historyChecksum));
+            } else {
+                changes.add(MUCRoomDelta.Change.historyChanged(history));
+            }
+        }
+
+        final Set<JID> present = new HashSet<>();
+        for (final MUCOccupant occupant : room.getOccupants()) {
+            final JID userAddress = occupant.getUserAddress();
+            if (userAddress == null || !present.add(userAddress)) {
+                return null;
+            }
+            final Long previous = replica.occupantVersions.get(userAddress);
+            if (previous == null) {
+                changes.add(MUCRoomDelta.Change.occupantAdded(occupant));
+            } else if (previous != occupant.getVersion()) {
+                final MUCOccupant replicated = replica.room.getOccupantByFullJID(userAddress);
+                if (replicated != null && Arrays.equals(stateOf(replicated), stateOf(occupant))) {
+                    // An instance with the same state that was not copied from the replica (eg: one that was loaded from a snapshot). Adopt its version.
+                    replicated.setVersion(occupant.getVersion());
+                    replica.occupantVersions.put(userAddress, occupant.getVersion());
+                } else {
+                    changes.add(MUCRoomDelta.Change.occupantUpdated(occupant));
+                }
+            }
+        }
+        for (final JID userAddress : replica.occupantVersions.keySet()) {
+            if (!present.contains(userAddress)) {
+                changes.add(MUCRoomDelta.Change.occupantRemoved(userAddress));
+            }
+        }
+
+        diff(replica.room.getOwners(), room.getOwners(), Affiliation.owner, changes);
+        diff(replica.room.getAdmins(), room.getAdmins(), Affiliation.admin, changes);
+        diff(replica.room.getOutcasts(), room.getOutcasts(), Affiliation.outcast, changes);
+        final Collection<JID> previousMembers = replica.room.getMembers();
+        final Collection<JID> currentMembers = room.getMembers();
+        for (final JID member : currentMembers) {
+            final String nickname = room.getReservedNickname(member);
+            if (!previousMembers.contains(member) || !Objects.equals(nickname, replica.room.getReservedNickname(member))) {
+                changes.add(MUCRoomDelta.Change.affiliationAdded(member, Affiliation.member, nickname));
+            }
+        }
+        for (final JID member : previousMembers) {
+            if (!currentMembers.contains(member)) {
+                changes.add(MUCRoomDelta.Change.affiliationRemoved(member, Affiliation.member));
+            }
+        }
+        return changes;
+    }
+
+    private static void diff(@Nonnull final Collection<JID> previous, @Nonnull final Collection<JID> current, @Nonnull final Affiliation affiliation, @Nonnull final List<MUCRoomDelta.Change> changes)
+    {
+        final Set<JID> previousSet = new HashSet<>(previous);
+        final Set<JID> currentSet = new HashSet<>(current);
+        for (final JID jid : currentSet) {
+            if (!previousSet.contains(jid)) {
+                changes.add(MUCRoomDelta.Change.affiliationAdded(jid, affiliation, null));
+            }
+        }
+        for (final JID jid : previousSet) {
+            if (!currentSet.contains(jid)) {
+                changes.add(MUCRoomDelta.Change.affiliationRemoved(jid, affiliation));
+            }
+        }
+    }
+
+    /**
+     * Applies the changes of a delta to a replica. No events are fired, and nothing is persisted.
+     */
+    static void apply(@Nonnull final Replica replica, @Nonnull final MUCRoomDelta delta) throws IOException, ClassNotFoundException
+    {
+        final MUCRoom room = replica.room;
+        for (final MUCRoomDelta.Change change : delta.getChanges()) {
+            switch (change.getType()) {
+                case OCCUPANT_ADDED:
+                case OCCUPANT_UPDATED: {
+                    final MUCOccupant existing = room.getOccupantByFullJID(change.getAddress());
+                    if (existing != null) {
+                        room.removeOccupantWithoutEvent(existing);
+                    }
+                    room.addOccupantWithoutEvent(change.getOccupant());
+                    replica.occupantVersions.put(change.getAddress(), change.getOccupantVersion());
+                    break;
+                }
+                case OCCUPANT_REMOVED: {
+                    final MUCOccupant existing = room.getOccupantByFullJID(change.getAddress());
+                    if (existing != null) {
+                        room.removeOccupantWithoutEvent(existing);
+                    }
+                    replica.occupantVersions.remove(change.getAddress());
+                    break;
+                }
+                case AFFILIATION_ADDED:
+                    room.addAffiliationWithoutEvent(change.getAddress(), change.getAffiliation(), change.getNickname());
+                    break;
+                case AFFILIATION_REMOVED:
+                    room.removeAffiliationWithoutEvent(change.getAddress(), change.getAffiliation());
+                    break;
+                case CONFIGURATION_CHANGED:
+                    try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(change.getConfiguration()))) {
+                        room.readConfiguration(in);
+                    }
+                    replica.configurationChecksum = checksumOf(change.getConfiguration());
+                    break;
+                case HISTORY_CHANGED:
+                    try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(change.getHistory()))) {
+                        room.readHistory(in);
+                    }
+                    replica.historyChecksum = checksumOf(change.getHistory());
+                    break;
+                case SUBJECT_CHANGED:
+                    room.getRoomHistory().setChangedSubject(change.getSubject());
+                    replica.historyChecksum = change.getHistoryChecksum();
+                    break;
+            }
+        }
+        replica.sequence = delta.getSequence();
+    }
+
+    /**
+     * Checks if the history of a room differs from that of the replica by its subject only, in which case it suffices
+     * to replicate the subject, rather than the entire history.
+     */
+    private static boolean isSubjectChangeOnly(@Nonnull final Replica replica, @Nonnull final Message subject, final long historyChecksum) throws IOException, ClassNotFoundException
+    {
+        final MUCRoomHistory candidate = copy(replica.room.getRoomHistory());
+        candidate.setChangedSubject(subject);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            ExternalizableUtil.getInstance().writeSerializable(out, candidate);
+        }
+        return checksumOf(bytes.toByteArray()) == historyChecksum;
+    }
+
+    @Nonnull
+    private static String deltaKey(@Nonnull final String roomName, final long snapshotId, final long sequence)
+    {
+        return roomName + '#' + snapshotId + '#' + sequence;
+    }
+
+    @Nonnull
+    private static byte[] configurationOf(@Nonnull final MUCRoom room) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            room.writeConfiguration(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Nonnull
+    private static byte[] historyOf(@Nonnull final MUCRoom room) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            room.writeHistory(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Nonnull
+    private static byte[] stateOf(@Nonnull final MUCOccupant occupant) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            occupant.writeExternal(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long checksumOf(@Nonnull final byte[] bytes)
+    {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    static <E extends Externalizable> E copy(@Nonnull final E object) throws IOException, ClassNotFoundException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (E) in.readObject();
+        }
+    }
+
+    /**
+     * Copies a room, retaining the versions of its occupants, which are not part of the serialized form of an occupant.
+     * This allows the occupants of the copy to be compared with those of the original by their version.
+     */
+    @Nonnull
+    static MUCRoom copyRoom(@Nonnull final MUCRoom room) throws IOException, ClassNotFoundException
+    {
+        final MUCRoom result = copy(room);
+        for (final MUCOccupant occupant : result.getOccupants()) {
+            final MUCOccupant original = occupant.getUserAddress() == null ? null : room.getOccupantByFullJID(occupant.getUserAddress());
+            if (original != null) {
+                occupant.setVersion(original.getVersion());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The local replica of a room, along with the data that is used to determine what changed.
+     */
+    static final class Replica
+    {
+        final MUCRoom room;
+        final long snapshotId;
+        final Map<JID, Long> occupantVersions = new HashMap<>();
+        long sequence;
+        long configurationChecksum;
+        long historyChecksum;
+        volatile boolean invalid;
+
+        /**
+         * The room that was most recently returned to readers (or synced), which reflects the state of the replica at
+         * {@link #workingSequence}.
+         */
+        MUCRoom working;
+        long workingSequence;
+
+        Replica(@Nonnull final MUCRoom room, final long snapshotId) throws IOException
+        {
+            this.room = room;
+            this.snapshotId = snapshotId;
+            for (final MUCOccupant occupant : room.getOccupants()) {
+                if (occupant.getUserAddress() != null) {
+                    occupantVersions.put(occupant.getUserAddress(), occupant.getVersion());
+                }
+            }
+            configurationChecksum = checksumOf(configurationOf(room));
+            historyChecksum = checksumOf(historyOf(room));
+        }
+
+        /**
+         * Calculates a checksum of the replicated state, which does not depend on the order of occupants or
+         * affiliations. The versions of occupants are not used, as a node that loads a snapshot does not know the
+         * versions of the occupants in it.
+         *
+         * @return a checksum.
+         */
+        long checksum()
+        {
+            long occupants = 0;
+            for (final MUCOccupant occupant : room.getOccupants()) {
+                occupants += Objects.hashCode(occupant.getUserAddress()) * 31L + Objects.hash(occupant.getOccupantJID(), occupant.getRole(), occupant.getAffiliation(), occupant.getReportedFmucAddress());
+            }
+            long members = 0;
+            for (final JID member : room.getMembers()) {
+                members += member.hashCode() * 31L + Objects.hashCode(room.getReservedNickname(member));
+            }
+            long result = configurationChecksum;
+            result = 31 * result + historyChecksum;
+            result = 31 * result + occupants;
+            result = 31 * result + new HashSet<>(room.getOwners()).hashCode();
+            result = 31 * result + new HashSet<>(room.getAdmins()).hashCode();
+            result = 31 * result + new HashSet<>(room.getOutcasts()).hashCode();
+            result = 31 * result + members;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc.spi;
+
+import org.jivesoftware.openfire.muc.MUCRoom;
+import org.jivesoftware.util.SystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.sql.SQLException;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Loads the persistent rooms of a MUC service into memory, in the background.
+ *
+ * Rooms are loaded from the database in batches, ordered by their ID. A next batch is loaded only after all rooms of
+ * the previous batch have been added to the service, which limits the amount of memory used by the preloader to that
+ * of one batch.
+ *
+ * While rooms are being preloaded, the service is fully operational. Rooms that are not yet preloaded are loaded on
+ * demand, like they are when preloading is disabled. These on-demand loads take priority: the preloader does not start
+ * loading a next batch while rooms are being loaded on demand (for at most {@link #MAX_YIELD}), and does not replace
+ * rooms that have been loaded on demand. Rooms that are removed from the service while preloading is in progress (eg:
+ * because they are destroyed) are not preloaded either.
+ *
+ * When a batch cannot be loaded from the database, loading it is retried a few times. When that keeps failing,
+ * preloading stops, and the rooms that were not preloaded are loaded on demand.
+ */
+class MUCRoomPreloader implements Runnable
+{
+    private static final Logger Log = LoggerFactory.getLogger(MUCRoomPreloader.class);
+
+    /**
+     * The maximum amount of rooms that are loaded from the database in one batch.
+     */
+    public static final SystemProperty<Integer> BATCH_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.muc.preload.batchsize")
+        .setDefaultValue(500)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum duration that the preloader waits for on-demand loads of rooms to finish, before loading a next batch.
+     */
+    public static final SystemProperty<Duration> MAX_YIELD = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.muc.preload.maxyield")
+        .setDefaultValue(Duration.ofSeconds(1))
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The amount of times that loading a batch is retried after a database error, before preloading is stopped.
+     */
+    static final int MAX_RETRIES = 3;
+
+    /**
+     * The delay before loading a batch is retried after a database error.
+     */
+    static final Duration RETRY_DELAY = Duration.ofMillis(500);
+
+    /**
+     * Loads one batch of rooms from the database.
+     */
+    @FunctionalInterface
+    interface BatchLoader
+    {
+        /**
+         * Loads the rooms that have an ID larger than the provided value, ordered by their ID.
+         *
+         * @param afterRoomID only rooms with an ID larger than this value are loaded.
+         * @param batchSize the maximum amount of rooms to load.
+         * @return the loaded batch.
+         * @throws SQLException when the batch could not be loaded from the database.
+         */
+        @Nonnull
+        MUCPersistenceManager.RoomBatch load(long afterRoomID, int batchSize) throws SQLException;
+    }
+
+    private final String serviceName;
+    private final LocalMUCRoomManager localMUCRoomManager;
+    private final BatchLoader batchLoader;
+    private final AtomicInteger onDemandLoads = new AtomicInteger();
+    private final Set<String> removedRooms = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+    private volatile boolean finished = false;
+
+    MUCRoomPreloader(@Nonnull final String serviceName, @Nonnull final LocalMUCRoomManager localMUCRoomManager, @Nonnull final BatchLoader batchLoader)
+    {
+        this.serviceName = serviceName;
+        this.localMUCRoomManager = localMUCRoomManager;
+        this.batchLoader = batchLoader;
+    }
+
+    @Override
+    public void run()
+    {
+        final long start = System.currentTimeMillis();
+        int preloaded = 0;
+        boolean complete = false;
+        try {
+            long afterRoomID = Long.MIN_VALUE;
+            int failures = 0;
+            while (!cancelled) {
+                yieldToOnDemandLoads();
+
+                final MUCPersistenceManager.RoomBatch batch;
+                try {
+                    batch = batchLoader.load(afterRoomID, BATCH_SIZE.getValue());
+                } catch (SQLException e) {
+                    if (++failures > MAX_RETRIES) {
+                        Log.warn("Stopped preloading rooms of MUC service '{}' after {} consecutive database errors. Rooms that have not been preloaded will be loaded on demand.", serviceName, failures, e);
+                        break;
+                    }
+                    Log.debug("A database error prevented a batch of rooms of MUC service '{}' to be preloaded. Retrying.", serviceName, e);
+                    Thread.sleep(RETRY_DELAY.toMillis());
+                    continue;
+                }
+                failures = 0;
+
+                if (batch.isEmpty()) {
+                    complete = true;
+                    break;
+                }
+                for (final MUCRoom room : batch.getRooms()) {
+                    if (cancelled) {
+                        break;
+                    }
+                    if (add(room)) {
+                        preloaded++;
+                    }
+                }
+                afterRoomID = batch.getLastRoomID();
+            }
+        } catch (Throwable t) {
+            Log.error("An unexpected exception occurred while preloading rooms of MUC service '{}'.", serviceName, t);
+        } finally {
+            finished = true;
+            removedRooms.clear();
+            Log.info("Preloaded {} rooms of MUC service '{}' in {} ms{}.", preloaded, serviceName, System.currentTimeMillis() - start, complete ? "" : cancelled ? " (cancelled)" : " (incomplete)");
+        }
+    }
+
+    /**
+     * Adds a preloaded room to the service, unless the room was already loaded (on demand), or was removed from the
+     * service while preloading was in progress.
+     *
+     * @param room the preloaded room.
+     * @return true if the room was added, otherwise false.
+     */
+    private boolean add(@Nonnull final MUCRoom room)
+    {
+        final Lock lock = localMUCRoomManager.getLock(room.getName());
+        if (!lock.tryLock()) {
+            // The room is being loaded on demand (or is otherwise in use), so it does not need preloading.
+            return false;
+        }
+        try {
+            if (removedRooms.contains(room.getName()) || localMUCRoomManager.get(room.getName()) != null) {
+                return false;
+            }
+            localMUCRoomManager.add(room);
+        } finally {
+            lock.unlock();
+        }
+
+        // Start FMUC, if desired.
+        room.getFmucHandler().applyConfigurationChanges();
+        return true;
+    }
+
+    private void yieldToOnDemandLoads() throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + MAX_YIELD.getValue().toMillis();
+        while (onDemandLoads.get() > 0 && !cancelled && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Registers that a room is being loaded on demand.
+     */
+    void onDemandLoadStarted()
+    {
+        onDemandLoads.incrementAndGet();
+    }
+
+    /**
+     * Registers that a room that was being loaded on demand has been loaded.
+     */
+    void onDemandLoadFinished()
+    {
+        onDemandLoads.decrementAndGet();
+    }
+
+    /**
+     * Registers that a room has been removed from the service (eg: because it was destroyed), which prevents it from
+     * being preloaded afterwards. This is expected to be invoked while holding the lock of the room.
+     *
+     * @param roomName the name of the room that was removed.
+     */
+    void onRoomRemoved(@Nonnull final String roomName)
+    {
+        if (!finished) {
+            removedRooms.add(roomName);
+        }
+    }
+
+    /**
+     * Stops preloading rooms. Rooms that already have been preloaded remain loaded.
+     */
+    void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Returns true if the preloader has stopped preloading rooms, either because all rooms were loaded, or because it
+     * was cancelled.
+     *
+     * @return true if preloading has ended, otherwise false.
+     */
+    boolean isFinished()
+    {
+        return finished;
+    }
+}
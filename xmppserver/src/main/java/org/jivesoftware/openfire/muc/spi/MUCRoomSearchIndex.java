@@ -0,0 +1,517 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc.spi;
+
+import org.jivesoftware.openfire.muc.MUCRoom;
+import org.jivesoftware.util.SystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * An index of the rooms of a MUC service, used to search for rooms (eg: XEP-0433 'Extended Channel Search' and the
+ * 'muclumbus' search protocol) without having to load all rooms from the database, and to evaluate every room, for
+ * every search request.
+ *
+ * For each searchable text field of a room, the index maps every trigram (a sequence of three characters, compared
+ * case-insensitively) of the text to the names of the rooms that contain it. A room can only contain a search term if
+ * it contains all trigrams of that term, which allows the candidates for a search to be found by intersecting a few
+ * small sets. Search terms shorter than three characters cannot narrow the search, and are evaluated against all
+ * rooms. The index only produces candidates: the exact matching rules are applied by the caller, by means of a filter.
+ *
+ * In addition to the text index, the index maintains the rooms ordered by occupant count and by address. When results
+ * are requested in one of these orders, these views are used instead of sorting the entire result.
+ *
+ * The index is populated when it is first queried. It is kept up to date by marking rooms as 'dirty' whenever they
+ * change. Dirty rooms are re-evaluated lazily, when the index is next queried, which keeps the cost of maintaining the
+ * index away from the code paths that change rooms.
+ *
+ * Only one thread at a time brings the index up to date. That thread obtains the data of dirty rooms (which may involve
+ * database queries) without locking the index, after which the changes are applied under a short-lived write lock. A
+ * (re)population builds a new index that replaces the current one when complete. Searches that are performed while
+ * another thread is bringing the index up to date do not wait for it, but use the current index instead. Only the
+ * very first search(es) wait for the index to be populated.
+ */
+public class MUCRoomSearchIndex
+{
+    private static final Logger Log = LoggerFactory.getLogger(MUCRoomSearchIndex.class);
+
+    /**
+     * The maximum age of the index data for rooms that are loaded in memory, when the local server is part of a
+     * cluster. Not all changes to rooms that are applied by other cluster nodes are observed by the index, which is
+     * why index data for rooms that are loaded is periodically refreshed.
+     */
+    public static final SystemProperty<Duration> CLUSTER_MAX_AGE = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.muc.search.index.cluster.maxage")
+        .setDefaultValue(Duration.ofSeconds(30))
+        .setChronoUnit(ChronoUnit.SECONDS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * Orders rooms by their address.
+     */
+    public static final Comparator<MUCRoomSearchInfo> BY_ADDRESS = Comparator.comparing(MUCRoomSearchInfo::getJID);
+
+    /**
+     * Orders rooms by their occupant count (rooms with the most occupants first). Rooms with equal amounts of occupants
+     * are ordered by address.
+     */
+    public static final Comparator<MUCRoomSearchInfo> BY_OCCUPANTS = Comparator.comparing(MUCRoomSearchInfo::getOccupantsCount).reversed().thenComparing(MUCRoomSearchInfo::getJID);
+
+    /**
+     * The text fields of a room that are indexed.
+     */
+    public enum Field
+    {
+        /**
+         * The natural-language name of the room.
+         */
+        NAME,
+
+        /**
+         * The description of the room.
+         */
+        DESCRIPTION,
+
+        /**
+         * The address of the room.
+         */
+        ADDRESS,
+
+        /**
+         * The subject of the room.
+         */
+        SUBJECT;
+
+        @Nullable
+        String valueOf(@Nonnull final MUCRoomSearchInfo room)
+        {
+            return switch (this) {
+                case NAME -> room.getNaturalLanguageName();
+                case DESCRIPTION -> room.getDescription();
+                case ADDRESS -> room.getJID().toString();
+                case SUBJECT -> room.getSubject();
+            };
+        }
+    }
+
+    /**
+     * Provides the index with the rooms of a service.
+     */
+    interface Source
+    {
+        /**
+         * Returns a room that is currently loaded in memory.
+         *
+         * @param roomName the name of the room.
+         * @return the room, or null if the room is not loaded.
+         */
+        @Nullable
+        MUCRoom getLoadedRoom(@Nonnull String roomName);
+
+        /**
+         * Returns the names of all rooms that are currently loaded in memory.
+         *
+         * @return room names.
+         */
+        @Nonnull
+        Collection<String> getLoadedRoomNames();
+
+        /**
+         * Returns search information for rooms that are not loaded in memory.
+         *
+         * @param roomNames the names of the rooms.
+         * @return search information by room name. Rooms that do not exist, or should not be included in searches, are
+         *         not included.
+         * @throws SQLException when the information could not be obtained from the database.
+         */
+        @Nonnull
+        Map<String, MUCRoomSearchInfo> getUnloadedRooms(@Nonnull Collection<String> roomNames) throws SQLException;
+
+        /**
+         * Provides search information for all rooms that should be included in searches, but are not loaded in memory.
+         *
+         * @param consumer receives the search information of each room.
+         */
+        void forEachUnloadedRoom(@Nonnull Consumer<MUCRoomSearchInfo> consumer);
+
+        /**
+         * Checks if the local server is part of a cluster.
+         *
+         * @return true if the local server is part of a cluster.
+         */
+        boolean isClustered();
+    }
+
+    private final Source source;
+
+    /**
+     * Names of rooms for which the index data is possibly outdated.
+     */
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Set when the index needs to be (re)populated from scratch.
+     */
+    private volatile boolean invalid = true;
+
+    /**
+     * Set once the index has been populated for the first time.
+     */
+    private volatile boolean populated = false;
+
+    /**
+     * Held by the thread that brings the index up to date. Guards 'lastClusterRefresh'.
+     */
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private long lastClusterRefresh = 0;
+
+    /**
+     * Guards 'index'. The write lock is held only to apply changes that have already been obtained.
+     */
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+
+    MUCRoomSearchIndex(@Nonnull final Source source)
+    {
+        this.source = source;
+    }
+
+    /**
+     * Registers that a room has been added, changed or removed.
+     *
+     * @param roomName the name of the room.
+     */
+    public void markDirty(@Nonnull final String roomName)
+    {
+        dirty.add(roomName);
+    }
+
+    /**
+     * Discards all index data, causing the index to be repopulated when it is next queried.
+     */
+    public void invalidate()
+    {
+        invalid = true;
+    }
+
+    /**
+     * Returns all rooms that match a query.
+     *
+     * The index is used to find candidate rooms: those that, in at least one of the provided fields, contain all
+     * trigrams of all provided terms. Candidates are included in the result only if they satisfy the provided filter.
+     * When no terms or no fields are provided, all rooms are candidates.
+     *
+     * @param fields the fields in which the terms are to be found.
+     * @param terms the terms that all must be contained in (at least one of) the fields.
+     * @param filter the condition that the rooms in the result must satisfy.
+     * @param order the order of the result, or null if the order is irrelevant.
+     * @return the matching rooms.
+     */
+    @Nonnull
+    public List<MUCRoomSearchInfo> search(@Nonnull final Set<Field> fields, @Nonnull final Collection<String> terms, @Nonnull final Predicate<MUCRoomSearchInfo> filter, @Nullable final Comparator<MUCRoomSearchInfo> order)
+    {
+        update();
+
+        indexLock.readLock().lock();
+        try {
+            final Set<String> candidates = index.findCandidates(fields, terms);
+            final List<MUCRoomSearchInfo> result = new ArrayList<>();
+
+            final NavigableSet<MUCRoomSearchInfo> view = order == BY_ADDRESS ? index.byAddress : order == BY_OCCUPANTS ? index.byOccupants : null;
+            if (view != null && (candidates == null || candidates.size() > index.entries.size() / 4)) {
+                // Many candidates: iterating over the view that already is in the desired order is cheaper than sorting.
+                for (final MUCRoomSearchInfo room : view) {
+                    if ((candidates == null || candidates.contains(room.getName())) && filter.test(room)) {
+                        result.add(room);
+                    }
+                }
+                return result;
+            }
+
+            for (final String name : candidates == null ? index.entries.keySet() : candidates) {
+                final MUCRoomSearchInfo room = index.entries.get(name);
+                if (room != null && filter.test(room)) {
+                    result.add(room);
+                }
+            }
+            if (order != null) {
+                result.sort(order);
+            }
+            return result;
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Brings the index up to date, unless another thread already is doing so and the index has been populated before.
+     */
+    private void update()
+    {
+        if (populated) {
+            if (!updateLock.tryLock()) {
+                // Another thread is bringing the index up to date. Rather than waiting for it, use the current index.
+                return;
+            }
+        } else {
+            // There is no index to use yet.
+            updateLock.lock();
+        }
+        try {
+            refresh();
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Brings the index up to date. Must be invoked while holding the update lock.
+     */
+    private void refresh()
+    {
+        if (invalid) {
+            populate();
+            return;
+        }
+
+        if (source.isClustered() && System.currentTimeMillis() - lastClusterRefresh > CLUSTER_MAX_AGE.getValue().toMillis()) {
+            dirty.addAll(source.getLoadedRoomNames());
+            lastClusterRefresh = System.currentTimeMillis();
+        }
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        // Obtain the data of all dirty rooms before touching the index.
+        final Map<String, MUCRoomSearchInfo> changes = new HashMap<>();
+        final Set<String> unloadedRoomNames = new HashSet<>();
+        for (final Iterator<String> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            final String roomName = iterator.next();
+            iterator.remove();
+
+            final MUCRoom room = source.getLoadedRoom(roomName);
+            if (room != null) {
+                changes.put(roomName, new MUCRoomSearchInfo(room));
+            } else {
+                unloadedRoomNames.add(roomName);
+                changes.put(roomName, null);
+            }
+        }
+        if (!unloadedRoomNames.isEmpty()) {
+            try {
+                changes.putAll(source.getUnloadedRooms(unloadedRoomNames));
+            } catch (SQLException e) {
+                Log.warn("A database error prevented the search index to be updated for {} rooms. This will be retried on the next search.", unloadedRoomNames.size(), e);
+                changes.keySet().removeAll(unloadedRoomNames);
+                dirty.addAll(unloadedRoomNames);
+            }
+        }
+
+        indexLock.writeLock().lock();
+        try {
+            changes.forEach((roomName, info) -> {
+                if (info != null) {
+                    index.put(info);
+                } else {
+                    index.delete(roomName);
+                }
+            });
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds a new index that contains all rooms, and replaces the current index with it. Must be invoked while holding
+     * the update lock.
+     */
+    private void populate()
+    {
+        final long start = System.currentTimeMillis();
+        invalid = false;
+        dirty.clear();
+        lastClusterRefresh = start;
+
+        final Index replacement = new Index();
+        final Collection<String> loadedRoomNames = source.getLoadedRoomNames();
+        for (final String roomName : loadedRoomNames) {
+            final MUCRoom room = source.getLoadedRoom(roomName);
+            if (room != null) {
+                replacement.put(new MUCRoomSearchInfo(room));
+            }
+        }
+        source.forEachUnloadedRoom(info -> {
+            if (!replacement.entries.containsKey(info.getName())) {
+                replacement.put(info);
+            }
+        });
+
+        indexLock.writeLock().lock();
+        try {
+            index = replacement;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        populated = true;
+        Log.debug("Populated the search index with {} rooms in {} ms.", replacement.entries.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Returns the number of rooms in the index. Does not bring the index up to date.
+     *
+     * @return a room count.
+     */
+    int size()
+    {
+        indexLock.readLock().lock();
+        try {
+            return index.entries.size();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The data structures of the index. Not thread-safe.
+     */
+    private static final class Index
+    {
+        private final Map<String, MUCRoomSearchInfo> entries = new HashMap<>();
+        private final Map<Field, Map<String, Set<String>>> trigrams = new EnumMap<>(Field.class);
+        private final NavigableSet<MUCRoomSearchInfo> byAddress = new TreeSet<>(BY_ADDRESS);
+        private final NavigableSet<MUCRoomSearchInfo> byOccupants = new TreeSet<>(BY_OCCUPANTS);
+
+        private Index()
+        {
+            for (final Field field : Field.values()) {
+                trigrams.put(field, new HashMap<>());
+            }
+        }
+
+        /**
+         * Returns the names of the rooms that possibly match the provided terms.
+         *
+         * @return room names, or null if all rooms are candidates.
+         */
+        @Nullable
+        private Set<String> findCandidates(@Nonnull final Set<Field> fields, @Nonnull final Collection<String> terms)
+        {
+            if (fields.isEmpty()) {
+                return null;
+            }
+            final Set<String> result = new HashSet<>();
+            for (final Field field : fields) {
+                final Map<String, Set<String>> index = trigrams.get(field);
+                Set<String> fieldCandidates = null;
+                for (final String term : terms) {
+                    for (final String trigram : trigramsOf(term)) {
+                        final Set<String> names = index.getOrDefault(trigram, Collections.emptySet());
+                        if (fieldCandidates == null) {
+                            fieldCandidates = new HashSet<>(names);
+                        } else {
+                            fieldCandidates.retainAll(names);
+                        }
+                        if (fieldCandidates.isEmpty()) {
+                            break;
+                        }
+                    }
+                }
+                if (fieldCandidates == null) {
+                    // None of the terms narrow down the search in this field.
+                    return null;
+                }
+                result.addAll(fieldCandidates);
+            }
+            return result;
+        }
+
+        private void put(@Nonnull final MUCRoomSearchInfo room)
+        {
+            delete(room.getName());
+            entries.put(room.getName(), room);
+            byAddress.add(room);
+            byOccupants.add(room);
+            for (final Field field : Field.values()) {
+                final String value = field.valueOf(room);
+                if (value != null) {
+                    final Map<String, Set<String>> index = trigrams.get(field);
+                    for (final String trigram : trigramsOf(value)) {
+                        index.computeIfAbsent(trigram, k -> new HashSet<>()).add(room.getName());
+                    }
+                }
+            }
+        }
+
+        private void delete(@Nonnull final String roomName)
+        {
+            final MUCRoomSearchInfo old = entries.remove(roomName);
+            if (old == null) {
+                return;
+            }
+            byAddress.remove(old);
+            byOccupants.remove(old);
+            for (final Field field : Field.values()) {
+                final String value = field.valueOf(old);
+                if (value != null) {
+                    final Map<String, Set<String>> index = trigrams.get(field);
+                    for (final String trigram : trigramsOf(value)) {
+                        final Set<String> names = index.get(trigram);
+                        if (names != null && names.remove(roomName) && names.isEmpty()) {
+                            index.remove(trigram);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the distinct trigrams of a text, case-insensitively.
+     *
+     * @param text the text from which to obtain trigrams.
+     * @return trigrams (empty if the text is shorter than three characters).
+     */
+    @Nonnull
+    static Set<String> trigramsOf(@Nonnull final String text)
+    {
+        if (text.length() < 3) {
+            return Collections.emptySet();
+        }
+        final char[] folded = new char[text.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+        }
+        final Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= folded.length; i++) {
+            result.add(new String(folded, i, 3));
+        }
+        return result;
+    }
+}
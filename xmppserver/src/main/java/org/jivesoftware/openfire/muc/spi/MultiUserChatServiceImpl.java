@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2016-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -62,6 +62,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -142,6 +143,12 @@ public class MultiUserChatServiceImpl implements Component, MultiUserChatService
      */
     private final LocalMUCRoomManager localMUCRoomManager;
 
+    /**
+     * Loads persistent rooms into memory in the background, while the service is starting. Null when no rooms are
+     * being preloaded.
+     */
+    private volatile MUCRoomPreloader preloader;
+
     /**
      * Responsible for maintaining the in-memory collection of MUCUsers for this service.
      */
@@ -1950,7 +1957,7 @@ public class MultiUserChatServiceImpl implements Component, MultiUserChatService
                     // Try to load the room's configuration from the database (if the room is
                     // persistent but was added to the DB after the server was started up or the
                     // room may be an old room that was not present in memory)
-                    MUCPersistenceManager.loadFromDB(room);
+                    loadFromDB(room);
                     loaded = true;
                 }
                 catch (final IllegalArgumentException e) {
@@ -2012,7 +2019,7 @@ public class MultiUserChatServiceImpl implements Component, MultiUserChatService
                         // Try to load the room's configuration from the database (if the room is
                         // persistent but was added to the DB after the server was started up or the
                         // room may be an old room that was not present in memory)
-                        MUCPersistenceManager.loadFromDB(room);
+                        loadFromDB(room);
                         loaded = true;
                         localMUCRoomManager.add(room);
                     }
@@ -2033,6 +2040,27 @@ public class MultiUserChatServiceImpl implements Component, MultiUserChatService
         return room;
     }
 
+    /**
+     * Loads the configuration of a room from the database, on demand. Such loads take priority over rooms that are
+     * being preloaded.
+     *
+     * @param room the room for which to load the configuration.
+     * @throws IllegalArgumentException when the room does not exist in the database.
+     */
+    private void loadFromDB(@Nonnull final MUCRoom room) {
+        final MUCRoomPreloader preloader = this.preloader;
+        if (preloader == null || preloader.isFinished()) {
+            MUCPersistenceManager.loadFromDB(room);
+            return;
+        }
+        preloader.onDemandLoadStarted();
+        try {
+            MUCPersistenceManager.loadFromDB(room);
+        } finally {
+            preloader.onDemandLoadFinished();
+        }
+    }
+
     @Override
     public List<MUCRoom> getActiveChatRooms() {
         return new ArrayList<>(localMUCRoomManager.getAll());
@@ -2058,9 +2086,15 @@ public class MultiUserChatServiceImpl implements Component, MultiUserChatService
     // method would have to lock _every_ room, the cost of acquiring all locks seem to outweigh the benefit.
     @Override
     public Collection<MUCRoomSearchInfo> getAllRoomSearchInfo() {
-        // Base the result for all rooms that are in memory, then complement with rooms in the database that haven't
-        // been added yet (to catch all non-active rooms);
-        return getActiveAndInactiveRooms().stream().map(MUCRoomSearchInfo::new).collect(Collectors.toList());
+        // The search index holds information for all rooms that are in memory, complemented with rooms in the database
+        // that haven't been loaded (to catch all non-active rooms), without loading those rooms.
+        return searchRooms(Collections.emptySet(), Collections.emptyList(), room -> true, null);
+    }
+
+    @Nonnull
+    @Override
+    public List<MUCRoomSearchInfo> searchRooms(@Nonnull final Set<MUCRoomSearchIndex.Field> fields, @Nonnull final Collection<String> terms, @Nonnull final Predicate<MUCRoomSearchInfo> filter, @Nullable final Comparator<MUCRoomSearchInfo> order) {
+        return localMUCRoomManager.getSearchIndex().search(fields, terms, filter, order);
     }
 
     /**
@@ -2101,6 +2135,11 @@ public class MultiUserChatServiceImpl implements Component, MultiUserChatService
         final Lock lock = localMUCRoomManager.getLock(roomName);
         lock.lock();
         try {
+            final MUCRoomPreloader preloader = this.preloader;
+            if (preloader != null) {
+                // Prevent the preloader from resurrecting the room.
+                preloader.onRoomRemoved(roomName);
+            }
             final MUCRoom room = localMUCRoomManager.remove(roomName);
             if (room != null) {
                 Log.debug("removing chat room:" + roomName + "|" + room.getClass().getName());
@@ -2741,18 +2780,20 @@ public class MultiUserChatServiceImpl implements Component, MultiUserChatService
             if (ClusterManager.isClusteringEnabled()) {
                 Log.warn("Preloading MUC rooms when clustering is enabled can lead to a lot of duplicated database overhead. Consider disabling MUC room preloading.");
             }
-            // Load all the persistent rooms to memory
-            final Instant cutoff = Instant.now().minus(Duration.ofDays(preloadDays));
-            for (final MUCRoom room : MUCPersistenceManager.loadRoomsFromDB(this, Date.from(cutoff))) {
-                localMUCRoomManager.add(room);
-
-                // Start FMUC, if desired.
-                room.getFmucHandler().applyConfigurationChanges();
-            }
+            // Load all the persistent rooms to memory, in the background.
+            final Date cutoff = Date.from(Instant.now().minus(Duration.ofDays(preloadDays)));
+            final MUCRoomPreloader preloader = new MUCRoomPreloader(chatServiceName, localMUCRoomManager, (afterRoomID, batchSize) -> MUCPersistenceManager.loadRoomBatchFromDB(this, cutoff, afterRoomID, batchSize));
+            this.preloader = preloader;
+            TaskEngine.getInstance().submit(preloader);
         }
     }
 
     private void stop() {
+        final MUCRoomPreloader preloader = this.preloader;
+        if (preloader != null) {
+            preloader.cancel();
+            this.preloader = null;
+        }
         XMPPServer.getInstance().getIQDiscoItemsHandler().removeServerItemsProvider(this);
         XMPPServer.getInstance().getIQDiscoInfoHandler().removeServerNodeInfoProvider(this.getServiceDomain());
         // Remove the route to this service
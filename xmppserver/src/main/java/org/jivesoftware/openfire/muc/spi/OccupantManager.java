@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2021-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2021-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -35,6 +35,7 @@ import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
@@ -137,6 +138,42 @@ public class OccupantManager implements MUCEventListener
     @GuardedBy("mutex")
     private final ConcurrentMap<JID, Set<Occupant>> federatedOccupants = new ConcurrentHashMap<>();
 
+    /**
+     * Secondary index of {@link #localOccupantsByNode}, used to find the occupants of a room without iterating over all
+     * occupants. Maps room names to the occupants of that room, grouped by the cluster node that they're connected to.
+     *
+     * Modifications are made under guard of the write lock of {@link #mutex}. As the collections are thread-safe, reads
+     * can be done without holding a lock.
+     */
+    @Nonnull
+    private final ConcurrentMap<String, ConcurrentMap<NodeID, Set<Occupant>>> localOccupantsByRoom = new ConcurrentHashMap<>();
+
+    /**
+     * Secondary index of {@link #nodeByLocalOccupant}, used to find the occupants of a user without iterating over all
+     * occupants. Maps 'real JIDs' to the occupants of that user (on any cluster node).
+     *
+     * Modifications are made under guard of the write lock of {@link #mutex}. As the collections are thread-safe, reads
+     * can be done without holding a lock.
+     */
+    @Nonnull
+    private final ConcurrentMap<JID, Set<Occupant>> localOccupantsByRealJID = new ConcurrentHashMap<>();
+
+    /**
+     * Secondary index of {@link #federatedOccupants}, used to find the federated occupants of a room without iterating
+     * over all occupants.
+     *
+     * Modifications are made under guard of the write lock of {@link #mutex}. As the collections are thread-safe, reads
+     * can be done without holding a lock.
+     */
+    @Nonnull
+    private final ConcurrentMap<String, Set<Occupant>> federatedOccupantsByRoom = new ConcurrentHashMap<>();
+
+    /**
+     * The amount of occupants in {@link #federatedOccupants}.
+     */
+    @Nonnull
+    private final AtomicInteger federatedOccupantCount = new AtomicInteger();
+
     /**
      * A mutex that guards access to the occupantsByNode and nodeByOccupant collections.
      */
@@ -197,7 +234,13 @@ public class OccupantManager implements MUCEventListener
             if (newOccupant != null) {
                 localOccupantsByNode.computeIfAbsent(nodeID, (n) -> new HashMap<>())
                     .computeIfAbsent(newOccupant.getRealJID(), (s) -> new HashSet<>()).add(newOccupant);
-                nodeByLocalOccupant.put(newOccupant, nodeID);
+                final NodeID previousNodeID = nodeByLocalOccupant.put(newOccupant, nodeID);
+                if (previousNodeID != null && !previousNodeID.equals(nodeID)) {
+                    removeFromIndex(localOccupantsByRoom, newOccupant.getRoomName(), previousNodeID, newOccupant);
+                }
+                localOccupantsByRoom.computeIfAbsent(newOccupant.getRoomName(), (r) -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(nodeID, (n) -> ConcurrentHashMap.newKeySet()).add(newOccupant);
+                localOccupantsByRealJID.computeIfAbsent(newOccupant.getRealJID(), (j) -> ConcurrentHashMap.newKeySet()).add(newOccupant);
             }
 
             Log.debug("Replaced non-federated occupant {} with {} for node {}", oldOccupant, newOccupant, nodeID);
@@ -231,7 +274,12 @@ public class OccupantManager implements MUCEventListener
                     }
                 }
             }
-            nodeByLocalOccupant.remove(oldOccupant);
+            final NodeID registeredNodeID = nodeByLocalOccupant.remove(oldOccupant);
+            removeFromIndex(localOccupantsByRoom, oldOccupant.getRoomName(), nodeID, oldOccupant);
+            if (registeredNodeID != null && !registeredNodeID.equals(nodeID)) {
+                removeFromIndex(localOccupantsByRoom, oldOccupant.getRoomName(), registeredNodeID, oldOccupant);
+            }
+            removeFromIndex(localOccupantsByRealJID, oldOccupant.getRealJID(), oldOccupant);
 
             // When an occupant is being pinged, but removed from the node, cancel the ping.
             final TimerTask pendingPingTask = oldOccupant.getPendingPingTask();
@@ -271,9 +319,12 @@ public class OccupantManager implements MUCEventListener
 
         if (oldOccupant != null) {
             federatedOccupants.computeIfPresent(oldOccupant.getRealJID(), (jid, occupants) -> {
-                occupants.remove(oldOccupant);
+                if (occupants.remove(oldOccupant)) {
+                    federatedOccupantCount.decrementAndGet();
+                }
                 return occupants.isEmpty() ? null : occupants; // Delete if no occupants are left.
             });
+            removeFromIndex(federatedOccupantsByRoom, oldOccupant.getRoomName(), oldOccupant);
 
             // When an occupant is being pinged, but removed from the node, cancel the ping.
             final TimerTask pendingPingTask = oldOccupant.getPendingPingTask();
@@ -284,10 +335,46 @@ public class OccupantManager implements MUCEventListener
             }
         }
         if (newOccupant != null) {
-            federatedOccupants.computeIfAbsent(newOccupant.getRealJID(), (n) -> new HashSet<>()).add(newOccupant);
+            if (federatedOccupants.computeIfAbsent(newOccupant.getRealJID(), (n) -> new HashSet<>()).add(newOccupant)) {
+                federatedOccupantCount.incrementAndGet();
+            }
+            federatedOccupantsByRoom.computeIfAbsent(newOccupant.getRoomName(), (r) -> ConcurrentHashMap.newKeySet()).add(newOccupant);
         }
     }
 
+    /**
+     * Removes an occupant from a secondary index, removing entries that become empty.
+     *
+     * @param index The index to remove the occupant from.
+     * @param key The key under which the occupant is indexed.
+     * @param occupant The occupant to remove.
+     */
+    @GuardedBy("mutex")
+    private static <K> void removeFromIndex(@Nonnull final ConcurrentMap<K, Set<Occupant>> index, @Nonnull final K key, @Nonnull final Occupant occupant)
+    {
+        index.computeIfPresent(key, (k, occupants) -> {
+            occupants.remove(occupant);
+            return occupants.isEmpty() ? null : occupants;
+        });
+    }
+
+    /**
+     * Removes an occupant from the (per node) index of occupants by room, removing entries that become empty.
+     *
+     * @param index The index to remove the occupant from.
+     * @param roomName The name of the room of the occupant.
+     * @param nodeID The cluster node under which the occupant is indexed.
+     * @param occupant The occupant to remove.
+     */
+    @GuardedBy("mutex")
+    private static void removeFromIndex(@Nonnull final ConcurrentMap<String, ConcurrentMap<NodeID, Set<Occupant>>> index, @Nonnull final String roomName, @Nonnull final NodeID nodeID, @Nonnull final Occupant occupant)
+    {
+        index.computeIfPresent(roomName, (r, occupantsByNode) -> {
+            removeFromIndex(occupantsByNode, nodeID, occupant);
+            return occupantsByNode.isEmpty() ? null : occupantsByNode;
+        });
+    }
+
     /**
      * Verifies that a JID relates to the service for which this instance is operating, by comparing its domain part.
      *
@@ -500,28 +587,17 @@ public class OccupantManager implements MUCEventListener
     {
         Log.debug("Processing task to remove everyone with nick {} from room {}", task.getNickname(), task.getRoomName());
 
-        final Set<Occupant> localOccupantsToKick;
-        final Set<Occupant> federatedOccupantsToKick;
-        mutex.readLock().lock();
+        mutex.writeLock().lock();
         try {
-            localOccupantsToKick = localOccupantsByNode.values().stream().map(Map::values)
-                .flatMap(Collection::stream)
+            final Set<Occupant> localOccupantsToKick = localOccupantsByRoom.getOrDefault(task.getRoomName(), new ConcurrentHashMap<>()).values().stream()
                 .flatMap(Collection::stream)
                 .filter(o -> o.getNickname().equals(task.getNickname()))
-                .filter(o -> o.getRoomName().equals(task.getRoomName()))
                 .collect(Collectors.toSet());
 
-            federatedOccupantsToKick = federatedOccupants.values().stream()
-                .flatMap(Collection::stream)
+            final Set<Occupant> federatedOccupantsToKick = federatedOccupantsByRoom.getOrDefault(task.getRoomName(), Collections.emptySet()).stream()
                 .filter(o -> o.getNickname().equals(task.getNickname()))
-                .filter(o -> o.getRoomName().equals(task.getRoomName()))
                 .collect(Collectors.toSet());
-        } finally {
-            mutex.readLock().unlock(); // A ReentrantReadWriteLock read lock cannot be upgraded to a write lock. First release the read lock.
-        }
 
-        mutex.writeLock().lock();
-        try {
             localOccupantsToKick.forEach(o -> replaceLocalOccupant(o, null, null));
             federatedOccupantsToKick.forEach(o -> replaceFederatedOccupant(o, null));
         } finally {
@@ -590,19 +666,19 @@ public class OccupantManager implements MUCEventListener
     @Nonnull
     public Set<String> roomNamesForAddress(@Nonnull final JID realJID)
     {
+        if (XMPPServer.getInstance().isLocal(realJID)) {
+            // Uses a thread-safe index, that does not require a lock to be read.
+            return localOccupantsByRealJID.getOrDefault(realJID, Collections.emptySet()).stream()
+                .map(occupant -> occupant.roomName)
+                .collect(Collectors.toSet());
+        }
+
         mutex.readLock().lock();
         try {
-            if (XMPPServer.getInstance().isLocal(realJID)) {
-                return nodeByLocalOccupant.keySet().stream()
-                    .filter(occupant -> realJID.equals(occupant.getRealJID()))
-                    .map(occupant -> occupant.roomName)
-                    .collect(Collectors.toSet());
-            } else {
-                return federatedOccupants.getOrDefault(realJID, new HashSet<>()).stream()
-                    .filter(occupant -> realJID.equals(occupant.getRealJID()))
-                    .map(occupant -> occupant.roomName)
-                    .collect(Collectors.toSet());
-            }
+            return federatedOccupants.getOrDefault(realJID, new HashSet<>()).stream()
+                .filter(occupant -> realJID.equals(occupant.getRealJID()))
+                .map(occupant -> occupant.roomName)
+                .collect(Collectors.toSet());
         } finally {
             mutex.readLock().unlock();
         }
@@ -709,12 +785,8 @@ public class OccupantManager implements MUCEventListener
      */
     public int numberOfUniqueUsers()
     {
-        mutex.readLock().lock();
-        try {
-            return nodeByLocalOccupant.size() + federatedOccupants.values().stream().mapToInt(Collection::size).sum();
-        } finally {
-            mutex.readLock().unlock();
-        }
+        // Both values are maintained in thread-safe structures, that do not require a lock to be read.
+        return nodeByLocalOccupant.size() + federatedOccupantCount.get();
     }
 
     /**
@@ -765,61 +837,32 @@ public class OccupantManager implements MUCEventListener
     @Nonnull
     public Set<Occupant> occupantsForRoomByNode(@Nonnull final String roomName, @Nonnull final NodeID nodeID, final boolean includeFederated)
     {
-        mutex.readLock().lock();
-        try {
-            // TODO optimize this in a way that it does not need to iterate over all occupants.
-            final Set<Occupant> local = localOccupantsByNode.getOrDefault(nodeID, Collections.emptyMap()).values().stream().flatMap(Collection::stream)
-                .filter(occupant -> occupant.getRoomName().equals(roomName))
-                .collect(Collectors.toSet());
+        // Uses thread-safe indexes, that do not require a lock to be read.
+        final Set<Occupant> result = new HashSet<>(localOccupantsByRoom.getOrDefault(roomName, new ConcurrentHashMap<>()).getOrDefault(nodeID, Collections.emptySet()));
 
-            final Set<Occupant> result = new HashSet<>();
-            result.addAll(local);
-
-            if (includeFederated) {
-                final Set<Occupant> federated = federatedOccupants.values().stream().flatMap(Collection::stream)
-                    .filter(occupant -> occupant.getRoomName().equals(roomName))
-                    .collect(Collectors.toSet());
-                result.addAll(federated);
-            }
-
-            return result;
-        } finally {
-            mutex.readLock().unlock();
+        if (includeFederated) {
+            result.addAll(federatedOccupantsByRoom.getOrDefault(roomName, Collections.emptySet()));
         }
+
+        return result;
     }
 
     @Nonnull
     public Set<Occupant> occupantsForRoomExceptForNode(@Nonnull final String roomName, @Nonnull final NodeID nodeID, final boolean includeFederated)
     {
-        mutex.readLock().lock();
-        try {
-            // TODO optimize this in a way that it does not need to iterate over all occupants.
-            final Set<Occupant> result = new HashSet<>();
-            for (Map.Entry<NodeID, Map<JID, Set<Occupant>>> entry : localOccupantsByNode.entrySet()) {
-                if (entry.getKey().equals(nodeID)) {
-                    continue;
-                }
-                final Map<JID, Set<Occupant>> occupantsOnRemoteNode = entry.getValue();
-                for (final Set<Occupant> occupantsForJID : occupantsOnRemoteNode.values()) {
-                    for (final Occupant occupantForJID : occupantsForJID) {
-                        if (occupantForJID.getRoomName().equals(roomName)) {
-                            result.add(occupantForJID);
-                        }
-                    }
-                }
-            }
-
-            if (includeFederated) {
-                final Set<Occupant> federated = federatedOccupants.values().stream().flatMap(Collection::stream)
-                    .filter(occupant -> occupant.getRoomName().equals(roomName))
-                    .collect(Collectors.toSet());
-                result.addAll(federated);
+        // Uses thread-safe indexes, that do not require a lock to be read.
+        final Set<Occupant> result = new HashSet<>();
+        for (final Map.Entry<NodeID, Set<Occupant>> entry : localOccupantsByRoom.getOrDefault(roomName, new ConcurrentHashMap<>()).entrySet()) {
+            if (!entry.getKey().equals(nodeID)) {
+                result.addAll(entry.getValue());
             }
+        }
 
-            return result;
-        } finally {
-            mutex.readLock().unlock();
+        if (includeFederated) {
+            result.addAll(federatedOccupantsByRoom.getOrDefault(roomName, Collections.emptySet()));
         }
+
+        return result;
     }
 
     /**
@@ -892,6 +935,14 @@ public class OccupantManager implements MUCEventListener
             occupantsLeftOnThisNode.values().stream().flatMap(Collection::stream)
                 .forEach(o -> nodeByLocalOccupant.put(o, ownNodeID));
 
+            localOccupantsByRoom.clear();
+            localOccupantsByRealJID.clear();
+            occupantsLeftOnThisNode.values().stream().flatMap(Collection::stream).forEach(o -> {
+                localOccupantsByRoom.computeIfAbsent(o.getRoomName(), (r) -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(ownNodeID, (n) -> ConcurrentHashMap.newKeySet()).add(o);
+                localOccupantsByRealJID.computeIfAbsent(o.getRealJID(), (j) -> ConcurrentHashMap.newKeySet()).add(o);
+            });
+
             Log.debug("Reset occupants because we left the cluster");
             return occupantsRemoved;
         } finally {
@@ -948,13 +999,12 @@ public class OccupantManager implements MUCEventListener
         // When a room is destroyed, remove all registered occupants for that room.
         mutex.writeLock().lock();
         try {
-            nodeByLocalOccupant.entrySet().stream()
-                .filter(entry -> entry.getKey().getRoomName().equals(roomJID.getNode()))
-                .forEach(entry -> replaceLocalOccupant(entry.getKey(), null, entry.getValue()));
+            final Map<NodeID, Set<Occupant>> localOccupantsOfRoom = new HashMap<>();
+            localOccupantsByRoom.getOrDefault(roomJID.getNode(), new ConcurrentHashMap<>())
+                .forEach((nodeID, occupants) -> localOccupantsOfRoom.put(nodeID, new HashSet<>(occupants)));
+            localOccupantsOfRoom.forEach((nodeID, occupants) -> occupants.forEach(occupant -> replaceLocalOccupant(occupant, null, nodeID)));
 
-            federatedOccupants.values().stream()
-                .flatMap(Collection::stream)
-                .filter(occupant -> occupant.getRoomName().equals(roomJID.getNode()))
+            new HashSet<>(federatedOccupantsByRoom.getOrDefault(roomJID.getNode(), Collections.emptySet()))
                 .forEach(occupant -> replaceFederatedOccupant(occupant, null));
         } finally {
             mutex.writeLock().unlock();
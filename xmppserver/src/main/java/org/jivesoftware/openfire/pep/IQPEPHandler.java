@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -844,11 +844,19 @@ public class IQPEPHandler extends IQHandler implements ServerIdentitiesProvider,
                 for (final RosterItem item : roster.getRosterItems()) {
                     if (server.isLocal(item.getJid()) && (item.getSubStatus() == RosterItem.SUB_BOTH ||
                             item.getSubStatus() == RosterItem.SUB_TO)) {
+                        // Prevent loading the full service of every contact, if possible.
+                        if (PEPLastItemIndex.ENABLED.getValue() && PEPLastItemIndex.getInstance().sendLastPublishedItems(item.getJid().asBareJID(), availableSessionJID)) {
+                            continue;
+                        }
                         PEPService pepService = pepServiceManager.getPEPService(item.getJid().asBareJID());
                         if (pepService != null) {
                             pepService.getRootCollectionNode().getSubscriptions(availableSessionJID);
                             pepService.getRootCollectionNode().getAccessModel().canAccessItems(pepService.getRootCollectionNode(), availableSessionJID, availableSessionJID);
                             pepService.sendLastPublishedItems(availableSessionJID);
+                            if (PEPLastItemIndex.ENABLED.getValue()) {
+                                // An entry that exists, but cannot be used for this contact, does not need replacing.
+                                PEPLastItemIndex.getInstance().updateIfAbsent(pepService);
+                            }
                         }
                     }
                 }
@@ -0,0 +1,427 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.pep;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.QName;
+import org.jivesoftware.openfire.SessionManager;
+import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.openfire.entitycaps.EntityCapabilities;
+import org.jivesoftware.openfire.pubsub.CollectionNode;
+import org.jivesoftware.openfire.pubsub.LeafNode;
+import org.jivesoftware.openfire.pubsub.Node;
+import org.jivesoftware.openfire.pubsub.NodeSubscription;
+import org.jivesoftware.openfire.pubsub.PublishedItem;
+import org.jivesoftware.openfire.pubsub.PublishedItemElement;
+import org.jivesoftware.openfire.pubsub.models.AccessModel;
+import org.jivesoftware.openfire.roster.RosterItem;
+import org.jivesoftware.openfire.session.ClientSession;
+import org.jivesoftware.openfire.user.UserNotFoundException;
+import org.jivesoftware.util.SAXReaderUtil;
+import org.jivesoftware.util.StringUtils;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.XMPPDateTimeFormat;
+import org.jivesoftware.util.cache.Cache;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.jivesoftware.util.cache.CacheSizes;
+import org.jivesoftware.util.cache.Cacheable;
+import org.jivesoftware.util.cache.CannotCalculateSizeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Message;
+import org.xmpp.packet.PacketExtension;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A compact index of the last published items of PEP services, used to send these items to the contacts of a user
+ * when that user becomes available, without loading the full PEP services of each contact.
+ *
+ * An entry of the index is a snapshot of a PEP service, that is recorded when the service has been loaded. It contains
+ * the last published item of each node, and the addresses of the entities that are subscribed to the service. Any
+ * change to the service that affects the last published items, or the entities to which these are sent, removes the
+ * entry. The index is backed by a clustered cache, which makes entries and their removal visible to all cluster nodes.
+ *
+ * The index covers the configuration that is typical for PEP: nodes that use the 'presence' or 'open' access model,
+ * and subscriptions to the service that use default options. Services with other configuration are not recorded in the
+ * index: for these, the full service is to be used.
+ */
+public final class PEPLastItemIndex
+{
+    private static final Logger Log = LoggerFactory.getLogger(PEPLastItemIndex.class);
+
+    /**
+     * Controls if the last published items of PEP services are sent based on the index, on initial presence.
+     */
+    public static final SystemProperty<Boolean> ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.pep.lastitemindex.enabled")
+        .setDefaultValue(true)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum size (in characters) of the payload of an item that is recorded in the index. Items with larger
+     * payloads are sent using the full PEP service.
+     */
+    public static final SystemProperty<Integer> PAYLOAD_MAX_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.pep.lastitemindex.payload.maxsize")
+        .setDefaultValue(8192)
+        .setMinValue(0)
+        .setDynamic(true)
+        .build();
+
+    private static final PEPLastItemIndex INSTANCE = new PEPLastItemIndex();
+
+    public static PEPLastItemIndex getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Index entries, by the bare JID of the owner of the PEP service.
+     */
+    private final Cache<String, Entry> entries = CacheFactory.createCache("PEP Last Item Index");
+
+    private PEPLastItemIndex()
+    {
+    }
+
+    /**
+     * Records a snapshot of a PEP service in the index, replacing any existing entry for the service. Nothing is
+     * recorded for services that use configuration that the index does not cover.
+     *
+     * @param service the service to record.
+     */
+    public void update(@Nonnull final PEPService service)
+    {
+        if (!Entry.isApplicable(service)) {
+            return;
+        }
+        final String key = service.getAddress().toBareJID();
+        final Lock lock = entries.getLock(key);
+        lock.lock();
+        try {
+            // The snapshot is taken while holding the lock, for a concurrent invalidation to remove it after it is stored.
+            final Entry entry = Entry.of(service);
+            if (entry.applicable) {
+                entries.put(key, entry);
+            } else {
+                entries.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a snapshot of a PEP service in the index, unless the index already has an entry for the service.
+     *
+     * @param service the service to record.
+     * @see #update(PEPService)
+     */
+    public void updateIfAbsent(@Nonnull final PEPService service)
+    {
+        if (!entries.containsKey(service.getAddress().toBareJID())) {
+            update(service);
+        }
+    }
+
+    /**
+     * Removes the entry of a PEP service from the index. This is to be invoked after every change to the service that
+     * affects its last published items, or the entities to which these are sent.
+     *
+     * @param owner the owner of the PEP service.
+     */
+    public void invalidate(@Nonnull final JID owner)
+    {
+        final String key = owner.toBareJID();
+        final Lock lock = entries.getLock(key);
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Nullable
+    @VisibleForTesting
+    Entry get(@Nonnull final JID owner)
+    {
+        return entries.get(owner.toBareJID());
+    }
+
+    /**
+     * Sends the last published item of each node of a PEP service to an entity that has become available, as
+     * {@link PEPService#sendLastPublishedItems(JID)} would, without loading the service.
+     *
+     * When this method returns false, no notifications have been sent. The full service should then be used instead.
+     *
+     * @param owner the owner of the PEP service.
+     * @param recipient the entity that has become available.
+     * @return true if the index was used, false if the full service is to be used.
+     */
+    public boolean sendLastPublishedItems(@Nonnull final JID owner, @Nonnull final JID recipient)
+    {
+        final Entry entry = get(owner);
+        if (entry == null || !entry.applicable) {
+            return false;
+        }
+
+        final String recipientBareJID = recipient.toBareJID();
+        if (recipientBareJID.equals(owner.toBareJID()) || entry.otherSubscribers.contains(recipientBareJID)) {
+            return false;
+        }
+        if (!entry.subscribers.contains(recipientBareJID) || entry.items.isEmpty()) {
+            // Nothing is sent to entities that are not subscribed to the service.
+            return true;
+        }
+
+        final XMPPServer server = XMPPServer.getInstance();
+        if (!server.isLocal(recipient)) {
+            return false;
+        }
+
+        // The owner of each (presence-based) node is the owner of the service. Their roster determines access.
+        final boolean presenceAuthorized;
+        try {
+            final RosterItem rosterItem = server.getRosterManager().getRoster(owner.getNode()).getRosterItem(recipient);
+            presenceAuthorized = rosterItem.getSubStatus() == RosterItem.SUB_BOTH || rosterItem.getSubStatus() == RosterItem.SUB_FROM;
+        } catch (UserNotFoundException e) {
+            return false;
+        }
+
+        final List<JID> deliveryAddresses = new ArrayList<>();
+        for (final ClientSession session : SessionManager.getInstance().getSessions(recipient.getNode())) {
+            if (!session.isClosed()) {
+                deliveryAddresses.add(session.getAddress());
+            }
+        }
+
+        final JID recipientJID = new JID(recipientBareJID);
+        final List<Message> notifications = new ArrayList<>();
+        for (final LastItem item : entry.items) {
+            if (!item.openAccess && !presenceAuthorized) {
+                return false;
+            }
+            if (item.publisher == null || !owner.toBareJID().equals(new JID(item.publisher).toBareJID())) {
+                return false;
+            }
+            Message notification = null;
+            for (final JID deliveryAddress : deliveryAddresses) {
+                final EntityCapabilities entityCaps = server.getEntityCapabilitiesManager().getEntityCapabilities(deliveryAddress);
+                if (entityCaps != null && !entityCaps.containsFeature(item.nodeId + "+notify")) {
+                    continue;
+                }
+                if (!presenceAuthorized) {
+                    continue;
+                }
+                if (notification == null) {
+                    if (item.payloadOmitted) {
+                        return false;
+                    }
+                    notification = item.toNotification(owner, recipientJID);
+                }
+                final Message extendedMessage = notification.createCopy();
+                extendedMessage.setTo(deliveryAddress);
+                notifications.add(extendedMessage);
+            }
+        }
+
+        Log.trace("Sending {} notification(s) of last published items of service '{}' to '{}' based on the index.", notifications.size(), owner, recipient);
+        for (final Message notification : notifications) {
+            server.getPacketRouter().route(notification);
+        }
+        return true;
+    }
+
+    /**
+     * The last published item of a node.
+     */
+    @VisibleForTesting
+    record LastItem(@Nonnull String nodeId, @Nonnull String itemId, @Nullable String publisher, long creationDate,
+                    @Nullable String payload, boolean payloadOmitted, boolean itemRequired, boolean payloadDelivered,
+                    boolean openAccess) implements Serializable
+    {
+        @Nonnull
+        private Message toNotification(@Nonnull final JID owner, @Nonnull final JID recipient)
+        {
+            final Message notification = new Message();
+            final Element event = notification.getElement().addElement("event", "http://jabber.org/protocol/pubsub#event");
+            final Element items = event.addElement("items");
+            items.addAttribute("node", nodeId);
+            final String payloadXML = payloadDelivered ? payload : null;
+            final Element item;
+            if (payloadXML != null && PublishedItem.isSelfContained(payloadXML)) {
+                // Include the payload as-is, rather than parsing it.
+                item = new PublishedItemElement(QName.get("item", items.getNamespace()), payloadXML);
+                items.add(item);
+            } else {
+                item = items.addElement("item");
+                if (payloadXML != null) {
+                    try {
+                        item.add(SAXReaderUtil.readRootElement(payloadXML));
+                    } catch (ExecutionException e) {
+                        Log.warn("Unable to parse the payload of item '{}' of node '{}' of service '{}'.", itemId, nodeId, owner, e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            if (itemRequired) {
+                item.addAttribute("id", itemId);
+            }
+            notification.getElement().addElement("delay", "urn:xmpp:delay").addAttribute("stamp", XMPPDateTimeFormat.format(new Date(creationDate)));
+            notification.setTo(recipient);
+            notification.setFrom(owner);
+            notification.setID(StringUtils.randomString(8));
+
+            final Element addresses = DocumentHelper.createElement(QName.get("addresses", "http://jabber.org/protocol/address"));
+            final Element address = addresses.addElement("address");
+            address.addAttribute("type", "replyto");
+            address.addAttribute("jid", publisher);
+            notification.addExtension(new PacketExtension(addresses));
+            return notification;
+        }
+    }
+
+    /**
+     * A snapshot of a PEP service.
+     *
+     * @param applicable false if the service uses configuration that the index does not cover.
+     * @param subscribers bare JIDs of entities that are subscribed to the service using default subscription options.
+     * @param otherSubscribers bare JIDs of entities that have any other subscription to the service.
+     * @param items the last published item of each node that has items.
+     */
+    @VisibleForTesting
+    record Entry(boolean applicable, @Nonnull Set<String> subscribers, @Nonnull Set<String> otherSubscribers,
+                 @Nonnull List<LastItem> items) implements Cacheable
+    {
+        /**
+         * Checks if the configuration of a service is covered by the index, without taking a snapshot of it.
+         */
+        static boolean isApplicable(@Nonnull final PEPService service)
+        {
+            final CollectionNode rootNode = service.getRootCollectionNode();
+            if (rootNode.isPresenceBasedDelivery()) {
+                return false;
+            }
+            for (final Node child : rootNode.getNodes()) {
+                if (child instanceof LeafNode node && node.getLastPublishedItem() != null && !isApplicable(service, node)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isApplicable(@Nonnull final PEPService service, @Nonnull final LeafNode node)
+        {
+            final AccessModel accessModel = node.getAccessModel();
+            return (accessModel == AccessModel.presence || accessModel == AccessModel.open)
+                && node.getOwners().equals(List.of(service.getAddress()));
+        }
+
+        @Nonnull
+        static Entry of(@Nonnull final PEPService service)
+        {
+            final CollectionNode rootNode = service.getRootCollectionNode();
+            boolean applicable = !rootNode.isPresenceBasedDelivery();
+
+            final Set<String> subscribers = new HashSet<>();
+            final Set<String> otherSubscribers = new HashSet<>();
+            for (final NodeSubscription subscription : rootNode.getAllSubscriptions()) {
+                final String bareJID = subscription.getJID().toBareJID();
+                if (isDefault(subscription)) {
+                    subscribers.add(bareJID);
+                } else {
+                    otherSubscribers.add(bareJID);
+                }
+            }
+            subscribers.removeAll(otherSubscribers);
+
+            final List<LastItem> items = new ArrayList<>();
+            final int payloadMaxSize = PAYLOAD_MAX_SIZE.getValue();
+            for (final Node child : rootNode.getNodes()) {
+                if (!(child instanceof LeafNode node)) {
+                    continue;
+                }
+                final PublishedItem lastItem = node.getLastPublishedItem();
+                if (lastItem == null) {
+                    continue;
+                }
+                final AccessModel accessModel = node.getAccessModel();
+                if (!isApplicable(service, node)) {
+                    applicable = false;
+                }
+                final String payloadXML = lastItem.getPayloadXML();
+                final boolean payloadOmitted = payloadXML != null && payloadXML.length() > payloadMaxSize;
+                items.add(new LastItem(node.getUniqueIdentifier().getNodeId(), lastItem.getID(),
+                    lastItem.getPublisher() == null ? null : lastItem.getPublisher().toString(),
+                    lastItem.getCreationDate().getTime(), payloadOmitted ? null : payloadXML, payloadOmitted,
+                    node.isItemRequired(), node.isPayloadDelivered(), accessModel == AccessModel.open));
+            }
+            return new Entry(applicable, Set.copyOf(subscribers), Set.copyOf(otherSubscribers), List.copyOf(items));
+        }
+
+        /**
+         * Checks if a subscription to the root node of a service uses options for which notifications are sent to all
+         * sessions of the subscriber, unconditionally.
+         */
+        private static boolean isDefault(@Nonnull final NodeSubscription subscription)
+        {
+            return subscription.getJID().getResource() == null
+                && subscription.isActive()
+                && subscription.getExpire() == null
+                && subscription.shouldDeliverNotifications()
+                && subscription.getPresenceStates().isEmpty()
+                && subscription.getKeyword() == null
+                && subscription.getType() == NodeSubscription.Type.items
+                && !subscription.isIncludingBody();
+        }
+
+        @Override
+        public int getCachedSize() throws CannotCalculateSizeException
+        {
+            int size = CacheSizes.sizeOfObject();
+            size += CacheSizes.sizeOfBoolean();
+            size += CacheSizes.sizeOfCollection(subscribers);
+            size += CacheSizes.sizeOfCollection(otherSubscribers);
+            size += CacheSizes.sizeOfObject();
+            for (final LastItem item : items) {
+                size += CacheSizes.sizeOfObject();
+                size += CacheSizes.sizeOfString(item.nodeId);
+                size += CacheSizes.sizeOfString(item.itemId);
+                size += CacheSizes.sizeOfString(item.publisher);
+                size += CacheSizes.sizeOfLong();
+                size += CacheSizes.sizeOfString(item.payload);
+                size += CacheSizes.sizeOfBoolean() * 4;
+            }
+            return size;
+        }
+    }
+}
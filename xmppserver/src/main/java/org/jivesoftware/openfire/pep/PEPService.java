@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -35,7 +35,9 @@ import org.jivesoftware.openfire.user.UserNotFoundException;
 import org.jivesoftware.util.LocaleUtils;
 import org.jivesoftware.util.StringUtils;
 import org.jivesoftware.util.XMPPDateTimeFormat;
+import org.jivesoftware.util.cache.CacheSizes;
 import org.jivesoftware.util.cache.Cacheable;
+import org.jivesoftware.util.cache.CannotCalculateSizeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xmpp.packet.JID;
@@ -54,8 +56,8 @@ import java.util.stream.Collectors;
  * A PEPService is a {@link PubSubService} for use with XEP-0163: "Personal Eventing via
  * Pubsub" Version 1.0
  * 
- * Note: Although this class implements {@link Cacheable}, instances should only be 
- * cached in caches that have time-based (as opposed to size-based) eviction policies.
+ * Note: Although this class implements {@link Cacheable}, instances should not be cached in caches that evict
+ * entries. Instead, the lifecycle of instances is managed by {@link PEPServiceManager}.
  * 
  * @author Armando Jagucki 
  */
@@ -78,6 +80,11 @@ public class PEPService implements PubSubService, Cacheable {
      */
     private final Map<Node.UniqueIdentifier, Node> nodes = new ConcurrentHashMap<>();
 
+    /**
+     * Set while the nodes of this service are being loaded from the database.
+     */
+    private volatile boolean loading = false;
+
     /**
      * The packet router for the server.
      */
@@ -172,24 +179,39 @@ public class PEPService implements PubSubService, Cacheable {
     }
 
     public void initialize() {
-        // Load nodes to memory
-        XMPPServer.getInstance().getPubSubModule().getPersistenceProvider().loadNodes(this);
-        // Ensure that we have a root collection node
-        if (nodes.isEmpty()) {
-            // Create root collection node
-            rootCollectionNode = new CollectionNode(this.getUniqueIdentifier(), null, this.serviceOwner.toString(), this.serviceOwner, collectionDefaultConfiguration);
-
-            // Save new root node
-            rootCollectionNode.saveToDB();
-
-            // Add the creator as the node owner
-            rootCollectionNode.addOwner(this.serviceOwner);
-        }
-        else {
-            rootCollectionNode = (CollectionNode) getNode(this.serviceOwner.toString());
+        loading = true;
+        try {
+            // Load nodes to memory
+            XMPPServer.getInstance().getPubSubModule().getPersistenceProvider().loadNodes(this);
+            // Ensure that we have a root collection node
+            if (nodes.isEmpty()) {
+                // Create root collection node
+                rootCollectionNode = new CollectionNode(this.getUniqueIdentifier(), null, this.serviceOwner.toString(), this.serviceOwner, collectionDefaultConfiguration);
+
+                // Save new root node
+                rootCollectionNode.saveToDB();
+
+                // Add the creator as the node owner
+                rootCollectionNode.addOwner(this.serviceOwner);
+            }
+            else {
+                rootCollectionNode = (CollectionNode) getNode(this.serviceOwner.toString());
+            }
+        } finally {
+            loading = false;
         }
     }
 
+    /**
+     * Checks if this service is being initialized. While loading, the state of the service is restored rather than
+     * changed, which means that nothing that is derived from that state needs to be invalidated.
+     *
+     * @return true if the service is being initialized.
+     */
+    public boolean isLoading() {
+        return loading;
+    }
+
     @Override
     public void addNode(Node node) {
         nodes.put(node.getUniqueIdentifier(), node);
@@ -536,13 +558,10 @@ public class PEPService implements PubSubService, Cacheable {
             Element event = notification.getElement().addElement("event", "http://jabber.org/protocol/pubsub#event");
             Element items = event.addElement("items");
             items.addAttribute("node", leafLastPublishedItem.getNodeID());
-            Element item = items.addElement("item");
+            Element item = leafLastPublishedItem.addItemElement(items, leafLastPublishedItem.getNode().isPayloadDelivered());
             if (leafLastPublishedItem.getNode().isItemRequired()) {
                 item.addAttribute("id", leafLastPublishedItem.getID());
             }
-            if (leafLastPublishedItem.getNode().isPayloadDelivered() && leafLastPublishedItem.getPayload() != null) {
-                item.add(leafLastPublishedItem.getPayload().createCopy());
-            }
             // Add a message body (if required)
             if (subscription != null && subscription.isIncludingBody()) {
                 notification.setBody(LocaleUtils.getLocalizedString("pubsub.notification.message.body"));
@@ -564,9 +583,26 @@ public class PEPService implements PubSubService, Cacheable {
         return adHocCommandManager;
     }
 
+    /**
+     * Returns an approximation of the memory used by this service, which is dominated by its nodes (including their
+     * affiliates and subscriptions) and the presence information of its subscribers.
+     *
+     * @return a size, in bytes.
+     */
     @Override
     public int getCachedSize() {
-        // Rather arbitrary. Don't use this for size-based eviction policies!
-        return 600;
+        int size = 600; // The service itself, its default node configurations and its ad-hoc command manager.
+        for (final Node node : nodes.values()) {
+            try {
+                size += node.getCachedSize();
+            } catch (CannotCalculateSizeException e) {
+                Log.debug("Unable to calculate the size of node {}", node.getUniqueIdentifier(), e);
+                size += 600;
+            }
+        }
+        for (final Map<JID, String> presences : barePresences.values()) {
+            size += CacheSizes.sizeOfObject() + presences.size() * (CacheSizes.sizeOfObject() * 2 + CacheSizes.sizeOfString("available"));
+        }
+        return size;
     }
 }
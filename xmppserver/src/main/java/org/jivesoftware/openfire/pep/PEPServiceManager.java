@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2017-2022 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,22 +15,35 @@
  */
 package org.jivesoftware.openfire.pep;
 
+import com.google.common.annotations.VisibleForTesting;
+import org.jivesoftware.openfire.SessionManager;
 import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.entitycaps.EntityCapabilities;
 import org.jivesoftware.openfire.entitycaps.EntityCapabilitiesListener;
 import org.jivesoftware.openfire.pubsub.*;
 import org.jivesoftware.openfire.user.UserManager;
 import org.jivesoftware.util.CacheableOptional;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
 import org.jivesoftware.util.cache.Cache;
 import org.jivesoftware.util.cache.CacheFactory;
+import org.jivesoftware.util.cache.CannotCalculateSizeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xmpp.packet.IQ;
 import org.xmpp.packet.JID;
 
 import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
@@ -46,12 +59,45 @@ public class PEPServiceManager implements EntityCapabilitiesListener {
     public static final Logger Log = LoggerFactory
             .getLogger(PEPServiceManager.class);
 
+    /**
+     * The duration after which the PEP service of a user that is offline is removed from memory, if it has not been
+     * used during that time.
+     */
+    public static final SystemProperty<Duration> IDLE_TIMEOUT = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.pep.service.idle.timeout")
+        .setDefaultValue(Duration.ofMinutes(30))
+        .setChronoUnit(ChronoUnit.MINUTES)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The amount of memory (in bytes) that PEP services can occupy. When exceeded, services of users that are offline
+     * are removed from memory, least recently used first.
+     */
+    public static final SystemProperty<Long> MEMORY_BUDGET = SystemProperty.Builder.ofType(Long.class)
+        .setKey("xmpp.pep.service.memory.budget")
+        .setDefaultValue(64L * 1024 * 1024)
+        .setMinValue(0L)
+        .setDynamic(true)
+        .build();
+
     /**
      * Cache of PEP services. Table, Key: bare JID; Value: PEPService
+     *
+     * Entries are not evicted by the cache, but by this manager (see {@link #evictServices()}).
      */
-    private final Cache<JID, CacheableOptional<PEPService>> pepServices = CacheFactory
+    @VisibleForTesting
+    final Cache<JID, CacheableOptional<PEPService>> pepServices = CacheFactory
         .createLocalCache("PEPServiceManager");
 
+    /**
+     * The instant (in milliseconds since the epoch) at which each entry of {@link #pepServices} was last accessed.
+     */
+    @VisibleForTesting
+    final Map<JID, Long> lastAccessed = new ConcurrentHashMap<>();
+
+    private TimerTask evictionTask;
+
     private PubSubEngine pubSubEngine = null;
 
     public void initialize() {
@@ -135,6 +181,7 @@ public class PEPServiceManager implements EntityCapabilitiesListener {
         final Lock lock = pepServices.getLock(jid);
         lock.lock();
         try {
+            lastAccessed.put(jid, System.currentTimeMillis());
             if (pepServices.containsKey(jid)) {
                 // lookup in cache
                 if ( pepServices.get(jid).isAbsent() && autoCreate ) {
@@ -196,6 +243,7 @@ public class PEPServiceManager implements EntityCapabilitiesListener {
             if (pepService == null) {
                 pepService = new PEPService(XMPPServer.getInstance(), bareJID);
                 pepServices.put(bareJID, CacheableOptional.of(pepService));
+                lastAccessed.put(bareJID, System.currentTimeMillis());
                 pepService.initialize();
 
                 Log.debug("PEPService created for: '{}'", bareJID);
@@ -244,6 +292,8 @@ public class PEPServiceManager implements EntityCapabilitiesListener {
 
             // Remove from cache if it was in.
             pepServices.remove(address).get();
+            lastAccessed.remove(address);
+            PEPLastItemIndex.getInstance().invalidate(address);
             Log.debug("PEPService destroyed for: '{}'", address);
         } finally {
             lock.unlock();
@@ -257,10 +307,25 @@ public class PEPServiceManager implements EntityCapabilitiesListener {
     public void start() {
         Log.debug("Starting...");
         pubSubEngine = new PubSubEngine(XMPPServer.getInstance().getPacketRouter());
+        evictionTask = new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    evictServices();
+                } catch (Throwable t) {
+                    Log.warn("An unexpected exception occurred while removing PEP services from memory.", t);
+                }
+            }
+        };
+        TaskEngine.getInstance().schedule(evictionTask, Duration.ofMinutes(1), Duration.ofMinutes(1));
     }
 
     public void stop() {
         Log.debug("Stopping...");
+        if (evictionTask != null) {
+            TaskEngine.getInstance().cancelScheduledTask(evictionTask);
+            evictionTask = null;
+        }
         for (final CacheableOptional<PEPService> service : pepServices.values()) {
             if (service.isPresent()) {
                 pubSubEngine.shutdown(service.get());
@@ -278,6 +343,107 @@ public class PEPServiceManager implements EntityCapabilitiesListener {
         return pepServices.get(owner.asBareJID()) != null;
     }
 
+    /**
+     * Removes PEP services from memory that are not in use. Services of users that are online are retained. Other
+     * services are removed when they have not been accessed for {@link #IDLE_TIMEOUT}, or, when all services together
+     * exceed {@link #MEMORY_BUDGET}, in order of least recent access, until the budget is met.
+     *
+     * Services that are removed are loaded again when they are next accessed.
+     */
+    @VisibleForTesting
+    void evictServices()
+    {
+        final long now = System.currentTimeMillis();
+        final long idleTimeout = IDLE_TIMEOUT.getValue().toMillis();
+
+        long totalSize = 0;
+        int evicted = 0;
+        final List<EvictionCandidate> candidates = new ArrayList<>();
+        for (final JID owner : new ArrayList<>(pepServices.keySet())) {
+            final CacheableOptional<PEPService> service = pepServices.get(owner);
+            if (service == null) {
+                continue;
+            }
+            int size;
+            try {
+                size = service.getCachedSize();
+            } catch (CannotCalculateSizeException e) {
+                size = 600;
+            }
+            totalSize += size;
+
+            if (SessionManager.getInstance().getSessionCount(owner.getNode()) > 0) {
+                continue;
+            }
+            final long accessed = lastAccessed.getOrDefault(owner, 0L);
+            if (now - accessed >= idleTimeout) {
+                if (evict(owner, accessed)) {
+                    totalSize -= size;
+                    evicted++;
+                }
+            } else {
+                candidates.add(new EvictionCandidate(owner, accessed, size));
+            }
+        }
+
+        final long budget = MEMORY_BUDGET.getValue();
+        if (totalSize > budget) {
+            candidates.sort(Comparator.comparingLong(EvictionCandidate::lastAccessed));
+            for (final EvictionCandidate candidate : candidates) {
+                if (totalSize <= budget) {
+                    break;
+                }
+                if (evict(candidate.owner(), candidate.lastAccessed())) {
+                    totalSize -= candidate.size();
+                    evicted++;
+                }
+            }
+        }
+        Log.debug("Removed {} PEP service(s) from memory. Remaining services occupy approximately {} bytes.", evicted, totalSize);
+    }
+
+    /**
+     * Removes a PEP service from memory, after writing all of its pending changes to persistent storage.
+     *
+     * @param owner the owner of the service.
+     * @param expectedLastAccessed the instant at which the service is expected to have last been accessed.
+     * @return false if the service was accessed after the expected instant, in which case it is not removed.
+     */
+    private boolean evict(@Nonnull final JID owner, final long expectedLastAccessed)
+    {
+        final Lock lock = pepServices.getLock(owner);
+        lock.lock();
+        try {
+            if (lastAccessed.getOrDefault(owner, 0L) != expectedLastAccessed) {
+                return false;
+            }
+            final CacheableOptional<PEPService> service = pepServices.remove(owner);
+            lastAccessed.remove(owner);
+            if (service == null || service.isAbsent()) {
+                return true;
+            }
+
+            final PEPService pepService = service.get();
+            final PubSubPersistenceProvider persistenceProvider = XMPPServer.getInstance().getPubSubModule().getPersistenceProvider();
+            for (final Node node : pepService.getNodes()) {
+                persistenceProvider.flushPendingChanges(node.getUniqueIdentifier());
+            }
+            if (PEPLastItemIndex.ENABLED.getValue()) {
+                // Allows initial presence of contacts to be processed without loading the service again.
+                PEPLastItemIndex.getInstance().update(pepService);
+            }
+            if (pubSubEngine != null) {
+                pubSubEngine.shutdown(pepService);
+            }
+            Log.trace("Removed PEP service of {} from memory.", owner);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record EvictionCandidate(@Nonnull JID owner, long lastAccessed, int size) {}
+
     @Override
     public void entityCapabilitiesChanged( @Nonnull final JID entity,
                                            @Nonnull final EntityCapabilities updatedEntityCapabilities,
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2020-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2020-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 package org.jivesoftware.openfire.pubsub;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.jivesoftware.openfire.cluster.ClusterManager;
 import org.jivesoftware.openfire.pep.PEPService;
 import org.jivesoftware.openfire.pubsub.cluster.FlushTask;
@@ -29,13 +31,14 @@ import org.slf4j.LoggerFactory;
 import org.xmpp.packet.JID;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
-import java.util.stream.Collectors;
 
 /**
  * A persistence provider for Pub/Sub functionality that adds caching behavior. Instead of 'writing through' to the
@@ -87,23 +90,42 @@ public class CachingPubsubPersistenceProvider implements PubSubPersistenceProvid
     private static final int MAX_ITEMS_FLUSH = JiveGlobals.getIntProperty("xmpp.pubsub.flush.max", 1000);
 
     /**
-     * Queue that holds the (wrapped) items that need to be added to the database.
+     * The maximum amount of changes to published items that are written to the delegate in one batch.
      */
-    @VisibleForTesting
-    Deque<PublishedItem> itemsToAdd = new ConcurrentLinkedDeque<>();
+    public static final SystemProperty<Integer> FLUSH_BATCH_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.pubsub.flush.batchsize")
+        .setDefaultValue(500)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
 
     /**
-     * Queue that holds the items that need to be deleted from the database.
+     * Changes to published items that are yet to be written to the delegate, partitioned by node.
      */
     @VisibleForTesting
-    Deque<PublishedItem> itemsToDelete = new ConcurrentLinkedDeque<>();
+    final ConcurrentMap<Node.UniqueIdentifier, PendingItems> itemsToProcess = new ConcurrentHashMap<>();
 
     /**
-     * Keeps reference to published items that haven't been persisted yet so they
-     * can be removed before being deleted.
+     * Changes to published items that are being written to the delegate, partitioned by node. These remain available
+     * to read operations until they have been written.
      */
-    @VisibleForTesting
-    final HashMap<PublishedItem.UniqueIdentifier, PublishedItem> itemsPending = new HashMap<>();
+    private final ConcurrentMap<Node.UniqueIdentifier, PendingItems> itemsInFlight = new ConcurrentHashMap<>();
+
+    /**
+     * The total amount of changes in {@link #itemsToProcess}.
+     */
+    private final AtomicInteger pendingItemCount = new AtomicInteger();
+
+    /**
+     * Serializes writes of changes to published items per node, so that changes to the items of a node are written in
+     * order, without writes of one node waiting for writes of another node.
+     */
+    private final Interner<Node.UniqueIdentifier> itemWriteMutex = Interners.newWeakInterner();
+
+    /**
+     * Indicates that a task is scheduled to write changes to published items in the background.
+     */
+    private final AtomicBoolean writerScheduled = new AtomicBoolean();
 
     @VisibleForTesting
     final ConcurrentMap<Node.UniqueIdentifier, List<NodeOperation>> nodesToProcess = new ConcurrentHashMap<>();
@@ -303,11 +325,45 @@ public class CachingPubsubPersistenceProvider implements PubSubPersistenceProvid
         delegate.loadSubscription(node, subId);
     }
 
+    /**
+     * Finds the nodes to which an address is directly subscribed.
+     *
+     * Rather than flushing pending changes, the result obtained from the delegate is corrected for each node that has
+     * pending changes, based on the in-memory state of that node (which reflects all pending changes).
+     */
     @Override
     @Nonnull
     public Set<Node.UniqueIdentifier> findDirectlySubscribedNodes(@Nonnull JID address) {
-        flushPendingNodes();
-        return delegate.findDirectlySubscribedNodes(address);
+        final Set<Node.UniqueIdentifier> result = new HashSet<>(delegate.findDirectlySubscribedNodes(address));
+        for (final Node.UniqueIdentifier nodeIdentifier : new ArrayList<>(nodesToProcess.keySet())) {
+            final NodeOperation[] last = { null };
+            nodesToProcess.computeIfPresent(nodeIdentifier, (id, operations) -> {
+                last[0] = operations.isEmpty() ? null : operations.get(operations.size() - 1);
+                return operations;
+            });
+            if (last[0] == null) {
+                continue;
+            }
+            if (last[0].action == NodeOperation.Action.REMOVE) {
+                result.remove(nodeIdentifier);
+            } else if (isDirectlySubscribed(last[0].node, address)) {
+                result.add(nodeIdentifier);
+            } else {
+                result.remove(nodeIdentifier);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks if an address has a subscription to a node, using the same criteria as
+     * {@link DefaultPubSubPersistenceProvider#findDirectlySubscribedNodes(JID)}.
+     */
+    private static boolean isDirectlySubscribed(@Nonnull final Node node, @Nonnull final JID address) {
+        return node.getAllSubscriptions().stream().anyMatch(subscription ->
+            subscription.getState() == NodeSubscription.State.subscribed
+                && subscription.getJID().asBareJID().equals(address.asBareJID())
+                && (subscription.getJID().getResource() == null || subscription.getJID().equals(address)));
     }
 
     @Override
@@ -475,25 +531,26 @@ public class CachingPubsubPersistenceProvider implements PubSubPersistenceProvid
     @Override
     public void purgeNode( final LeafNode leafNode )
     {
-        // If there are any pending items for this node, don't bother processing them.
-        synchronized (itemsPending) {
-            itemsPending.values().removeIf( publishedItem -> leafNode.getUniqueIdentifier().equals( publishedItem.getNode().getUniqueIdentifier() ) );
-            itemsToAdd.removeIf( publishedItem -> leafNode.getUniqueIdentifier().equals( publishedItem.getNode().getUniqueIdentifier() ) );
-            itemsToDelete.removeIf( publishedItem -> leafNode.getUniqueIdentifier().equals( publishedItem.getNode().getUniqueIdentifier() ) );
-        }
-
-        // drop cached items for purged node
-        synchronized (itemCache)
-        {
-            for (PublishedItem item : itemCache.values())
+        synchronized (itemWriteMutex.intern(leafNode.getUniqueIdentifier())) {
+            // If there are any pending items for this node, don't bother processing them.
+            itemsToProcess.computeIfPresent( leafNode.getUniqueIdentifier(), ( id, pending ) -> {
+                pendingItemCount.addAndGet( -pending.size() );
+                return null;
+            } );
+
+            // drop cached items for purged node
+            synchronized (itemCache)
             {
-                if (leafNode.getUniqueIdentifier().equals(item.getNode().getUniqueIdentifier()))
+                for (PublishedItem item : itemCache.values())
                 {
-                    itemCache.remove(item.getUniqueIdentifier());
+                    if (leafNode.getUniqueIdentifier().equals(item.getNode().getUniqueIdentifier()))
+                    {
+                        itemCache.remove(item.getUniqueIdentifier());
+                    }
                 }
             }
+            delegate.purgeNode( leafNode );
         }
-        delegate.purgeNode( leafNode );
     }
 
     @Override
@@ -503,25 +560,139 @@ public class CachingPubsubPersistenceProvider implements PubSubPersistenceProvid
         PublishedItem.UniqueIdentifier itemKey = item.getUniqueIdentifier();
         itemCache.put(itemKey, item);
         log.debug("Added new (inbound) item to cache");
-        synchronized (itemsPending) {
-            PublishedItem itemToReplace = itemsPending.remove(itemKey);
-            if (itemToReplace != null) {
-                itemsToAdd.remove(itemToReplace); // remove duplicate from itemsToAdd linked list
+        itemsToProcess.compute(item.getNode().getUniqueIdentifier(), (id, pending) -> {
+            if (pending == null) {
+                pending = new PendingItems();
             }
+            final int sizeBefore = pending.size();
+            pending.add(item);
+            pendingItemCount.addAndGet(pending.size() - sizeBefore);
+            return pending;
+        });
 
-            // TODO this iterates over all elements in the collection. See if this can be improved for performance.
-            itemsToDelete.removeIf(scheduledItem -> item.getUniqueIdentifier().equals(scheduledItem.getUniqueIdentifier()));
+        if (pendingItemCount.get() > MAX_ITEMS_FLUSH) {
+            scheduleWriter();
+        }
+    }
 
-            itemsToAdd.addLast(item);
-            itemsPending.put(itemKey, item);
+    /**
+     * Schedules a task that writes all pending changes to published items to the delegate, unless such a task is
+     * already scheduled.
+     */
+    private void scheduleWriter()
+    {
+        if (!writerScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        TaskEngine.getInstance().submit(() -> {
+            try {
+                for (final Node.UniqueIdentifier nodeUniqueId : new ArrayList<>(itemsToProcess.keySet())) {
+                    flushPendingNode(nodeUniqueId);
+                    writePendingItems(nodeUniqueId);
+                }
+            } finally {
+                writerScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Writes the pending changes to the published items of one node to the delegate, in batches of at most
+     * {@link #FLUSH_BATCH_SIZE} changes.
+     *
+     * @param nodeUniqueId the node for which to write changes.
+     */
+    private void writePendingItems( final Node.UniqueIdentifier nodeUniqueId )
+    {
+        synchronized (itemWriteMutex.intern(nodeUniqueId)) {
+            // Move the changes to the in-flight collection, where they remain visible until they have been written.
+            final PendingItems[] drained = { null };
+            itemsToProcess.computeIfPresent(nodeUniqueId, (id, pending) -> {
+                itemsInFlight.put(id, pending);
+                pendingItemCount.addAndGet(-pending.size());
+                drained[0] = pending;
+                return null;
+            });
+            if (drained[0] == null) {
+                return;
+            }
+
+            try {
+                final int batchSize = FLUSH_BATCH_SIZE.getValue();
+                final List<PublishedItem> delList = new ArrayList<>(drained[0].toDelete);
+                final List<PublishedItem> addList = new ArrayList<>(drained[0].toAdd.values());
+                log.debug("Writing {} deletion(s) and {} addition(s) of published items of node {}", delList.size(), addList.size(), nodeUniqueId);
+                for (int i = 0; i < delList.size(); i += batchSize) {
+                    delegate.bulkPublishedItems(new ArrayList<>(), new ArrayList<>(delList.subList(i, Math.min(i + batchSize, delList.size()))));
+                }
+                for (int i = 0; i < addList.size(); i += batchSize) {
+                    delegate.bulkPublishedItems(new ArrayList<>(addList.subList(i, Math.min(i + batchSize, addList.size()))), new ArrayList<>());
+                }
+            } finally {
+                itemsInFlight.remove(nodeUniqueId);
+            }
+        }
+    }
+
+    /**
+     * Returns the changes to published items of a node that have not been written to the delegate yet.
+     *
+     * @param nodeUniqueId the node for which to return changes.
+     * @return a copy of the pending changes.
+     */
+    @Nonnull
+    private PendingItems getPendingItems( final Node.UniqueIdentifier nodeUniqueId )
+    {
+        // Check the pending changes before those that are in flight: changes are moved from the former to the latter.
+        final PendingItems pending = new PendingItems();
+        itemsToProcess.computeIfPresent(nodeUniqueId, (id, items) -> {
+            pending.addAll(items);
+            return items;
+        });
+        final PendingItems inFlight = itemsInFlight.get(nodeUniqueId);
+        if (inFlight == null) {
+            return pending;
+        }
+
+        // Pending changes are more recent than those that are in flight.
+        final PendingItems result = new PendingItems();
+        result.addAll(inFlight);
+        result.addAll(pending);
+        return result;
+    }
+
+    /**
+     * Returns all changes to published items that have not been written to the delegate, that add an item.
+     *
+     * @return pending item additions.
+     */
+    @VisibleForTesting
+    List<PublishedItem> getPendingItemAdditions()
+    {
+        final List<PublishedItem> result = new ArrayList<>();
+        for (final Node.UniqueIdentifier nodeUniqueId : itemsToProcess.keySet()) {
+            result.addAll(getPendingItems(nodeUniqueId).toAdd.values());
         }
+        return result;
+    }
 
-        if (itemsPending.size() > MAX_ITEMS_FLUSH) {
-            TaskEngine.getInstance().submit(() -> flushPendingChanges(false));
+    /**
+     * Returns all changes to published items that have not been written to the delegate, that delete an item.
+     *
+     * @return pending item deletions.
+     */
+    @VisibleForTesting
+    List<PublishedItem> getPendingItemDeletions()
+    {
+        final List<PublishedItem> result = new ArrayList<>();
+        for (final Node.UniqueIdentifier nodeUniqueId : itemsToProcess.keySet()) {
+            result.addAll(getPendingItems(nodeUniqueId).toDelete);
         }
+        return result;
     }
 
-    public void flushPendingChanges( Node.UniqueIdentifier nodeUniqueId )
+    @Override
+    public void flushPendingChanges( @Nonnull final Node.UniqueIdentifier nodeUniqueId )
     {
         flushPendingChanges(nodeUniqueId, ClusterManager.isClusteringEnabled());
     }
@@ -536,52 +707,8 @@ public class CachingPubsubPersistenceProvider implements PubSubPersistenceProvid
         // TODO: figure out if it's required to first flush pending nodes, cluster-wide, synchronously, before flushing items.
         flushPendingNode(nodeUniqueId);
 
-        if (itemsToAdd.isEmpty() && itemsToDelete.isEmpty()) {
-            return;	 // nothing left to do for this cluster member.
-        }
-
-        List<PublishedItem> addList;
-        List<PublishedItem> delList;
-
-        // Swap pending items so we can parse and save the contents from this point in time
-        // while not blocking new entries from being cached.
-        synchronized(itemsPending)
-        {
-            // find items for node.
-
-            // Split the to-do list in two parts: one that contains items for the node of interest, and the rest.
-            final Map<Boolean, List<PublishedItem>> partsToAdd = itemsToAdd.stream().collect(
-                    Collectors.partitioningBy( publishedItem -> nodeUniqueId.equals( publishedItem.getNode().getUniqueIdentifier() ) )
-            );
-            addList = new ArrayList<>( partsToAdd.get( true ) ); // All elements that match must be processed.
-            itemsToAdd.retainAll( partsToAdd.get(false) ); // Non-matching elements remain on the to-do list.
-
-            // Split the to-do list in two parts: one that contains items for the node of interest, and the rest.
-            final Map<Boolean, List<PublishedItem>> partsToDelete = itemsToDelete.stream().collect(
-                    Collectors.partitioningBy( publishedItem -> nodeUniqueId.equals( publishedItem.getNode().getUniqueIdentifier() ) )
-            );
-            delList = new ArrayList<>( partsToDelete.get( true ) ); // All elements that match must be processed.
-            itemsToDelete.retainAll( partsToDelete.get(false) ); // Non-matching elements remain on the to-do list.
-
-            // Ensure pending items are available via the item read cache;
-            // this allows the item(s) to be fetched by other request threads
-            // while being written to the DB from this thread
-            // TODO Determine if this works as intended when items are being queued for adding as well as removal.
-            int copied = 0;
-            for (final PublishedItem itemToAdd : itemsToAdd) {
-                final PublishedItem.UniqueIdentifier key = itemToAdd.getUniqueIdentifier();
-                if (!itemCache.containsKey(key)) {
-                    itemsPending.remove( key );
-                    itemCache.put(key, itemToAdd);
-                    copied++;
-                }
-            }
-            if (log.isDebugEnabled() && copied > 0) {
-                log.debug("Added " + copied + " pending items to published item cache");
-            }
-        }
-
-        delegate.bulkPublishedItems( addList, delList );
+        // Only the changes of this node are written: pending changes of other nodes are not affected.
+        writePendingItems(nodeUniqueId);
     }
 
     /**
@@ -603,56 +730,24 @@ public class CachingPubsubPersistenceProvider implements PubSubPersistenceProvid
         // TODO: figure out if it's required to first flush pending nodes, cluster-wide, synchronously, before flushing items.
         flushPendingNodes();
 
-        if (itemsToAdd.isEmpty() && itemsToDelete.isEmpty()) {
-            return;	 // Nothing left to do for this cluster member.
-        }
-
-        List<PublishedItem> addList;
-        List<PublishedItem> delList;
-
-        // Swap pending items so we can parse and save the contents from this point in time
-        // while not blocking new entries from being cached.
-        synchronized(itemsPending)
-        {
-            addList = new ArrayList<>( itemsToAdd );
-            delList = new ArrayList<>( itemsToDelete );
-
-            itemsToAdd = new ConcurrentLinkedDeque<>();
-            itemsToDelete = new ConcurrentLinkedDeque<>();
-
-            // Ensure pending items are available via the item read cache;
-            // this allows the item(s) to be fetched by other request threads
-            // while being written to the DB from this thread
-            // TODO Determine if this works as intended when items are being queued for adding as well as removal.
-            int copied = 0;
-            for ( PublishedItem.UniqueIdentifier key : itemsPending.keySet()) {
-                if (!itemCache.containsKey(key)) {
-                    itemCache.put(key, itemsPending.get(key));
-                    copied++;
-                }
-            }
-            if (log.isDebugEnabled() && copied > 0) {
-                log.debug("Added " + copied + " pending items to published item cache");
-            }
-            itemsPending.clear();
+        for (final Node.UniqueIdentifier nodeUniqueId : new ArrayList<>(itemsToProcess.keySet())) {
+            writePendingItems(nodeUniqueId);
         }
-
-        delegate.bulkPublishedItems( addList, delList );
-        flushPendingChanges( sendToCluster );
     }
 
     @Override
     public void removePublishedItem(PublishedItem item) {
         PublishedItem.UniqueIdentifier itemKey = item.getUniqueIdentifier();
         itemCache.remove(itemKey);
-        synchronized (itemsPending)
-        {
-            itemsToDelete.addLast(item);
-            PublishedItem itemToReplace = itemsPending.remove(itemKey);
-            if (itemToReplace != null) {
-                itemsToAdd.remove(itemToReplace); // remove duplicate from itemsToAdd linked list
+        itemsToProcess.compute(item.getNode().getUniqueIdentifier(), (id, pending) -> {
+            if (pending == null) {
+                pending = new PendingItems();
             }
-        }
+            final int sizeBefore = pending.size();
+            pending.delete(item);
+            pendingItemCount.addAndGet(pending.size() - sizeBefore);
+            return pending;
+        });
     }
 
     @Override
@@ -701,6 +796,58 @@ public class CachingPubsubPersistenceProvider implements PubSubPersistenceProvid
         return delegate.getPublishedItems( node, maxRows );
     }
 
+    /**
+     * Fetches a page of the published items of the specified node.
+     *
+     * Rather than flushing pending changes, items that are yet to be added to, or deleted from, the delegate are
+     * merged with the page that is obtained from the delegate. Changes that are pending on other cluster nodes are
+     * not known locally: when clustering is active, or when the page is relative to an item that has pending changes,
+     * pending changes of the node are flushed instead.
+     */
+    @Nullable
+    @Override
+    public List<PublishedItem> getPublishedItems( @Nonnull final LeafNode node, @Nullable final String after, @Nullable final String before, final int limit )
+    {
+        final PendingItems pending = getPendingItems( node.getUniqueIdentifier() );
+        final Collection<PublishedItem> pendingAdditions = pending.toAdd.values();
+        final Set<String> pendingItemIDs = new HashSet<>( pending.toAdd.keySet() );
+        pending.toDelete.forEach( item -> pendingItemIDs.add( item.getID() ) );
+
+        final String cursor = after != null ? after : before != null && !before.isEmpty() ? before : null;
+        if (ClusterManager.isClusteringStarted() || (cursor != null && pendingItemIDs.contains(cursor))) {
+            flushPendingChanges( node.getUniqueIdentifier() );
+            return delegate.getPublishedItems( node, after, before, limit );
+        }
+        if (pendingItemIDs.isEmpty()) {
+            return delegate.getPublishedItems( node, after, before, limit );
+        }
+
+        // Obtain enough items from the delegate to fill the page after discarding those that have pending changes.
+        final List<PublishedItem> persisted = delegate.getPublishedItems( node, after, before, limit + pendingItemIDs.size() );
+        if (persisted == null) {
+            return null;
+        }
+        final List<PublishedItem> merged = new ArrayList<>();
+        persisted.stream().filter(item -> !pendingItemIDs.contains(item.getID())).forEach(merged::add);
+
+        // Add the pending items that are part of the requested range.
+        final PublishedItem cursorItem = cursor == null ? null : delegate.getPublishedItem( node, new PublishedItem.UniqueIdentifier( node.getUniqueIdentifier(), cursor ) );
+        for (final PublishedItem item : pendingAdditions) {
+            if (cursorItem == null
+                || (after != null && PublishedItem.MOST_RECENT_FIRST.compare(item, cursorItem) > 0)
+                || (after == null && PublishedItem.MOST_RECENT_FIRST.compare(item, cursorItem) < 0))
+            {
+                merged.add(item);
+            }
+        }
+        merged.sort(PublishedItem.MOST_RECENT_FIRST);
+
+        if (merged.size() <= limit) {
+            return merged;
+        }
+        return before != null ? new ArrayList<>(merged.subList(merged.size() - limit, merged.size())) : new ArrayList<>(merged.subList(0, limit));
+    }
+
     @Override
     public PublishedItem getLastPublishedItem( final LeafNode node )
     {
@@ -711,7 +858,21 @@ public class CachingPubsubPersistenceProvider implements PubSubPersistenceProvid
     @Override
     public PublishedItem getPublishedItem( final LeafNode node, final PublishedItem.UniqueIdentifier itemIdentifier )
     {
-        flushPendingChanges( node.getUniqueIdentifier() );
+        if ( ClusterManager.isClusteringStarted() ) {
+            // Changes that are pending on other cluster nodes are not known locally.
+            flushPendingChanges( node.getUniqueIdentifier() );
+        } else {
+            final PendingItems pending = getPendingItems( node.getUniqueIdentifier() );
+            if ( pending.isDeleted( itemIdentifier.getItemId() ) ) {
+                log.trace("Item is pending to be deleted. Item identifier: {}", itemIdentifier);
+                return null;
+            }
+            final PublishedItem pendingItem = pending.toAdd.get( itemIdentifier.getItemId() );
+            if ( pendingItem != null ) {
+                log.trace("Found item that is pending to be added. Item identifier: {}", itemIdentifier);
+                return pendingItem;
+            }
+        }
 
         // try to fetch from cache first without locking
         PublishedItem result = itemCache.get(itemIdentifier);
@@ -745,6 +906,39 @@ public class CachingPubsubPersistenceProvider implements PubSubPersistenceProvid
         return result;
     }
 
+    /**
+     * Changes to the published items of one node that are yet to be written to the delegate. Items to be added are
+     * kept by item ID. An item is either to be added or to be deleted, not both.
+     */
+    static final class PendingItems {
+        final Map<String, PublishedItem> toAdd = new LinkedHashMap<>();
+        final List<PublishedItem> toDelete = new ArrayList<>();
+
+        void add( final PublishedItem item ) {
+            toDelete.removeIf( scheduledItem -> item.getID().equals( scheduledItem.getID() ) );
+            toAdd.remove( item.getID() ); // Re-insert, to retain the order in which items were published.
+            toAdd.put( item.getID(), item );
+        }
+
+        void delete( final PublishedItem item ) {
+            toAdd.remove( item.getID() );
+            toDelete.add( item );
+        }
+
+        boolean isDeleted( final String itemId ) {
+            return toDelete.stream().anyMatch( item -> itemId.equals( item.getID() ) );
+        }
+
+        void addAll( final PendingItems other ) {
+            other.toDelete.forEach( this::delete );
+            other.toAdd.values().forEach( this::add );
+        }
+
+        int size() {
+            return toAdd.size() + toDelete.size();
+        }
+    }
+
     static class NodeOperation {
 
         enum Action {
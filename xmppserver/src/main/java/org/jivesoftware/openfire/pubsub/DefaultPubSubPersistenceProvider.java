@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2016-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.jivesoftware.openfire.pubsub;
 
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.jivesoftware.database.DbConnectionManager;
 import org.jivesoftware.database.DbConnectionManager.DatabaseType;
 import org.jivesoftware.openfire.XMPPServer;
@@ -24,7 +25,9 @@ import org.jivesoftware.openfire.pep.PEPService;
 import org.jivesoftware.openfire.pubsub.models.AccessModel;
 import org.jivesoftware.openfire.pubsub.models.PublisherModel;
 import org.jivesoftware.util.JiveGlobals;
+import org.jivesoftware.util.NamedThreadFactory;
 import org.jivesoftware.util.StringUtils;
+import org.jivesoftware.util.SystemProperty;
 import org.jivesoftware.util.TaskEngine;
 import org.jivesoftware.util.cache.Cache;
 import org.jivesoftware.util.cache.CacheFactory;
@@ -33,14 +36,20 @@ import org.slf4j.LoggerFactory;
 import org.xmpp.packet.JID;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
-import java.util.stream.Collectors;
 
 /**
  * A manager responsible for ensuring node persistence.
@@ -101,6 +110,19 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
  "WHERE serviceID=?";
 
 	private static final String LOAD_NODE = LOAD_NODES + " AND nodeID=?";
+    private static final String LOAD_NODES_FIRST_PAGE = LOAD_NODES + " ORDER BY nodeID";
+    private static final String LOAD_NODES_PAGE_AFTER = LOAD_NODES + " AND nodeID>? ORDER BY nodeID";
+
+    /**
+     * Restricts a query to the nodes of a page, identified by the ID of the last node of the page.
+     */
+    private static final String FIRST_PAGE_OF_NODES = " AND nodeID<=?";
+
+    /**
+     * Restricts a query to the nodes of a page, identified by the IDs of the last node of the preceding page, and the
+     * last node of the page.
+     */
+    private static final String PAGE_OF_NODES_AFTER = " AND nodeID>? AND nodeID<=?";
 
     private static final String UPDATE_NODE =
             "UPDATE ofPubsubNode SET modificationDate=?, parent=?, deliverPayloads=?, " +
@@ -140,8 +162,7 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
             "DELETE FROM ofPubsubNodeGroups WHERE serviceID=? AND nodeID=?";
 
     private static final String LOAD_AFFILIATIONS =
-            "SELECT nodeID,jid,affiliation FROM ofPubsubAffiliation WHERE serviceID=? " +
-            "ORDER BY nodeID";
+            "SELECT nodeID,jid,affiliation FROM ofPubsubAffiliation WHERE serviceID=?";
 	private static final String LOAD_NODE_AFFILIATIONS = "SELECT nodeID,jid,affiliation FROM ofPubsubAffiliation WHERE serviceID=? AND nodeID=?";
     private static final String ADD_AFFILIATION =
             "INSERT INTO ofPubsubAffiliation (serviceID,nodeID,jid,affiliation) VALUES (?,?,?,?)";
@@ -157,7 +178,7 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
 			+ "keyword FROM ofPubsubSubscription WHERE serviceID=? ";
 	private static final String LOAD_NODE_SUBSCRIPTION = LOAD_SUBSCRIPTIONS_BASE + "AND nodeID=? AND id=?";
 	private static final String LOAD_NODE_SUBSCRIPTIONS = LOAD_SUBSCRIPTIONS_BASE + "AND nodeID=?";
-	private static final String LOAD_SUBSCRIPTIONS = LOAD_SUBSCRIPTIONS_BASE + "ORDER BY nodeID";
+	private static final String LOAD_SUBSCRIPTIONS = LOAD_SUBSCRIPTIONS_BASE.trim();
 
     private static final String FIND_SUBCRIBED_NODES = "SELECT serviceID, nodeID, jid FROM ofPubsubSubscription WHERE jid LIKE ? AND state LIKE ?";
 
@@ -180,6 +201,23 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
     private static final String LOAD_ITEM =
             "SELECT jid,creationDate,payload FROM ofPubsubItem " +
             "WHERE serviceID=? AND nodeID=? AND id=?";
+    private static final String LOAD_ITEM_CREATION_DATE =
+            "SELECT creationDate FROM ofPubsubItem " +
+            "WHERE serviceID=? AND nodeID=? AND id=?";
+    private static final String LOAD_ITEMS_FIRST_PAGE =
+            "SELECT id,jid,creationDate,payload FROM ofPubsubItem " +
+            "WHERE serviceID=? AND nodeID=? ORDER BY creationDate DESC, id DESC";
+    private static final String LOAD_ITEMS_PAGE_AFTER =
+            "SELECT id,jid,creationDate,payload FROM ofPubsubItem " +
+            "WHERE serviceID=? AND nodeID=? AND (creationDate<? OR (creationDate=? AND id<?)) " +
+            "ORDER BY creationDate DESC, id DESC";
+    private static final String LOAD_ITEMS_LAST_PAGE =
+            "SELECT id,jid,creationDate,payload FROM ofPubsubItem " +
+            "WHERE serviceID=? AND nodeID=? ORDER BY creationDate ASC, id ASC";
+    private static final String LOAD_ITEMS_PAGE_BEFORE =
+            "SELECT id,jid,creationDate,payload FROM ofPubsubItem " +
+            "WHERE serviceID=? AND nodeID=? AND (creationDate>? OR (creationDate=? AND id>?)) " +
+            "ORDER BY creationDate ASC, id ASC";
     private static final String LOAD_LAST_ITEM =
             "SELECT id,jid,creationDate,payload FROM ofPubsubItem " +
             "WHERE serviceID=? AND nodeID=? ORDER BY creationDate DESC";
@@ -226,6 +264,40 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
      */
     private static Duration purgeTimerDelay = Duration.ofSeconds(Math.max(60, JiveGlobals.getIntProperty("xmpp.pubsub.purge.timer", 300)));
 
+    /**
+     * The number of nodes that are read from the database at once, when loading all nodes of a service.
+     */
+    public static final SystemProperty<Integer> LOAD_PAGE_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.pubsub.load.pagesize")
+        .setDefaultValue(1000)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The number of threads used to load the affiliations, subscriptions and other data associated with nodes, when
+     * loading all nodes of a service.
+     */
+    public static final SystemProperty<Integer> LOAD_THREADS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.pubsub.load.threads")
+        .setDefaultValue(4)
+        .setMinValue(1)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * Executes the tasks that load the data associated with pages of nodes, for all services. Its threads are stopped
+     * when they have been idle for a while.
+     */
+    private static final ThreadPoolExecutor LOAD_EXECUTOR = createLoadExecutor();
+
+    private static ThreadPoolExecutor createLoadExecutor()
+    {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(LOAD_THREADS.getValue(), LOAD_THREADS.getValue(), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("pubsub-load-", null, true, null));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Maximum number of rows that will be fetched from the published items table.
      */
@@ -533,102 +605,235 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
         }
     }
 
+    /**
+     * Loads all nodes of a service.
+     *
+     * Nodes are read in pages (ordered by node ID), to avoid large result sets. The data associated with the nodes of
+     * each page (affiliations, subscriptions, etc.) is loaded in parallel to reading the next page, by a pool of threads
+     * (of which the size is configured by {@link #LOAD_THREADS}) that is shared by all services. The data associated
+     * with the nodes of the last (or only) page is loaded by the invoking thread.
+     *
+     * When any part of the nodes could not be loaded, none of the nodes are added to the service.
+     *
+     * @param service the service for which to load nodes.
+     */
     @Override
     public void loadNodes(PubSubService service) {
         log.debug( "Loading nodes for service: {}", service.getServiceID() );
 
+        final Map<Node.UniqueIdentifier, Node> nodes = new HashMap<>();
+        final Map<Node.UniqueIdentifier, Node.UniqueIdentifier> parentMappings = new HashMap<>();
+        final int pageSize = LOAD_PAGE_SIZE.getValue();
+        final List<Future<?>> pages = new ArrayList<>();
+        boolean complete = false;
+        try {
+            String lastNodeID = null;
+            NodesPage page;
+            do {
+                page = loadNodesPage(service, lastNodeID, pageSize, parentMappings);
+                nodes.putAll(page.nodes());
+                if (!page.nodes().isEmpty()) {
+                    final String afterNodeID = lastNodeID;
+                    final NodesPage loadedPage = page;
+                    if (page.rowCount() < pageSize) {
+                        // This is the last page. There is nothing left to read in parallel, so load it on this thread.
+                        loadAssociations(service, afterNodeID, loadedPage);
+                    } else {
+                        pages.add(LOAD_EXECUTOR.submit(() -> {
+                            loadAssociations(service, afterNodeID, loadedPage);
+                            return null;
+                        }));
+                    }
+                }
+                lastNodeID = page.lastNodeID();
+            } while (page.rowCount() == pageSize);
+
+            for (final Future<?> future : pages) {
+                future.get();
+            }
+            complete = true;
+        }
+        catch (SQLException sqle) {
+            log.error("An exception occurred while loading nodes for a service ({}) from the database.", service.getUniqueIdentifier(), sqle);
+        }
+        catch (ExecutionException e) {
+            log.error("An exception occurred while loading nodes for a service ({}) from the database.", service.getUniqueIdentifier(), e.getCause());
+        }
+        catch (InterruptedException e) {
+            log.warn("Interrupted while loading nodes for a service ({}) from the database.", service.getUniqueIdentifier());
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            if (!complete) {
+                // Do not start loading more pages, and wait for pages that are being loaded, as those modify the nodes.
+                pages.forEach(future -> future.cancel(false));
+                for (final Future<?> future : pages) {
+                    try {
+                        Uninterruptibles.getUninterruptibly(future);
+                    } catch (ExecutionException | CancellationException e) {
+                        // The load is aborted either way.
+                    }
+                }
+            }
+        }
+
+        if (!complete) {
+            log.warn("None of the nodes for service {} are loaded, as not all of them could be loaded from the database.", service.getServiceID());
+            return;
+        }
+
+        if (nodes.isEmpty()) {
+            log.info("No nodes found in pubsub for service {}", service.getServiceID() );
+            return;
+        }
+
+        for (Map.Entry<Node.UniqueIdentifier, Node.UniqueIdentifier> entry : parentMappings.entrySet()) {
+            Node child = nodes.get(entry.getKey());
+            CollectionNode parent = (CollectionNode) nodes.get(entry.getValue());
+
+            if (parent == null) {
+                log.error("Could not find parent node " + entry.getValue() + " for node " + entry.getKey());
+            }
+            else {
+                child.changeParent(parent);
+            }
+        }
+
+        for (Node node : nodes.values()) {
+            // Set now that the node is persistent in the database. Note: We need to
+            // set this now since otherwise the node's affiliations will be saved to the database
+            // "again" while adding them to the node!
+            node.setSavedToDB(true);
+            // Add the node to the service
+            service.addNode(node);
+        }
+        log.debug( "Loaded {} nodes for service: {}", nodes.size(), service.getServiceID() );
+    }
+
+    /**
+     * Reads a page of nodes of a service, without the data associated with these nodes.
+     *
+     * @param service the service for which to read nodes.
+     * @param afterNodeID the (database representation of the) ID of the last node of the preceding page, or null to read the first page.
+     * @param pageSize the maximum number of nodes to read.
+     * @param parentMappings the map to which the parent of each node that is read is added.
+     * @return the page of nodes.
+     * @throws SQLException when the nodes could not be read from the database.
+     */
+    @Nonnull
+    private NodesPage loadNodesPage(@Nonnull final PubSubService service, @Nullable final String afterNodeID, final int pageSize, @Nonnull final Map<Node.UniqueIdentifier, Node.UniqueIdentifier> parentMappings) throws SQLException
+    {
         Connection con = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
-        Map<Node.UniqueIdentifier, Node> nodes = new HashMap<>();
+        final Map<Node.UniqueIdentifier, Node> nodes = new HashMap<>();
+        String lastNodeID = null;
+        int rowCount = 0;
         try {
             con = DbConnectionManager.getConnection();
-            // Get all non-leaf nodes (to ensure parent nodes are loaded before their children)
-			pstmt = con.prepareStatement(LOAD_NODES);
+            pstmt = con.prepareStatement(afterNodeID == null ? LOAD_NODES_FIRST_PAGE : LOAD_NODES_PAGE_AFTER);
+            DbConnectionManager.limitRowsAndFetchSize(pstmt, 0, pageSize);
             pstmt.setString(1, service.getServiceID());
+            if (afterNodeID != null) {
+                pstmt.setString(2, afterNodeID);
+            }
             rs = pstmt.executeQuery();
-            
-            Map<Node.UniqueIdentifier, Node.UniqueIdentifier> parentMappings = new HashMap<>();
-            
-            // Rebuild loaded non-leaf nodes
-            while(rs.next()) {
+            while (rowCount < pageSize && rs.next()) {
+                rowCount++;
+                lastNodeID = rs.getString(1);
                 loadNode(service.getUniqueIdentifier(), nodes, parentMappings, rs);
             }
-            DbConnectionManager.fastcloseStmt(rs, pstmt);
+        }
+        finally {
+            DbConnectionManager.closeConnection(rs, pstmt, con);
+        }
+        return new NodesPage(nodes, lastNodeID, rowCount);
+    }
+
+    /**
+     * Loads the data associated with a page of nodes: associated JIDs, roster groups, affiliations and subscriptions.
+     *
+     * @param service the service that the nodes belong to.
+     * @param afterNodeID the (database representation of the) ID of the last node of the preceding page, or null for the first page.
+     * @param page the page of nodes.
+     * @throws SQLException when the data could not be read from the database.
+     */
+    private void loadAssociations(@Nonnull final PubSubService service, @Nullable final String afterNodeID, @Nonnull final NodesPage page) throws SQLException
+    {
+        final PubSubService.UniqueIdentifier serviceId = service.getUniqueIdentifier();
+        final Map<Node.UniqueIdentifier, Node> nodes = page.nodes();
+        final String range = afterNodeID == null ? FIRST_PAGE_OF_NODES : PAGE_OF_NODES_AFTER;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            con = DbConnectionManager.getConnection();
 
-            if (nodes.isEmpty()) {
-            	log.info("No nodes found in pubsub for service {}", service.getServiceID() );
-            	return;
-            }
-            
-            for (Map.Entry<Node.UniqueIdentifier, Node.UniqueIdentifier> entry : parentMappings.entrySet()) {
-            	Node child = nodes.get(entry.getKey());
-            	CollectionNode parent = (CollectionNode) nodes.get(entry.getValue());
-            	
-            	if (parent == null) {
-            		log.error("Could not find parent node " + entry.getValue() + " for node " + entry.getKey());
-            	}
-            	else {
-                    child.changeParent(parent);
-            	}
-            }
             // Get JIDs associated with all nodes
-            pstmt = con.prepareStatement(LOAD_NODES_JIDS);
-            pstmt.setString(1, service.getServiceID());
+            pstmt = con.prepareStatement(LOAD_NODES_JIDS + range);
+            setPageOfNodes(pstmt, service, afterNodeID, page);
             rs = pstmt.executeQuery();
             // Add to each node the associated JIDs
             while(rs.next()) {
-                loadAssociatedJIDs(nodes, rs);
+                loadAssociatedJIDs(serviceId, nodes, rs);
             }
             DbConnectionManager.fastcloseStmt(rs, pstmt);
 
             // Get roster groups associateds with all nodes
-            pstmt = con.prepareStatement(LOAD_NODES_GROUPS);
-            pstmt.setString(1, service.getServiceID());
+            pstmt = con.prepareStatement(LOAD_NODES_GROUPS + range);
+            setPageOfNodes(pstmt, service, afterNodeID, page);
             rs = pstmt.executeQuery();
             // Add to each node the associated Groups
             while(rs.next()) {
-                loadAssociatedGroups(nodes, rs);
+                loadAssociatedGroups(serviceId, nodes, rs);
             }
             DbConnectionManager.fastcloseStmt(rs, pstmt);
 
             // Get affiliations of all nodes
-            pstmt = con.prepareStatement(LOAD_AFFILIATIONS);
-            pstmt.setString(1, service.getServiceID());
+            pstmt = con.prepareStatement(LOAD_AFFILIATIONS + range);
+            setPageOfNodes(pstmt, service, afterNodeID, page);
             rs = pstmt.executeQuery();
             // Add to each node the correspondiding affiliates
             while(rs.next()) {
-                loadAffiliations(nodes, rs);
+                loadAffiliations(serviceId, nodes, rs);
             }
             DbConnectionManager.fastcloseStmt(rs, pstmt);
 
             // Get subscriptions to all nodes
-            pstmt = con.prepareStatement(LOAD_SUBSCRIPTIONS);
-            pstmt.setString(1, service.getServiceID());
+            pstmt = con.prepareStatement(LOAD_SUBSCRIPTIONS + range);
+            setPageOfNodes(pstmt, service, afterNodeID, page);
             rs = pstmt.executeQuery();
             // Add to each node the correspondiding subscriptions
             while(rs.next()) {
-                loadSubscriptions(nodes, rs);
+                loadSubscriptions(serviceId, nodes, rs);
             }
             DbConnectionManager.fastcloseStmt(rs, pstmt);
         }
-        catch (SQLException sqle) {
-            log.error("An exception occurred while loading nodes for a service ({}) from the database.", service.getUniqueIdentifier(), sqle);
-        }
         finally {
             DbConnectionManager.closeConnection(rs, pstmt, con);
         }
+    }
 
-        for (Node node : nodes.values()) {
-            // Set now that the node is persistent in the database. Note: We need to
-            // set this now since otherwise the node's affiliations will be saved to the database
-            // "again" while adding them to the node!
-            node.setSavedToDB(true);
-            // Add the node to the service
-            service.addNode(node);
+    private static void setPageOfNodes(@Nonnull final PreparedStatement pstmt, @Nonnull final PubSubService service, @Nullable final String afterNodeID, @Nonnull final NodesPage page) throws SQLException
+    {
+        int index = 1;
+        pstmt.setString(index++, service.getServiceID());
+        if (afterNodeID != null) {
+            pstmt.setString(index++, afterNodeID);
         }
+        pstmt.setString(index, page.lastNodeID());
     }
 
+    /**
+     * A page of nodes, read from the database.
+     *
+     * @param nodes the nodes that were read.
+     * @param lastNodeID the (database representation of the) ID of the last node that was read.
+     * @param rowCount the number of rows that were read (which can exceed the number of nodes, if some could not be parsed).
+     */
+    private record NodesPage(@Nonnull Map<Node.UniqueIdentifier, Node> nodes, @Nullable String lastNodeID, int rowCount) {}
+
     @Override
 	public void loadNode(PubSubService service, Node.UniqueIdentifier nodeIdentifier)
 	{
@@ -669,7 +874,7 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
 			// Add to each node the associated JIDs
 			while (rs.next())
 			{
-				loadAssociatedJIDs(nodes, rs);
+				loadAssociatedJIDs(nodeIdentifier.getServiceIdentifier(), nodes, rs);
 			}
 			DbConnectionManager.fastcloseStmt(rs, pstmt);
 
@@ -681,7 +886,7 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
 			// Add to each node the associated Groups
 			while (rs.next())
 			{
-				loadAssociatedGroups(nodes, rs);
+				loadAssociatedGroups(nodeIdentifier.getServiceIdentifier(), nodes, rs);
 			}
 			DbConnectionManager.fastcloseStmt(rs, pstmt);
 
@@ -693,7 +898,7 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
 			// Add to each node the corresponding affiliates
 			while (rs.next())
 			{
-				loadAffiliations(nodes, rs);
+				loadAffiliations(nodeIdentifier.getServiceIdentifier(), nodes, rs);
 			}
 			DbConnectionManager.fastcloseStmt(rs, pstmt);
 
@@ -705,7 +910,7 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
 			// Add to each node the corresponding subscriptions
 			while (rs.next())
 			{
-				loadSubscriptions(nodes, rs);
+				loadSubscriptions(nodeIdentifier.getServiceIdentifier(), nodes, rs);
 			}
 			DbConnectionManager.fastcloseStmt(rs, pstmt);
 		}
@@ -791,22 +996,14 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
         }
     }
 
-    private static Node lookupNode(Map<Node.UniqueIdentifier, Node> nodes, String nodeID) {
-        Set<Node> matchingNodes = nodes.values().stream().filter(n -> n.getNodeID().equals(nodeID)).collect(Collectors.toSet());
-        if (matchingNodes.isEmpty()) {
-            return null;
-        }
-        if (matchingNodes.size() > 1) {
-            // This is a coding error.
-            throw new IllegalStateException( "Identifier does not uniquely identify node in provided map: " + nodeID );
-        }
-        return matchingNodes.iterator().next();
+    private static Node lookupNode(PubSubService.UniqueIdentifier serviceId, Map<Node.UniqueIdentifier, Node> nodes, String nodeID) {
+        return nodes.get(new Node.UniqueIdentifier(serviceId, nodeID));
     }
 
-    private void loadAssociatedJIDs(Map<Node.UniqueIdentifier, Node> nodes, ResultSet rs) {
+    private void loadAssociatedJIDs(PubSubService.UniqueIdentifier serviceId, Map<Node.UniqueIdentifier, Node> nodes, ResultSet rs) {
         try {
             String nodeID = decodeNodeID(rs.getString(1));
-            Node node = lookupNode(nodes, nodeID);
+            Node node = lookupNode(serviceId, nodes, nodeID);
             if (node == null) {
                 log.warn("JID associated to a non-existent node: {}", nodeID);
                 return;
@@ -831,10 +1028,10 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
         }
     }
 
-    private void loadAssociatedGroups(Map<Node.UniqueIdentifier, Node> nodes, ResultSet rs) {
+    private void loadAssociatedGroups(PubSubService.UniqueIdentifier serviceId, Map<Node.UniqueIdentifier, Node> nodes, ResultSet rs) {
         try {
             String nodeID = decodeNodeID(rs.getString(1));
-            Node node = lookupNode(nodes, nodeID);
+            Node node = lookupNode(serviceId, nodes, nodeID);
             if (node == null) {
                 log.warn("Roster Group associated to a non-existent node: " + nodeID);
                 return;
@@ -846,10 +1043,10 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
         }
     }
 
-    private void loadAffiliations(Map<Node.UniqueIdentifier, Node> nodes, ResultSet rs) {
+    private void loadAffiliations(PubSubService.UniqueIdentifier serviceId, Map<Node.UniqueIdentifier, Node> nodes, ResultSet rs) {
         try {
             String nodeID = decodeNodeID(rs.getString(1));
-            Node node = lookupNode(nodes, nodeID);
+            Node node = lookupNode(serviceId, nodes, nodeID);
             if (node == null) {
                 log.warn("Affiliations found for a non-existent node: " + nodeID);
                 return;
@@ -886,7 +1083,7 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
 			// Add to each node the corresponding subscription
 			if (rs.next())
 			{
-				loadSubscriptions(nodes, rs);
+				loadSubscriptions(node.getUniqueIdentifier().getServiceIdentifier(), nodes, rs);
 			}
 		}
 		catch (SQLException sqle)
@@ -951,10 +1148,10 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
         return result;
     }
 
-    private void loadSubscriptions(Map<Node.UniqueIdentifier, Node> nodes, ResultSet rs) {
+    private void loadSubscriptions(PubSubService.UniqueIdentifier serviceId, Map<Node.UniqueIdentifier, Node> nodes, ResultSet rs) {
         try {
             String nodeID = decodeNodeID(rs.getString(1));
-            Node node = lookupNode(nodes, nodeID);
+            Node node = lookupNode(serviceId, nodes, nodeID);
             if (node == null) {
                 log.warn("Subscription found for a non-existent node: " + nodeID);
                 return;
@@ -1641,6 +1838,68 @@ public class DefaultPubSubPersistenceProvider implements PubSubPersistenceProvid
         return results;
     }
 
+    @Nullable
+    @Override
+    public List<PublishedItem> getPublishedItems(@Nonnull final LeafNode node, @Nullable final String after, @Nullable final String before, final int limit) {
+        final String serviceID = node.getUniqueIdentifier().getServiceIdentifier().getServiceId();
+        final String nodeID = encodeNodeID(node.getNodeID());
+        final String cursor = after != null ? after : before != null && !before.isEmpty() ? before : null;
+        final boolean backwards = before != null;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        final List<PublishedItem> results = new ArrayList<>();
+        try {
+            con = DbConnectionManager.getConnection();
+            if (cursor == null) {
+                pstmt = con.prepareStatement(backwards ? LOAD_ITEMS_LAST_PAGE : LOAD_ITEMS_FIRST_PAGE);
+            } else {
+                // Look up the key of the item that the page is relative to.
+                pstmt = con.prepareStatement(LOAD_ITEM_CREATION_DATE);
+                pstmt.setString(1, serviceID);
+                pstmt.setString(2, nodeID);
+                pstmt.setString(3, cursor);
+                rs = pstmt.executeQuery();
+                if (!rs.next()) {
+                    log.debug("Unable to find item {} on node {} to page relative to.", cursor, node.getUniqueIdentifier());
+                    return null;
+                }
+                final String creationDate = rs.getString(1);
+                DbConnectionManager.fastcloseStmt(rs, pstmt);
+
+                pstmt = con.prepareStatement(backwards ? LOAD_ITEMS_PAGE_BEFORE : LOAD_ITEMS_PAGE_AFTER);
+                pstmt.setString(3, creationDate);
+                pstmt.setString(4, creationDate);
+                pstmt.setString(5, cursor);
+            }
+            pstmt.setString(1, serviceID);
+            pstmt.setString(2, nodeID);
+            pstmt.setMaxRows(limit);
+            pstmt.setFetchSize(limit);
+            rs = pstmt.executeQuery();
+            while (rs.next() && results.size() < limit) {
+                final PublishedItem item = new PublishedItem(node, new JID(rs.getString(2)), rs.getString(1), new Date(Long.parseLong(rs.getString(3).trim())));
+                if (rs.getString(4) != null) {
+                    item.setPayloadXML(rs.getString(4));
+                }
+                results.add(item);
+            }
+        }
+        catch (Exception sqle) {
+            log.error("An exception occurred while trying to obtain a page of items from node {}", node.getUniqueIdentifier(), sqle);
+        }
+        finally {
+            DbConnectionManager.closeConnection(rs, pstmt, con);
+        }
+
+        // Pages before a cursor are read in reverse order.
+        if (backwards) {
+            Collections.reverse(results);
+        }
+        return results;
+    }
+
     @Override
     public PublishedItem getLastPublishedItem(LeafNode node) {
         Connection con = null;
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,7 @@ import org.jivesoftware.openfire.pubsub.models.AccessModel;
 import org.jivesoftware.openfire.pubsub.models.PublisherModel;
 import org.jivesoftware.openfire.session.ClientSession;
 import org.jivesoftware.util.LocaleUtils;
+import org.jivesoftware.util.SystemProperty;
 import org.jivesoftware.util.cache.CacheFactory;
 import org.jivesoftware.util.cache.CacheSizes;
 import org.jivesoftware.util.cache.CannotCalculateSizeException;
@@ -39,6 +40,8 @@ import org.xmpp.packet.Message;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 import static org.jivesoftware.openfire.muc.spi.IQOwnerHandler.parseFirstValueAsBoolean;
@@ -53,6 +56,18 @@ public class LeafNode extends Node {
 
     private Logger Log;
 
+    /**
+     * The maximum duration for which the affiliates to notify are cached, when eligibility of any of them depends on
+     * presence or roster state (that is, if this node or any of its parents uses the 'presence' or 'roster' access
+     * model). A duration of zero disables caching for such nodes.
+     */
+    public static final SystemProperty<Duration> NOTIFICATION_TARGETS_MAX_AGE = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.pubsub.notification.targets.maxage")
+        .setDefaultValue(Duration.ZERO)
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
     /**
      * Flag that indicates whether to persist items to storage. Note that when the
      * variable is false then the last published item is the only items being saved
@@ -79,6 +94,23 @@ public class LeafNode extends Node {
      */
     private transient PublishedItem lastPublished;
 
+    /**
+     * The most recently calculated affiliates to notify, along with the versions of the nodes from which they were
+     * calculated.
+     */
+    private transient volatile NotificationTargets notificationTargets;
+
+    /**
+     * A set of affiliates to notify, the {@link Node#getNotificationTargetsVersion() versions} of this node and its
+     * parents from which it was calculated, and the instant (as obtained from {@link System#nanoTime()}) after which it
+     * is no longer to be used (or {@link Long#MAX_VALUE} if it does not expire).
+     *
+     * The affiliates are partitioned in those that are to be notified regardless of presence, and those of which all
+     * subscriptions are to a node with presence-based delivery. The latter are indexed by the bare JID of each of
+     * their subscriptions, as they can receive notifications only while (one of) these are available.
+     */
+    private record NotificationTargets(long[] versions, Set<NodeAffiliate> affiliates, Set<NodeAffiliate> unconditional, Map<JID, Set<NodeAffiliate>> presenceBased, long expiresAt) {}
+
     // TODO Add checking of max payload size. Return <not-acceptable> plus a application specific error condition of <payload-too-big/>.
 
     public LeafNode( PubSubService.UniqueIdentifier serviceId, CollectionNode parentNode, String nodeID, JID creator, boolean subscriptionEnabled, boolean deliverPayloads, boolean notifyConfigChanges, boolean notifyDelete, boolean notifyRetract, boolean presenceBasedDelivery, AccessModel accessModel, PublisherModel publisherModel, String language, ItemReplyPolicy replyPolicy, boolean persistPublishedItems, int maxPublishedItems, int maxPayloadSize, boolean sendItemSubscribe)
@@ -187,6 +219,7 @@ public class LeafNode extends Node {
         if ((lastPublished == null) || (item != null) && item.getCreationDate().after(lastPublished.getCreationDate())) {
             Log.trace("Set last published item to: {}", item.getID());
             lastPublished = item;
+            invalidateLastPublishedItems();
         }
     }
 
@@ -277,25 +310,144 @@ public class LeafNode extends Node {
             }
         }
 
+        // Broadcast event notification to subscribers and parent node subscribers
+        final List<NodeAffiliate> affiliatesToNotify = new ArrayList<>(getAvailableAffiliatesToNotify());
+
+        // Copy the payload of each item once, to be shared by all notifications (rather than copying it for each affiliate).
+        // Payloads that can be included in their serialized form need no copy.
+        final Map<PublishedItem, Element> sharedPayloads = new HashMap<>();
+        if (isPayloadDelivered()) {
+            for (final PublishedItem publishedItem : newPublishedItems) {
+                if (!publishedItem.isPayloadSpliceable() && publishedItem.getPayload() != null) {
+                    sharedPayloads.put(publishedItem, publishedItem.getPayload().createCopy());
+                }
+            }
+        }
+
+        // When a node has many affiliates, deliver notifications asynchronously, in chunks. Other notifications are
+        // delivered synchronously, unless chunks of this node are still being delivered: the dispatcher then queues them,
+        // to retain the order of notifications.
+        final NotificationDispatcher dispatcher = NotificationDispatcher.getInstance();
+        if (!NotificationDispatcher.appliesTo(affiliatesToNotify.size())) {
+            Log.trace("Sending event notification to {} affiliate(s)", affiliatesToNotify.size());
+            dispatcher.execute(getUniqueIdentifier(), () -> sendPublishedNotifications(affiliatesToNotify, newPublishedItems, sharedPayloads));
+        } else {
+            final int chunkSize = NotificationDispatcher.CHUNK_SIZE.getValue();
+            final List<Runnable> chunks = new ArrayList<>();
+            for (int i = 0; i < affiliatesToNotify.size(); i += chunkSize) {
+                final List<NodeAffiliate> chunk = affiliatesToNotify.subList(i, Math.min(i + chunkSize, affiliatesToNotify.size()));
+                chunks.add(() -> sendPublishedNotifications(chunk, newPublishedItems, sharedPayloads));
+            }
+            Log.trace("Queuing event notification to {} affiliate(s) in {} chunk(s)", affiliatesToNotify.size(), chunks.size());
+            dispatcher.dispatch(getUniqueIdentifier(), chunks);
+        }
+    }
+
+    private void sendPublishedNotifications(List<NodeAffiliate> affiliates, List<PublishedItem> publishedItems, Map<PublishedItem, Element> sharedPayloads) {
         // Build event notification packet to broadcast to subscribers
         Message message = new Message();
         Element event = message.addChildElement("event", "http://jabber.org/protocol/pubsub#event");
-        // Broadcast event notification to subscribers and parent node subscribers
-        Set<NodeAffiliate> affiliatesToNotify = getAffiliatesToNotify();
-        Log.trace("Built event notification stanza to broadcast notification to {} affiliate(s)", affiliatesToNotify.size());
-
-        // TODO Use another thread for this (if # of subscribers is > X)????
-        for (NodeAffiliate affiliate : affiliatesToNotify) {
-            affiliate.sendPublishedNotifications(message, event, this, newPublishedItems);
+        for (NodeAffiliate affiliate : affiliates) {
+            affiliate.sendPublishedNotifications(message, event, this, publishedItems, sharedPayloads);
         }
     }
 
     /**
      * Retrieves the collection of affiliates that should be sent notifications upon changes to this node.
      *
-     * @return A list of node affiliates. Possibly empty.
+     * The result is cached, and is recalculated only after subscriptions, affiliations, access models or the
+     * hierarchy of this node or one of its parents have changed.
+     *
+     * @return An unmodifiable set of node affiliates. Possibly empty.
      */
     public Set<NodeAffiliate> getAffiliatesToNotify() {
+        return getNotificationTargets().affiliates();
+    }
+
+    /**
+     * Retrieves the collection of affiliates that should be sent notifications upon changes to this node, excluding
+     * those that cannot currently receive any, as all of their subscriptions are to nodes with presence-based delivery
+     * while none of the subscribed addresses are available.
+     *
+     * The affiliates are looked up by the bare JIDs of the subscribers that are available (or the other way around,
+     * whichever is fewer), which avoids evaluating the subscriptions of every affiliate of a node with presence-based
+     * delivery of which most subscribers are offline. The affiliates in the result are not guaranteed to be able to
+     * receive a notification: their subscriptions are to be evaluated as usual.
+     *
+     * @return A set of node affiliates. Possibly empty.
+     */
+    Set<NodeAffiliate> getAvailableAffiliatesToNotify() {
+        final NotificationTargets targets = getNotificationTargets();
+        if (targets.presenceBased().isEmpty()) {
+            return targets.affiliates();
+        }
+
+        final Map<JID, Map<JID, String>> presences = getService().getSubscriberPresences();
+        final Set<NodeAffiliate> result = new HashSet<>(targets.unconditional());
+        if (presences.size() < targets.presenceBased().size()) {
+            for (final JID available : presences.keySet()) {
+                result.addAll(targets.presenceBased().getOrDefault(available, Collections.emptySet()));
+            }
+        } else {
+            for (final Map.Entry<JID, Set<NodeAffiliate>> entry : targets.presenceBased().entrySet()) {
+                if (presences.containsKey(entry.getKey())) {
+                    result.addAll(entry.getValue());
+                }
+            }
+        }
+        Log.trace("{} of {} affiliate(s) to notify have a subscription that is available, or not subject to presence-based delivery.", result.size(), targets.affiliates().size());
+        return result;
+    }
+
+    private NotificationTargets getNotificationTargets() {
+        final List<Node> sources = new ArrayList<>();
+        sources.add(this);
+        sources.addAll(getParents());
+        final long[] versions = new long[sources.size()];
+        boolean dependsOnPresence = false;
+        for (int i = 0; i < versions.length; i++) {
+            final Node source = sources.get(i);
+            versions[i] = source.getNotificationTargetsVersion();
+            dependsOnPresence |= source.getAccessModel() == AccessModel.presence || source.getAccessModel() == AccessModel.roster;
+        }
+
+        final NotificationTargets cached = notificationTargets;
+        if (cached != null && Arrays.equals(cached.versions(), versions) && (cached.expiresAt() == Long.MAX_VALUE || System.nanoTime() - cached.expiresAt() < 0)) {
+            Log.trace("Using {} cached affiliate(s) to notify.", cached.affiliates().size());
+            return cached;
+        }
+
+        final Set<NodeAffiliate> affiliates = Collections.unmodifiableSet(calculateAffiliatesToNotify());
+        final Set<NodeAffiliate> unconditional = new HashSet<>();
+        final Map<JID, Set<NodeAffiliate>> presenceBased = new HashMap<>();
+        for (final NodeAffiliate affiliate : affiliates) {
+            final Collection<NodeSubscription> subscriptions = affiliate.getSubscriptions();
+            // Owners may be notified through other means than their subscriptions (eg: all resources of the owner of a PEP service).
+            if (affiliate.getAffiliation() == NodeAffiliate.Affiliation.owner || subscriptions.isEmpty() || subscriptions.stream().anyMatch(subscription -> !subscription.getNode().isPresenceBasedDelivery())) {
+                unconditional.add(affiliate);
+            } else {
+                for (final NodeSubscription subscription : subscriptions) {
+                    presenceBased.computeIfAbsent(subscription.getJID().asBareJID(), k -> new HashSet<>()).add(affiliate);
+                }
+            }
+        }
+
+        final Duration maxAge = NOTIFICATION_TARGETS_MAX_AGE.getValue();
+        final NotificationTargets result;
+        if (!dependsOnPresence) {
+            result = new NotificationTargets(versions, affiliates, unconditional, presenceBased, Long.MAX_VALUE);
+            notificationTargets = result;
+        } else if (!maxAge.isZero()) {
+            result = new NotificationTargets(versions, affiliates, unconditional, presenceBased, System.nanoTime() + maxAge.toNanos());
+            notificationTargets = result;
+        } else {
+            result = new NotificationTargets(versions, affiliates, unconditional, presenceBased, Long.MAX_VALUE);
+            notificationTargets = null;
+        }
+        return result;
+    }
+
+    private Set<NodeAffiliate> calculateAffiliatesToNotify() {
         Log.trace("Getting affiliates to notify...");
 
         Set<NodeAffiliate> affiliatesToNotify = new HashSet<>(affiliates);
@@ -346,6 +498,7 @@ public class LeafNode extends Node {
             if (lastPublished != null && lastPublished.getID().equals(item.getID())) {
                 Log.trace("Removed item was previously the last published item. Setting last published item to null.");
                 lastPublished = null;
+                invalidateLastPublishedItems();
             }
         }
         if (isNotifiedOfRetract()) {
@@ -398,6 +551,18 @@ public class LeafNode extends Node {
      * @param publishedItems the list of published items to send to the subscriber.
      */
     void sendPublishedItems(IQ originalRequest, List<PublishedItem> publishedItems) {
+        sendPublishedItems(originalRequest, publishedItems, null);
+    }
+
+    /**
+     * Sends the list of published items to the requester, optionally including a description of the page of the
+     * result set (as defined in XEP-0059: Result Set Management) that the items are part of.
+     *
+     * @param originalRequest the IQ packet sent by a subscriber (or anyone) to get the node items.
+     * @param publishedItems the list of published items to send to the subscriber.
+     * @param resultSetElement the 'set' element to include in the response, or null.
+     */
+    void sendPublishedItems(IQ originalRequest, List<PublishedItem> publishedItems, Element resultSetElement) {
         Log.trace("Sending {} published item(s) in response to request from '{}'", publishedItems.size(), originalRequest.getFrom());
         IQ result = IQ.createResultIQ(originalRequest);
         Element pubsubElem = result.setChildElement("pubsub", "http://jabber.org/protocol/pubsub");
@@ -405,11 +570,13 @@ public class LeafNode extends Node {
         items.addAttribute("node", nodeID);
         
         for (PublishedItem publishedItem : publishedItems) {
-            Element item = items.addElement("item");
+            Element item = publishedItem.addItemElement(items, true);
             if (isItemRequired()) {
                 item.addAttribute("id", publishedItem.getID());
             }
-            item.add(publishedItem.getPayload().createCopy());
+        }
+        if (resultSetElement != null) {
+            pubsubElem.add(resultSetElement);
         }
         // Send the result
         getService().send(result);
@@ -466,6 +633,22 @@ public class LeafNode extends Node {
         return publishedItems;
     }
 
+    /**
+     * Returns a page of the items that were published to this node, as defined in XEP-0059: Result Set Management. The
+     * result set consists of all published items, ordered from most to least recently published.
+     *
+     * @param after the ID of the item that precedes the requested page, or null.
+     * @param before the ID of the item that follows the requested page, an empty string to request the last page, or null.
+     * @param limit the maximum amount of items to return.
+     * @return the items of the page, or null if the item identified by 'after' or 'before' does not exist.
+     * @see PubSubPersistenceProvider#getPublishedItems(LeafNode, String, String, int)
+     */
+    public List<PublishedItem> getPublishedItems(String after, String before, int limit) {
+        final List<PublishedItem> publishedItems = XMPPServer.getInstance().getPubSubModule().getPersistenceProvider().getPublishedItems(this, after, before, limit);
+        Log.trace("Got {} published item(s) of a page", publishedItems == null ? 0 : publishedItems.size());
+        return publishedItems;
+    }
+
     @Override
     public synchronized PublishedItem getLastPublishedItem() {
         if (lastPublished == null){
@@ -514,6 +697,7 @@ public class LeafNode extends Node {
     public void purge() {
         Log.trace("Purging items that were published to the node and broadcast purge notification to subscribers.");
         XMPPServer.getInstance().getPubSubModule().getPersistenceProvider().purgeNode(this);
+        invalidateLastPublishedItems();
         // Broadcast purge notification to subscribers
         // Build packet to broadcast to subscribers
         Message message = new Message();
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,8 @@ import org.dom4j.Element;
 import org.jivesoftware.openfire.SessionManager;
 import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.cluster.ClusterManager;
+import org.jivesoftware.openfire.pep.PEPLastItemIndex;
+import org.jivesoftware.openfire.pep.PEPService;
 import org.jivesoftware.openfire.pep.PEPServiceManager;
 import org.jivesoftware.openfire.pubsub.cluster.*;
 import org.jivesoftware.openfire.pubsub.models.AccessModel;
@@ -39,6 +41,7 @@ import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static org.jivesoftware.openfire.muc.spi.IQOwnerHandler.parseFirstValueAsBoolean;
@@ -100,6 +103,12 @@ public abstract class Node implements Cacheable, Externalizable {
      * Access model that specifies who is allowed to subscribe and retrieve items.
      */
     protected AccessModel accessModel = AccessModel.open;
+
+    /**
+     * A counter that is incremented whenever state changes that determines which entities are to be notified of events
+     * of this node, or of nodes of which this node is a parent (see {@link LeafNode#getAffiliatesToNotify()}).
+     */
+    private final transient AtomicLong notificationTargetsVersion = new AtomicLong();
     /**
      * The roster group(s) allowed to subscribe and retrieve items.
      */
@@ -387,6 +396,7 @@ public abstract class Node implements Cacheable, Externalizable {
         getLogger().trace("Remove '{}' as {}", affiliate.getJID(), affiliate.getAffiliation());
         // Remove the existing affiliate from the list in memory
         affiliates.remove(affiliate);
+        invalidateNotificationTargets();
         if (savedToDB) {
             getLogger().trace("Remove the affiliate in the database");
             XMPPServer.getInstance().getPubSubModule().getPersistenceProvider().removeAffiliation(this, affiliate);
@@ -607,6 +617,7 @@ public abstract class Node implements Cacheable, Externalizable {
                     values = field.getValues();
                     if (!values.isEmpty())  {
                         accessModel = AccessModel.valueOf(values.get(0));
+                        invalidateNotificationTargets();
                     }
                 }
                 else if ("pubsub#publish_model".equals(field.getVariable())) {
@@ -752,9 +763,11 @@ public abstract class Node implements Cacheable, Externalizable {
         }
         // Store the new or updated node in the backend store
         saveToDB();
+        invalidateLastPublishedItems();
 
         // Check if we need to subscribe or unsubscribe from affiliate presences
         if (wasPresenceBased != isPresenceBasedDelivery()) {
+            invalidateNotificationTargets();
             if (isPresenceBasedDelivery()) {
                 addPresenceSubscriptions();
             }
@@ -1631,6 +1644,37 @@ public abstract class Node implements Cacheable, Externalizable {
         return parents;
     }
 
+    /**
+     * Signals that state has changed that determines which entities are to be notified of events of this node, or of
+     * nodes of which this node is a parent.
+     */
+    void invalidateNotificationTargets() {
+        notificationTargetsVersion.incrementAndGet();
+        invalidateLastPublishedItems();
+    }
+
+    /**
+     * Signals that state has changed that determines the last published items that are sent to entities when these
+     * become available, or the entities to which these are sent.
+     *
+     * @see PEPLastItemIndex
+     */
+    void invalidateLastPublishedItems() {
+        // Nodes that are being loaded restore state, rather than change it.
+        if (getService() instanceof PEPService pepService && !pepService.isLoading()) {
+            PEPLastItemIndex.getInstance().invalidate(pepService.getAddress());
+        }
+    }
+
+    /**
+     * Returns a value that changes whenever {@link #invalidateNotificationTargets()} is invoked.
+     *
+     * @return a version number.
+     */
+    long getNotificationTargetsVersion() {
+        return notificationTargetsVersion.get();
+    }
+
     /**
      * Sets whether event notifications will include payloads. Payloads are included when
      * publishing new items. However, new items may not always include a payload depending
@@ -1678,6 +1722,7 @@ public abstract class Node implements Cacheable, Externalizable {
 
     void setPresenceBasedDelivery(boolean presenceBasedDelivery) {
         this.presenceBasedDelivery = presenceBasedDelivery;
+        invalidateNotificationTargets();
     }
 
     /**
@@ -1719,6 +1764,7 @@ public abstract class Node implements Cacheable, Externalizable {
      */
     void setAccessModel(AccessModel accessModel) {
         this.accessModel = accessModel;
+        invalidateNotificationTargets();
     }
 
     /**
@@ -1874,6 +1920,7 @@ public abstract class Node implements Cacheable, Externalizable {
     public void addAffiliate(NodeAffiliate affiliate) {
         getLogger().trace("Add '{}' as {}", affiliate.getJID(), affiliate.getAffiliation());
         affiliates.add(affiliate);
+        invalidateNotificationTargets();
     }
 
     public void addSubscription(NodeSubscription subscription)
@@ -1881,6 +1928,7 @@ public abstract class Node implements Cacheable, Externalizable {
         getLogger().trace("Add subscription for '{}' (state: {}).", subscription.getJID(), subscription.getState());
         subscriptionsByID.put(subscription.getID(), subscription);
         subscriptionsByJID.put(subscription.getJID().toString(), subscription);
+        invalidateNotificationTargets();
     }
 
     /**
@@ -1963,6 +2011,7 @@ public abstract class Node implements Cacheable, Externalizable {
         affiliates.clear();
         subscriptionsByID.clear();
         subscriptionsByJID.clear();
+        invalidateNotificationTargets();
     }
 
     /**
@@ -1998,6 +2047,7 @@ public abstract class Node implements Cacheable, Externalizable {
         }
         // Set the new parent of this node
         parent = newParent;
+        invalidateNotificationTargets();
         if (parent != null) {
             parentIdentifier = parent.getUniqueIdentifier();
 
@@ -2277,6 +2327,7 @@ public abstract class Node implements Cacheable, Externalizable {
         // Remove subscription from memory
         subscriptionsByID.remove(subscription.getID());
         subscriptionsByJID.remove(subscription.getJID().toString());
+        invalidateNotificationTargets();
         // Check if user has affiliation of type "none" and there are no more subscriptions
         NodeAffiliate affiliate = subscription.getAffiliate();
         if (affiliate != null && affiliate.getAffiliation() == NodeAffiliate.Affiliation.none &&
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2024 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -68,6 +68,7 @@ public class NodeAffiliate implements Cacheable
 
     public void setAffiliation(Affiliation affiliation) {
         this.affiliation = affiliation;
+        node.invalidateNotificationTargets();
     }
 
     /**
@@ -97,6 +98,24 @@ public class NodeAffiliate implements Cacheable
      * @param publishedItems the list of items that were published. Could be an empty list.
      */
     void sendPublishedNotifications(Message notification, Element event, LeafNode leafNode, List<PublishedItem> publishedItems)
+    {
+        sendPublishedNotifications(notification, event, leafNode, publishedItems, Collections.emptyMap());
+    }
+
+    /**
+     * Sends an event notification for the published items to the affiliate, using copies of the payloads that are
+     * shared by the notifications to all affiliates. A shared payload is moved into each notification that is sent. The
+     * caller must therefore ensure that notifications that use the same shared payloads are not sent concurrently.
+     *
+     * @param notification the message to sent to the subscribers. The message will be completed
+     *        with the items to include in each notification.
+     * @param event the event Element included in the notification message. Passed as an
+     *        optimization to avoid future look ups.
+     * @param leafNode the leaf node where the items where published.
+     * @param publishedItems the list of items that were published. Could be an empty list.
+     * @param sharedPayloads copies of the payloads of the published items, by item. Items without an entry include their payload in its serialized form, or a new copy of it.
+     */
+    void sendPublishedNotifications(Message notification, Element event, LeafNode leafNode, List<PublishedItem> publishedItems, Map<PublishedItem, Element> sharedPayloads)
     {
         if (!publishedItems.isEmpty()) {
             Map<List<NodeSubscription>, List<PublishedItem>> itemsBySubs = getItemsBySubscriptions(leafNode, publishedItems);
@@ -121,12 +140,14 @@ public class NodeAffiliate implements Cacheable
                     }
 
                     // Add item information to the event notification
-                    Element item = items.addElement("item");
+                    final Element sharedPayload = leafNode.isPayloadDelivered() ? sharedPayloads.get(publishedItem) : null;
+                    Element item = publishedItem.addItemElement(items, leafNode.isPayloadDelivered() && sharedPayload == null);
                     if (leafNode.isItemRequired()) {
                         item.addAttribute("id", publishedItem.getID());
                     }
-                    if (leafNode.isPayloadDelivered()) {
-                        item.add(publishedItem.getPayload().createCopy());
+                    if (sharedPayload != null) {
+                        sharedPayload.detach();
+                        item.add(sharedPayload);
                     }
                     // Add leaf leafNode information if affiliated leafNode and node
                     // where the item was published are different
@@ -180,13 +201,10 @@ public class NodeAffiliate implements Cacheable
                     }
 
                     // Add item information to the event notification
-                    Element item = items.addElement("item");
+                    Element item = publishedItem.addItemElement(items, leafNode.isPayloadDelivered());
                     if (leafNode.isItemRequired()) {
                         item.addAttribute("id", publishedItem.getID());
                     }
-                    if (leafNode.isPayloadDelivered()) {
-                        item.add(publishedItem.getPayload().createCopy());
-                    }
                     // Add leaf leafNode information if affiliated leafNode and node
                     // where the item was published are different
                     if (leafNode != getNode()) {
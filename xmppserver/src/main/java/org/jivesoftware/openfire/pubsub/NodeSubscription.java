@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -499,12 +499,14 @@ public class NodeSubscription {
                 else {
                     state = State.subscribed;
                 }
+                node.invalidateNotificationTargets();
             }
         }
         if (savedToDB) {
             // Update the subscription in the backend store
             XMPPServer.getInstance().getPubSubModule().getPersistenceProvider().updateSubscription(node, this);
         }
+        node.invalidateLastPublishedItems();
         // Check if the service needs to subscribe or unsubscribe from the owner presence
         if (!node.isPresenceBasedDelivery() && wasUsingPresence != !presenceStates.isEmpty()) {
             if (presenceStates.isEmpty()) {
@@ -845,13 +847,10 @@ public class NodeSubscription {
         Element event = notification.getElement().addElement("event", "http://jabber.org/protocol/pubsub#event");
         Element items = event.addElement("items");
         items.addAttribute("node", node.getUniqueIdentifier().getNodeId());
-        Element item = items.addElement("item");
+        Element item = publishedItem.addItemElement(items, node.isPayloadDelivered());
         if (((LeafNode) node).isItemRequired()) {
             item.addAttribute("id", publishedItem.getID());
         }
-        if (node.isPayloadDelivered() && publishedItem.getPayload() != null) {
-            item.add(publishedItem.getPayload().createCopy());
-        }
         // Add a message body (if required)
         if (isIncludingBody()) {
             final Locale preferredLocale = SessionManager.getInstance().getLocaleForSession(jid);
@@ -906,6 +905,7 @@ public class NodeSubscription {
 
         Log.trace("Subscription has been approved by a node owner. Toggling state from {} to {}.", state, State.subscribed);
         state = State.subscribed;
+        node.invalidateNotificationTargets();
 
         if (savedToDB) {
             // Update the subscription in the backend store
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.pubsub;
+
+import org.jivesoftware.util.NamedThreadFactory;
+import org.jivesoftware.util.SystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers event notifications of nodes that have many affiliates asynchronously, so that the entity that caused the
+ * event (eg: the publisher of an item) is not held up by notifications being sent to all subscribers.
+ *
+ * Notifications are delivered in chunks of affiliates. Chunks are executed in order, one at a time, for each node:
+ * subscribers of a node receive notifications in the order in which events occurred on that node. Chunks of different
+ * nodes are executed concurrently, taking turns, so that a node with many subscribers does not starve other nodes.
+ *
+ * Notifications that are to be delivered synchronously are to be passed through {@link #execute(Node.UniqueIdentifier, Runnable)},
+ * which delivers them immediately only if no chunks of the same node are queued or being executed.
+ */
+public final class NotificationDispatcher
+{
+    private static final Logger Log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    /**
+     * The minimum amount of affiliates to be notified for notifications to be delivered asynchronously.
+     */
+    public static final SystemProperty<Integer> THRESHOLD = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.pubsub.notification.async.threshold")
+        .setDefaultValue(1000)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum amount of affiliates that are notified in one chunk.
+     */
+    public static final SystemProperty<Integer> CHUNK_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.pubsub.notification.async.chunksize")
+        .setDefaultValue(500)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The amount of threads that deliver notifications asynchronously.
+     */
+    public static final SystemProperty<Integer> THREADS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.pubsub.notification.async.threads")
+        .setDefaultValue(4)
+        .setMinValue(1)
+        .setDynamic(false)
+        .build();
+
+    private static final NotificationDispatcher INSTANCE = new NotificationDispatcher(createExecutor());
+
+    public static NotificationDispatcher getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private static Executor createExecutor()
+    {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS.getValue(), THREADS.getValue(), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("pubsub-notification-", null, true, null));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * A chunk of notifications, and the instant (as obtained from {@link System#nanoTime()}) at which it was queued.
+     */
+    private record Chunk(@Nonnull Runnable task, long queuedAt) {}
+
+    private final Executor executor;
+
+    /**
+     * Chunks that are waiting to be executed, by node. A node is present in this map while a chunk of the node is being
+     * executed, and while chunks of the node are waiting to be executed. The queue of a node does not include the
+     * chunk that is being executed.
+     */
+    private final Map<Node.UniqueIdentifier, ArrayDeque<Chunk>> queues = new ConcurrentHashMap<>();
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    private final AtomicLong lastLagNanos = new AtomicLong();
+
+    NotificationDispatcher(@Nonnull final Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Checks if notifications to the provided amount of affiliates are to be delivered asynchronously.
+     *
+     * @param affiliateCount the amount of affiliates to notify.
+     * @return true if notifications are to be delivered asynchronously.
+     */
+    public static boolean appliesTo(final int affiliateCount)
+    {
+        return affiliateCount >= THRESHOLD.getValue();
+    }
+
+    /**
+     * Queues chunks of notifications of a node, to be executed in order, after all chunks that were previously queued
+     * for the same node.
+     *
+     * @param nodeID the node for which notifications are delivered.
+     * @param chunks the chunks of notifications to deliver.
+     */
+    public void dispatch(@Nonnull final Node.UniqueIdentifier nodeID, @Nonnull final List<Runnable> chunks)
+    {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final boolean[] start = { false };
+        queues.compute(nodeID, (k, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                start[0] = true;
+            }
+            for (final Runnable chunk : chunks) {
+                queue.add(new Chunk(chunk, now));
+            }
+            return queue;
+        });
+        queueDepth.addAndGet(chunks.size());
+        Log.trace("Queued {} chunk(s) of notifications for node {}", chunks.size(), nodeID);
+        if (start[0]) {
+            executor.execute(() -> executeNext(nodeID));
+        }
+    }
+
+    /**
+     * Delivers notifications of a node synchronously, unless chunks of notifications of the same node are queued or
+     * being executed. In that case, the notifications are queued, to be delivered after those chunks.
+     *
+     * @param nodeID the node for which notifications are delivered.
+     * @param task the notifications to deliver.
+     */
+    public void execute(@Nonnull final Node.UniqueIdentifier nodeID, @Nonnull final Runnable task)
+    {
+        final long now = System.nanoTime();
+        final boolean[] inline = { false };
+        queues.compute(nodeID, (k, queue) -> {
+            if (queue == null) {
+                // Register the node as active, so that chunks that are dispatched meanwhile are queued after this task.
+                inline[0] = true;
+                return new ArrayDeque<>();
+            }
+            queue.add(new Chunk(task, now));
+            return queue;
+        });
+        if (!inline[0]) {
+            queueDepth.incrementAndGet();
+            Log.trace("Queued notifications for node {} after chunks that are being delivered", nodeID);
+            return;
+        }
+
+        try {
+            task.run();
+        } finally {
+            release(nodeID);
+        }
+    }
+
+    /**
+     * Executes the next chunk of a node, then schedules execution of the chunk after that (if any).
+     */
+    private void executeNext(@Nonnull final Node.UniqueIdentifier nodeID)
+    {
+        final Chunk[] next = { null };
+        queues.computeIfPresent(nodeID, (k, queue) -> {
+            next[0] = queue.poll();
+            return queue;
+        });
+        if (next[0] == null) {
+            release(nodeID);
+            return;
+        }
+
+        queueDepth.decrementAndGet();
+        lastLagNanos.set(System.nanoTime() - next[0].queuedAt());
+        try {
+            next[0].task().run();
+        } catch (Throwable t) {
+            Log.warn("An unexpected exception occurred while delivering notifications for node {}", nodeID, t);
+        } finally {
+            release(nodeID);
+        }
+    }
+
+    /**
+     * Registers that a chunk of a node has been executed. The node remains active if more chunks of it are queued, in
+     * which case execution of the next chunk is scheduled.
+     */
+    private void release(@Nonnull final Node.UniqueIdentifier nodeID)
+    {
+        final boolean[] more = { false };
+        queues.computeIfPresent(nodeID, (k, queue) -> {
+            more[0] = !queue.isEmpty();
+            return more[0] ? queue : null;
+        });
+        if (more[0]) {
+            // Resubmit rather than loop, to let chunks of other nodes take turns.
+            executor.execute(() -> executeNext(nodeID));
+        }
+    }
+
+    /**
+     * Returns the amount of chunks of notifications that are waiting to be delivered, for all nodes.
+     *
+     * @return a queue depth.
+     */
+    public int getQueueDepth()
+    {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns the amount of chunks of notifications that are waiting to be delivered for a particular node. This does
+     * not include a chunk that is being delivered.
+     *
+     * @param nodeID the node for which to return the queue depth.
+     * @return a queue depth.
+     */
+    public int getQueueDepth(@Nonnull final Node.UniqueIdentifier nodeID)
+    {
+        final int[] result = { 0 };
+        queues.computeIfPresent(nodeID, (k, queue) -> {
+            result[0] = queue.size();
+            return queue;
+        });
+        return result[0];
+    }
+
+    /**
+     * Returns the duration that the most recently executed chunk of notifications was queued, before it was executed.
+     *
+     * @return a notification lag.
+     */
+    @Nonnull
+    public Duration getNotificationLag()
+    {
+        return Duration.ofNanos(lastLagNanos.get());
+    }
+}
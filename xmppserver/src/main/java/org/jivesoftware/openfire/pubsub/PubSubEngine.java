@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,7 @@ import org.jivesoftware.openfire.pubsub.models.AccessModel;
 import org.jivesoftware.openfire.user.UserManager;
 import org.jivesoftware.util.ImmediateFuture;
 import org.jivesoftware.util.StringUtils;
+import org.jivesoftware.util.SystemProperty;
 import org.jivesoftware.util.TaskEngine;
 import org.jivesoftware.util.cache.CacheFactory;
 import org.slf4j.Logger;
@@ -36,6 +37,7 @@ import org.slf4j.LoggerFactory;
 import org.xmpp.forms.DataForm;
 import org.xmpp.forms.FormField;
 import org.xmpp.packet.*;
+import org.xmpp.resultsetmanagement.ResultSet;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -52,6 +54,16 @@ public class PubSubEngine
 
     private static final Interner<JID> userMutex = Interners.newWeakInterner();
     private static final String MUTEX_SUFFIX_NODE = " psn";
+
+    /**
+     * The maximum amount of items that are returned in one page, when items are retrieved using Result Set Management.
+     */
+    public static final SystemProperty<Integer> RSM_MAX_ITEMS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.pubsub.rsm.max")
+        .setDefaultValue(100)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
     /**
      * The packet router for the server.
      */
@@ -1175,6 +1187,7 @@ public class PubSubEngine
         LeafNode leafNode = (LeafNode) node;
         // Get list of items to send to the user
         List<PublishedItem> items;
+        Element resultSetElement = null;
         String max_items = itemsElement.attributeValue("max_items");
         int recentItems = 0;
         if (max_items != null) {
@@ -1194,7 +1207,33 @@ public class PubSubEngine
         }
         else {
             List<Element> requestedItems = itemsElement.elements("item");
-            if (requestedItems.isEmpty()) {
+            Element rsmElement = itemsElement.getParent() == null ? null : itemsElement.getParent().element(QName.get("set", ResultSet.NAMESPACE_RESULT_SET_MANAGEMENT));
+            if (requestedItems.isEmpty() && rsmElement != null) {
+                // Get a page of the items that were published to the node (XEP-0059: Result Set Management)
+                if (!ResultSet.isValidRSMRequest(rsmElement)) {
+                    sendErrorPacket(iq, PacketError.Condition.bad_request, null);
+                    return;
+                }
+                int limit = RSM_MAX_ITEMS.getValue();
+                if (rsmElement.element("max") != null) {
+                    limit = Math.min(limit, Integer.parseInt(rsmElement.elementTextTrim("max")));
+                }
+                String after = rsmElement.elementTextTrim("after");
+                String before = rsmElement.element("before") != null ? rsmElement.elementTextTrim("before") : null;
+                List<PublishedItem> page = limit > 0 ? leafNode.getPublishedItems(after == null || after.isEmpty() ? null : after, before, limit) : Collections.emptyList();
+                if (page == null) {
+                    // The item that the page is relative to does not exist.
+                    sendErrorPacket(iq, PacketError.Condition.item_not_found, null);
+                    return;
+                }
+                items = new ArrayList<>(page);
+                resultSetElement = DocumentHelper.createElement(QName.get("set", ResultSet.NAMESPACE_RESULT_SET_MANAGEMENT));
+                if (!items.isEmpty()) {
+                    resultSetElement.addElement("first").setText(items.get(0).getID());
+                    resultSetElement.addElement("last").setText(items.get(items.size() - 1).getID());
+                }
+            }
+            else if (requestedItems.isEmpty()) {
                 // Get all the active items that were published to the node
                 items = new ArrayList<>(leafNode.getPublishedItems());
             }
@@ -1224,7 +1263,7 @@ public class PubSubEngine
         }
 
         // Send items to the user
-        leafNode.sendPublishedItems(iq, items);
+        leafNode.sendPublishedItems(iq, items, resultSetElement);
     }
 
     private void createNode(PubSubService service, IQ iq, Element childElement, Element createElement, DataForm publishOptions) {
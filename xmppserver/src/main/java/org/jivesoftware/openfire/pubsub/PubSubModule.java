@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2024 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xmpp.forms.DataForm;
 import org.xmpp.packet.*;
+import org.xmpp.resultsetmanagement.ResultSet;
 
 import javax.annotation.Nonnull;
 import java.util.*;
@@ -658,6 +659,8 @@ public class PubSubModule extends BasicModule implements ServerItemsProvider, Di
             features.add("http://jabber.org/protocol/pubsub#retrieve-default");
             // Item retrieval is supported
             features.add("http://jabber.org/protocol/pubsub#retrieve-items");
+            // Paging of retrieved items is supported
+            features.add(ResultSet.NAMESPACE_RESULT_SET_MANAGEMENT);
             // Retrieval of current subscriptions is supported.
             features.add("http://jabber.org/protocol/pubsub#retrieve-subscriptions");
             // Subscribing and unsubscribing are supported
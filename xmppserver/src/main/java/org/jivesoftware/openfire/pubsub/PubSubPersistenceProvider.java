@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2020-2022 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2020-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,8 @@ import org.jivesoftware.openfire.pep.PEPService;
 import org.xmpp.packet.JID;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -197,6 +199,51 @@ public interface PubSubPersistenceProvider
      */
     List<PublishedItem> getPublishedItems(LeafNode node, int maxRows);
 
+    /**
+     * Fetches a page of the published items of the specified node, as defined in XEP-0059: Result Set Management.
+     *
+     * The result set consists of all published items of the node, ordered from most to least recently published (as
+     * defined by {@link PublishedItem#MOST_RECENT_FIRST}). When 'after' is provided, the page consists of the first
+     * items that follow that item in the result set. When 'before' is provided, the page consists of the last items
+     * that precede that item, or the last items of the result set if 'before' is an empty string.
+     *
+     * The default implementation loads all items of the node. Implementations are expected to override it.
+     *
+     * @param node the leaf node to load published items of.
+     * @param after the ID of the item that precedes the requested page, or null.
+     * @param before the ID of the item that follows the requested page, an empty string to request the last page, or null.
+     * @param limit the maximum amount of items to return.
+     * @return the items of the page, in result set order, or null if the item identified by 'after' or 'before' does not exist.
+     */
+    @Nullable
+    default List<PublishedItem> getPublishedItems(@Nonnull final LeafNode node, @Nullable final String after, @Nullable final String before, final int limit)
+    {
+        final List<PublishedItem> items = new ArrayList<>(getPublishedItems(node));
+        items.sort(PublishedItem.MOST_RECENT_FIRST);
+        final List<String> itemIDs = items.stream().map(PublishedItem::getID).toList();
+
+        int from = 0;
+        int to = items.size();
+        if (after != null) {
+            from = itemIDs.indexOf(after) + 1;
+            if (from == 0) {
+                return null;
+            }
+        }
+        if (before != null && !before.isEmpty()) {
+            to = itemIDs.indexOf(before);
+            if (to == -1) {
+                return null;
+            }
+        }
+        if (before != null) {
+            from = Math.max(from, to - limit);
+        } else {
+            to = Math.min(to, from + limit);
+        }
+        return from >= to ? new ArrayList<>() : new ArrayList<>(items.subList(from, to));
+    }
+
     /**
      * Fetches the last published item (by creation date) for the specified node.
      *
@@ -232,4 +279,15 @@ public interface PubSubPersistenceProvider
      * @param delList A list of items to be removed.
      */
     void bulkPublishedItems( List<PublishedItem> addList, List<PublishedItem> delList );
+
+    /**
+     * Writes all changes to a node that have not yet been written to persistent storage.
+     *
+     * The default implementation does nothing, which is appropriate for implementations that write changes immediately.
+     *
+     * @param nodeUniqueId the node for which to write changes.
+     */
+    default void flushPendingChanges( @Nonnull final Node.UniqueIdentifier nodeUniqueId )
+    {
+    }
 }
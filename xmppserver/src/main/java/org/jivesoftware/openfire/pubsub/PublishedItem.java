@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2022 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.jivesoftware.openfire.pubsub;
 
 import org.dom4j.Element;
+import org.dom4j.QName;
 import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.pep.PEPServiceManager;
 import org.jivesoftware.util.SAXReaderUtil;
@@ -24,7 +25,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xmpp.packet.JID;
 
+import javax.annotation.Nonnull;
 import java.io.Serializable;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Objects;
 
@@ -45,6 +48,12 @@ public class PublishedItem implements Serializable {
     private static final Logger log = LoggerFactory.getLogger(PublishedItem.class);
 
     private static final long serialVersionUID = 7012925993623144574L;
+
+    /**
+     * Orders items from most to least recently published. Items that were published at the same instant are ordered
+     * by descending item ID.
+     */
+    public static final Comparator<PublishedItem> MOST_RECENT_FIRST = Comparator.comparing(PublishedItem::getCreationDate).thenComparing(PublishedItem::getID).reversed();
     
     /**
      * JID of the entity that published the item to the node. This is the full JID
@@ -80,7 +89,12 @@ public class PublishedItem implements Serializable {
      * XML representation of the payload (for serialization)
      */
     private String payloadXML;
-    
+    /**
+     * Indicates if the payload XML can be included in stanzas as-is (without it being parsed). This value is derived
+     * from the payload XML and cached as/when needed.
+     */
+    private volatile transient Boolean payloadSpliceable;
+
     /**
      * Creates a published item
      * @param node The node the published item is created in
@@ -206,6 +220,7 @@ public class PublishedItem implements Serializable {
     void setPayloadXML(String payloadXML) {
         this.payloadXML = payloadXML;
         this.payload = null; // will be recreated only if needed
+        this.payloadSpliceable = null;
     }
 
     /**
@@ -224,6 +239,109 @@ public class PublishedItem implements Serializable {
         } else {
             payloadXML = payload.asXML();
         }
+        payloadSpliceable = null;
+    }
+
+    /**
+     * Adds an 'item' element that represents this published item to the provided parent element. When requested,
+     * the payload of this item is included in that element. Where possible, the payload is included in its serialized
+     * form, to be parsed only when its content is being accessed (see {@link PublishedItemElement}).
+     *
+     * The caller is expected to add any attributes that apply to the returned element.
+     *
+     * @param parent the element to add the 'item' element to (typically, an 'items' element).
+     * @param includePayload true if the payload of this item (if any) is to be included.
+     * @return the 'item' element that was added to the parent.
+     */
+    @Nonnull
+    public Element addItemElement(@Nonnull final Element parent, final boolean includePayload) {
+        final QName qname = QName.get("item", parent.getNamespace());
+        final Element item;
+        if (includePayload && isPayloadSpliceable()) {
+            item = new PublishedItemElement(qname, payloadXML);
+        } else {
+            item = new PublishedItemElement(qname);
+            if (includePayload && getPayload() != null) {
+                item.add(getPayload().createCopy());
+            }
+        }
+        parent.add(item);
+        return item;
+    }
+
+    /**
+     * Returns true if the payload of this item is a self-contained XML element, that can be included as-is in a stanza.
+     *
+     * This is the case when the payload element declares a default namespace or is prefixed. Other payloads would
+     * inherit the namespace of the element that they're included in, which is why those need to be copied as a DOM
+     * representation instead.
+     *
+     * @return true if the payload can be included in its serialized form, false if it can not, or if there's no payload.
+     */
+    boolean isPayloadSpliceable() {
+        if (payloadSpliceable == null) {
+            payloadSpliceable = payloadXML != null && isSelfContained(payloadXML);
+        }
+        return payloadSpliceable;
+    }
+
+    /**
+     * Checks if the root element of the provided XML declares a (non-empty) default namespace, or is prefixed (in
+     * which case a namespace declaration for the prefix is expected to be part of the same XML).
+     *
+     * @param xml the XML to inspect.
+     * @return true if the root element of the XML is namespaced in a self-contained manner.
+     */
+    public static boolean isSelfContained(@Nonnull final String xml) {
+        int i = 0;
+        while (i < xml.length() && Character.isWhitespace(xml.charAt(i))) {
+            i++;
+        }
+        if (i >= xml.length() || xml.charAt(i) != '<') {
+            return false;
+        }
+        i++;
+        final int nameStart = i;
+        while (i < xml.length() && !Character.isWhitespace(xml.charAt(i)) && xml.charAt(i) != '>' && xml.charAt(i) != '/') {
+            i++;
+        }
+        final String name = xml.substring(nameStart, i);
+        if (name.isEmpty() || name.charAt(0) == '?' || name.charAt(0) == '!') {
+            return false;
+        }
+        if (name.indexOf(':') > 0) {
+            return true;
+        }
+        // Inspect the attributes of the root element, looking for a default namespace declaration.
+        while (i < xml.length()) {
+            while (i < xml.length() && Character.isWhitespace(xml.charAt(i))) {
+                i++;
+            }
+            if (i >= xml.length() || xml.charAt(i) == '>' || xml.charAt(i) == '/') {
+                return false;
+            }
+            final int attributeNameStart = i;
+            while (i < xml.length() && xml.charAt(i) != '=' && !Character.isWhitespace(xml.charAt(i))) {
+                i++;
+            }
+            final String attributeName = xml.substring(attributeNameStart, i);
+            while (i < xml.length() && (Character.isWhitespace(xml.charAt(i)) || xml.charAt(i) == '=')) {
+                i++;
+            }
+            if (i >= xml.length() || (xml.charAt(i) != '"' && xml.charAt(i) != '\'')) {
+                return false;
+            }
+            final char quote = xml.charAt(i);
+            final int valueEnd = xml.indexOf(quote, i + 1);
+            if (valueEnd < 0) {
+                return false;
+            }
+            if (attributeName.equals("xmlns")) {
+                return valueEnd > i + 1;
+            }
+            i = valueEnd + 1;
+        }
+        return false;
     }
 
     /**
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.pubsub;
+
+import org.dom4j.Element;
+import org.dom4j.Namespace;
+import org.dom4j.Node;
+import org.dom4j.QName;
+import org.dom4j.tree.DefaultElement;
+import org.dom4j.tree.DefaultEntity;
+import org.jivesoftware.util.SAXReaderUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An 'item' element that represents a {@link PublishedItem} in a stanza, of which the payload is kept in its
+ * serialized form.
+ *
+ * When the element is written, the serialized payload is copied verbatim into the output, which avoids building (and
+ * copying) a DOM representation of the payload for every stanza that it is sent in. The payload is parsed when the
+ * content of the element is accessed by anything other than an XML writer, for example by a packet interceptor.
+ */
+public class PublishedItemElement extends DefaultElement
+{
+    private static final Logger Log = LoggerFactory.getLogger(PublishedItemElement.class);
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    /**
+     * Indicates if the content of this element (still) contains a serialized payload.
+     */
+    private volatile boolean serialized;
+
+    public PublishedItemElement(@Nonnull final QName qname)
+    {
+        super(qname);
+    }
+
+    /**
+     * Creates an 'item' element that contains a payload in its serialized form.
+     *
+     * @param qname the name of the element
+     * @param payloadXML the serialized payload, which must be a self-contained (namespaced) XML element.
+     */
+    public PublishedItemElement(@Nonnull final QName qname, @Nonnull final String payloadXML)
+    {
+        super(qname);
+        addNode(new SerializedPayload(payloadXML));
+        serialized = true;
+    }
+
+    /**
+     * Replaces the serialized payload (if any) with its parsed representation.
+     */
+    private void parsePayload()
+    {
+        if (serialized) {
+            parseSerializedPayload();
+        }
+    }
+
+    /**
+     * Replaces the serialized payload (if any) with its parsed representation, unless the content of this element is
+     * being accessed by an XML writer, which writes the serialized payload verbatim.
+     */
+    private void parsePayloadUnlessWriting()
+    {
+        if (serialized && !isInvokedByWriter()) {
+            parseSerializedPayload();
+        }
+    }
+
+    /**
+     * Checks if the code that invokes a method of this element is an XML writer (of either dom4j or Openfire).
+     */
+    private static boolean isInvokedByWriter()
+    {
+        return STACK_WALKER.walk(frames -> frames
+            .map(StackWalker.StackFrame::getDeclaringClass)
+            .filter(type -> type != PublishedItemElement.class)
+            .findFirst()
+            .map(type -> org.dom4j.io.XMLWriter.class.isAssignableFrom(type) || org.jivesoftware.util.XMLWriter.class.isAssignableFrom(type))
+            .orElse(false));
+    }
+
+    private synchronized void parseSerializedPayload()
+    {
+        serialized = false;
+        final List<Node> content = contentList();
+        for (int i = 0; i < content.size(); i++) {
+            if (content.get(i) instanceof SerializedPayload serializedPayload) {
+                removeNode(serializedPayload);
+                try {
+                    addNode(i, SAXReaderUtil.readRootElement(serializedPayload.getText()));
+                } catch (Exception e) {
+                    Log.error("Failed to parse payload XML", e);
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<Node> content()
+    {
+        parsePayloadUnlessWriting();
+        return super.content();
+    }
+
+    @Override
+    public Node node(final int index)
+    {
+        parsePayloadUnlessWriting();
+        return super.node(index);
+    }
+
+    @Override
+    public Iterator<Node> nodeIterator()
+    {
+        parsePayloadUnlessWriting();
+        return super.nodeIterator();
+    }
+
+    @Override
+    public String getText()
+    {
+        parsePayload();
+        return super.getText();
+    }
+
+    @Override
+    public String getStringValue()
+    {
+        parsePayload();
+        return super.getStringValue();
+    }
+
+    @Override
+    public Object selectObject(final String xpathExpression)
+    {
+        parsePayload();
+        return super.selectObject(xpathExpression);
+    }
+
+    @Override
+    public List<Node> selectNodes(final String xpathExpression)
+    {
+        parsePayload();
+        return super.selectNodes(xpathExpression);
+    }
+
+    @Override
+    public Node selectSingleNode(final String xpathExpression)
+    {
+        parsePayload();
+        return super.selectSingleNode(xpathExpression);
+    }
+
+    @Override
+    public String valueOf(final String xpathExpression)
+    {
+        parsePayload();
+        return super.valueOf(xpathExpression);
+    }
+
+    @Override
+    public Element element(final String name)
+    {
+        parsePayload();
+        return super.element(name);
+    }
+
+    @Override
+    public Element element(final QName qName)
+    {
+        parsePayload();
+        return super.element(qName);
+    }
+
+    @Override
+    public Element element(final String name, final Namespace namespace)
+    {
+        parsePayload();
+        return super.element(name, namespace);
+    }
+
+    @Override
+    public List<Element> elements()
+    {
+        parsePayload();
+        return super.elements();
+    }
+
+    @Override
+    public List<Element> elements(final String name)
+    {
+        parsePayload();
+        return super.elements(name);
+    }
+
+    @Override
+    public List<Element> elements(final QName qName)
+    {
+        parsePayload();
+        return super.elements(qName);
+    }
+
+    @Override
+    public List<Element> elements(final String name, final Namespace namespace)
+    {
+        parsePayload();
+        return super.elements(name, namespace);
+    }
+
+    @Override
+    public Element createCopy()
+    {
+        // Retain the serialized form of the payload in the copy (rather than creating a generic element).
+        final PublishedItemElement copy = new PublishedItemElement(getQName());
+        copy.appendAttributes(this);
+        synchronized (this) {
+            for (final Node node : contentList()) {
+                copy.add((Node) node.clone());
+            }
+            copy.serialized = serialized;
+        }
+        return copy;
+    }
+
+    @Override
+    public Object clone()
+    {
+        return createCopy();
+    }
+
+    /**
+     * The serialized payload of an item. XML writers output the text of entity nodes verbatim, which is what causes
+     * the payload to be included in the output without it being parsed.
+     */
+    private static class SerializedPayload extends DefaultEntity
+    {
+        SerializedPayload(@Nonnull final String payloadXML)
+        {
+            super("payload", payloadXML);
+        }
+
+        @Override
+        public String asXML()
+        {
+            return getText();
+        }
+
+        @Override
+        public void write(final Writer writer) throws IOException
+        {
+            writer.write(getText());
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,8 @@ package org.jivesoftware.openfire.session;
 import org.dom4j.*;
 import org.dom4j.io.XMPPPacketReader;
 import org.jivesoftware.openfire.Connection;
+import org.jivesoftware.openfire.OfflineMessage;
+import org.jivesoftware.openfire.OfflineMessageStore;
 import org.jivesoftware.openfire.SessionManager;
 import org.jivesoftware.openfire.StreamID;
 import org.jivesoftware.openfire.XMPPServer;
@@ -39,6 +41,7 @@ import org.jivesoftware.util.IpUtils;
 import org.jivesoftware.util.JiveGlobals;
 import org.jivesoftware.util.LocaleUtils;
 import org.jivesoftware.util.StringUtils;
+import org.jivesoftware.util.TaskEngine;
 import org.jivesoftware.util.cache.Cache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -132,6 +135,33 @@ public class LocalClientSession extends LocalSession implements ClientSession {
      */
     protected final CsiManager csiManager;
 
+    /**
+     * Guards {@link #heldMessages}, {@link #holdCount}, {@link #holdTimeoutTask} and {@link #releasingHeldMessages}.
+     */
+    private final Object heldMessagesMutex = new Object();
+
+    /**
+     * Messages that are routed to this session while delivery of messages is held (eg: while offline messages are
+     * being delivered), in the order in which they were routed. Null when no messages are being held.
+     */
+    private Deque<Packet> heldMessages;
+
+    /**
+     * The number of outstanding invocations of {@link #holdMessages()}.
+     */
+    private int holdCount = 0;
+
+    /**
+     * Releases all holds when they were not released within {@link OfflineMessageStore#DELIVERY_HOLD_TIMEOUT}. Null
+     * when no messages are being held.
+     */
+    private TimerTask holdTimeoutTask;
+
+    /**
+     * Flag that indicates that a thread is delivering held messages.
+     */
+    private boolean releasingHeldMessages = false;
+
     static {
         // Fill out the allowedIPs with the system property
         String allowed = JiveGlobals.getProperty(ConnectionSettings.Client.LOGIN_ALLOWED, "");
@@ -966,6 +996,126 @@ public class LocalClientSession extends LocalSession implements ClientSession {
         }
     }
 
+    @Override
+    public void process(Packet packet) {
+        final boolean held;
+        synchronized (heldMessagesMutex) {
+            held = heldMessages != null && packet instanceof Message && !(packet instanceof OfflineMessage);
+            if (held) {
+                heldMessages.add(packet);
+                if (holdCount == 0 || heldMessages.size() <= OfflineMessageStore.DELIVERY_HOLD_MAX_MESSAGES.getValue()) {
+                    return;
+                }
+                Log.debug("More than {} messages were held for session {}. Delivering them without waiting for offline messages to be delivered.", OfflineMessageStore.DELIVERY_HOLD_MAX_MESSAGES.getValue(), getAddress());
+            }
+        }
+        if (held) {
+            releaseAllHeldMessages();
+        } else {
+            super.process(packet);
+        }
+    }
+
+    /**
+     * Holds delivery of messages that are routed to this session, until {@link #releaseHeldMessages()} is invoked. This
+     * is used to deliver offline messages to the client before messages that are sent to it while the offline messages
+     * are being delivered. Offline messages themselves are not held.
+     *
+     * To bound the memory that is used, and the delay of messages, all holds are released when more than
+     * {@link OfflineMessageStore#DELIVERY_HOLD_MAX_MESSAGES} messages are held, or when messages have been held for
+     * longer than {@link OfflineMessageStore#DELIVERY_HOLD_TIMEOUT}. Messages that are routed to this session after that
+     * are delivered immediately, even when offline messages are still being delivered.
+     *
+     * Every invocation of this method must be followed by an invocation of {@link #releaseHeldMessages()}.
+     */
+    public void holdMessages() {
+        synchronized (heldMessagesMutex) {
+            holdCount++;
+            if (heldMessages == null) {
+                heldMessages = new ArrayDeque<>();
+            }
+            if (holdTimeoutTask == null) {
+                holdTimeoutTask = new TimerTask() {
+                    @Override
+                    public void run() {
+                        synchronized (heldMessagesMutex) {
+                            if (holdTimeoutTask == this) {
+                                holdTimeoutTask = null;
+                            }
+                        }
+                        Log.debug("Messages were held for session {} for longer than {}. Delivering them without waiting for offline messages to be delivered.", getAddress(), OfflineMessageStore.DELIVERY_HOLD_TIMEOUT.getValue());
+                        releaseAllHeldMessages();
+                    }
+                };
+                TaskEngine.getInstance().schedule(holdTimeoutTask, OfflineMessageStore.DELIVERY_HOLD_TIMEOUT.getValue());
+            }
+        }
+    }
+
+    /**
+     * Releases a hold that was placed by {@link #holdMessages()}. When no other holds remain, messages that were held
+     * are delivered, in the order in which they were routed to this session. When the session was closed in the mean
+     * time, the held messages are routed again instead.
+     */
+    public void releaseHeldMessages() {
+        synchronized (heldMessagesMutex) {
+            if (holdCount == 0 || --holdCount > 0 || releasingHeldMessages) {
+                return;
+            }
+            releasingHeldMessages = true;
+        }
+        deliverHeldMessages();
+    }
+
+    /**
+     * Releases all holds that were placed by {@link #holdMessages()}, delivering the messages that were held. This is
+     * used when too many messages are held, or when messages were held for too long. Any later invocation of
+     * {@link #releaseHeldMessages()} for these holds has no effect.
+     */
+    private void releaseAllHeldMessages() {
+        synchronized (heldMessagesMutex) {
+            holdCount = 0;
+            if (heldMessages == null || releasingHeldMessages) {
+                return;
+            }
+            releasingHeldMessages = true;
+        }
+        deliverHeldMessages();
+    }
+
+    /**
+     * Delivers the messages that were held, until none remain or a new hold is placed. The invoking thread must have set
+     * {@link #releasingHeldMessages}.
+     */
+    private void deliverHeldMessages() {
+        // Messages that are routed to this session while held messages are delivered are queued after them.
+        while (true) {
+            final Packet packet;
+            synchronized (heldMessagesMutex) {
+                if (holdCount > 0) {
+                    // A new hold was placed. Remaining messages are delivered when that is released.
+                    releasingHeldMessages = false;
+                    return;
+                }
+                packet = heldMessages.poll();
+                if (packet == null) {
+                    heldMessages = null;
+                    if (holdTimeoutTask != null) {
+                        holdTimeoutTask.cancel();
+                        holdTimeoutTask = null;
+                    }
+                    releasingHeldMessages = false;
+                    return;
+                }
+            }
+            if (isClosed()) {
+                XMPPServer.getInstance().getPacketRouter().route(packet);
+            } else {
+                super.process(packet);
+            }
+        }
+    }
+
     @Override
     public void deliver(Packet queueOrPushStanza) throws UnauthorizedException {
         // Queue this stanza, possibly returning it immediately in line with any previously queued stanzas if this
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -38,7 +38,9 @@ import javax.annotation.Nonnull;
 import java.math.BigInteger;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -448,7 +450,10 @@ public class StreamManager {
         final Element failed = DocumentHelper.createElement(QName.get("failed", namespace));
         failed.addElement(QName.get(error.getCondition().toXMPP(), "urn:ietf:params:xml:ns:xmpp-stanzas"));
         session.deliverRawText(failed.asXML());
-        this.namespace = null; // isEnabled() is testing this.
+        synchronized (this) {
+            this.namespace = null; // isEnabled() is testing this.
+            notifyAll(); // wake up threads that are awaiting acknowledgement.
+        }
     }
 
     /**
@@ -517,6 +522,9 @@ public class StreamManager {
             }
 
             Log.trace( "After processing client Ack (h={}): {} unacknowledged stanzas.", h, unacknowledgedServerStanzas.size());
+
+            // Wake up threads that are awaiting acknowledgement.
+            notifyAll();
         }
     }
 
@@ -579,6 +587,7 @@ public class StreamManager {
                     Log.warn( "To many stanzas go unacknowledged for this connection. Clearing queue and disabling functionality." );
                     namespace = null;
                     unacknowledgedServerStanzas.clear();
+                    notifyAll();
                     return;
                 }
             }
@@ -608,6 +617,7 @@ public class StreamManager {
                         router.route(unacked.packet);
                     }
                 }
+                notifyAll();
             }
         }
 
@@ -658,6 +668,54 @@ public class StreamManager {
         }
     }
 
+    /**
+     * Returns the sequence number of the last stanza that was sent to the client.
+     *
+     * @return a sequence number.
+     */
+    public synchronized long getLastSentStanzaSequence() {
+        return unacknowledgedServerStanzas.isEmpty() ? clientProcessedStanzas.get() : unacknowledgedServerStanzas.getLast().x;
+    }
+
+    /**
+     * Determines whether the client has acknowledged the stanza that has a particular sequence number (and therefore
+     * all stanzas that were sent before it).
+     *
+     * @param x the sequence number of the stanza (as returned by {@link #getLastSentStanzaSequence()}).
+     * @return true if the stanza has been acknowledged, otherwise false.
+     */
+    public synchronized boolean isAcknowledged(long x) {
+        return unacknowledgedServerStanzas.isEmpty() || unacknowledgedServerStanzas.getFirst().x > x;
+    }
+
+    /**
+     * Requests the client to acknowledge the stanzas that it received, and waits until the client has acknowledged the
+     * stanza that has a particular sequence number, Stream Management is disabled, or a timeout elapses.
+     *
+     * @param x the sequence number of the stanza (as returned by {@link #getLastSentStanzaSequence()}).
+     * @param timeout the maximum duration to wait.
+     * @return true if the stanza has been acknowledged, otherwise false.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public boolean awaitAcknowledgement(long x, Duration timeout) throws InterruptedException {
+        if (isAcknowledged(x)) {
+            return true;
+        }
+        sendServerRequest();
+
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (this) {
+            while (isEnabled() && !isAcknowledged(x)) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return isAcknowledged(x);
+        }
+    }
+
     /**
      * Determines whether Stream Management enabled for session this
      * manager belongs to.
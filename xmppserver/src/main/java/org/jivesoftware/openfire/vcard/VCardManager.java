@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -34,6 +34,7 @@ import org.jivesoftware.util.NotFoundException;
 import org.jivesoftware.util.SystemProperty;
 import org.jivesoftware.util.cache.Cache;
 import org.jivesoftware.util.cache.CacheFactory;
+import org.jivesoftware.util.cache.CacheSnapshotManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,6 +81,7 @@ public class VCardManager extends BasicModule implements ServerFeaturesProvider
         super("VCard Manager");
         String cacheName = "VCard";
         vcardCache = CacheFactory.createCache(cacheName);
+        CacheSnapshotManager.registerWarmUpLoader(cacheName, key -> getOrLoadVCard((String) key));
         this.eventHandler = new EventHandler();
 
         // Keeps the cache updated in case the vCard action was not performed by VCardManager
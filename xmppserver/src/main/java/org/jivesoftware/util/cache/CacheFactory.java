@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2017-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -98,6 +98,8 @@ public class CacheFactory {
 
     private static final String              PROPERTY_SUFFIX_MIN           = ".min";
 
+    private static final String              PROPERTY_SUFFIX_OFF_HEAP_SIZE = ".offHeapSize";
+
     static {
         localCacheFactoryClass = JiveGlobals.getProperty(LOCAL_CACHE_PROPERTY_NAME,
                 "org.jivesoftware.util.cache.DefaultLocalCacheStrategy");
@@ -147,6 +149,7 @@ public class CacheFactory {
         cacheNames.put("Entity Capabilities", "entityCapabilities");
         cacheNames.put("Entity Capabilities Users", "entityCapabilitiesUsers");
         cacheNames.put("PEPServiceManager", "pepServiceManager");
+        cacheNames.put("PEP Last Item Index", "pepLastItemIndex");
         cacheNames.put("Published Items", "publishedItems");
         cacheNames.put("JID Node-parts", "jidNodeprep");
         cacheNames.put("JID Domain-parts", "jidDomainprep");
@@ -235,8 +238,10 @@ public class CacheFactory {
         cacheProps.put(PROPERTY_PREFIX_CACHE + "entityCapabilitiesUsers" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofDays(2).toMillis());
         cacheProps.put(PROPERTY_PREFIX_CACHE + "pluginCacheInfo" + PROPERTY_SUFFIX_SIZE, -1L);
         cacheProps.put(PROPERTY_PREFIX_CACHE + "pluginCacheInfo" + PROPERTY_SUFFIX_MAX_LIFE_TIME, -1L);
-        cacheProps.put(PROPERTY_PREFIX_CACHE + "pepServiceManager" + PROPERTY_SUFFIX_SIZE, 10_485_760L);
-        cacheProps.put(PROPERTY_PREFIX_CACHE + "pepServiceManager" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofMinutes(30).toMillis());
+        cacheProps.put(PROPERTY_PREFIX_CACHE + "pepServiceManager" + PROPERTY_SUFFIX_SIZE, -1L); // Eviction is managed by PEPServiceManager
+        cacheProps.put(PROPERTY_PREFIX_CACHE + "pepServiceManager" + PROPERTY_SUFFIX_MAX_LIFE_TIME, -1L);
+        cacheProps.put(PROPERTY_PREFIX_CACHE + "pepLastItemIndex" + PROPERTY_SUFFIX_SIZE, 10_485_760L);
+        cacheProps.put(PROPERTY_PREFIX_CACHE + "pepLastItemIndex" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofHours(6).toMillis());
         cacheProps.put(PROPERTY_PREFIX_CACHE + "publishedItems" + PROPERTY_SUFFIX_SIZE, 10_485_760L);
         cacheProps.put(PROPERTY_PREFIX_CACHE + "publishedItems" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofMinutes(15).toMillis());
         cacheProps.put(PROPERTY_PREFIX_CACHE + "sequences" + PROPERTY_SUFFIX_SIZE, -1L);
@@ -278,7 +283,7 @@ public class CacheFactory {
                     cache.setMaxLifetime( lifetime );
                 }
 
-                // Note that changes to 'min' and 'type' cannot be applied runtime - a restart is required for those.
+                // Note that changes to 'min', 'type' and 'offHeapSize' cannot be applied runtime - a restart is required for those.
             }
 
             @Override
@@ -391,6 +396,19 @@ public class CacheFactory {
         return getCacheProperty(cacheName, PROPERTY_SUFFIX_MIN, 0);
     }
 
+    /**
+     * Returns the maximum amount of bytes that a local cache can allocate outside of the Java heap, to store entries
+     * that do not fit in its on-heap storage. A value of zero or less indicates that the cache does not use off-heap
+     * storage, which is the default.
+     *
+     * @param cacheName the name of the cache to look up a corresponding property for.
+     * @return either the property value or the default value.
+     * @see OffHeapCache
+     */
+    public static long getMaxOffHeapSize(String cacheName) {
+        return getCacheProperty(cacheName, PROPERTY_SUFFIX_OFF_HEAP_SIZE, -1);
+    }
+
     private static Cache getCacheByProperty( String property )
     {
         if ( !property.startsWith(PROPERTY_PREFIX_CACHE))
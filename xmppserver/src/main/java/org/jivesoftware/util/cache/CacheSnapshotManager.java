@@ -0,0 +1,533 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.util.cache;
+
+import org.jivesoftware.openfire.cluster.ClusterManager;
+import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.util.JiveGlobals;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Periodically writes the content of selected caches to a file, and uses those files to warm up the caches after a
+ * restart.
+ *
+ * Which caches are included is configured by name. By default, only the keys of a cache are written. When a cache is
+ * warmed up from such a snapshot, each key is passed to a {@link WarmUpLoader} that was registered for the cache. That
+ * loader is expected to populate the cache, typically by performing the same lookup that a regular cache miss would
+ * cause. Optionally, values can be written too. Values from a snapshot are added to a cache only when the cache does
+ * not already contain an entry for the same key. As values in a snapshot can be outdated, this is mostly useful for
+ * data that rarely changes.
+ *
+ * Warming up happens in the background, at a bounded rate, to prevent the warm-up from competing too much with
+ * regular usage of the server.
+ *
+ * Snapshots are neither written nor used when Openfire is part of a cluster, as the content of caches is then shared
+ * between cluster nodes.
+ */
+public class CacheSnapshotManager extends BasicModule
+{
+    private static final Logger Log = LoggerFactory.getLogger(CacheSnapshotManager.class);
+
+    /**
+     * Version of the file format that is used to store snapshots.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * Enables or disables writing and using snapshots of caches.
+     */
+    public static final SystemProperty<Boolean> ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("cache.snapshot.enabled")
+        .setDynamic(true)
+        .setDefaultValue(false)
+        .build();
+
+    /**
+     * The names of the caches of which snapshots are written.
+     */
+    public static final SystemProperty<Set<String>> CACHES = SystemProperty.Builder.ofType(Set.class)
+        .setKey("cache.snapshot.caches")
+        .setDynamic(true)
+        .setDefaultValue(new HashSet<>(Arrays.asList("User", "Roster", "VCard")))
+        .buildSet(String.class);
+
+    /**
+     * Determines if cache values, rather than only cache keys, are written to snapshots.
+     */
+    public static final SystemProperty<Boolean> INCLUDE_VALUES = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("cache.snapshot.include-values")
+        .setDynamic(true)
+        .setDefaultValue(false)
+        .build();
+
+    /**
+     * How often snapshots are written.
+     */
+    public static final SystemProperty<Duration> FREQUENCY = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("cache.snapshot.frequency")
+        .setDynamic(false)
+        .setChronoUnit(ChronoUnit.MINUTES)
+        .setDefaultValue(Duration.ofMinutes(15))
+        .setMinValue(Duration.ofMinutes(1))
+        .build();
+
+    /**
+     * Snapshots that are older than this are not used to warm up caches.
+     */
+    public static final SystemProperty<Duration> MAX_AGE = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("cache.snapshot.max-age")
+        .setDynamic(true)
+        .setChronoUnit(ChronoUnit.HOURS)
+        .setDefaultValue(Duration.ofDays(1))
+        .build();
+
+    /**
+     * The maximum number of cache entries per second that are restored while warming up caches.
+     */
+    public static final SystemProperty<Integer> WARM_UP_RATE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("cache.snapshot.warm-up.rate")
+        .setDynamic(true)
+        .setDefaultValue(100)
+        .setMinValue(1)
+        .build();
+
+    /**
+     * The classes that can be deserialized when reading a snapshot, in the pattern syntax of
+     * {@link ObjectInputFilter.Config#createFilter(String)}. Classes that do not match any of the patterns are rejected.
+     */
+    public static final SystemProperty<String> ALLOWED_CLASSES = SystemProperty.Builder.ofType(String.class)
+        .setKey("cache.snapshot.allowed-classes")
+        .setDynamic(true)
+        .setDefaultValue("maxdepth=50;java.lang.*;java.util.*;java.time.*;java.math.*;org.jivesoftware.**;org.xmpp.**;org.dom4j.**")
+        .build();
+
+    /**
+     * Loaders that are used to populate a cache based on a key in a snapshot, mapped by cache name.
+     */
+    private static final Map<String, WarmUpLoader> loaders = new ConcurrentHashMap<>();
+
+    private SnapshotTask snapshotTask;
+
+    private volatile boolean warmingUp = false;
+
+    /**
+     * False while caches are (to be) warmed up, and when warming up caches was aborted. While that is the case, no
+     * snapshots are written, as these would replace the snapshots that were used to warm up the caches with snapshots
+     * of caches that are only partially filled.
+     */
+    private volatile boolean warmUpCompleted = true;
+
+    public CacheSnapshotManager()
+    {
+        super("Cache Snapshot Manager");
+    }
+
+    /**
+     * Registers a loader that is used to populate a cache when it is warmed up from a snapshot that contains keys
+     * without values.
+     *
+     * @param cacheName the name of the cache.
+     * @param loader the loader that populates the cache for a particular key.
+     */
+    public static void registerWarmUpLoader(@Nonnull final String cacheName, @Nonnull final WarmUpLoader loader)
+    {
+        loaders.put(cacheName, loader);
+    }
+
+    /**
+     * Removes a loader that was registered with {@link #registerWarmUpLoader(String, WarmUpLoader)}.
+     *
+     * @param cacheName the name of the cache.
+     */
+    public static void unregisterWarmUpLoader(@Nonnull final String cacheName)
+    {
+        loaders.remove(cacheName);
+    }
+
+    @Override
+    public void start() throws IllegalStateException
+    {
+        if (ENABLED.getValue() && !ClusterManager.isClusteringStarted()) {
+            warmUpCompleted = false;
+            warmingUp = true;
+            TaskEngine.getInstance().submit(this::warmUp);
+        }
+
+        snapshotTask = new SnapshotTask();
+        TaskEngine.getInstance().schedule(snapshotTask, FREQUENCY.getValue(), FREQUENCY.getValue());
+    }
+
+    @Override
+    public void stop()
+    {
+        warmingUp = false;
+        if (snapshotTask != null) {
+            TaskEngine.getInstance().cancelScheduledTask(snapshotTask);
+            snapshotTask = null;
+
+            // Write a final snapshot, capturing the state right before shutdown.
+            if (warmUpCompleted) {
+                writeSnapshots();
+            } else {
+                Log.info("Not writing a final snapshot of caches, as warming up the caches did not complete.");
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of all configured caches, if snapshots are enabled.
+     */
+    public void writeSnapshots()
+    {
+        if (!ENABLED.getValue() || ClusterManager.isClusteringStarted()) {
+            return;
+        }
+
+        for (final String cacheName : CACHES.getValue()) {
+            final Cache<?, ?> cache = findCache(cacheName);
+            if (cache == null) {
+                Log.debug("Not writing a snapshot of cache '{}' as no such cache exists.", cacheName);
+                continue;
+            }
+            try {
+                final int count = writeSnapshot(cache, getSnapshotPath(cacheName), INCLUDE_VALUES.getValue());
+                Log.debug("Wrote a snapshot of {} entries of cache '{}'.", count, cacheName);
+            } catch (Throwable t) {
+                Log.warn("Unable to write a snapshot of cache '{}'.", cacheName, t);
+            }
+        }
+    }
+
+    /**
+     * Restores the content of all configured caches from their snapshots, at the configured rate.
+     */
+    void warmUp()
+    {
+        try {
+            for (final String cacheName : CACHES.getValue()) {
+                if (!warmingUp) {
+                    return;
+                }
+                final Path path = getSnapshotPath(cacheName);
+                final Cache<?, ?> cache = findCache(cacheName);
+                if (cache == null || !Files.exists(path)) {
+                    continue;
+                }
+                try (final SnapshotReader snapshot = openSnapshot(path)) {
+                    if (snapshot.getCreated().isBefore(Instant.now().minus(MAX_AGE.getValue()))) {
+                        Log.info("Not using the snapshot of cache '{}' to warm up the cache, as it was created at {}, which is too long ago.", cacheName, snapshot.getCreated());
+                        continue;
+                    }
+                    final int count = restore(cache, snapshot, loaders.get(cacheName));
+                    Log.info("Warmed up cache '{}' with {} entries from a snapshot that was created at {}.", cacheName, count, snapshot.getCreated());
+                } catch (Throwable t) {
+                    Log.warn("Unable to warm up cache '{}' from snapshot file {}.", cacheName, path, t);
+                }
+            }
+        } finally {
+            // Warming up was aborted if it is no longer flagged as in progress.
+            if (warmingUp) {
+                warmUpCompleted = true;
+            }
+            warmingUp = false;
+        }
+    }
+
+    /**
+     * Adds the entries of a snapshot to a cache. Entries for keys that already exist in the cache are ignored. Keys
+     * for which the snapshot does not contain a value are passed to the loader (if any).
+     *
+     * @return the number of entries that were restored.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private int restore(@Nonnull final Cache cache, @Nonnull final SnapshotReader snapshot, @Nullable final WarmUpLoader loader) throws InterruptedException, IOException
+    {
+        if (!snapshot.hasValues() && loader == null) {
+            Log.debug("Unable to warm up cache '{}' from a snapshot that contains only keys, as no loader is registered for it.", cache.getName());
+            return 0;
+        }
+
+        int count = 0;
+        long windowStart = System.currentTimeMillis();
+        int windowCount = 0;
+        Map.Entry<Serializable, Serializable> entry;
+        while ((entry = snapshot.next()) != null) {
+            if (!warmingUp) {
+                break;
+            }
+
+            // Enforce the maximum rate.
+            final int rate = WARM_UP_RATE.getValue();
+            if (windowCount >= rate) {
+                final long elapsed = System.currentTimeMillis() - windowStart;
+                if (elapsed < 1000) {
+                    Thread.sleep(1000 - elapsed);
+                }
+                windowStart = System.currentTimeMillis();
+                windowCount = 0;
+            }
+            windowCount++;
+
+            if (cache.containsKey(entry.getKey())) {
+                continue;
+            }
+            try {
+                if (entry.getValue() != null) {
+                    cache.put(entry.getKey(), entry.getValue());
+                } else if (loader != null) {
+                    loader.load(entry.getKey());
+                }
+                count++;
+            } catch (Exception e) {
+                Log.debug("Unable to warm up cache '{}' for key '{}'.", cache.getName(), entry.getKey(), e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if caches are currently being warmed up from snapshots.
+     *
+     * @return true if a warm-up is in progress.
+     */
+    public boolean isWarmingUp()
+    {
+        return warmingUp;
+    }
+
+    @Nullable
+    private static Cache<?, ?> findCache(@Nonnull final String cacheName)
+    {
+        return Arrays.stream(CacheFactory.getAllCaches())
+            .filter(cache -> cacheName.equals(cache.getName()))
+            .findFirst()
+            .orElse(null);
+    }
+
+    @Nonnull
+    static Path getSnapshotPath(@Nonnull final String cacheName)
+    {
+        return JiveGlobals.getHomePath().resolve("cache-snapshots").resolve(cacheName.replaceAll("[^A-Za-z0-9_-]", "_") + ".snapshot");
+    }
+
+    /**
+     * Writes the content of a cache to a file. Entries of which the key or value cannot be serialized are skipped.
+     *
+     * The file is replaced atomically, to prevent a partially written file from being used.
+     *
+     * @param cache the cache of which to write a snapshot.
+     * @param path the file to write the snapshot to.
+     * @param includeValues true if values are to be included in the snapshot, false if only keys are to be written.
+     * @return the number of entries that were written.
+     * @throws IOException if the snapshot could not be written.
+     */
+    static int writeSnapshot(@Nonnull final Cache<?, ?> cache, @Nonnull final Path path, final boolean includeValues) throws IOException
+    {
+        Files.createDirectories(path.getParent());
+        final Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        int count = 0;
+        try {
+            try (final ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeBoolean(includeValues);
+                if (includeValues) {
+                    for (final Map.Entry<?, ?> entry : cache.entrySet()) {
+                        final byte[] key = serialize(entry.getKey());
+                        final byte[] value = serialize(entry.getValue());
+                        if (key != null && value != null) {
+                            out.writeBoolean(true);
+                            out.writeObject(key);
+                            out.writeObject(value);
+                            count++;
+                        }
+                    }
+                } else {
+                    for (final Object key : cache.keySet()) {
+                        final byte[] serialized = serialize(key);
+                        if (serialized != null) {
+                            out.writeBoolean(true);
+                            out.writeObject(serialized);
+                            count++;
+                        }
+                    }
+                }
+                out.writeBoolean(false);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return count;
+    }
+
+    /**
+     * Opens a snapshot file for reading. Its entries are read one at a time, using {@link SnapshotReader#next()}.
+     *
+     * @param path the file to read.
+     * @return a reader of the snapshot, which must be closed by the caller.
+     * @throws IOException if the file could not be read.
+     */
+    @Nonnull
+    static SnapshotReader openSnapshot(@Nonnull final Path path) throws IOException
+    {
+        return new SnapshotReader(path, ObjectInputFilter.Config.createFilter(ALLOWED_CLASSES.getValue() + ";!*"));
+    }
+
+    @Nullable
+    private static byte[] serialize(@Nullable final Object object)
+    {
+        if (!(object instanceof Serializable)) {
+            return null;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        } catch (IOException e) {
+            Log.trace("Unable to serialize {} for a cache snapshot.", object, e);
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    @Nullable
+    private static Serializable deserialize(@Nonnull final byte[] data, @Nonnull final ObjectInputFilter filter)
+    {
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            in.setObjectInputFilter(filter);
+            return (Serializable) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            Log.trace("Unable to deserialize an entry of a cache snapshot.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Populates a cache for a particular key, typically by performing the same lookup that a cache miss would cause.
+     */
+    @FunctionalInterface
+    public interface WarmUpLoader
+    {
+        void load(@Nonnull Serializable key) throws Exception;
+    }
+
+    /**
+     * Reads the content of a snapshot file, one entry at a time. Entries that cannot be deserialized (for example,
+     * because their class is no longer available, or is not allowed by {@link #ALLOWED_CLASSES}) are skipped.
+     */
+    static class SnapshotReader implements Closeable
+    {
+        private final ObjectInputStream in;
+        private final ObjectInputFilter filter;
+        private final Instant created;
+        private final boolean hasValues;
+        private boolean finished = false;
+
+        SnapshotReader(@Nonnull final Path path, @Nonnull final ObjectInputFilter filter) throws IOException
+        {
+            this.filter = filter;
+            this.in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path))));
+            try {
+                // The file itself contains only primitive values and byte arrays.
+                in.setObjectInputFilter(ObjectInputFilter.Config.createFilter("maxdepth=1;!*"));
+                final int version = in.readInt();
+                if (version != FORMAT_VERSION) {
+                    throw new IOException("Unsupported snapshot format version: " + version);
+                }
+                this.created = Instant.ofEpochMilli(in.readLong());
+                this.hasValues = in.readBoolean();
+            } catch (IOException | RuntimeException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        @Nonnull
+        Instant getCreated()
+        {
+            return created;
+        }
+
+        boolean hasValues()
+        {
+            return hasValues;
+        }
+
+        /**
+         * Reads the next entry of the snapshot. When the snapshot does not contain values, the value of the entry is
+         * null.
+         *
+         * @return the next entry, or null when all entries have been read.
+         * @throws IOException if the file could not be read.
+         */
+        @Nullable
+        Map.Entry<Serializable, Serializable> next() throws IOException
+        {
+            while (!finished) {
+                if (!in.readBoolean()) {
+                    finished = true;
+                    break;
+                }
+                try {
+                    final Serializable key = deserialize((byte[]) in.readObject(), filter);
+                    final Serializable value = hasValues ? deserialize((byte[]) in.readObject(), filter) : null;
+                    if (key != null && (!hasValues || value != null)) {
+                        return new AbstractMap.SimpleImmutableEntry<>(key, value);
+                    }
+                } catch (ClassNotFoundException | ClassCastException e) {
+                    throw new IOException("Snapshot file is corrupt.", e);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+
+    private class SnapshotTask extends TimerTask
+    {
+        @Override
+        public void run()
+        {
+            if (!warmUpCompleted) {
+                // Do not overwrite the snapshot that is still (or was only partially) used.
+                return;
+            }
+            writeSnapshots();
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2021-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2021-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -648,9 +648,34 @@ public class ConsistencyChecks {
         @Nonnull final Set<OccupantManager.Occupant> federatedOccupantsInput,
         @Nonnull final String mucServiceName
     ) {
+        return generateReportForMucRooms(clusteredRoomCacheInput.getName(), clusteredRoomCacheInput, localRoomsInput, occupantsByNodeInput, nodeByOccupantInput, federatedOccupantsInput, mucServiceName);
+    }
+
+    /**
+     * Verifies the consistency of the rooms of a MUC service.
+     *
+     * @param clusteredRoomCacheName the name of the cache that is used to share rooms in the cluster.
+     * @param clusteredRoomsInput the current state of the rooms that are shared in the cluster, which can differ from the
+     *                            content of the cache when changes to rooms are replicated as deltas.
+     * @param localRoomsInput the rooms that are known to the local node.
+     * @param occupantsByNodeInput the occupants, by the node that they're connected to.
+     * @param nodeByOccupantInput the node that each occupant is connected to.
+     * @param federatedOccupantsInput the occupants that are federated.
+     * @param mucServiceName the name of the MUC service.
+     * @return A consistency state report.
+     */
+    public static Multimap<String, String> generateReportForMucRooms(
+        @Nonnull final String clusteredRoomCacheName,
+        @Nonnull final Map<String, MUCRoom> clusteredRoomsInput,
+        @Nonnull final Map<String, MUCRoom> localRoomsInput,
+        @Nonnull final Map<NodeID, Set<OccupantManager.Occupant>> occupantsByNodeInput,
+        @Nonnull final Map<OccupantManager.Occupant, NodeID> nodeByOccupantInput,
+        @Nonnull final Set<OccupantManager.Occupant> federatedOccupantsInput,
+        @Nonnull final String mucServiceName
+    ) {
 
         // Take snapshots of all data structures at as much the same time as possible.
-        final ConcurrentMap<String, MUCRoom> cache = new ConcurrentHashMap<>(clusteredRoomCacheInput);
+        final ConcurrentMap<String, MUCRoom> cache = new ConcurrentHashMap<>(clusteredRoomsInput);
         final ConcurrentMap<String, MUCRoom> localRoomsCache = new ConcurrentHashMap<>(localRoomsInput);
         final ConcurrentMap<NodeID, Set<OccupantManager.Occupant>> occupantsByNode = new ConcurrentHashMap<>(occupantsByNodeInput);
         final ConcurrentMap<OccupantManager.Occupant, NodeID> nodeByOccupant = new ConcurrentHashMap<>(nodeByOccupantInput);
@@ -706,9 +731,9 @@ public class ConsistencyChecks {
         final Multimap<String, String> result = HashMultimap.create();
 
         result.put("intro", String.format("This section concerns the '%s' muc service.", mucServiceName));
-        result.put("info", String.format("The cache named %s is used to share data in the cluster, which contains %d muc rooms.", clusteredRoomCacheInput.getName(), cache.size()));
+        result.put("info", String.format("The cache named %s is used to share data in the cluster, which contains %d muc rooms.", clusteredRoomCacheName, cache.size()));
 
-        result.put("data", String.format("%s contains these entries (these are shared in the cluster):\n%s", clusteredRoomCacheInput.getName(), cache.keySet()
+        result.put("data", String.format("%s contains these entries (these are shared in the cluster):\n%s", clusteredRoomCacheName, cache.keySet()
             .stream()
             .sorted()
             .collect(Collectors.joining("\n"))));
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2004-2008 Jive Software, 2016-2024 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2004-2008 Jive Software, 2016-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -531,7 +531,9 @@ public class DefaultCache<K extends Serializable, V extends Serializable> implem
                 cullTimes.add(t);
                 do {
                     // Get the key and invoke the remove method on it.
-                    remove(lastAccessedList.getLast().object);
+                    final K key = lastAccessedList.getLast().object;
+                    final V value = remove(key);
+                    entryCulled(key, value);
                 } while (cacheSize > desiredSize);
                 t = System.currentTimeMillis() - t;
                 Log.warn("Cache " + name + " was full, shrunk to 90% in " + t + "ms.");
@@ -541,6 +543,19 @@ public class DefaultCache<K extends Serializable, V extends Serializable> implem
         cullCacheTimes();
     }
 
+    /**
+     * Invoked after an entry has been removed from the cache because the cache grew too large. Unlike entries that
+     * are explicitly removed or that expire, a culled entry still holds valid data. Subclasses can override this
+     * method to retain that data elsewhere (for example, in a secondary cache tier).
+     *
+     * This method is invoked while holding the monitor of this cache. The default implementation does nothing.
+     *
+     * @param key the key of the entry that was culled.
+     * @param value the value of the entry that was culled.
+     */
+    protected void entryCulled(final K key, final V value) {
+    }
+
     private void cullCacheTimes() {
         final long oldestCullToKeep = System.currentTimeMillis() - MAX_CULL_COUNT_PERIOD;
         final Set<Long> oldCulls = cullTimes.stream()
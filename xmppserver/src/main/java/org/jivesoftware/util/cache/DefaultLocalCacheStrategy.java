@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2008 Jive Software, 2017-2021 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2005-2008 Jive Software, 2017-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -65,7 +65,11 @@ public class DefaultLocalCacheStrategy implements CacheFactoryStrategy {
         // Get cache configuration from system properties or default (hardcoded) values
         long maxSize = CacheFactory.getMaxCacheSize(name);
         long lifetime = CacheFactory.getMaxCacheLifetime(name);
+        long maxOffHeapSize = CacheFactory.getMaxOffHeapSize(name);
         // Create cache with located properties
+        if (maxOffHeapSize > 0) {
+            return new OffHeapCache(name, maxSize, lifetime, maxOffHeapSize);
+        }
         return new DefaultCache(name, maxSize, lifetime);
     }
 
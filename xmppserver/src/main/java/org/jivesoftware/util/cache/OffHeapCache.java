@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.util.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.util.*;
+
+/**
+ * A local cache that stores its entries in two tiers.
+ *
+ * The first tier is the on-heap storage of {@link DefaultCache}, that holds the entries that were accessed most
+ * recently. When that tier grows too large, entries that would otherwise be removed from the cache are serialized
+ * and moved (demoted) to a second tier, which is stored outside of the Java heap (see {@link OffHeapStore}). When an
+ * entry that has been demoted is requested, it is deserialized and moved back (promoted) to the first tier.
+ *
+ * This allows large amounts of data (such as vCards) to be cached without having the garbage collector trace all of
+ * it. Obtaining an entry from the second tier is more costly than obtaining it from the first tier, but typically is
+ * much cheaper than recreating the entry from its original source (such as the database).
+ *
+ * The second tier is enabled per cache, by configuring a (positive) value for the property
+ * <code>cache.[name].offHeapSize</code>, where [name] is the (short) name of the cache. Its value defines the maximum
+ * amount of bytes that can be allocated outside of the heap.
+ *
+ * Entries expire from the second tier based on the time that they were demoted, using the same maximum lifetime as
+ * the first tier.
+ *
+ * The tiers are disjoint: a key is stored in at most one of them. An entry is removed from one tier before it is
+ * added to the other.
+ *
+ * @see CacheFactory#getMaxOffHeapSize(String)
+ */
+public class OffHeapCache<K extends Serializable, V extends Serializable> extends DefaultCache<K, V>
+{
+    private static final Logger Log = LoggerFactory.getLogger(OffHeapCache.class);
+
+    private final OffHeapStore<K> offHeapStore;
+
+    /**
+     * The number of times that an entry was moved from the off-heap tier to the on-heap tier.
+     */
+    private long promotions = 0;
+
+    /**
+     * The number of times that an entry was moved from the on-heap tier to the off-heap tier.
+     */
+    private long demotions = 0;
+
+    /**
+     * Create a new cache that stores data both on-heap and off-heap.
+     *
+     * @param name a name for the cache.
+     * @param maxSize the maximum size of the on-heap tier of the cache in bytes. -1 means the cache has no max size.
+     * @param maxLifetime the maximum amount of time objects can exist in cache before being deleted. -1 means objects
+     *                    never expire.
+     * @param maxOffHeapSize the maximum amount of bytes that can be allocated for the off-heap tier of the cache.
+     */
+    OffHeapCache(final String name, final long maxSize, final long maxLifetime, final long maxOffHeapSize)
+    {
+        super(name, maxSize, maxLifetime);
+        this.offHeapStore = new OffHeapStore<>(maxOffHeapSize);
+    }
+
+    @Override
+    public synchronized V put(final K key, final V value)
+    {
+        // Remove a demoted value first, to keep the tiers disjoint.
+        final byte[] demoted = offHeapStore.remove(key);
+        final V answer = super.put(key, value);
+        return answer != null ? answer : deserialize(demoted);
+    }
+
+    @Override
+    public synchronized V get(final Object key)
+    {
+        final V value = super.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        if (isExpiredOffHeap(key)) {
+            offHeapStore.remove(key);
+            return null;
+        }
+
+        final V promoted = deserialize(offHeapStore.remove(key));
+        if (promoted != null) {
+            promotions++;
+            @SuppressWarnings("unchecked")
+            final K typedKey = (K) key;
+            super.put(typedKey, promoted);
+        }
+        return promoted;
+    }
+
+    @Override
+    public synchronized V remove(final Object key)
+    {
+        final V value = super.remove(key);
+        final byte[] offHeapValue = offHeapStore.remove(key);
+        if (value == null && offHeapValue != null) {
+            return deserialize(offHeapValue);
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        super.clear();
+        offHeapStore.clear();
+        promotions = 0;
+        demotions = 0;
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        // As the tiers are disjoint, this counts every key once.
+        return super.size() + offHeapStore.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty()
+    {
+        return super.isEmpty() && offHeapStore.size() == 0;
+    }
+
+    @Override
+    public synchronized boolean containsKey(final Object key)
+    {
+        return super.containsKey(key) || (offHeapStore.containsKey(key) && !isExpiredOffHeap(key));
+    }
+
+    @Override
+    @Nonnull
+    public synchronized Collection<V> values()
+    {
+        final List<V> result = new ArrayList<>(super.values());
+        for (final K key : offHeapKeys()) {
+            final V value = deserialize(offHeapStore.get(key));
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    @Nonnull
+    public synchronized Set<Entry<K, V>> entrySet()
+    {
+        final Map<K, V> result = new HashMap<>();
+        for (final Entry<K, V> entry : super.entrySet()) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        for (final K key : offHeapKeys()) {
+            final V value = deserialize(offHeapStore.get(key));
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result.entrySet();
+    }
+
+    @Override
+    @Nonnull
+    public synchronized Set<K> keySet()
+    {
+        final Set<K> result = super.keySet();
+        result.addAll(offHeapKeys());
+        return result;
+    }
+
+    /**
+     * Moves an entry that is removed from the on-heap tier because that tier grew too large, to the off-heap tier.
+     */
+    @Override
+    protected void entryCulled(final K key, final V value)
+    {
+        // The entry has already been removed from the on-heap tier, so storing it off-heap keeps the tiers disjoint.
+        final byte[] data = serialize(value);
+        if (data != null && offHeapStore.put(key, data, System.currentTimeMillis())) {
+            demotions++;
+        }
+    }
+
+    /**
+     * Returns the number of entries that are stored in the off-heap tier of this cache.
+     *
+     * @return an amount of entries.
+     */
+    public synchronized int getOffHeapEntryCount()
+    {
+        return offHeapStore.size();
+    }
+
+    /**
+     * Returns the amount of bytes of data that is stored in the off-heap tier of this cache.
+     *
+     * @return an amount of bytes.
+     */
+    public synchronized long getOffHeapSize()
+    {
+        return offHeapStore.getDataSize();
+    }
+
+    /**
+     * Returns the amount of bytes that has been allocated for the off-heap tier of this cache. This value is equal to
+     * or larger than {@link #getOffHeapSize()}, as data is stored in chunks of fixed sizes.
+     *
+     * @return an amount of bytes.
+     */
+    public synchronized long getOffHeapAllocatedSize()
+    {
+        return offHeapStore.getAllocatedSize();
+    }
+
+    /**
+     * Returns the maximum amount of bytes that can be allocated for the off-heap tier of this cache.
+     *
+     * @return an amount of bytes.
+     */
+    public long getMaxOffHeapSize()
+    {
+        return offHeapStore.getCapacity();
+    }
+
+    /**
+     * Returns the number of times that an entry was moved from the off-heap tier to the on-heap tier.
+     *
+     * @return an amount of promotions.
+     */
+    public synchronized long getPromotions()
+    {
+        return promotions;
+    }
+
+    /**
+     * Returns the number of times that an entry was moved from the on-heap tier to the off-heap tier.
+     *
+     * @return an amount of demotions.
+     */
+    public synchronized long getDemotions()
+    {
+        return demotions;
+    }
+
+    /**
+     * Returns the number of entries that were removed from the off-heap tier to make room for other entries.
+     *
+     * @return an amount of evictions.
+     */
+    public synchronized long getOffHeapEvictions()
+    {
+        return offHeapStore.getEvictions();
+    }
+
+    @Override
+    public long getCacheHits()
+    {
+        // A promotion is recorded as a miss of the on-heap tier, while the entry was found in the cache.
+        return super.getCacheHits() + promotions;
+    }
+
+    @Override
+    public long getCacheMisses()
+    {
+        return super.getCacheMisses() - promotions;
+    }
+
+    /**
+     * Returns the keys of the off-heap tier, after removing entries from that tier that have expired.
+     */
+    @Nonnull
+    private Set<K> offHeapKeys()
+    {
+        final Set<K> result = offHeapStore.keySet();
+        final Iterator<K> iterator = result.iterator();
+        while (iterator.hasNext()) {
+            final K key = iterator.next();
+            if (isExpiredOffHeap(key)) {
+                offHeapStore.remove(key);
+                iterator.remove();
+            }
+        }
+        return result;
+    }
+
+    private boolean isExpiredOffHeap(final Object key)
+    {
+        final long maxLifetime = getMaxLifetime();
+        if (maxLifetime <= 0) {
+            return false;
+        }
+        final long timestamp = offHeapStore.getTimestamp(key);
+        return timestamp >= 0 && timestamp < System.currentTimeMillis() - maxLifetime;
+    }
+
+    @Nullable
+    private byte[] serialize(@Nonnull final V value)
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            Log.warn("Cache: {} -- unable to serialize value for off-heap storage. It will be removed from the cache.", getName(), e);
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    @Nullable
+    private V deserialize(@Nullable final byte[] data)
+    {
+        if (data == null) {
+            return null;
+        }
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            @SuppressWarnings("unchecked")
+            final V result = (V) in.readObject();
+            return result;
+        } catch (IOException | ClassNotFoundException e) {
+            Log.warn("Cache: {} -- unable to deserialize value from off-heap storage.", getName(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.util.cache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A store of byte arrays that are kept outside of the Java heap, in direct byte buffers.
+ *
+ * Memory is obtained in pages of a fixed size, up to a configurable capacity. Each page is assigned to one slab class,
+ * and is carved up in chunks of the size of that class. Chunk sizes are powers of two, starting at {@link #MIN_CHUNK_SIZE}
+ * up to the page size. Data is stored in the smallest chunk that fits. Chunks that are released are kept on a free list
+ * of their class, for reuse.
+ *
+ * When no chunk of the required class is available and the capacity does not allow for another page to be allocated,
+ * the least recently used entries of that class are evicted until a chunk becomes available.
+ *
+ * Instances of this class are not thread safe. Callers are expected to provide their own synchronization.
+ *
+ * @see OffHeapCache
+ */
+class OffHeapStore<K>
+{
+    /**
+     * The size (in bytes) of a page of memory that is obtained from the operating system.
+     */
+    static final int PAGE_SIZE = 1024 * 1024;
+
+    /**
+     * The size (in bytes) of the smallest chunk of memory that is used to store data.
+     */
+    static final int MIN_CHUNK_SIZE = 64;
+
+    private static final int SLAB_CLASS_COUNT = Integer.numberOfTrailingZeros(PAGE_SIZE) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE) + 1;
+
+    /**
+     * The maximum amount of bytes that can be allocated by this store.
+     */
+    private final long capacity;
+
+    /**
+     * All pages that have been allocated.
+     */
+    private final List<ByteBuffer> pages = new ArrayList<>();
+
+    /**
+     * Per slab class, the chunks that are available for (re)use.
+     */
+    private final List<Deque<Long>> freeChunks = new ArrayList<>(SLAB_CLASS_COUNT);
+
+    /**
+     * Per slab class, the keys of the entries that are stored in chunks of that class, in least-recently used order.
+     */
+    private final List<LinkedHashSet<K>> recency = new ArrayList<>(SLAB_CLASS_COUNT);
+
+    /**
+     * Location of the data of each entry.
+     */
+    private final Map<K, Slot> index = new HashMap<>();
+
+    /**
+     * The total amount of bytes of data stored (which is less than the amount of bytes that is allocated).
+     */
+    private long dataSize = 0;
+
+    /**
+     * The number of entries that were removed to make room for other entries.
+     */
+    private long evictions = 0;
+
+    /**
+     * Creates a new store.
+     *
+     * @param capacity The maximum amount of bytes that can be allocated off-heap.
+     */
+    OffHeapStore(final long capacity)
+    {
+        this.capacity = capacity;
+        for (int i = 0; i < SLAB_CLASS_COUNT; i++) {
+            freeChunks.add(new ArrayDeque<>());
+            recency.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Stores data, replacing any data that was previously stored for the same key.
+     *
+     * @param key the key under which to store the data.
+     * @param data the data to store
+     * @param timestamp the moment (in milliseconds since epoch) that is associated with the data.
+     * @return true if the data was stored, false if it could not be stored (because it is too large).
+     */
+    boolean put(@Nonnull final K key, @Nonnull final byte[] data, final long timestamp)
+    {
+        remove(key);
+
+        final int slabClass = slabClassFor(data.length);
+        if (slabClass < 0) {
+            return false;
+        }
+
+        final Long chunk = allocate(slabClass);
+        if (chunk == null) {
+            return false;
+        }
+
+        final ByteBuffer page = pages.get(pageOf(chunk)).duplicate();
+        page.position(offsetOf(chunk));
+        page.put(data);
+
+        index.put(key, new Slot(chunk, data.length, slabClass, timestamp));
+        recency.get(slabClass).add(key);
+        dataSize += data.length;
+        return true;
+    }
+
+    /**
+     * Returns the data stored for the key, without removing it from the store.
+     *
+     * @param key the key for which to return data.
+     * @return the stored data, or null if no data was stored for this key.
+     */
+    @Nullable
+    byte[] get(@Nonnull final Object key)
+    {
+        final Slot slot = index.get(key);
+        if (slot == null) {
+            return null;
+        }
+        return read(slot);
+    }
+
+    /**
+     * Removes data from the store, returning the data that was removed.
+     *
+     * @param key the key for which to remove data.
+     * @return the data that was removed, or null if no data was stored for this key.
+     */
+    @Nullable
+    byte[] remove(@Nonnull final Object key)
+    {
+        final Slot slot = index.remove(key);
+        if (slot == null) {
+            return null;
+        }
+        final byte[] result = read(slot);
+        recency.get(slot.slabClass).remove(key);
+        freeChunks.get(slot.slabClass).push(slot.chunk);
+        dataSize -= slot.length;
+        return result;
+    }
+
+    /**
+     * Returns the timestamp that was associated with the data when it was stored.
+     *
+     * @param key the key for which to return the timestamp.
+     * @return the timestamp, or -1 if no data was stored for this key.
+     */
+    long getTimestamp(@Nonnull final Object key)
+    {
+        final Slot slot = index.get(key);
+        return slot == null ? -1 : slot.timestamp;
+    }
+
+    boolean containsKey(@Nonnull final Object key)
+    {
+        return index.containsKey(key);
+    }
+
+    @Nonnull
+    Set<K> keySet()
+    {
+        return new HashSet<>(index.keySet());
+    }
+
+    int size()
+    {
+        return index.size();
+    }
+
+    /**
+     * Removes all data. Memory that was allocated is released (after it has been garbage collected).
+     */
+    void clear()
+    {
+        index.clear();
+        pages.clear();
+        freeChunks.forEach(Deque::clear);
+        recency.forEach(Set::clear);
+        dataSize = 0;
+    }
+
+    /**
+     * Returns the amount of bytes that is used to store data.
+     *
+     * @return an amount of bytes.
+     */
+    long getDataSize()
+    {
+        return dataSize;
+    }
+
+    /**
+     * Returns the amount of bytes that has been allocated off-heap.
+     *
+     * @return an amount of bytes.
+     */
+    long getAllocatedSize()
+    {
+        return (long) pages.size() * PAGE_SIZE;
+    }
+
+    long getCapacity()
+    {
+        return capacity;
+    }
+
+    long getEvictions()
+    {
+        return evictions;
+    }
+
+    @Nonnull
+    private byte[] read(@Nonnull final Slot slot)
+    {
+        final byte[] result = new byte[slot.length];
+        final ByteBuffer page = pages.get(pageOf(slot.chunk)).duplicate();
+        page.position(offsetOf(slot.chunk));
+        page.get(result);
+        return result;
+    }
+
+    @Nullable
+    private Long allocate(final int slabClass)
+    {
+        final Deque<Long> free = freeChunks.get(slabClass);
+        if (free.isEmpty() && (long) (pages.size() + 1) * PAGE_SIZE <= capacity) {
+            // Carve up a new page in chunks of this slab class.
+            final int pageIndex = pages.size();
+            pages.add(ByteBuffer.allocateDirect(PAGE_SIZE));
+            final int chunkSize = chunkSizeOf(slabClass);
+            for (int offset = 0; offset + chunkSize <= PAGE_SIZE; offset += chunkSize) {
+                free.add(chunkOf(pageIndex, offset));
+            }
+        }
+
+        // Evict the least recently used entries of this class until a chunk frees up.
+        final Iterator<K> eldest = recency.get(slabClass).iterator();
+        while (free.isEmpty() && eldest.hasNext()) {
+            final K key = eldest.next();
+            eldest.remove();
+            final Slot slot = index.remove(key);
+            free.push(slot.chunk);
+            dataSize -= slot.length;
+            evictions++;
+        }
+
+        return free.poll();
+    }
+
+    static int slabClassFor(final int length)
+    {
+        if (length > PAGE_SIZE) {
+            return -1;
+        }
+        final int chunkSize = Math.max(MIN_CHUNK_SIZE, Integer.highestOneBit(Math.max(1, length - 1)) << 1);
+        return Integer.numberOfTrailingZeros(chunkSize) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE);
+    }
+
+    static int chunkSizeOf(final int slabClass)
+    {
+        return MIN_CHUNK_SIZE << slabClass;
+    }
+
+    private static long chunkOf(final int page, final int offset)
+    {
+        return ((long) page << 32) | offset;
+    }
+
+    private static int pageOf(final long chunk)
+    {
+        return (int) (chunk >>> 32);
+    }
+
+    private static int offsetOf(final long chunk)
+    {
+        return (int) chunk;
+    }
+
+    /**
+     * Location and metadata of data that is stored.
+     */
+    private static class Slot
+    {
+        final long chunk;
+        final int length;
+        final int slabClass;
+        final long timestamp;
+
+        Slot(final long chunk, final int length, final int slabClass, final long timestamp)
+        {
+            this.chunk = chunk;
+            this.length = length;
+            this.slabClass = slabClass;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 <%@ page contentType="text/html; charset=UTF-8" %>
 <%--
   -
-  - Copyright (C) 2004-2008 Jive Software, 2021-2025 Ignite Realtime Foundation. All rights reserved.
+  - Copyright (C) 2004-2008 Jive Software, 2021-2026 Ignite Realtime Foundation. All rights reserved.
   -
   - Licensed under the Apache License, Version 2.0 (the "License");
   - you may not use this file except in compliance with the License.
@@ -28,7 +28,6 @@
 <%@ page import="java.net.URLEncoder" %>
 <%@ page import="org.jivesoftware.openfire.muc.spi.MultiUserChatServiceImpl" %>
 <%@ page import="org.xmpp.packet.JID" %>
-<%@ page import="org.jivesoftware.util.cache.Cache" %>
 <%@ page import="org.jivesoftware.openfire.muc.MUCRoom" %>
 <%@ page import="java.util.stream.Collectors" %>
 <%@ page import="org.jivesoftware.openfire.muc.spi.OccupantManager" %>
@@ -62,7 +61,7 @@
         return;
     }
     MultiUserChatServiceImpl mucService = MultiUserChatServiceImpl.class.cast(mucServiceIfc);
-    final Cache<String, MUCRoom> roomsClustered = mucService.getLocalMUCRoomManager().getROOM_CACHE();
+    final Map<String, MUCRoom> roomsClustered = mucService.getLocalMUCRoomManager().getSharedRooms();
     final Map<String, MUCRoom> roomsLocal = mucService.getLocalMUCRoomManager().getLocalRooms();
     final Map<String, MUCRoom> allRooms = new HashMap<>();
     allRooms.putAll(roomsClustered);
@@ -1,7 +1,7 @@
 <%@ page contentType="text/html; charset=UTF-8" %>
 <%--
   -
-  - Copyright (C) 2004-2008 Jive Software, 2020-2025 Ignite Realtime Foundation. All rights reserved.
+  - Copyright (C) 2004-2008 Jive Software, 2020-2026 Ignite Realtime Foundation. All rights reserved.
   -
   - Licensed under the Apache License, Version 2.0 (the "License");
   - you may not use this file except in compliance with the License.
@@ -321,6 +321,8 @@
                 </td>
                 <td>
                     Outbound (mode: <c:out value="${room.fmucHandler.outboundJoin.mode}"/>)
+                    <br/>Queued: <c:out value="${room.fmucHandler.outboundJoin.queueDepth}"/>, awaiting echo: <c:out value="${room.fmucHandler.outboundJoin.awaitingEchoCount}"/>
+                    <c:if test="${not empty room.fmucHandler.outboundJoin.roundTripTime}">, round-trip time: <c:out value="${room.fmucHandler.outboundJoin.roundTripTime.toMillis()}"/> ms</c:if>
                 </td>
                 <td>
                     <!-- Add the first occupant, if there's one -->
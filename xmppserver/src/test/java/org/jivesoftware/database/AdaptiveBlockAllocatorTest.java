@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link AdaptiveBlockAllocator}
+ */
+public class AdaptiveBlockAllocatorTest
+{
+    /**
+     * A block source that hands out consecutive blocks, recording the size of each reservation.
+     */
+    private static class DummySource implements AdaptiveBlockAllocator.BlockSource
+    {
+        final AtomicLong nextStart = new AtomicLong(1);
+        final List<Integer> reservations = new ArrayList<>();
+
+        @Override
+        public synchronized long reserve(final int size)
+        {
+            reservations.add(size);
+            return nextStart.getAndAdd(size);
+        }
+    }
+
+    /**
+     * Asserts that IDs are handed out consecutively, and that the next block is reserved when half of the current
+     * block is used.
+     */
+    @Test
+    public void testPrefetchAtHalfway() throws Exception
+    {
+        // Setup test fixture.
+        final DummySource source = new DummySource();
+        final AdaptiveBlockAllocator allocator = new AdaptiveBlockAllocator(source, Runnable::run, () -> 0, 10, 10, Duration.ofSeconds(1));
+
+        // Execute system under test.
+        final List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(allocator.nextID());
+        }
+        final int reservationsBeforeHalfway = source.reservations.size();
+        ids.add(allocator.nextID());
+
+        // Verify results.
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), ids);
+        assertEquals(1, reservationsBeforeHalfway);
+        assertEquals(2, source.reservations.size());
+    }
+
+    /**
+     * Asserts that blocks grow when they are exhausted quicker than the target interval.
+     */
+    @Test
+    public void testBlockSizeGrows() throws Exception
+    {
+        // Setup test fixture.
+        final DummySource source = new DummySource();
+        final AdaptiveBlockAllocator allocator = new AdaptiveBlockAllocator(source, Runnable::run, () -> 0, 4, 64, Duration.ofSeconds(1));
+
+        // Execute system under test.
+        for (int i = 0; i < 200; i++) {
+            allocator.nextID();
+        }
+
+        // Verify results.
+        assertEquals(64, allocator.getBlockSize());
+        assertTrue(source.reservations.contains(64));
+    }
+
+    /**
+     * Asserts that blocks shrink when they take much longer than the target interval to be exhausted.
+     */
+    @Test
+    public void testBlockSizeShrinks() throws Exception
+    {
+        // Setup test fixture.
+        final DummySource source = new DummySource();
+        final AtomicLong now = new AtomicLong(0);
+        final AdaptiveBlockAllocator allocator = new AdaptiveBlockAllocator(source, Runnable::run, now::get, 4, 64, Duration.ofSeconds(1));
+        for (int i = 0; i < 200; i++) {
+            allocator.nextID();
+        }
+
+        // Execute system under test.
+        for (int i = 0; i < 200; i++) {
+            now.addAndGet(1000);
+            allocator.nextID();
+        }
+
+        // Verify results.
+        assertEquals(4, allocator.getBlockSize());
+    }
+
+    /**
+     * Asserts that IDs handed out concurrently are unique.
+     */
+    @Test
+    public void testConcurrentIDsAreUnique() throws Exception
+    {
+        // Setup test fixture.
+        final DummySource source = new DummySource();
+        final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+        final ExecutorService callers = Executors.newFixedThreadPool(8);
+        final AdaptiveBlockAllocator allocator = new AdaptiveBlockAllocator(source, prefetchExecutor, System::currentTimeMillis, 1, 1000, Duration.ofSeconds(1));
+        final Set<Long> ids = ConcurrentHashMap.newKeySet();
+        try {
+            // Execute system under test.
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(callers.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        ids.add(allocator.nextID());
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            callers.shutdownNow();
+            prefetchExecutor.shutdownNow();
+        }
+
+        // Verify results.
+        assertEquals(80_000, ids.size());
+    }
+}
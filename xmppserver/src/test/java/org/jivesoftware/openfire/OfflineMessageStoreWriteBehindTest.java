@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire;
+
+import org.dbunit.DBTestCase;
+import org.dbunit.PropertiesBasedJdbcDatabaseTester;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.xml.XmlDataSet;
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.database.DbConnectionManager;
+import org.jivesoftware.database.DefaultConnectionProvider;
+import org.jivesoftware.openfire.archive.ArchiveManager;
+import org.jivesoftware.openfire.user.UserManager;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Message;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests that verify the write-behind storage of offline messages by {@link OfflineMessageStore}.
+ *
+ * The archiver that writes queued messages in the background is registered with a mocked archive manager, that never
+ * runs it. This causes queued messages to remain queued, unless they are written by the thread that reads them.
+ *
+ * Implementation-wise, this class extends for DBTestCase, which is as JUnit 3 derivative. Practically, this means that
+ * Junit 4 annotations in this class will be ignored.
+ */
+public class OfflineMessageStoreWriteBehindTest extends DBTestCase
+{
+    public static final String DRIVER = "org.hsqldb.jdbcDriver";
+    public static final String URL;
+    public static final String USERNAME = "sa";
+    public static final String PASSWORD = "";
+
+    private OfflineMessageStore store;
+
+    static {
+        final URL location = OfflineMessageStoreWriteBehindTest.class.getResource("/datasets/openfire.script");
+        assert location != null;
+        final String fileLocation = location.toString().substring(0, location.toString().lastIndexOf("/")+1) + "openfire";
+        URL = "jdbc:hsqldb:"+fileLocation+";ifexists=true";
+
+        // Setup database configuration of DBUnit.
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_DRIVER_CLASS, DRIVER );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_CONNECTION_URL, URL );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_USERNAME, USERNAME );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_PASSWORD, PASSWORD );
+    }
+
+    @Override
+    protected IDataSet getDataSet() throws Exception
+    {
+        // This dataset restores the state of the database to one that does not contain any offline messages between each test.
+        return new XmlDataSet(getClass().getResourceAsStream("/datasets/clean-offline.xml"));
+    }
+
+    public void setUp() throws Exception
+    {
+        // Ensure that DB-Unit's setUp is called!
+        super.setUp();
+
+        // Initialize Openfire's cache framework.
+        CacheFactory.initialize();
+
+        // Mock the XMPPServer implementation that's used internally, with an archive manager that does not run archivers.
+        Fixtures.clearExistingProperties();
+        final XMPPServer xmppServer = Fixtures.mockXMPPServer();
+        doReturn(mock(ArchiveManager.class)).when(xmppServer).getArchiveManager();
+        XMPPServer.setInstance(xmppServer);
+
+        // Ensure that Openfire caches are reset before each test to avoid tests to affect each-other.
+        Arrays.stream(CacheFactory.getAllCaches()).forEach(Map::clear);
+
+        // Wire the database connection provider used by the store.
+        final DefaultConnectionProvider conProvider = new DefaultConnectionProvider();
+        conProvider.setDriver(DRIVER);
+        conProvider.setServerURL(URL);
+        conProvider.setUsername(USERNAME);
+        conProvider.setPassword(PASSWORD);
+        DbConnectionManager.setConnectionProvider(conProvider);
+
+        // Allow messages to be stored for users that are not registered.
+        UserManager.ALLOW_FUTURE_USERS.setValue(true);
+        OfflineMessageStore.WRITE_BEHIND_ENABLED.setValue(true);
+        store = new OfflineMessageStore();
+        store.start();
+    }
+
+    public void tearDown() throws Exception
+    {
+        store.stop();
+        super.tearDown();
+        Fixtures.clearExistingProperties();
+    }
+
+    private static Message createMessage(final String recipient, final String body)
+    {
+        final Message message = new Message();
+        message.setTo(new JID(recipient, Fixtures.XMPP_DOMAIN, null));
+        message.setFrom(new JID("sender", Fixtures.XMPP_DOMAIN, null));
+        message.setBody(body);
+        return message;
+    }
+
+    /**
+     * Verifies that queued messages of a user are written by the thread that reads them, when they are not written
+     * in the background before the flush timeout elapses.
+     */
+    public void testQueuedMessagesWrittenAfterFlushTimeout() throws Exception
+    {
+        // Setup test fixture.
+        OfflineMessageStore.WRITE_BEHIND_FLUSH_TIMEOUT.setValue(Duration.ofMillis(50));
+        assertNotNull(store.addMessage(createMessage("jane", "first")));
+        assertNotNull(store.addMessage(createMessage("jane", "second")));
+        assertNotNull(store.addMessage(createMessage("john", "third")));
+
+        // Execute system under test.
+        final int result = store.getCount("jane");
+
+        // Verify result.
+        assertEquals(2, result);
+        assertEquals(2, store.getMessages("jane", false).size());
+    }
+
+    /**
+     * Verifies that the queued messages of other users are not written when a flush for a user times out.
+     */
+    public void testFlushTimeoutWritesMessagesOfUserOnly() throws Exception
+    {
+        // Setup test fixture.
+        OfflineMessageStore.WRITE_BEHIND_FLUSH_TIMEOUT.setValue(Duration.ofMillis(50));
+        assertNotNull(store.addMessage(createMessage("jane", "first")));
+        assertNotNull(store.addMessage(createMessage("john", "second")));
+
+        // Execute system under test.
+        store.getCount("jane");
+
+        // Verify result.
+        final int rows = getConnection().getRowCount("ofOffline");
+        assertEquals(1, rows);
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2019-2023 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2019-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -283,6 +283,58 @@ public class ArchiverTest
         }
     }
 
+    /**
+     * Work that is queued when an archiver is stopped is not written by the archiver thread. This test asserts that
+     * such work is written when the archiver is drained.
+     */
+    @Test
+    public void testDrainStoresQueuedWork() throws Exception
+    {
+        // Setup fixture.
+        final int maxWorkQueueSize = 100;
+        final Duration maxPurgeInterval = Duration.ofMillis( 5000 );
+        final Duration gracePeriod = Duration.ofMillis( 250 );
+        final DummyArchiver archiver = new DummyArchiver( "test", maxWorkQueueSize, maxPurgeInterval, gracePeriod );
+        archiver.archive( 2 );
+        archiver.archive( 1 );
+
+        // Execute system under test.
+        archiver.stop();
+        archiver.drain();
+
+        // Verify result.
+        assertEquals( 2, archiver.store.size() );
+        assertEquals( 1, archiver.getBatches().size() );
+        final List<Integer> batch = archiver.getBatches().get(0).data;
+        assertEquals( 2, batch.size() );
+    }
+
+    /**
+     * Asserts that draining an archiver stores queued work in batches that are no larger than the maximum work queue
+     * size.
+     */
+    @Test
+    public void testDrainRespectsMaxWorkQueueSize() throws Exception
+    {
+        // Setup fixture.
+        final int maxWorkQueueSize = 2;
+        final Duration maxPurgeInterval = Duration.ofMillis( 5000 );
+        final Duration gracePeriod = Duration.ofMillis( 250 );
+        final DummyArchiver archiver = new DummyArchiver( "test", maxWorkQueueSize, maxPurgeInterval, gracePeriod );
+        for ( int i = 0; i < 5; i++ ) {
+            archiver.archive( i );
+        }
+
+        // Execute system under test.
+        archiver.stop();
+        archiver.drain();
+
+        // Verify result.
+        assertEquals( 5, archiver.store.size() );
+        assertEquals( 3, archiver.getBatches().size() );
+        assertTrue( archiver.getBatches().stream().allMatch( batch -> batch.data.size() <= maxWorkQueueSize ) );
+    }
+
     /**
      * A utility method that blocks until the archiver should reasonably have finished storing data.
      *
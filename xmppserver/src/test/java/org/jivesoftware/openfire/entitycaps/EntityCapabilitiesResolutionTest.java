@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.entitycaps;
+
+import org.dom4j.Element;
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.IQRouter;
+import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.xmpp.packet.IQ;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Presence;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the resolution of 'ver' hashes by {@link EntityCapabilitiesManager}
+ */
+public class EntityCapabilitiesResolutionTest
+{
+    private static final JID FIRST = new JID("first", Fixtures.XMPP_DOMAIN, "desktop");
+    private static final JID SECOND = new JID("second", Fixtures.XMPP_DOMAIN, "desktop");
+
+    private IQRouter iqRouter;
+    private EntityCapabilitiesStore store;
+    private EntityCapabilitiesManager manager;
+
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+        CacheFactory.initialize();
+    }
+
+    @BeforeEach
+    public void setUp()
+    {
+        final XMPPServer xmppServer = Fixtures.mockXMPPServer();
+        iqRouter = xmppServer.getIQRouter();
+        //noinspection deprecation
+        XMPPServer.setInstance(xmppServer);
+
+        store = Mockito.mock(EntityCapabilitiesStore.class);
+        manager = new EntityCapabilitiesManager();
+        manager.initialize(xmppServer);
+        manager.store = store;
+        manager.executor = Runnable::run;
+        manager.clearCaches();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        Fixtures.clearExistingProperties();
+    }
+
+    private static IQ discoInfoResult()
+    {
+        final IQ result = new IQ(IQ.Type.result);
+        final Element query = result.setChildElement("query", "http://jabber.org/protocol/disco#info");
+        query.addElement("identity").addAttribute("category", "client").addAttribute("type", "pc");
+        query.addElement("feature").addAttribute("var", "urn:xmpp:avatar:metadata+notify");
+        return result;
+    }
+
+    private static Presence capsPresence(final JID from, final String ver)
+    {
+        final Presence presence = new Presence();
+        presence.setFrom(from);
+        presence.getElement().addElement("c", EntityCapabilitiesManager.NAMESPACE)
+            .addAttribute("hash", "sha-1")
+            .addAttribute("node", "https://example.org")
+            .addAttribute("ver", ver);
+        return presence;
+    }
+
+    private static IQ answer(final IQ query, final IQ result)
+    {
+        final IQ answer = result.createCopy();
+        answer.setID(query.getID());
+        answer.setFrom(query.getTo());
+        return answer;
+    }
+
+    /**
+     * Asserts that when multiple entities advertise the same unknown 'ver' hash, only one disco#info query is sent, and
+     * that its result is used for all entities.
+     */
+    @Test
+    public void testConcurrentAdvertisementsShareQuery() throws Exception
+    {
+        // Setup test fixture.
+        final String ver = EntityCapabilitiesManager.generateVerHash(discoInfoResult(), "sha-1");
+        manager.process(capsPresence(FIRST, ver));
+        manager.process(capsPresence(SECOND, ver));
+        final ArgumentCaptor<IQ> queries = ArgumentCaptor.forClass(IQ.class);
+        Mockito.verify(iqRouter).route(queries.capture());
+
+        // Execute system under test.
+        manager.receivedAnswer(answer(queries.getValue(), discoInfoResult()));
+
+        // Verify results.
+        assertEquals(FIRST, queries.getValue().getTo());
+        assertEquals(1, manager.getQueriesSent());
+        assertEquals(1, manager.getDeduplicatedResolutions());
+        assertNotNull(manager.getEntityCapabilities(FIRST));
+        assertNotNull(manager.getEntityCapabilities(SECOND));
+        assertTrue(manager.getEntityCapabilities(SECOND).containsFeature("urn:xmpp:avatar:metadata+notify"));
+        Mockito.verify(store).save(Mockito.any(EntityCapabilities.class), Mockito.any(IQ.class));
+    }
+
+    /**
+     * Asserts that when the result of a query does not verify the 'ver' hash, another entity that advertised the same
+     * hash is queried.
+     */
+    @Test
+    public void testInvalidResultQueriesNextEntity() throws Exception
+    {
+        // Setup test fixture.
+        final String ver = EntityCapabilitiesManager.generateVerHash(discoInfoResult(), "sha-1");
+        manager.process(capsPresence(FIRST, ver));
+        manager.process(capsPresence(SECOND, ver));
+        final IQ poisoned = discoInfoResult();
+        poisoned.getChildElement().addElement("feature").addAttribute("var", "urn:example:poison");
+
+        // Execute system under test.
+        final ArgumentCaptor<IQ> queries = ArgumentCaptor.forClass(IQ.class);
+        Mockito.verify(iqRouter).route(queries.capture());
+        manager.receivedAnswer(answer(queries.getValue(), poisoned));
+        Mockito.verify(iqRouter, Mockito.times(2)).route(queries.capture());
+        final List<IQ> sent = queries.getAllValues();
+        manager.receivedAnswer(answer(sent.get(sent.size() - 1), discoInfoResult()));
+
+        // Verify results.
+        assertEquals(SECOND, sent.get(sent.size() - 1).getTo());
+        assertEquals(1, manager.getVerificationFailures());
+        assertNotNull(manager.getEntityCapabilities(FIRST));
+        assertFalse(manager.getEntityCapabilities(FIRST).containsFeature("urn:example:poison"));
+    }
+
+    /**
+     * Asserts that a 'ver' hash that was verified before is resolved from the store, without sending a query.
+     */
+    @Test
+    public void testResolveFromStore() throws Exception
+    {
+        // Setup test fixture.
+        final String ver = EntityCapabilitiesManager.generateVerHash(discoInfoResult(), "sha-1");
+        Mockito.when(store.load(ver)).thenReturn(discoInfoResult());
+
+        // Execute system under test.
+        manager.process(capsPresence(FIRST, ver));
+
+        // Verify results.
+        Mockito.verify(iqRouter, Mockito.never()).route(Mockito.any(IQ.class));
+        assertEquals(1, manager.getStoreHits());
+        assertNotNull(manager.getEntityCapabilities(FIRST));
+    }
+
+    /**
+     * Asserts that capabilities are not registered for an entity that went offline while the 'ver' hash that it
+     * advertised was being resolved.
+     */
+    @Test
+    public void testUnavailableEntityIsDisregarded() throws Exception
+    {
+        // Setup test fixture.
+        final String ver = EntityCapabilitiesManager.generateVerHash(discoInfoResult(), "sha-1");
+        manager.process(capsPresence(FIRST, ver));
+        manager.process(capsPresence(SECOND, ver));
+        final Presence unavailable = new Presence(Presence.Type.unavailable);
+        unavailable.setFrom(SECOND);
+        manager.process(unavailable);
+        final ArgumentCaptor<IQ> queries = ArgumentCaptor.forClass(IQ.class);
+        Mockito.verify(iqRouter).route(queries.capture());
+
+        // Execute system under test.
+        manager.receivedAnswer(answer(queries.getValue(), discoInfoResult()));
+
+        // Verify results.
+        assertNotNull(manager.getEntityCapabilities(FIRST));
+        assertNull(manager.getEntityCapabilities(SECOND));
+    }
+}
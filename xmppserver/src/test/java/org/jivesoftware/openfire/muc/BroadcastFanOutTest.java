@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc;
+
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.stats.Statistic;
+import org.jivesoftware.openfire.stats.StatisticsManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link BroadcastFanOut}
+ */
+public class BroadcastFanOutTest
+{
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @BeforeEach
+    public void setUp()
+    {
+        BroadcastFanOut.resetMetrics();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        Fixtures.clearExistingProperties();
+    }
+
+    /**
+     * Asserts that a broadcast in a small room is delivered by the broadcasting thread, using one deliverer.
+     */
+    @Test
+    public void testSmallRoomIsDeliveredSerially() throws Exception
+    {
+        // Setup test fixture.
+        final List<MUCOccupant> occupants = createOccupants(10);
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger deliverers = new AtomicInteger();
+        final AtomicInteger delivered = new AtomicInteger();
+
+        // Execute system under test.
+        BroadcastFanOut.deliver(occupants, () -> {
+            deliverers.incrementAndGet();
+            return occupant -> {
+                threads.add(Thread.currentThread());
+                delivered.incrementAndGet();
+            };
+        });
+
+        // Verify results.
+        assertEquals(10, delivered.get());
+        assertEquals(1, deliverers.get());
+        assertEquals(Set.of(Thread.currentThread()), threads);
+    }
+
+    /**
+     * Asserts that a broadcast in a large room is delivered to every occupant exactly once, in chunks.
+     */
+    @Test
+    public void testLargeRoomIsDeliveredInChunks() throws Exception
+    {
+        // Setup test fixture.
+        BroadcastFanOut.PARALLEL_THRESHOLD.setValue(100);
+        BroadcastFanOut.PARALLEL_CHUNK_SIZE.setValue(10);
+        final List<MUCOccupant> occupants = createOccupants(105);
+        final Set<MUCOccupant> delivered = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        final AtomicInteger deliverers = new AtomicInteger();
+        final AtomicInteger deliveries = new AtomicInteger();
+
+        // Execute system under test.
+        BroadcastFanOut.deliver(occupants, () -> {
+            deliverers.incrementAndGet();
+            return occupant -> {
+                deliveries.incrementAndGet();
+                delivered.add(occupant);
+            };
+        });
+
+        // Verify results.
+        assertEquals(105, deliveries.get());
+        assertEquals(105, delivered.size());
+        assertEquals(11, deliverers.get());
+    }
+
+    /**
+     * Asserts that the latency of a broadcast is recorded for the applicable room size.
+     */
+    @Test
+    public void testLatencyIsRecorded() throws Exception
+    {
+        // Setup test fixture.
+        final List<MUCOccupant> occupants = createOccupants(50);
+
+        // Execute system under test.
+        BroadcastFanOut.deliver(occupants, () -> occupant -> {});
+
+        // Verify results.
+        final List<BroadcastFanOut.Metrics> metrics = BroadcastFanOut.getMetrics();
+        assertEquals(0, metrics.get(0).getCount());
+        assertEquals(1, metrics.get(1).getCount());
+        assertEquals(100, metrics.get(1).getMaxRoomSize());
+    }
+
+    /**
+     * Asserts that broadcast latency is registered as a statistic for each range of room sizes, and that a sample
+     * covers the broadcasts since the previous sample only.
+     */
+    @Test
+    public void testLatencyIsSampledAsStatistic() throws Exception
+    {
+        // Setup test fixture.
+        BroadcastFanOut.addStatistics();
+        try {
+            final Statistic statistic = StatisticsManager.getInstance().getStatistic("muc_broadcast_latency_100");
+            assertNotNull(statistic);
+            assertNotNull(StatisticsManager.getInstance().getStatistic("muc_broadcast_latency_" + Integer.MAX_VALUE));
+            BroadcastFanOut.deliver(createOccupants(50), () -> occupant -> {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            // Execute system under test.
+            final double first = statistic.sample();
+            final double second = statistic.sample();
+
+            // Verify results.
+            assertTrue(first >= 50, "Expected the average latency to cover the delivery to all occupants, but it was " + first);
+            assertEquals(0, second);
+        } finally {
+            BroadcastFanOut.removeStatistics();
+        }
+        assertNull(StatisticsManager.getInstance().getStatistic("muc_broadcast_latency_100"));
+    }
+
+    private static List<MUCOccupant> createOccupants(final int amount)
+    {
+        final List<MUCOccupant> result = new ArrayList<>();
+        for (int i = 0; i < amount; i++) {
+            result.add(new MUCOccupant());
+        }
+        return result;
+    }
+}
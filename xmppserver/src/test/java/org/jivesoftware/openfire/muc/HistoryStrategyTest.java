@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2021-2023 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2021-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,7 +15,11 @@
  */
 package org.jivesoftware.openfire.muc;
 
+import org.jivesoftware.Fixtures;
 import org.jivesoftware.util.StringUtils;
+import org.jivesoftware.util.XMPPDateTimeFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.xmpp.packet.JID;
 import org.xmpp.packet.Message;
@@ -25,8 +29,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -40,6 +47,19 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 public class HistoryStrategyTest
 {
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        Fixtures.clearExistingProperties();
+    }
+
     /**
      * Asserts that when a populated instance of HistoryStrategy is serialized and the resulting data deserialized again, an
      * instance results that is equal to the original input.
@@ -90,6 +110,165 @@ public class HistoryStrategyTest
         assertEquals(inputMessageTextHistory, resultMessageTextHistory);
     }
 
+    /**
+     * Asserts that messages that are added out of order are returned in the order of their timestamp.
+     */
+    @Test
+    public void testMessagesOrderedByTimestamp() throws Exception
+    {
+        // Setup test fixture.
+        final HistoryStrategy.Messages messages = new HistoryStrategy.Messages();
+        final long now = System.currentTimeMillis();
+
+        // Execute system under test.
+        messages.add(historicMessage("second", now - 2000), HistoryStrategy.Type.all, 0);
+        messages.add(historicMessage("third", now - 1000), HistoryStrategy.Type.all, 0);
+        messages.add(historicMessage("first", now - 3000), HistoryStrategy.Type.all, 0);
+
+        // Verify results.
+        assertEquals(List.of("first", "second", "third"), bodies(new ArrayList<>(messages.asCollection())));
+    }
+
+    /**
+     * Asserts that the oldest messages are evicted when the amount of messages is limited.
+     */
+    @Test
+    public void testMessagesEvictOldest() throws Exception
+    {
+        // Setup test fixture.
+        final HistoryStrategy.Messages messages = new HistoryStrategy.Messages();
+        final long now = System.currentTimeMillis();
+
+        // Execute system under test.
+        for (int i = 0; i < 20; i++) {
+            messages.add(historicMessage("message " + i, now + i), HistoryStrategy.Type.number, 3);
+        }
+
+        // Verify results.
+        assertEquals(3, messages.size());
+        assertEquals(List.of("message 17", "message 18", "message 19"), bodies(new ArrayList<>(messages.asCollection())));
+    }
+
+    /**
+     * Asserts that a selection of history is limited by the maximum amount of stanzas, characters and age.
+     */
+    @Test
+    public void testMessagesSelect() throws Exception
+    {
+        // Setup test fixture.
+        final HistoryStrategy.Messages messages = new HistoryStrategy.Messages();
+        final long now = System.currentTimeMillis();
+        messages.add(historicMessage("aaaa", now - 300_000), HistoryStrategy.Type.all, 0);
+        messages.add(historicMessage("bbbb", now - 200_000), HistoryStrategy.Type.all, 0);
+        messages.add(historicMessage("cccc", now - 100_000), HistoryStrategy.Type.all, 0);
+        messages.add(historicMessage("dddd", now - 1_000), HistoryStrategy.Type.all, 0);
+
+        // Execute system under test & Verify results.
+        assertEquals(List.of("aaaa", "bbbb", "cccc", "dddd"), bodies(messages.select(-1, -1, -1, null)));
+        assertEquals(List.of("cccc", "dddd"), bodies(messages.select(-1, 2, -1, null)));
+        assertEquals(List.of("bbbb", "cccc", "dddd"), bodies(messages.select(12, -1, -1, null)));
+        assertEquals(List.of("dddd"), bodies(messages.select(-1, -1, 60, null)));
+        assertEquals(List.of("bbbb", "cccc", "dddd"), bodies(messages.select(-1, -1, -1, new Date(now - 250_000))));
+    }
+
+    /**
+     * Asserts that messages that are stored off-heap are retained, and survive serialization.
+     */
+    @Test
+    public void testMessagesOffHeap() throws Exception
+    {
+        // Setup test fixture.
+        HistoryStrategy.OFF_HEAP.setValue(true);
+        final HistoryStrategy.Messages input = new HistoryStrategy.Messages();
+        final long now = System.currentTimeMillis();
+        input.add(historicMessage("one", now - 2000), HistoryStrategy.Type.all, 0);
+        input.add(historicMessage("two", now - 1000), HistoryStrategy.Type.all, 0);
+
+        // Execute system under test.
+        final byte[] serialized;
+        try (final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+             final ObjectOutputStream oos = new ObjectOutputStream(baos) ) {
+            oos.writeObject(input);
+            serialized = baos.toByteArray();
+        }
+        HistoryStrategy.OFF_HEAP.setValue(false);
+        final Object result;
+        try (final ByteArrayInputStream bais = new ByteArrayInputStream(serialized);
+             final ObjectInputStream ois = new ObjectInputStream(bais)) {
+            result = ois.readObject();
+        }
+
+        // Verify results.
+        assertEquals(input, result);
+        assertEquals(List.of("one", "two"), bodies(new ArrayList<>(input.asCollection())));
+        assertEquals(List.of("one", "two"), bodies(new ArrayList<>(((HistoryStrategy.Messages) result).asCollection())));
+    }
+
+    /**
+     * Asserts that the off-heap arena of a room is compacted and reused when messages are evicted, instead of growing.
+     */
+    @Test
+    public void testMessagesOffHeapArenaIsCompacted() throws Exception
+    {
+        // Setup test fixture.
+        HistoryStrategy.OFF_HEAP.setValue(true);
+        try {
+            final HistoryStrategy.Messages messages = new HistoryStrategy.Messages();
+            final long now = System.currentTimeMillis();
+
+            // Execute system under test.
+            for (int i = 0; i < 200; i++) {
+                messages.add(historicMessage("message " + i, now + i), HistoryStrategy.Type.number, 3);
+            }
+
+            // Verify results.
+            assertEquals(List.of("message 197", "message 198", "message 199"), bodies(new ArrayList<>(messages.asCollection())));
+            final Field arena = HistoryStrategy.Messages.class.getDeclaredField("arena");
+            arena.setAccessible(true);
+            assertEquals(4096, ((ByteBuffer) arena.get(messages)).capacity());
+        } finally {
+            HistoryStrategy.OFF_HEAP.setValue(false);
+        }
+    }
+
+    /**
+     * Asserts that modifications of the history are applied to the stored messages.
+     */
+    @Test
+    public void testMessagesUpdate() throws Exception
+    {
+        // Setup test fixture.
+        final HistoryStrategy.Messages messages = new HistoryStrategy.Messages();
+        messages.add(historicMessage("one", System.currentTimeMillis()), HistoryStrategy.Type.all, 0);
+
+        // Execute system under test.
+        messages.update(message -> message.getChildElement("delay", "urn:xmpp:delay").addAttribute("from", "room@conference.example.org"));
+
+        // Verify results.
+        final Message result = messages.asCollection().peek();
+        assertNotNull(result);
+        assertEquals("room@conference.example.org", result.getChildElement("delay", "urn:xmpp:delay").attributeValue("from"));
+    }
+
+    private static Message historicMessage(final String body, final long timestamp)
+    {
+        final Message message = new Message();
+        message.setFrom(new JID("room", "conference.example.org", "nick"));
+        message.setType(Message.Type.groupchat);
+        message.setBody(body);
+        message.addChildElement("delay", "urn:xmpp:delay").addAttribute("stamp", XMPPDateTimeFormat.format(new Date(timestamp)));
+        return message;
+    }
+
+    private static List<String> bodies(final List<Message> messages)
+    {
+        final List<String> result = new ArrayList<>();
+        for (final Message message : messages) {
+            result.add(message.getBody());
+        }
+        return result;
+    }
+
     public static <E> void populateField(final E object, final String fieldName, final Object value) throws NoSuchFieldException, IllegalAccessException {
         final Field field = object.getClass().getDeclaredField(fieldName);
         field.setAccessible(true);
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2021-2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2021-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -97,15 +97,65 @@ public class MUCOccupantTest
         assertEquals(input.isRemoteFmuc(), ((MUCOccupant) result).isRemoteFmuc());
         assertEquals(input.isVoiceOnly(), ((MUCOccupant) result).isVoiceOnly());
 
-        final Field extendedInformationField = MUCOccupant.class.getDeclaredField("extendedInformation");
-        extendedInformationField.setAccessible(true);
-        final Element expectedExtendedInformation = (Element) extendedInformationField.get(input);
-        final Element actualExtendedInformation = (Element) extendedInformationField.get(result);
-        extendedInformationField.setAccessible(false);
+        final Element expectedExtendedInformation = input.createExtendedInformation();
+        final Element actualExtendedInformation = ((MUCOccupant) result).createExtendedInformation();
 
         assertEquals(expectedExtendedInformation.asXML(), actualExtendedInformation.asXML());
+        assertEquals(input.getCachedSize(), ((MUCOccupant) result).getCachedSize());
+    }
+
+    /**
+     * Asserts that occupants that have equal presence information share its serialized form, while the presence that
+     * is materialized for each occupant reflects the state of that occupant.
+     */
+    @Test
+    public void testPresenceIsSharedAndMaterialized() throws Exception
+    {
+        // Setup test fixture.
+        doReturn("id-a").when(mockRoom).generateOccupantId(new JID("a@example.org/desktop"));
+        doReturn("id-b").when(mockRoom).generateOccupantId(new JID("b@example.org/desktop"));
+        final MUCOccupant a = new MUCOccupant(mockRoom, "a", Role.participant, Affiliation.none, new JID("a@example.org/desktop"), joinPresence("a@example.org/desktop", "a"));
+        final MUCOccupant b = new MUCOccupant(mockRoom, "b", Role.visitor, Affiliation.none, new JID("b@example.org/desktop"), joinPresence("b@example.org/desktop", "b"));
 
-        // TODO Worry why the cached sizes differ (it's caused by the presence and extendedInformation element sizes).
-        // assertEquals(input.getCachedSize(), ((MUCOccupant) result).getCachedSize());
+        // Execute system under test.
+        final boolean shared = readPresenceField(a).sharesTemplateWith(readPresenceField(b));
+        final Presence presence = b.getPresence();
+        b.changeNickname("c");
+        b.setRole(Role.none);
+        final Presence left = b.getPresence();
+
+        // Verify results.
+        assertTrue(shared);
+        assertEquals(new JID("testroom@conference.example.org/b"), presence.getFrom());
+        assertEquals("id-b", presence.getElement().element("occupant-id").attributeValue("id"));
+        assertEquals("visitor", presence.getElement().element("x").element("item").attributeValue("role"));
+        assertEquals("b@example.org/desktop", presence.getElement().element("x").element("item").attributeValue("jid"));
+        assertEquals("away", presence.getStatus());
+        assertEquals(new JID("testroom@conference.example.org/c"), left.getFrom());
+        assertEquals(new JID("testroom@conference.example.org/b"), left.getTo());
+        assertEquals(Presence.Type.unavailable, left.getType());
+        assertNull(left.getStatus());
+        assertEquals("none", left.getElement().element("x").element("item").attributeValue("role"));
+    }
+
+    private Presence joinPresence(final String from, final String nickname)
+    {
+        final Presence presence = new Presence();
+        presence.setFrom(from);
+        presence.setTo(new JID(mockRoom.getJID().getNode(), mockRoom.getJID().getDomain(), nickname));
+        presence.setStatus("away");
+        presence.addChildElement("x", "http://jabber.org/protocol/muc");
+        return presence;
+    }
+
+    private static CompactPresence readPresenceField(final MUCOccupant occupant) throws Exception
+    {
+        final Field presenceField = MUCOccupant.class.getDeclaredField("presence");
+        presenceField.setAccessible(true);
+        try {
+            return (CompactPresence) presenceField.get(occupant);
+        } finally {
+            presenceField.setAccessible(false);
+        }
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc;
+
+import org.jivesoftware.openfire.user.UserNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.xmpp.packet.JID;
+
+import java.util.List;
+
+import static org.jivesoftware.openfire.muc.MUCRoomTest.populateField;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Unit tests that verify the lookup of occupants of a {@link MUCRoom}.
+ */
+@ExtendWith(MockitoExtension.class)
+public class MUCRoomOccupantLookupTest {
+
+    @Mock
+    private MultiUserChatService mockService;
+
+    /**
+     * Asserts that occupants can be looked up by (case-insensitive) nickname, full JID and bare JID, after occupants
+     * have been added to and removed from the room.
+     */
+    @Test
+    public void testOccupantLookups() throws Exception
+    {
+        // Setup test fixture.
+        doReturn("conference.example.org").when(mockService).getServiceDomain();
+        final MUCRoom room = new MUCRoom();
+        populateField(room, "mucService", mockService);
+        populateField(room, "name", "test-room-name");
+        final MUCOccupant aliceDesktop = createOccupant("Alice", new JID("alice@example.org/desktop"));
+        final MUCOccupant aliceMobile = createOccupant("alice", new JID("alice@example.org/mobile"));
+        final MUCOccupant bob = createOccupant("Bob", new JID("bob@example.org/desktop"));
+
+        // Execute system under test.
+        room.addOccupant(aliceDesktop);
+        room.addOccupant(aliceMobile);
+        room.addOccupant(bob);
+        room.removeOccupant(aliceMobile);
+
+        // Verify results.
+        assertEquals(List.of(aliceDesktop), room.getOccupantsByNickname("ALICE"));
+        assertEquals(List.of(aliceDesktop), room.getOccupantsByBareJID(new JID("alice@example.org")));
+        assertEquals(bob, room.getOccupantByFullJID(new JID("bob@example.org/desktop")));
+        assertNull(room.getOccupantByFullJID(new JID("alice@example.org/mobile")));
+        assertTrue(room.hasOccupant("bob"));
+        assertTrue(room.hasOccupant(new JID("bob@example.org")));
+        assertFalse(room.hasOccupant(new JID("alice@example.org/mobile")));
+        assertEquals("Alice", room.findNickname(new JID("alice@example.org")));
+        assertThrows(UserNotFoundException.class, () -> room.getOccupantsByNickname("carol"));
+    }
+
+    /**
+     * Asserts that nicknames are matched the way that {@link String#equalsIgnoreCase(String)} matches them, which also
+     * considers characters equal when their upper case forms are equal (eg: a dotless 'i' and an upper case 'I').
+     */
+    @Test
+    public void testNicknameLookupMatchesEqualsIgnoreCase() throws Exception
+    {
+        // Setup test fixture.
+        doReturn("conference.example.org").when(mockService).getServiceDomain();
+        final MUCRoom room = new MUCRoom();
+        populateField(room, "mucService", mockService);
+        populateField(room, "name", "test-room-name");
+        final MUCOccupant occupant = createOccupant("T\u0131m", new JID("tim@example.org/desktop"));
+        assertTrue("T\u0131m".equalsIgnoreCase("TIM"));
+
+        // Execute system under test.
+        room.addOccupant(occupant);
+
+        // Verify results.
+        assertEquals(List.of(occupant), room.getOccupantsByNickname("TIM"));
+        assertTrue(room.hasOccupant("tIm"));
+    }
+
+    private static MUCOccupant createOccupant(final String nickname, final JID userAddress) throws Exception
+    {
+        final MUCOccupant occupant = new MUCOccupant();
+        populateField(occupant, "roomJid", new JID("test-room-name@conference.example.org"));
+        populateField(occupant, "nick", nickname);
+        populateField(occupant, "userJid", userAddress);
+        populateField(occupant, "occupantJID", new JID("test-room-name", "conference.example.org", nickname));
+        return occupant;
+    }
+}
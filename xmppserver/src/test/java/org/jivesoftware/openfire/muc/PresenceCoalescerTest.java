@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc;
+
+import org.jivesoftware.Fixtures;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Presence;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.jivesoftware.openfire.muc.MUCRoomTest.populateField;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests that verify the implementation of {@link PresenceCoalescer}
+ */
+public class PresenceCoalescerTest
+{
+    private static final JID ROOM_JID = new JID("room", "conference.example.org", null);
+
+    private final List<Presence> delivered = Collections.synchronizedList(new ArrayList<>());
+    private MUCRoom room;
+
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @BeforeEach
+    public void setUp()
+    {
+        // Use a window that is long enough for the scheduled flush not to interfere with the tests.
+        PresenceCoalescer.WINDOW.setValue(Duration.ofHours(1));
+        room = mock(MUCRoom.class, withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+        when(room.getJID()).thenReturn(ROOM_JID);
+        doAnswer(invocation -> delivered.add(invocation.getArgument(0))).when(room).deliverPresence(any(Presence.class), anyBoolean(), anyBoolean());
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        PresenceCoalescer.flush(ROOM_JID);
+        Fixtures.clearExistingProperties();
+    }
+
+    private static Presence presence(final String nickname, final Presence.Type type, final String status)
+    {
+        final Presence presence = new Presence(type);
+        presence.setFrom(new JID(ROOM_JID.getNode(), ROOM_JID.getDomain(), nickname));
+        presence.setStatus(status);
+        return presence;
+    }
+
+    /**
+     * Asserts that presence updates are applied only if coalescing is enabled, in rooms that are large enough.
+     */
+    @Test
+    public void testAppliesTo() throws Exception
+    {
+        // Setup test fixture.
+        PresenceCoalescer.THRESHOLD.setValue(100);
+
+        // Execute system under test & Verify results.
+        assertFalse(PresenceCoalescer.appliesTo(99));
+        assertTrue(PresenceCoalescer.appliesTo(100));
+        PresenceCoalescer.WINDOW.setValue(Duration.ZERO);
+        assertFalse(PresenceCoalescer.appliesTo(100));
+    }
+
+    /**
+     * Asserts that pending presence updates for the same occupant collapse to the latest update, while updates of
+     * different occupants are retained in order.
+     */
+    @Test
+    public void testCollapsesToLatestState() throws Exception
+    {
+        // Setup test fixture.
+        PresenceCoalescer.submit(room, presence("alice", null, "one"), false);
+        PresenceCoalescer.submit(room, presence("bob", null, "away"), false);
+        PresenceCoalescer.submit(room, presence("alice", null, "two"), false);
+
+        // Execute system under test.
+        PresenceCoalescer.flush(ROOM_JID);
+
+        // Verify results.
+        assertEquals(2, delivered.size());
+        assertEquals("alice", delivered.get(0).getFrom().getResource());
+        assertEquals("two", delivered.get(0).getStatus());
+        assertEquals("bob", delivered.get(1).getFrom().getResource());
+        verify(room, times(2)).deliverPresence(any(Presence.class), eq(false), eq(false));
+    }
+
+    /**
+     * Asserts that an occupant that joins and leaves within the window is never announced.
+     */
+    @Test
+    public void testJoinAndLeaveCancelOut() throws Exception
+    {
+        // Setup test fixture.
+        PresenceCoalescer.submit(room, presence("alice", null, null), true);
+        PresenceCoalescer.submit(room, presence("alice", null, "busy"), false);
+        PresenceCoalescer.submit(room, presence("alice", Presence.Type.unavailable, null), false);
+
+        // Execute system under test.
+        PresenceCoalescer.flush(ROOM_JID);
+
+        // Verify results.
+        assertTrue(delivered.isEmpty());
+    }
+
+    /**
+     * Asserts that an occupant that leaves and rejoins within the window is announced with its latest state only.
+     */
+    @Test
+    public void testLeaveAndRejoinCollapse() throws Exception
+    {
+        // Setup test fixture.
+        PresenceCoalescer.submit(room, presence("alice", Presence.Type.unavailable, null), false);
+        PresenceCoalescer.submit(room, presence("alice", null, "back"), true);
+        PresenceCoalescer.submit(room, presence("alice", Presence.Type.unavailable, null), false);
+        PresenceCoalescer.submit(room, presence("alice", null, "back again"), true);
+
+        // Execute system under test.
+        PresenceCoalescer.flush(ROOM_JID);
+
+        // Verify results.
+        assertEquals(1, delivered.size());
+        assertNull(delivered.get(0).getType());
+        assertEquals("back again", delivered.get(0).getStatus());
+        assertEquals(0, PresenceCoalescer.getPendingCount(ROOM_JID));
+    }
+
+    /**
+     * Asserts that an occupant that joins and leaves within the window is announced to leave, when another occupant
+     * joined the room in the mean time (and was sent the presence of the occupant as part of joining).
+     */
+    @Test
+    public void testLeaveIsAnnouncedAfterAnotherOccupantJoined() throws Exception
+    {
+        // Setup test fixture.
+        final MultiUserChatService service = mock(MultiUserChatService.class, withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+        when(service.getServiceDomain()).thenReturn(ROOM_JID.getDomain());
+        final MUCRoom realRoom = new MUCRoom();
+        populateField(realRoom, "mucService", service);
+        populateField(realRoom, "name", ROOM_JID.getNode());
+        final MUCRoom room = spy(realRoom);
+        doAnswer(invocation -> delivered.add(invocation.getArgument(0))).when(room).deliverPresence(any(Presence.class), anyBoolean(), anyBoolean());
+
+        final MUCOccupant bob = new MUCOccupant();
+        populateField(bob, "roomJid", ROOM_JID);
+        populateField(bob, "nick", "bob");
+        populateField(bob, "userJid", new JID("bob@example.org/desktop"));
+        populateField(bob, "occupantJID", new JID(ROOM_JID.getNode(), ROOM_JID.getDomain(), "bob"));
+        room.addOccupant(bob);
+
+        PresenceCoalescer.submit(room, presence("alice", null, null), true);
+
+        // Execute system under test.
+        room.sendInitialPresencesToNewOccupant(bob);
+        PresenceCoalescer.submit(room, presence("alice", Presence.Type.unavailable, null), false);
+        PresenceCoalescer.flush(ROOM_JID);
+
+        // Verify results.
+        assertEquals(1, delivered.size());
+        assertEquals("alice", delivered.get(0).getFrom().getResource());
+        assertEquals(Presence.Type.unavailable, delivered.get(0).getType());
+    }
+
+    /**
+     * Asserts that a flush that is invoked while another thread is delivering the pending updates of the same room
+     * returns only after those updates have been delivered.
+     */
+    @Test
+    public void testFlushWaitsForConcurrentDelivery() throws Exception
+    {
+        // Setup test fixture.
+        final CountDownLatch delivering = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            delivering.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return delivered.add(invocation.getArgument(0));
+        }).when(room).deliverPresence(any(Presence.class), anyBoolean(), anyBoolean());
+        PresenceCoalescer.submit(room, presence("alice", null, null), true);
+
+        final Thread timer = new Thread(() -> PresenceCoalescer.flush(ROOM_JID));
+        timer.start();
+        assertTrue(delivering.await(5, TimeUnit.SECONDS));
+
+        // Execute system under test.
+        final Thread broadcaster = new Thread(() -> PresenceCoalescer.flush(ROOM_JID));
+        broadcaster.start();
+        broadcaster.join(200);
+        final boolean returnedDuringDelivery = !broadcaster.isAlive();
+        release.countDown();
+        broadcaster.join(5000);
+        timer.join(5000);
+
+        // Verify results.
+        assertFalse(returnedDuringDelivery);
+        assertFalse(broadcaster.isAlive());
+        assertEquals(1, delivered.size());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc.spi;
+
+import org.junit.jupiter.api.Test;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Message;
+import org.xmpp.packet.Packet;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link FMUCHandler}
+ */
+public class FMUCHandlerTest
+{
+    private static final JID PEER = new JID("room", "conference.remote.example.org", null);
+
+    private static Message stanza(final String body)
+    {
+        final Message message = new Message();
+        message.setFrom(new JID("room", "conference.example.org", "alice"));
+        message.setTo(new JID(PEER.getNode(), PEER.getDomain(), "alice"));
+        message.setBody(body);
+        message.getElement().addElement(FMUCHandler.FMUC).addAttribute("from", "alice@example.org/desktop");
+        return message;
+    }
+
+    private static Message echo(final Message original)
+    {
+        final Message echo = original.createCopy();
+        echo.setFrom(new JID(PEER.getNode(), PEER.getDomain(), "alice"));
+        echo.setTo(new JID("room", "conference.example.org", null));
+        return echo;
+    }
+
+    /**
+     * Asserts that pipelined stanzas are sent in batches, in order, without exceeding the amount of stanzas that await
+     * an echo, and that an echo frees up room in that window.
+     */
+    @Test
+    public void testPipelineWindow() throws Exception
+    {
+        // Setup test fixture.
+        final FMUCHandler.OutboundJoin join = new FMUCHandler.OutboundJoin(PEER, FMUCMode.MasterSlave);
+        final Message first = stanza("1");
+        final CompletableFuture<?> firstResult = new CompletableFuture<>();
+        assertTrue(join.enqueue(first, firstResult, true));
+        assertFalse(join.enqueue(stanza("2"), new CompletableFuture<>(), true));
+        assertFalse(join.enqueue(stanza("3"), new CompletableFuture<>(), true));
+
+        // Execute system under test.
+        final List<Packet> firstBatch = join.nextBatch(10, 2);
+        final List<Packet> blocked = join.nextBatch(10, 2);
+        final boolean drainAfterEcho = join.evaluateForCallbackCompletion(echo(first));
+        final List<Packet> secondBatch = join.nextBatch(10, 2);
+
+        // Verify results.
+        assertEquals(List.of("1", "2"), firstBatch.stream().map(p -> ((Message) p).getBody()).toList());
+        assertTrue(blocked.isEmpty());
+        assertTrue(firstResult.isDone());
+        assertTrue(drainAfterEcho);
+        assertEquals(List.of("3"), secondBatch.stream().map(p -> ((Message) p).getBody()).toList());
+        assertEquals(0, join.getQueueDepth());
+        assertEquals(2, join.getAwaitingEchoCount());
+        assertNotNull(join.getRoundTripTime());
+    }
+
+    /**
+     * Asserts that stanzas for which no echo is awaited are not limited by the window, and are sent in batches of the
+     * requested size.
+     */
+    @Test
+    public void testPipelineBatchSize() throws Exception
+    {
+        // Setup test fixture.
+        final FMUCHandler.OutboundJoin join = new FMUCHandler.OutboundJoin(PEER, FMUCMode.MasterMaster);
+        for (int i = 0; i < 5; i++) {
+            join.enqueue(stanza(String.valueOf(i)), CompletableFuture.completedFuture(null), false);
+        }
+
+        // Execute system under test.
+        final List<Packet> firstBatch = join.nextBatch(3, 1);
+        final List<Packet> secondBatch = join.nextBatch(3, 1);
+        final List<Packet> thirdBatch = join.nextBatch(3, 1);
+
+        // Verify results.
+        assertEquals(3, firstBatch.size());
+        assertEquals(2, secondBatch.size());
+        assertTrue(thirdBatch.isEmpty());
+        assertEquals(0, join.getAwaitingEchoCount());
+        assertNull(join.getRoundTripTime());
+
+        // A new stanza requires a new task to send it, as the previous one finished.
+        assertTrue(join.enqueue(stanza("5"), CompletableFuture.completedFuture(null), false));
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc.spi;
+
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.openfire.muc.*;
+import org.jivesoftware.openfire.muc.cluster.MUCRoomDelta;
+import org.jivesoftware.util.cache.Cache;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Message;
+
+import java.io.Externalizable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.jivesoftware.openfire.muc.MUCRoomTest.populateField;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Unit tests that verify the implementation of {@link MUCRoomDeltaReplicator}
+ *
+ * Two instances of the replicator, that each represent a cluster node, share caches that copy values when they're
+ * stored and retrieved, like a clustered cache does.
+ */
+@ExtendWith(MockitoExtension.class)
+public class MUCRoomDeltaReplicatorTest
+{
+    private static final String ROOM_NAME = "test-room";
+
+    @Mock(strictness = Mock.Strictness.LENIENT)
+    private XMPPServer xmppServer;
+
+    @Mock(strictness = Mock.Strictness.LENIENT)
+    private MultiUserChatManager mockMUCManager;
+
+    @Mock(strictness = Mock.Strictness.LENIENT)
+    private MultiUserChatService mockService;
+
+    private Cache<String, MUCRoom> roomCache;
+    private Cache<String, MUCRoomDelta.Version> versionCache;
+    private Cache<String, MUCRoomDelta> deltaCache;
+
+    private MUCRoomDeltaReplicator nodeA;
+    private MUCRoomDeltaReplicator nodeB;
+
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+        CacheFactory.initialize();
+    }
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        doReturn("conference").when(mockService).getServiceName();
+        doReturn("conference.example.org").when(mockService).getServiceDomain();
+        doReturn(mockService).when(mockMUCManager).getMultiUserChatService(anyString());
+        doReturn(mockMUCManager).when(xmppServer).getMultiUserChatManager();
+
+        //noinspection deprecation
+        XMPPServer.setInstance(xmppServer);
+
+        roomCache = copying(CacheFactory.createCache("unittest-delta-rooms"));
+        versionCache = copying(CacheFactory.createCache("unittest-delta-versions"));
+        deltaCache = copying(CacheFactory.createCache("unittest-delta-deltas"));
+
+        nodeA = new MUCRoomDeltaReplicator("conference", roomCache, versionCache, deltaCache);
+        nodeB = new MUCRoomDeltaReplicator("conference", roomCache, versionCache, deltaCache);
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        roomCache.clear();
+        versionCache.clear();
+        deltaCache.clear();
+        Fixtures.clearExistingProperties();
+    }
+
+    /**
+     * Asserts that changes to a room are replicated as a delta, that holds typed changes, which another node applies.
+     */
+    @Test
+    public void testChangesAreReplicatedAsDelta() throws Exception
+    {
+        // Setup test fixture.
+        final MUCRoom room = createRoom();
+        room.addOccupantWithoutEvent(createOccupant("alice", new JID("alice@example.org/desktop")));
+        nodeA.sync(room);
+        assertEquals(1, nodeB.get(ROOM_NAME).getOccupantsCount());
+
+        // Execute system under test.
+        room.addOccupantWithoutEvent(createOccupant("bob", new JID("bob@example.org/mobile")));
+        room.addAffiliationWithoutEvent(new JID("bob@example.org"), Affiliation.owner, null);
+        room.setDescription("A changed description");
+        nodeA.sync(room);
+
+        // Verify results.
+        assertEquals(new MUCRoomDelta.Version(versionCache.get(ROOM_NAME).getSnapshotId(), 1), versionCache.get(ROOM_NAME));
+        assertEquals(1, deltaCache.size());
+        final Set<MUCRoomDelta.Type> types = deltaCache.values().iterator().next().getChanges().stream().map(MUCRoomDelta.Change::getType).collect(Collectors.toSet());
+        assertEquals(Set.of(MUCRoomDelta.Type.OCCUPANT_ADDED, MUCRoomDelta.Type.AFFILIATION_ADDED, MUCRoomDelta.Type.CONFIGURATION_CHANGED), types);
+        assertEquals(1, roomCache.get(ROOM_NAME).getOccupantsCount(), "The full snapshot should not have been replaced.");
+
+        final MUCRoom replica = nodeB.get(ROOM_NAME);
+        assertEquals(2, replica.getOccupantsCount());
+        assertNotNull(replica.getOccupantByFullJID(new JID("bob@example.org/mobile")));
+        assertTrue(replica.getOwners().contains(new JID("bob@example.org")));
+        assertEquals("A changed description", replica.getDescription());
+    }
+
+    /**
+     * Asserts that a node that already has a replica of a room applies only the deltas that it has not yet applied.
+     */
+    @Test
+    public void testReplicaIsUpdatedIncrementally() throws Exception
+    {
+        // Setup test fixture.
+        final MUCRoom room = createRoom();
+        final MUCOccupant alice = createOccupant("alice", new JID("alice@example.org/desktop"));
+        room.addOccupantWithoutEvent(alice);
+        room.addOccupantWithoutEvent(createOccupant("bob", new JID("bob@example.org/mobile")));
+        room.addAffiliationWithoutEvent(new JID("carol@example.org"), Affiliation.member, "carol");
+        nodeA.sync(room);
+        assertEquals(2, nodeB.get(ROOM_NAME).getOccupantsCount());
+
+        // Execute system under test.
+        room.removeOccupantWithoutEvent(alice);
+        room.removeAffiliationWithoutEvent(new JID("carol@example.org"), Affiliation.member);
+        nodeA.sync(room);
+        final MUCRoom replica = nodeB.get(ROOM_NAME);
+
+        // Verify results.
+        assertEquals(1, replica.getOccupantsCount());
+        assertNull(replica.getOccupantByFullJID(new JID("alice@example.org/desktop")));
+        assertTrue(replica.getMembers().isEmpty());
+    }
+
+    /**
+     * Asserts that syncing a room that did not change does not replicate anything.
+     */
+    @Test
+    public void testUnchangedRoomIsNotReplicated() throws Exception
+    {
+        // Setup test fixture.
+        final MUCRoom room = createRoom();
+        room.addOccupantWithoutEvent(createOccupant("alice", new JID("alice@example.org/desktop")));
+        nodeA.sync(room);
+        final MUCRoomDelta.Version before = versionCache.get(ROOM_NAME);
+
+        // Execute system under test.
+        nodeA.sync(room);
+        nodeB.sync(room);
+
+        // Verify results.
+        assertEquals(before, versionCache.get(ROOM_NAME));
+        assertTrue(deltaCache.isEmpty());
+    }
+
+    /**
+     * Asserts that a full snapshot is replicated after the configured amount of deltas, replacing those deltas.
+     */
+    @Test
+    public void testSnapshotAfterInterval() throws Exception
+    {
+        // Setup test fixture.
+        MUCRoomDeltaReplicator.SNAPSHOT_INTERVAL.setValue(2);
+        final MUCRoom room = createRoom();
+        nodeA.sync(room);
+        final long firstSnapshotId = versionCache.get(ROOM_NAME).getSnapshotId();
+
+        // Execute system under test.
+        for (int i = 0; i < 3; i++) {
+            room.addOccupantWithoutEvent(createOccupant("user" + i, new JID("user" + i + "@example.org/resource")));
+            nodeA.sync(room);
+        }
+
+        // Verify results.
+        assertNotEquals(firstSnapshotId, versionCache.get(ROOM_NAME).getSnapshotId());
+        assertEquals(0, versionCache.get(ROOM_NAME).getSequence());
+        assertTrue(deltaCache.isEmpty());
+        assertEquals(3, roomCache.get(ROOM_NAME).getOccupantsCount());
+        assertEquals(3, nodeB.get(ROOM_NAME).getOccupantsCount());
+    }
+
+    /**
+     * Asserts that a node that finds that its replica is inconsistent with the checksum that is recorded in a delta does
+     * not use that replica.
+     */
+    @Test
+    public void testInconsistentReplicaIsDiscarded() throws Exception
+    {
+        // Setup test fixture.
+        final MUCRoom room = createRoom();
+        room.addOccupantWithoutEvent(createOccupant("alice", new JID("alice@example.org/desktop")));
+        nodeA.sync(room);
+        room.addOccupantWithoutEvent(createOccupant("bob", new JID("bob@example.org/mobile")));
+        nodeA.sync(room);
+        final String key = deltaCache.keySet().iterator().next();
+        final MUCRoomDelta delta = deltaCache.get(key);
+        delta.setChecksum(delta.getChecksum() + 1);
+        deltaCache.put(key, delta);
+
+        // Execute system under test.
+        final MUCRoom result = nodeB.get(ROOM_NAME);
+
+        // Verify results.
+        assertEquals(1, result.getOccupantsCount(), "Expected the most recent snapshot to be used.");
+    }
+
+    /**
+     * Asserts that changes made by a node that did not write the snapshot are replicated too.
+     */
+    @Test
+    public void testChangesFromAnotherNode() throws Exception
+    {
+        // Setup test fixture.
+        final MUCRoom room = createRoom();
+        nodeA.sync(room);
+        final MUCRoom onNodeB = nodeB.get(ROOM_NAME);
+
+        // Execute system under test.
+        onNodeB.addOccupantWithoutEvent(createOccupant("alice", new JID("alice@example.org/desktop")));
+        nodeB.sync(onNodeB);
+
+        // Verify results.
+        assertEquals(1, versionCache.get(ROOM_NAME).getSequence());
+        assertEquals(1, nodeA.get(ROOM_NAME).getOccupantsCount());
+    }
+
+    /**
+     * Asserts that an occupant that changed is replicated as an update, and that an occupant that did not change is not
+     * replicated.
+     */
+    @Test
+    public void testOnlyChangedOccupantsAreReplicated() throws Exception
+    {
+        // Setup test fixture.
+        final MUCRoom room = createRoom();
+        final MUCOccupant alice = createOccupant("alice", new JID("alice@example.org/desktop"));
+        room.addOccupantWithoutEvent(alice);
+        room.addOccupantWithoutEvent(createOccupant("bob", new JID("bob@example.org/mobile")));
+        nodeA.sync(room);
+        assertEquals(2, nodeB.get(ROOM_NAME).getOccupantsCount());
+
+        // Execute system under test.
+        alice.setReportedFmucAddress(new JID("alice@remote.example.org/desktop"));
+        nodeA.sync(room);
+
+        // Verify results.
+        final MUCRoomDelta delta = deltaCache.values().iterator().next();
+        assertEquals(1, delta.getChanges().size());
+        assertEquals(MUCRoomDelta.Type.OCCUPANT_UPDATED, delta.getChanges().get(0).getType());
+        assertEquals(new JID("alice@example.org/desktop"), delta.getChanges().get(0).getAddress());
+        assertEquals(new JID("alice@remote.example.org/desktop"), nodeB.get(ROOM_NAME).getOccupantByFullJID(new JID("alice@example.org/desktop")).getReportedFmucAddress());
+    }
+
+    /**
+     * Asserts that an occupant that leaves and rejoins the room between two syncs is replicated as an update, even
+     * though the new instance that represents the occupant went through as many changes as the one that it replaces.
+     */
+    @Test
+    public void testRejoinedOccupantIsReplicated() throws Exception
+    {
+        // Setup test fixture.
+        final MUCRoom room = createRoom();
+        final MUCOccupant alice = createOccupant("alice", new JID("alice@example.org/desktop"));
+        room.addOccupantWithoutEvent(alice);
+        nodeA.sync(room);
+        assertEquals(1, nodeB.get(ROOM_NAME).getOccupantsCount());
+
+        // Execute system under test.
+        room.removeOccupantWithoutEvent(alice);
+        room.addOccupantWithoutEvent(createOccupant("alice2", new JID("alice@example.org/desktop")));
+        nodeA.sync(room);
+
+        // Verify results.
+        final MUCRoomDelta delta = deltaCache.values().iterator().next();
+        assertEquals(1, delta.getChanges().size());
+        assertEquals(MUCRoomDelta.Type.OCCUPANT_UPDATED, delta.getChanges().get(0).getType());
+        assertEquals("alice2", nodeB.get(ROOM_NAME).getOccupantByFullJID(new JID("alice@example.org/desktop")).getNickname());
+    }
+
+    /**
+     * Asserts that the occupants of a replica that was loaded from a snapshot are not considered to be changed, when
+     * the room is synced by that node, even though versions of occupants are not part of the snapshot.
+     */
+    @Test
+    public void testLoadedOccupantsAreNotReplicatedAgain() throws Exception
+    {
+        // Setup test fixture.
+        final MUCRoom room = createRoom();
+        room.addOccupantWithoutEvent(createOccupant("alice", new JID("alice@example.org/desktop")));
+        room.addOccupantWithoutEvent(createOccupant("bob", new JID("bob@example.org/mobile")));
+        nodeA.sync(room);
+        final MUCRoom onNodeB = nodeB.get(ROOM_NAME);
+
+        // Execute system under test.
+        onNodeB.setDescription("A changed description");
+        nodeB.sync(onNodeB);
+
+        // Verify results.
+        final MUCRoomDelta delta = deltaCache.values().iterator().next();
+        assertEquals(1, delta.getChanges().size());
+        assertEquals(MUCRoomDelta.Type.CONFIGURATION_CHANGED, delta.getChanges().get(0).getType());
+        assertEquals("A changed description", nodeA.get(ROOM_NAME).getDescription());
+    }
+
+    /**
+     * Asserts that a change of the subject of a room is replicated as only the message that changed the subject, rather
+     * than the entire history of the room.
+     */
+    @Test
+    public void testSubjectChangeIsReplicatedWithoutHistory() throws Exception
+    {
+        // Setup test fixture.
+        final MUCRoom room = createRoom();
+        nodeA.sync(room);
+        assertNull(nodeB.get(ROOM_NAME).getRoomHistory().getChangedSubject());
+
+        // Execute system under test.
+        final Message subject = new Message();
+        subject.setType(Message.Type.groupchat);
+        subject.setFrom(new JID(ROOM_NAME, "conference.example.org", "alice"));
+        subject.setSubject("A changed subject");
+        room.getRoomHistory().addMessage(subject);
+        nodeA.sync(room);
+
+        // Verify results.
+        final MUCRoomDelta delta = deltaCache.values().iterator().next();
+        assertEquals(1, delta.getChanges().size());
+        assertEquals(MUCRoomDelta.Type.SUBJECT_CHANGED, delta.getChanges().get(0).getType());
+        assertNull(delta.getChanges().get(0).getHistory());
+        assertEquals("A changed subject", nodeB.get(ROOM_NAME).getRoomHistory().getChangedSubject().getSubject());
+    }
+
+    /**
+     * Asserts that a node returns the same room instance for as long as no changes were replicated, and that replicated
+     * configuration changes do not duplicate the roles to which presence is broadcast.
+     */
+    @Test
+    public void testRoomIsCopiedOnlyAfterChanges() throws Exception
+    {
+        // Setup test fixture.
+        final MUCRoom room = createRoom();
+        room.setRolesToBroadcastPresence(new ArrayList<>(List.of(Role.moderator, Role.participant)));
+        nodeA.sync(room);
+        final MUCRoom first = nodeB.get(ROOM_NAME);
+
+        // Execute system under test.
+        final MUCRoom second = nodeB.get(ROOM_NAME);
+        room.setDescription("A changed description");
+        nodeA.sync(room);
+        final MUCRoom third = nodeB.get(ROOM_NAME);
+
+        // Verify results.
+        assertSame(first, second);
+        assertNotSame(second, third);
+        assertEquals("A changed description", third.getDescription());
+        assertEquals(2, third.getRolesToBroadcastPresence().size());
+        assertEquals(Set.of(Role.moderator, Role.participant), Set.copyOf(third.getRolesToBroadcastPresence()));
+    }
+
+    private MUCRoom createRoom() throws Exception
+    {
+        final MUCRoom room = new MUCRoom();
+        populateField(room, "mucService", mockService);
+        populateField(room, "name", ROOM_NAME);
+        populateField(room, "creationDate", new Date());
+        populateField(room, "roomHistory", new MUCRoomHistory(room, new HistoryStrategy(room.getJID(), null)));
+
+        final MUCOccupant self = new MUCOccupant();
+        populateField(self, "roomJid", room.getJID());
+        populateField(self, "occupantJID", room.getJID());
+        populateField(self, "role", Role.moderator);
+        populateField(self, "affiliation", Affiliation.owner);
+        populateField(room, "selfOccupantData", self);
+        return room;
+    }
+
+    private static MUCOccupant createOccupant(final String nickname, final JID userAddress) throws Exception
+    {
+        final MUCOccupant occupant = new MUCOccupant();
+        populateField(occupant, "roomJid", new JID(ROOM_NAME + "@conference.example.org"));
+        populateField(occupant, "nick", nickname);
+        populateField(occupant, "userJid", userAddress);
+        populateField(occupant, "role", Role.participant);
+        populateField(occupant, "affiliation", Affiliation.none);
+        populateField(occupant, "occupantJID", new JID(ROOM_NAME, "conference.example.org", nickname));
+        return occupant;
+    }
+
+    /**
+     * Wraps a cache in one that stores and returns copies of values, like a clustered cache does.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V extends Externalizable> Cache<String, V> copying(final Cache<String, V> delegate)
+    {
+        delegate.clear();
+        return (Cache<String, V>) Proxy.newProxyInstance(Cache.class.getClassLoader(), new Class<?>[] { Cache.class }, (proxy, method, args) -> {
+            if (method.getName().equals("put") && args.length == 2) {
+                args = new Object[] { args[0], MUCRoomDeltaReplicator.copy((V) args[1]) };
+            }
+            final Object result;
+            try {
+                result = method.invoke(delegate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if ((method.getName().equals("get") || method.getName().equals("put")) && result instanceof Externalizable) {
+                return MUCRoomDeltaReplicator.copy((V) result);
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc.spi;
+
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.muc.MUCRoom;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests that verify the implementation of {@link MUCRoomPreloader}
+ */
+@ExtendWith(MockitoExtension.class)
+public class MUCRoomPreloaderTest
+{
+    @Mock(strictness = Mock.Strictness.LENIENT)
+    private LocalMUCRoomManager localMUCRoomManager;
+
+    private final Map<String, MUCRoom> added = new ConcurrentHashMap<>();
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @BeforeEach
+    public void setUp()
+    {
+        doAnswer(invocation -> locks.computeIfAbsent(invocation.getArgument(0), k -> new ReentrantLock())).when(localMUCRoomManager).getLock(anyString());
+        doAnswer(invocation -> added.get((String) invocation.getArgument(0))).when(localMUCRoomManager).get(anyString());
+        doAnswer(invocation -> {
+            final MUCRoom room = invocation.getArgument(0);
+            added.put(room.getName(), room);
+            return null;
+        }).when(localMUCRoomManager).add(any(MUCRoom.class));
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        Fixtures.clearExistingProperties();
+    }
+
+    private static List<MUCRoom> rooms(final long fromID, final long toID)
+    {
+        final List<MUCRoom> result = new ArrayList<>();
+        for (long id = fromID; id <= toID; id++) {
+            final MUCRoom room = mock(MUCRoom.class, withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+            when(room.getID()).thenReturn(id);
+            when(room.getName()).thenReturn("room" + id);
+            when(room.getFmucHandler()).thenReturn(mock(FMUCHandler.class));
+            result.add(room);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the batch of rooms that a database query would return, for the provided rooms.
+     */
+    private static MUCPersistenceManager.RoomBatch batch(final List<MUCRoom> all, final long afterRoomID, final int batchSize)
+    {
+        final List<MUCRoom> rooms = all.stream().filter(room -> room.getID() > afterRoomID).limit(batchSize).toList();
+        return new MUCPersistenceManager.RoomBatch(rooms, rooms.isEmpty() ? null : rooms.get(rooms.size() - 1).getID());
+    }
+
+    /**
+     * Asserts that all rooms are preloaded, in batches that each continue after the last room of the previous batch.
+     */
+    @Test
+    public void testPreloadsAllBatches() throws Exception
+    {
+        // Setup test fixture.
+        MUCRoomPreloader.BATCH_SIZE.setValue(10);
+        final List<MUCRoom> all = rooms(1, 25);
+        final List<Long> requested = new ArrayList<>();
+        final MUCRoomPreloader preloader = new MUCRoomPreloader("conference", localMUCRoomManager, (afterRoomID, batchSize) -> {
+            requested.add(afterRoomID);
+            return batch(all, afterRoomID, batchSize);
+        });
+
+        // Execute system under test.
+        preloader.run();
+
+        // Verify results.
+        assertTrue(preloader.isFinished());
+        assertEquals(25, added.size());
+        assertEquals(List.of(Long.MIN_VALUE, 10L, 20L, 25L), requested);
+    }
+
+    /**
+     * Asserts that a row that could not be parsed into a room does not end preloading, even if it causes a batch to
+     * contain fewer rooms than the batch size.
+     */
+    @Test
+    public void testUnparseableRowDoesNotEndPreloading() throws Exception
+    {
+        // Setup test fixture.
+        MUCRoomPreloader.BATCH_SIZE.setValue(10);
+        final List<MUCRoom> all = rooms(1, 25);
+        final List<Long> requested = new ArrayList<>();
+        final MUCRoomPreloader preloader = new MUCRoomPreloader("conference", localMUCRoomManager, (afterRoomID, batchSize) -> {
+            requested.add(afterRoomID);
+            final MUCPersistenceManager.RoomBatch batch = batch(all, afterRoomID, batchSize);
+            final List<MUCRoom> parsed = batch.getRooms().stream().filter(room -> room.getID() != 10).toList();
+            return new MUCPersistenceManager.RoomBatch(parsed, batch.getLastRoomID());
+        });
+
+        // Execute system under test.
+        preloader.run();
+
+        // Verify results.
+        assertEquals(24, added.size());
+        assertFalse(added.containsKey("room10"));
+        assertEquals(List.of(Long.MIN_VALUE, 10L, 20L, 25L), requested);
+    }
+
+    /**
+     * Asserts that loading a batch is retried after a database error, instead of ending preloading.
+     */
+    @Test
+    public void testRetriesAfterDatabaseError() throws Exception
+    {
+        // Setup test fixture.
+        MUCRoomPreloader.BATCH_SIZE.setValue(10);
+        final List<MUCRoom> all = rooms(1, 25);
+        final List<Long> requested = new ArrayList<>();
+        final MUCRoomPreloader preloader = new MUCRoomPreloader("conference", localMUCRoomManager, (afterRoomID, batchSize) -> {
+            requested.add(afterRoomID);
+            if (requested.size() == 2) {
+                throw new SQLException("Test failure");
+            }
+            return batch(all, afterRoomID, batchSize);
+        });
+
+        // Execute system under test.
+        preloader.run();
+
+        // Verify results.
+        assertEquals(25, added.size());
+        assertEquals(List.of(Long.MIN_VALUE, 10L, 10L, 20L, 25L), requested);
+    }
+
+    /**
+     * Asserts that a room that is removed from the service while preloading is in progress is not preloaded afterwards.
+     */
+    @Test
+    public void testDoesNotResurrectRemovedRoom() throws Exception
+    {
+        // Setup test fixture.
+        final List<MUCRoom> all = rooms(1, 3);
+        final MUCRoomPreloader[] preloader = new MUCRoomPreloader[1];
+        preloader[0] = new MUCRoomPreloader("conference", localMUCRoomManager, (afterRoomID, batchSize) -> {
+            final MUCPersistenceManager.RoomBatch batch = batch(all, afterRoomID, batchSize);
+            preloader[0].onRoomRemoved("room2"); // Destroyed after the batch was read from the database.
+            return batch;
+        });
+
+        // Execute system under test.
+        preloader[0].run();
+
+        // Verify results.
+        assertEquals(2, added.size());
+        assertFalse(added.containsKey("room2"));
+    }
+
+    /**
+     * Asserts that a room that was loaded on demand is not replaced by a preloaded instance.
+     */
+    @Test
+    public void testDoesNotReplaceOnDemandLoadedRoom() throws Exception
+    {
+        // Setup test fixture.
+        final List<MUCRoom> all = rooms(1, 3);
+        final MUCRoom onDemand = rooms(2, 2).get(0);
+        added.put("room2", onDemand);
+        final MUCRoomPreloader preloader = new MUCRoomPreloader("conference", localMUCRoomManager, (afterRoomID, batchSize) -> batch(all, afterRoomID, batchSize));
+
+        // Execute system under test.
+        preloader.run();
+
+        // Verify results.
+        assertEquals(3, added.size());
+        assertSame(onDemand, added.get("room2"));
+        verify(all.get(1).getFmucHandler(), never()).applyConfigurationChanges();
+    }
+
+    /**
+     * Asserts that a room that is locked (as it is being loaded on demand) is skipped.
+     */
+    @Test
+    public void testSkipsLockedRoom() throws Exception
+    {
+        // Setup test fixture.
+        final List<MUCRoom> all = rooms(1, 3);
+        final MUCRoomPreloader preloader = new MUCRoomPreloader("conference", localMUCRoomManager, (afterRoomID, batchSize) -> batch(all, afterRoomID, batchSize));
+        final ReentrantLock lock = locks.computeIfAbsent("room3", k -> new ReentrantLock());
+        final Thread holder = new Thread(lock::lock);
+        holder.start();
+        holder.join();
+
+        // Execute system under test.
+        preloader.run();
+
+        // Verify results.
+        assertEquals(2, added.size());
+        assertFalse(added.containsKey("room3"));
+    }
+
+    /**
+     * Asserts that a cancelled preloader does not load further batches.
+     */
+    @Test
+    public void testCancel() throws Exception
+    {
+        // Setup test fixture.
+        MUCRoomPreloader.BATCH_SIZE.setValue(1);
+        final List<MUCRoom> all = rooms(1, 5);
+        final MUCRoomPreloader[] preloader = new MUCRoomPreloader[1];
+        preloader[0] = new MUCRoomPreloader("conference", localMUCRoomManager, (afterRoomID, batchSize) -> {
+            if (afterRoomID == 2) {
+                preloader[0].cancel();
+            }
+            return batch(all, afterRoomID, batchSize);
+        });
+
+        // Execute system under test.
+        preloader[0].run();
+
+        // Verify results.
+        assertTrue(preloader[0].isFinished());
+        assertEquals(2, added.size());
+    }
+}
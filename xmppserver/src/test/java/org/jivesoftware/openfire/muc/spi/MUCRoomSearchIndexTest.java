@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.muc.spi;
+
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.muc.MUCRoom;
+import org.jivesoftware.openfire.muc.MultiUserChatService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.xmpp.packet.JID;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests that verify the implementation of {@link MUCRoomSearchIndex}
+ */
+public class MUCRoomSearchIndexTest
+{
+    private final Map<String, MUCRoom> loaded = new ConcurrentHashMap<>();
+    private final Map<String, MUCRoom> unloaded = new ConcurrentHashMap<>();
+    private int unloadedRoomQueries = 0;
+    private volatile Runnable onPopulate = () -> {};
+
+    private final MUCRoomSearchIndex index = new MUCRoomSearchIndex(new MUCRoomSearchIndex.Source()
+    {
+        @Override
+        public MUCRoom getLoadedRoom(@Nonnull final String roomName)
+        {
+            return loaded.get(roomName);
+        }
+
+        @Nonnull
+        @Override
+        public Collection<String> getLoadedRoomNames()
+        {
+            return new HashSet<>(loaded.keySet());
+        }
+
+        @Nonnull
+        @Override
+        public Map<String, MUCRoomSearchInfo> getUnloadedRooms(@Nonnull final Collection<String> roomNames)
+        {
+            unloadedRoomQueries++;
+            final Map<String, MUCRoomSearchInfo> result = new HashMap<>();
+            for (final String roomName : roomNames) {
+                final MUCRoom room = unloaded.get(roomName);
+                if (room != null) {
+                    result.put(roomName, new MUCRoomSearchInfo(room));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void forEachUnloadedRoom(@Nonnull final Consumer<MUCRoomSearchInfo> consumer)
+        {
+            onPopulate.run();
+            unloaded.values().forEach(room -> consumer.accept(new MUCRoomSearchInfo(room)));
+        }
+
+        @Override
+        public boolean isClustered()
+        {
+            return false;
+        }
+    });
+
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        Fixtures.clearExistingProperties();
+    }
+
+    private static MUCRoom room(final String name, final String naturalName, final String description, final int occupants)
+    {
+        final MultiUserChatService service = mock(MultiUserChatService.class, withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+        when(service.getServiceName()).thenReturn("conference");
+        final MUCRoom room = mock(MUCRoom.class, withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+        when(room.getMUCService()).thenReturn(service);
+        when(room.getName()).thenReturn(name);
+        when(room.getJID()).thenReturn(new JID(name, "conference.example.org", null));
+        when(room.getNaturalLanguageName()).thenReturn(naturalName);
+        when(room.getDescription()).thenReturn(description);
+        when(room.getSubject()).thenReturn("");
+        when(room.getOccupantsCount()).thenReturn(occupants);
+        return room;
+    }
+
+    private static List<String> names(final List<MUCRoomSearchInfo> rooms)
+    {
+        return rooms.stream().map(MUCRoomSearchInfo::getName).toList();
+    }
+
+    /**
+     * Asserts that the index finds rooms that contain a term, regardless of case, while the filter applies the exact
+     * matching rules.
+     */
+    @Test
+    public void testFindsCandidatesByTrigrams() throws Exception
+    {
+        // Setup test fixture.
+        loaded.put("a", room("a", "Openfire Developers", "Talk about code", 3));
+        unloaded.put("b", room("b", "Smack users", "Talk about openfire clients", 0));
+        unloaded.put("c", room("c", "Off topic", "Anything goes", 0));
+
+        // Execute system under test.
+        final List<MUCRoomSearchInfo> anyCase = index.search(EnumSet.of(MUCRoomSearchIndex.Field.NAME, MUCRoomSearchIndex.Field.DESCRIPTION), List.of("openfire"), room -> true, MUCRoomSearchIndex.BY_ADDRESS);
+        final List<MUCRoomSearchInfo> exactCase = index.search(EnumSet.of(MUCRoomSearchIndex.Field.NAME, MUCRoomSearchIndex.Field.DESCRIPTION), List.of("openfire"), room -> room.getDescription().contains("openfire"), MUCRoomSearchIndex.BY_ADDRESS);
+        final List<MUCRoomSearchInfo> allTerms = index.search(EnumSet.of(MUCRoomSearchIndex.Field.DESCRIPTION), List.of("talk", "clients"), room -> true, null);
+
+        // Verify results.
+        assertEquals(List.of("a", "b"), names(anyCase));
+        assertEquals(List.of("b"), names(exactCase));
+        assertEquals(List.of("b"), names(allTerms));
+    }
+
+    /**
+     * Asserts that terms that are too short to be indexed do not cause rooms to be excluded.
+     */
+    @Test
+    public void testShortTermsDoNotNarrow() throws Exception
+    {
+        // Setup test fixture.
+        unloaded.put("a", room("a", "Openfire", "", 0));
+        unloaded.put("b", room("b", "Smack", "", 0));
+
+        // Execute system under test.
+        final List<MUCRoomSearchInfo> result = index.search(EnumSet.of(MUCRoomSearchIndex.Field.NAME), List.of("ck"), room -> true, MUCRoomSearchIndex.BY_ADDRESS);
+
+        // Verify results.
+        assertEquals(List.of("a", "b"), names(result));
+    }
+
+    /**
+     * Asserts that results are ordered by occupant count, then by address.
+     */
+    @Test
+    public void testOrderByOccupants() throws Exception
+    {
+        // Setup test fixture.
+        loaded.put("a", room("a", "Room A", "", 1));
+        loaded.put("b", room("b", "Room B", "", 5));
+        loaded.put("c", room("c", "Room C", "", 1));
+        unloaded.put("d", room("d", "Room D", "", 0));
+
+        // Execute system under test.
+        final List<MUCRoomSearchInfo> result = index.search(Collections.emptySet(), Collections.emptyList(), room -> true, MUCRoomSearchIndex.BY_OCCUPANTS);
+
+        // Verify results.
+        assertEquals(List.of("b", "a", "c", "d"), names(result));
+    }
+
+    /**
+     * Asserts that changes to rooms that are marked dirty are reflected in subsequent searches.
+     */
+    @Test
+    public void testDirtyRoomsAreRefreshed() throws Exception
+    {
+        // Setup test fixture.
+        loaded.put("a", room("a", "Openfire", "", 1));
+        loaded.put("b", room("b", "Smack", "", 2));
+        index.search(Collections.emptySet(), Collections.emptyList(), room -> true, null);
+
+        loaded.put("a", room("a", "Spark", "", 1));
+        loaded.remove("b");
+        index.markDirty("a");
+        index.markDirty("b");
+
+        // Execute system under test.
+        final List<MUCRoomSearchInfo> oldName = index.search(EnumSet.of(MUCRoomSearchIndex.Field.NAME), List.of("Openfire"), room -> true, null);
+        final List<MUCRoomSearchInfo> newName = index.search(EnumSet.of(MUCRoomSearchIndex.Field.NAME), List.of("Spark"), room -> true, null);
+
+        // Verify results.
+        assertTrue(oldName.isEmpty());
+        assertEquals(List.of("a"), names(newName));
+        assertEquals(1, index.size());
+        assertEquals(1, unloadedRoomQueries);
+    }
+
+    /**
+     * Asserts that a room that is unloaded from memory remains searchable, based on its persisted configuration.
+     */
+    @Test
+    public void testUnloadedRoomRemainsSearchable() throws Exception
+    {
+        // Setup test fixture.
+        final MUCRoom room = room("a", "Openfire", "", 4);
+        loaded.put("a", room);
+        index.search(Collections.emptySet(), Collections.emptyList(), r -> true, null);
+
+        loaded.remove("a");
+        unloaded.put("a", room("a", "Openfire", "", 0));
+        index.markDirty("a");
+
+        // Execute system under test.
+        final List<MUCRoomSearchInfo> result = index.search(EnumSet.of(MUCRoomSearchIndex.Field.NAME), List.of("Openfire"), r -> true, null);
+
+        // Verify results.
+        assertEquals(1, result.size());
+        assertEquals(0, result.get(0).getOccupantsCount());
+    }
+
+    /**
+     * Asserts that the data of all dirty rooms that are not loaded is obtained using one query.
+     */
+    @Test
+    public void testDirtyUnloadedRoomsAreQueriedInBatch() throws Exception
+    {
+        // Setup test fixture.
+        unloaded.put("a", room("a", "Openfire", "", 0));
+        unloaded.put("b", room("b", "Smack", "", 0));
+        unloaded.put("c", room("c", "Spark", "", 0));
+        index.search(Collections.emptySet(), Collections.emptyList(), room -> true, null);
+
+        unloaded.put("a", room("a", "Tinder", "", 0));
+        unloaded.put("b", room("b", "Whack", "", 0));
+        unloaded.remove("c");
+        index.markDirty("a");
+        index.markDirty("b");
+        index.markDirty("c");
+
+        // Execute system under test.
+        final List<MUCRoomSearchInfo> result = index.search(Collections.emptySet(), Collections.emptyList(), room -> true, MUCRoomSearchIndex.BY_ADDRESS);
+
+        // Verify results.
+        assertEquals(List.of("a", "b"), names(result));
+        assertEquals("Tinder", result.get(0).getNaturalLanguageName());
+        assertEquals(1, unloadedRoomQueries);
+    }
+
+    /**
+     * Asserts that a search that is performed while another thread repopulates the index does not wait for that
+     * repopulation, but uses the index as it was before.
+     */
+    @Test
+    public void testSearchDoesNotWaitForRepopulation() throws Exception
+    {
+        // Setup test fixture.
+        unloaded.put("a", room("a", "Openfire", "", 0));
+        index.search(Collections.emptySet(), Collections.emptyList(), room -> true, null);
+
+        final CountDownLatch populating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        onPopulate = () -> {
+            populating.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        unloaded.put("b", room("b", "Smack", "", 0));
+        index.invalidate();
+        final Thread repopulator = new Thread(() -> index.search(Collections.emptySet(), Collections.emptyList(), room -> true, null));
+        repopulator.start();
+        assertTrue(populating.await(5, TimeUnit.SECONDS));
+
+        // Execute system under test.
+        final List<MUCRoomSearchInfo> during;
+        try {
+            during = index.search(Collections.emptySet(), Collections.emptyList(), room -> true, MUCRoomSearchIndex.BY_ADDRESS);
+        } finally {
+            release.countDown();
+            repopulator.join();
+        }
+        final List<MUCRoomSearchInfo> after = index.search(Collections.emptySet(), Collections.emptyList(), room -> true, MUCRoomSearchIndex.BY_ADDRESS);
+
+        // Verify results.
+        assertEquals(List.of("a"), names(during));
+        assertEquals(List.of("a", "b"), names(after));
+    }
+}
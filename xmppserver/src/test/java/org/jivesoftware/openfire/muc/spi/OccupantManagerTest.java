@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2022-2024 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2022-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,7 +29,9 @@ import org.xmpp.packet.JID;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -405,4 +407,79 @@ public class OccupantManagerTest
         final Instant lastActive = occupantManager.getLocalOccupants().iterator().next().getLastActive();
         assertTrue(Duration.between(start, lastActive).compareTo(pause) >= 0);
     }
+
+    @Test
+    public void testIndexesFollowJoinsNicknameChangesAndLeaves() throws Exception
+    {
+        // Setup test fixture.
+        final OccupantManager occupantManager = new OccupantManager(mockService);
+        final NodeID localNode = xmppServer.getNodeID();
+        final JID roomA = new JID("room-a", mockService.getServiceDomain(), null);
+        final JID roomB = new JID("room-b", mockService.getServiceDomain(), null);
+        final JID john = new JID("johndoe", "example.org", null);
+        final JID jane = new JID("janedoe", "example.org", null);
+        final JID remote = new JID("remote", "example.com", null);
+
+        // Execute system under test.
+        occupantManager.occupantJoined(roomA, john, "John");
+        occupantManager.occupantJoined(roomB, john, "John");
+        occupantManager.occupantJoined(roomA, jane, "Jane");
+        occupantManager.occupantJoined(roomA, remote, "Remote");
+        occupantManager.nicknameChanged(roomA, john, "John", "Johnny");
+        occupantManager.occupantLeft(roomB, john, "John");
+
+        // Verify results.
+        assertEquals(Set.of("room-a"), occupantManager.roomNamesForAddress(john));
+        assertEquals(Set.of("room-a"), occupantManager.roomNamesForAddress(remote));
+        assertEquals(3, occupantManager.numberOfUniqueUsers());
+        assertEquals(Set.of("Johnny", "Jane"), occupantManager.occupantsForRoomByNode("room-a", localNode, false).stream().map(OccupantManager.Occupant::getNickname).collect(Collectors.toSet()));
+        assertEquals(3, occupantManager.occupantsForRoomByNode("room-a", localNode, true).size());
+        assertTrue(occupantManager.occupantsForRoomByNode("room-b", localNode, true).isEmpty());
+    }
+
+    @Test
+    public void testIndexesFollowClusterNodeLeaving() throws Exception
+    {
+        // Setup test fixture.
+        final OccupantManager occupantManager = new OccupantManager(mockService);
+        final NodeID localNode = xmppServer.getNodeID();
+        final NodeID remoteNode = NodeID.getInstance(UUID.randomUUID().toString().getBytes());
+        final JID roomJID = new JID("room", mockService.getServiceDomain(), null);
+        final JID john = new JID("johndoe", "example.org", null);
+        final JID jane = new JID("janedoe", "example.org", null);
+        occupantManager.occupantJoined(roomJID, john, "John");
+        occupantManager.process(new OccupantAddedTask(mockService.getServiceName(), roomJID.getNode(), "Jane", jane, remoteNode));
+
+        // Execute system under test.
+        final Set<OccupantManager.Occupant> beforeLeave = occupantManager.occupantsForRoomExceptForNode(roomJID.getNode(), localNode, false);
+        occupantManager.leftCluster(remoteNode);
+
+        // Verify results.
+        assertEquals(1, beforeLeave.size());
+        assertEquals(jane, beforeLeave.iterator().next().getRealJID());
+        assertTrue(occupantManager.occupantsForRoomExceptForNode(roomJID.getNode(), localNode, false).isEmpty());
+        assertTrue(occupantManager.roomNamesForAddress(jane).isEmpty());
+        assertEquals(1, occupantManager.occupantsForRoomByNode(roomJID.getNode(), localNode, false).size());
+    }
+
+    @Test
+    public void testIndexesFollowRoomDestruction() throws Exception
+    {
+        // Setup test fixture.
+        final OccupantManager occupantManager = new OccupantManager(mockService);
+        final JID roomJID = new JID("room", mockService.getServiceDomain(), null);
+        final JID john = new JID("johndoe", "example.org", null);
+        final JID remote = new JID("remote", "example.com", null);
+        occupantManager.occupantJoined(roomJID, john, "John");
+        occupantManager.occupantJoined(roomJID, remote, "Remote");
+
+        // Execute system under test.
+        occupantManager.roomDestroyed(-1, roomJID);
+
+        // Verify results.
+        assertEquals(0, occupantManager.numberOfUniqueUsers());
+        assertTrue(occupantManager.roomNamesForAddress(john).isEmpty());
+        assertTrue(occupantManager.roomNamesForAddress(remote).isEmpty());
+        assertTrue(occupantManager.occupantsForRoomByNode(roomJID.getNode(), xmppServer.getNodeID(), true).isEmpty());
+    }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.pep;
+
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.openfire.pubsub.CollectionNode;
+import org.jivesoftware.openfire.pubsub.LeafNode;
+import org.jivesoftware.openfire.pubsub.Node;
+import org.jivesoftware.openfire.pubsub.NodeSubscription;
+import org.jivesoftware.openfire.pubsub.PublishedItem;
+import org.jivesoftware.openfire.pubsub.models.AccessModel;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.xmpp.packet.JID;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the implementation of {@link PEPLastItemIndex}
+ */
+public class PEPLastItemIndexTest
+{
+    private static final JID OWNER = new JID("owner", "example.org", null);
+    private static final JID SUBSCRIBER = new JID("subscriber", "example.org", null);
+    private static final JID OTHER_SUBSCRIBER = new JID("other", "example.org", null);
+    private static final JID STRANGER = new JID("stranger", "example.org", "desktop");
+
+    private XMPPServer xmppServer;
+
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+        CacheFactory.initialize();
+    }
+
+    @BeforeEach
+    public void setUp()
+    {
+        xmppServer = Fixtures.mockXMPPServer();
+        //noinspection deprecation
+        XMPPServer.setInstance(xmppServer);
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        PEPLastItemIndex.getInstance().invalidate(OWNER);
+        Fixtures.clearExistingProperties();
+    }
+
+    private static NodeSubscription mockSubscription(final JID jid, final String keyword)
+    {
+        final NodeSubscription subscription = Mockito.mock(NodeSubscription.class, Mockito.withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+        Mockito.when(subscription.getJID()).thenReturn(jid);
+        Mockito.when(subscription.isActive()).thenReturn(true);
+        Mockito.when(subscription.shouldDeliverNotifications()).thenReturn(true);
+        Mockito.when(subscription.getPresenceStates()).thenReturn(List.of());
+        Mockito.when(subscription.getKeyword()).thenReturn(keyword);
+        Mockito.when(subscription.getType()).thenReturn(NodeSubscription.Type.items);
+        return subscription;
+    }
+
+    private static PEPService mockService(final AccessModel accessModel)
+    {
+        final PEPService service = Mockito.mock(PEPService.class, Mockito.withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+        final CollectionNode rootNode = Mockito.mock(CollectionNode.class, Mockito.withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+        final LeafNode leafNode = Mockito.mock(LeafNode.class, Mockito.withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+        Mockito.when(service.getAddress()).thenReturn(OWNER);
+        Mockito.when(service.getRootCollectionNode()).thenReturn(rootNode);
+        final List<NodeSubscription> subscriptions = List.of(mockSubscription(SUBSCRIBER, null), mockSubscription(OTHER_SUBSCRIBER, "keyword"));
+        Mockito.when(rootNode.getAllSubscriptions()).thenReturn(subscriptions);
+        Mockito.when(rootNode.getNodes()).thenReturn(List.of(leafNode));
+        Mockito.when(leafNode.getUniqueIdentifier()).thenReturn(new Node.UniqueIdentifier(OWNER.toBareJID(), "urn:xmpp:test"));
+        Mockito.when(leafNode.getAccessModel()).thenReturn(accessModel);
+        Mockito.when(leafNode.getOwners()).thenReturn(List.of(OWNER));
+        Mockito.when(leafNode.isItemRequired()).thenReturn(true);
+        final PublishedItem lastItem = Mockito.mock(PublishedItem.class, Mockito.withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+        Mockito.when(lastItem.getID()).thenReturn("item-1");
+        Mockito.when(lastItem.getPublisher()).thenReturn(new JID(OWNER.getNode(), OWNER.getDomain(), "phone"));
+        Mockito.when(lastItem.getCreationDate()).thenReturn(new Date(1000));
+        Mockito.when(leafNode.getLastPublishedItem()).thenReturn(lastItem);
+        return service;
+    }
+
+    /**
+     * Asserts that a snapshot of a service records the last published item of each node, and distinguishes subscribers
+     * that use default subscription options from others.
+     */
+    @Test
+    public void testEntryOf() throws Exception
+    {
+        // Setup test fixture.
+        final PEPService service = mockService(AccessModel.presence);
+
+        // Execute system under test.
+        final PEPLastItemIndex.Entry result = PEPLastItemIndex.Entry.of(service);
+
+        // Verify results.
+        assertTrue(result.applicable());
+        assertEquals(Set.of(SUBSCRIBER.toBareJID()), result.subscribers());
+        assertEquals(Set.of(OTHER_SUBSCRIBER.toBareJID()), result.otherSubscribers());
+        assertEquals(1, result.items().size());
+        assertEquals("urn:xmpp:test", result.items().get(0).nodeId());
+        assertEquals("item-1", result.items().get(0).itemId());
+        assertFalse(result.items().get(0).openAccess());
+    }
+
+    /**
+     * Asserts that a snapshot of a service that has a node with an access model that is not covered by the index, is
+     * marked as such.
+     */
+    @Test
+    public void testEntryOfWhitelistIsNotApplicable() throws Exception
+    {
+        // Setup test fixture.
+        final PEPService service = mockService(AccessModel.whitelist);
+
+        // Execute system under test.
+        final PEPLastItemIndex.Entry result = PEPLastItemIndex.Entry.of(service);
+
+        // Verify results.
+        assertFalse(result.applicable());
+    }
+
+    /**
+     * Asserts that the index is used for entities that are not subscribed to a service (which causes nothing to be
+     * sent), but not for entities that have a subscription that the index does not cover, nor for services that are
+     * not in the index.
+     */
+    @Test
+    public void testSendLastPublishedItemsFallsBack() throws Exception
+    {
+        // Setup test fixture.
+        final PEPLastItemIndex index = PEPLastItemIndex.getInstance();
+        final boolean beforeUpdate = index.sendLastPublishedItems(OWNER, STRANGER);
+        index.update(mockService(AccessModel.presence));
+
+        // Execute system under test.
+        final boolean stranger = index.sendLastPublishedItems(OWNER, STRANGER);
+        final boolean otherSubscriber = index.sendLastPublishedItems(OWNER, OTHER_SUBSCRIBER);
+        index.invalidate(OWNER);
+        final boolean afterInvalidation = index.sendLastPublishedItems(OWNER, STRANGER);
+
+        // Verify results.
+        assertFalse(beforeUpdate);
+        assertTrue(stranger);
+        assertFalse(otherSubscriber);
+        assertFalse(afterInvalidation);
+        Mockito.verify(xmppServer, Mockito.never()).getPacketRouter();
+    }
+
+    /**
+     * Asserts that nothing is recorded for a service that uses configuration that the index does not cover.
+     */
+    @Test
+    public void testUpdateSkipsServiceThatIsNotApplicable() throws Exception
+    {
+        // Setup test fixture.
+        final PEPLastItemIndex index = PEPLastItemIndex.getInstance();
+
+        // Execute system under test.
+        index.update(mockService(AccessModel.whitelist));
+
+        // Verify results.
+        assertNull(index.get(OWNER));
+    }
+
+    /**
+     * Asserts that {@link PEPLastItemIndex#updateIfAbsent(PEPService)} does not replace an existing entry, but records
+     * one if there is none.
+     */
+    @Test
+    public void testUpdateIfAbsent() throws Exception
+    {
+        // Setup test fixture.
+        final PEPLastItemIndex index = PEPLastItemIndex.getInstance();
+        index.update(mockService(AccessModel.presence));
+
+        // Execute system under test.
+        index.updateIfAbsent(mockService(AccessModel.open));
+        final boolean retainedAccess = !index.get(OWNER).items().get(0).openAccess();
+        index.invalidate(OWNER);
+        index.updateIfAbsent(mockService(AccessModel.open));
+
+        // Verify results.
+        assertTrue(retainedAccess);
+        assertTrue(index.get(OWNER).items().get(0).openAccess());
+    }
+}
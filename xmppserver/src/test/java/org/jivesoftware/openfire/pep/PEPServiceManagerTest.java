@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.pep;
+
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.SessionManager;
+import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.openfire.pubsub.CollectionNode;
+import org.jivesoftware.openfire.pubsub.LeafNode;
+import org.jivesoftware.openfire.pubsub.Node;
+import org.jivesoftware.openfire.pubsub.PubSubModule;
+import org.jivesoftware.openfire.pubsub.PubSubPersistenceProvider;
+import org.jivesoftware.util.CacheableOptional;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockito.quality.Strictness;
+import org.xmpp.packet.JID;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the implementation of {@link PEPServiceManager}
+ */
+public class PEPServiceManagerTest
+{
+    private XMPPServer xmppServer;
+    private PubSubPersistenceProvider persistenceProvider;
+    private PEPServiceManager manager;
+
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+        CacheFactory.initialize();
+    }
+
+    @BeforeEach
+    public void setUp()
+    {
+        xmppServer = Fixtures.mockXMPPServer();
+        persistenceProvider = Mockito.mock(PubSubPersistenceProvider.class);
+        final PubSubModule pubSubModule = Mockito.mock(PubSubModule.class, Mockito.withSettings().strictness(Strictness.LENIENT));
+        Mockito.doReturn(persistenceProvider).when(pubSubModule).getPersistenceProvider();
+        Mockito.doReturn(pubSubModule).when(xmppServer).getPubSubModule();
+        //noinspection deprecation
+        XMPPServer.setInstance(xmppServer);
+        PEPLastItemIndex.ENABLED.setValue(false);
+
+        manager = new PEPServiceManager();
+        manager.pepServices.clear();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        manager.pepServices.clear();
+        Fixtures.clearExistingProperties();
+    }
+
+    private PEPService addService(final String username, final long lastAccessed)
+    {
+        final JID owner = new JID(username, "example.org", null);
+        final PEPService service = Mockito.mock(PEPService.class, Mockito.withSettings().strictness(Strictness.LENIENT));
+        final LeafNode node = Mockito.mock(LeafNode.class, Mockito.withSettings().strictness(Strictness.LENIENT));
+        Mockito.when(node.getUniqueIdentifier()).thenReturn(new Node.UniqueIdentifier(owner.toBareJID(), "urn:xmpp:test"));
+        Mockito.when(service.getAddress()).thenReturn(owner);
+        Mockito.when(service.getRootCollectionNode()).thenReturn(Mockito.mock(CollectionNode.class));
+        Mockito.when(service.getNodes()).thenReturn(new ArrayList<>(List.of(node)));
+        Mockito.when(service.getCachedSize()).thenReturn(1000);
+        manager.pepServices.put(owner, CacheableOptional.of(service));
+        manager.lastAccessed.put(owner, lastAccessed);
+        return service;
+    }
+
+    /**
+     * Asserts that services of offline users that have been idle for longer than the idle timeout are removed from
+     * memory, after their pending changes have been written, while other services are retained.
+     */
+    @Test
+    public void testEvictIdleServices() throws Exception
+    {
+        // Setup test fixture.
+        PEPServiceManager.IDLE_TIMEOUT.setValue(Duration.ofMinutes(10));
+        final long now = System.currentTimeMillis();
+        final PEPService idle = addService("idle", now - Duration.ofMinutes(20).toMillis());
+        addService("recent", now);
+        addService("online", now - Duration.ofMinutes(20).toMillis());
+        final SessionManager sessionManager = xmppServer.getSessionManager();
+        Mockito.doReturn(1).when(sessionManager).getSessionCount("online");
+
+        // Execute system under test.
+        manager.evictServices();
+
+        // Verify results.
+        assertFalse(manager.pepServices.containsKey(idle.getAddress()));
+        assertFalse(manager.lastAccessed.containsKey(idle.getAddress()));
+        assertTrue(manager.pepServices.containsKey(new JID("recent", "example.org", null)));
+        assertTrue(manager.pepServices.containsKey(new JID("online", "example.org", null)));
+        Mockito.verify(persistenceProvider).flushPendingChanges(new Node.UniqueIdentifier(idle.getAddress().toBareJID(), "urn:xmpp:test"));
+    }
+
+    /**
+     * Asserts that, when the memory budget is exceeded, the least recently accessed services of offline users are
+     * removed from memory until the budget is met.
+     */
+    @Test
+    public void testEvictToMeetMemoryBudget() throws Exception
+    {
+        // Setup test fixture.
+        PEPServiceManager.IDLE_TIMEOUT.setValue(Duration.ofHours(1));
+        PEPServiceManager.MEMORY_BUDGET.setValue(2500L); // Room for two services of 1000 bytes each, including overhead.
+        final long now = System.currentTimeMillis();
+        final PEPService oldest = addService("oldest", now - 3000);
+        final PEPService older = addService("older", now - 2000);
+        final PEPService newest = addService("newest", now - 1000);
+
+        // Execute system under test.
+        manager.evictServices();
+
+        // Verify results.
+        assertFalse(manager.pepServices.containsKey(oldest.getAddress()));
+        assertTrue(manager.pepServices.containsKey(older.getAddress()));
+        assertTrue(manager.pepServices.containsKey(newest.getAddress()));
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2025-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -67,9 +67,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(affiliation, nodeOperation.affiliate.getAffiliation());
         assertNull(nodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -102,9 +101,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(affiliation, nodeOperation.affiliate.getAffiliation());
         assertNull(nodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -137,9 +135,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(affiliation, nodeOperation.affiliate.getAffiliation());
         assertNull(nodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -186,9 +183,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(affiliation, secondNodeOperation.affiliate.getAffiliation());
         assertNull(secondNodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -235,9 +231,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(secondAffiliation, secondNodeOperation.affiliate.getAffiliation());
         assertNull(secondNodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -279,9 +274,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(secondAffiliation, nodeOperation.affiliate.getAffiliation()); // must match that of the last invocation.
         assertNull(nodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -313,9 +307,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -359,9 +352,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(affiliation, secondOperation.affiliate.getAffiliation());
         assertNull(secondOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -403,9 +395,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(affiliation, nodeOperation.affiliate.getAffiliation());
         assertNull(nodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -445,9 +436,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(affiliation, nodeOperation.affiliate.getAffiliation());
         assertNull(nodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
 
@@ -482,9 +472,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -531,9 +520,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(affiliation, secondNodeOperation.affiliate.getAffiliation());
         assertNull(secondNodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -584,9 +572,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(secondAffiliation, secondNodeOperation.affiliate.getAffiliation());
         assertNull(secondNodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -636,9 +623,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertEquals(secondAffiliation, secondNodeOperation.affiliate.getAffiliation());
         assertNull(secondNodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -680,9 +666,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertNull(nodeOperation.affiliate);
         assertNull(nodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -724,9 +709,8 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertNull(nodeOperation.affiliate);
         assertNull(nodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -768,8 +752,7 @@ public class CachingPubsubPersistenceProviderAffiliationOperationsTest
         assertNull(nodeOperation.affiliate);
         assertNull(nodeOperation.subscription);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2025-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,8 +25,11 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 
 /**
  * Verifies the implementation of {@link CachingPubsubPersistenceProvider}
@@ -59,8 +62,8 @@ public class CachingPubsubPersistenceProviderItemOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(1, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(1, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -84,8 +87,8 @@ public class CachingPubsubPersistenceProviderItemOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(1, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(1, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -111,8 +114,8 @@ public class CachingPubsubPersistenceProviderItemOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(2, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(2, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -140,9 +143,9 @@ public class CachingPubsubPersistenceProviderItemOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(1, provider.itemsToAdd.size());
-        assertEquals(itemB.getID(), provider.itemsToAdd.getFirst().getID());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(1, provider.getPendingItemAdditions().size());
+        assertEquals(itemB.getID(), provider.getPendingItemAdditions().get(0).getID());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -168,8 +171,8 @@ public class CachingPubsubPersistenceProviderItemOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(2, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(2, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -197,8 +200,8 @@ public class CachingPubsubPersistenceProviderItemOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(2, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(2, provider.getPendingItemDeletions().size());
     }
     /**
      * Asserts that an invocation of {@link CachingPubsubPersistenceProvider#savePublishedItem(PublishedItem)} followed
@@ -226,8 +229,8 @@ public class CachingPubsubPersistenceProviderItemOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(1, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(1, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -256,8 +259,8 @@ public class CachingPubsubPersistenceProviderItemOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(1, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(1, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -299,8 +302,8 @@ public class CachingPubsubPersistenceProviderItemOperationsTest
         assertNull(nodeOperation.affiliate);
         assertNull(nodeOperation.subscription);
 
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -342,7 +345,171 @@ public class CachingPubsubPersistenceProviderItemOperationsTest
         assertNull(nodeOperation.affiliate);
         assertNull(nodeOperation.subscription);
 
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
+    }
+
+    /**
+     * Asserts that a page of items obtained through {@link CachingPubsubPersistenceProvider#getPublishedItems(LeafNode, String, String, int)}
+     * includes items that are yet to be added to the delegate, and excludes items that are yet to be deleted from it.
+     */
+    @Test
+    public void testGetFirstPageMergesPendingItems() throws Exception
+    {
+        // Setup test fixture.
+        final CachingPubsubPersistenceProvider provider = new CachingPubsubPersistenceProvider();
+        provider.delegate = Mockito.mock(PubSubPersistenceProvider.class);
+        final LeafNode mockNode = Mockito.mock(LeafNode.class);
+        Mockito.lenient().when(mockNode.getUniqueIdentifier()).thenReturn(new Node.UniqueIdentifier("mock-service-1", "mock-node-a"));
+        final JID publisher = new JID("test-user-1", "example.org", null);
+        final PublishedItem persisted1 = new PublishedItem(mockNode, publisher, "p1", new Date(1000));
+        final PublishedItem persisted2 = new PublishedItem(mockNode, publisher, "p2", new Date(2000));
+        final PublishedItem persisted3 = new PublishedItem(mockNode, publisher, "p3", new Date(3000));
+        final PublishedItem pending4 = new PublishedItem(mockNode, publisher, "n4", new Date(4000));
+        Mockito.when(provider.delegate.getPublishedItems(eq(mockNode), isNull(), isNull(), eq(4))).thenReturn(new ArrayList<>(List.of(persisted3, persisted2, persisted1)));
+        provider.savePublishedItem(pending4);
+        provider.removePublishedItem(persisted2);
+
+        // Execute system under test.
+        final List<PublishedItem> result = provider.getPublishedItems(mockNode, null, null, 2);
+
+        // Verify results.
+        assertEquals(List.of("n4", "p3"), result.stream().map(PublishedItem::getID).toList());
+        assertEquals(1, provider.getPendingItemAdditions().size()); // Pending changes are not flushed.
+        assertEquals(1, provider.getPendingItemDeletions().size());
+    }
+
+    /**
+     * Asserts that a page of items that follows an item, obtained through {@link CachingPubsubPersistenceProvider#getPublishedItems(LeafNode, String, String, int)},
+     * includes only those items that are yet to be added to the delegate that are older than that item.
+     */
+    @Test
+    public void testGetPageAfterMergesPendingItems() throws Exception
+    {
+        // Setup test fixture.
+        final CachingPubsubPersistenceProvider provider = new CachingPubsubPersistenceProvider();
+        provider.delegate = Mockito.mock(PubSubPersistenceProvider.class);
+        final LeafNode mockNode = Mockito.mock(LeafNode.class);
+        Mockito.lenient().when(mockNode.getUniqueIdentifier()).thenReturn(new Node.UniqueIdentifier("mock-service-1", "mock-node-a"));
+        final JID publisher = new JID("test-user-1", "example.org", null);
+        final PublishedItem persisted1 = new PublishedItem(mockNode, publisher, "p1", new Date(1000));
+        final PublishedItem persisted2 = new PublishedItem(mockNode, publisher, "p2", new Date(2000));
+        final PublishedItem persisted3 = new PublishedItem(mockNode, publisher, "p3", new Date(3000));
+        final PublishedItem pending0 = new PublishedItem(mockNode, publisher, "n0", new Date(0));
+        final PublishedItem pending4 = new PublishedItem(mockNode, publisher, "n4", new Date(4000));
+        Mockito.when(provider.delegate.getPublishedItems(eq(mockNode), eq("p3"), isNull(), eq(5))).thenReturn(new ArrayList<>(List.of(persisted2, persisted1)));
+        final PublishedItem.UniqueIdentifier cursor = persisted3.getUniqueIdentifier();
+        Mockito.when(provider.delegate.getPublishedItem(eq(mockNode), eq(cursor))).thenReturn(persisted3);
+        provider.savePublishedItem(pending0);
+        provider.savePublishedItem(pending4);
+
+        // Execute system under test.
+        final List<PublishedItem> result = provider.getPublishedItems(mockNode, "p3", null, 3);
+
+        // Verify results.
+        assertEquals(List.of("p2", "p1", "n0"), result.stream().map(PublishedItem::getID).toList());
+    }
+
+    /**
+     * Asserts that an invocation of {@link CachingPubsubPersistenceProvider#flushPendingChanges(Node.UniqueIdentifier, boolean)}
+     * writes the pending items of only that node to the delegate.
+     */
+    @Test
+    public void testFlushOnlyAffectsNode() throws Exception
+    {
+        // Setup test fixture.
+        final CachingPubsubPersistenceProvider provider = new CachingPubsubPersistenceProvider();
+        provider.delegate = Mockito.mock(PubSubPersistenceProvider.class);
+        final LeafNode mockNodeA = Mockito.mock(LeafNode.class);
+        Mockito.lenient().when(mockNodeA.getUniqueIdentifier()).thenReturn(new Node.UniqueIdentifier("mock-service-1", "mock-node-a"));
+        final LeafNode mockNodeB = Mockito.mock(LeafNode.class);
+        Mockito.lenient().when(mockNodeB.getUniqueIdentifier()).thenReturn(new Node.UniqueIdentifier("mock-service-1", "mock-node-b"));
+        final JID publisher = new JID("test-user-1", "example.org", null);
+        final PublishedItem itemA = new PublishedItem(mockNodeA, publisher, UUID.randomUUID().toString(), new Date());
+        final PublishedItem itemB = new PublishedItem(mockNodeB, publisher, UUID.randomUUID().toString(), new Date());
+        provider.savePublishedItem(itemA);
+        provider.savePublishedItem(itemB);
+
+        // Execute system under test.
+        provider.flushPendingChanges(mockNodeA.getUniqueIdentifier(), false);
+
+        // Verify results.
+        Mockito.verify(provider.delegate).bulkPublishedItems(eq(List.of(itemA)), eq(List.of()));
+        Mockito.verifyNoMoreInteractions(provider.delegate);
+        assertEquals(List.of(itemB), provider.getPendingItemAdditions());
+    }
+
+    /**
+     * Asserts that an invocation of {@link CachingPubsubPersistenceProvider#flushPendingChanges(Node.UniqueIdentifier, boolean)}
+     * does not wait for pending items of another node that are being written to the delegate.
+     */
+    @Test
+    public void testFlushDoesNotWaitForWriteOfOtherNode() throws Exception
+    {
+        // Setup test fixture.
+        final CachingPubsubPersistenceProvider provider = new CachingPubsubPersistenceProvider();
+        provider.delegate = Mockito.mock(PubSubPersistenceProvider.class);
+        final LeafNode mockNodeA = Mockito.mock(LeafNode.class);
+        Mockito.lenient().when(mockNodeA.getUniqueIdentifier()).thenReturn(new Node.UniqueIdentifier("mock-service-1", "mock-node-a"));
+        final LeafNode mockNodeB = Mockito.mock(LeafNode.class);
+        Mockito.lenient().when(mockNodeB.getUniqueIdentifier()).thenReturn(new Node.UniqueIdentifier("mock-service-1", "mock-node-b"));
+        final JID publisher = new JID("test-user-1", "example.org", null);
+        final PublishedItem itemA = new PublishedItem(mockNodeA, publisher, UUID.randomUUID().toString(), new Date());
+        final PublishedItem itemB = new PublishedItem(mockNodeB, publisher, UUID.randomUUID().toString(), new Date());
+        provider.savePublishedItem(itemA);
+        provider.savePublishedItem(itemB);
+
+        final CountDownLatch writingB = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            writingB.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return null;
+        }).when(provider.delegate).bulkPublishedItems(eq(List.of(itemB)), any());
+        final Thread writer = new Thread(() -> provider.flushPendingChanges(mockNodeB.getUniqueIdentifier(), false));
+        writer.start();
+        assertTrue(writingB.await(5, TimeUnit.SECONDS));
+
+        // Execute system under test.
+        final Thread reader = new Thread(() -> provider.flushPendingChanges(mockNodeA.getUniqueIdentifier(), false));
+        reader.start();
+        reader.join(5000);
+        final boolean flushedDuringWrite = !reader.isAlive();
+        release.countDown();
+        writer.join(5000);
+
+        // Verify results.
+        assertTrue(flushedDuringWrite);
+        Mockito.verify(provider.delegate).bulkPublishedItems(eq(List.of(itemA)), eq(List.of()));
+    }
+
+    /**
+     * Asserts that {@link CachingPubsubPersistenceProvider#getPublishedItem(LeafNode, PublishedItem.UniqueIdentifier)}
+     * reflects pending changes, without writing these to the delegate.
+     */
+    @Test
+    public void testGetPublishedItemReflectsPendingChanges() throws Exception
+    {
+        // Setup test fixture.
+        final CachingPubsubPersistenceProvider provider = new CachingPubsubPersistenceProvider();
+        provider.delegate = Mockito.mock(PubSubPersistenceProvider.class);
+        final LeafNode mockNode = Mockito.mock(LeafNode.class);
+        Mockito.lenient().when(mockNode.getUniqueIdentifier()).thenReturn(new Node.UniqueIdentifier("mock-service-1", "mock-node-a"));
+        final JID publisher = new JID("test-user-1", "example.org", null);
+        final PublishedItem added = new PublishedItem(mockNode, publisher, "added", new Date());
+        final PublishedItem removed = new PublishedItem(mockNode, publisher, "removed", new Date());
+        provider.savePublishedItem(added);
+        provider.removePublishedItem(removed);
+
+        // Execute system under test.
+        final PublishedItem resultAdded = provider.getPublishedItem(mockNode, added.getUniqueIdentifier());
+        final PublishedItem resultRemoved = provider.getPublishedItem(mockNode, removed.getUniqueIdentifier());
+
+        // Verify results.
+        assertSame(added, resultAdded);
+        assertNull(resultRemoved);
+        Mockito.verifyNoInteractions(provider.delegate);
+        assertEquals(1, provider.getPendingItemAdditions().size());
+        assertEquals(1, provider.getPendingItemDeletions().size());
     }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2025-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -61,9 +61,8 @@ public class CachingPubsubPersistenceProviderNodeOperationsTest
         assertNull(nodeOperation.subscription);
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -91,9 +90,8 @@ public class CachingPubsubPersistenceProviderNodeOperationsTest
         assertNull(nodeOperation.subscription);
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -121,9 +119,8 @@ public class CachingPubsubPersistenceProviderNodeOperationsTest
         assertNull(nodeOperation.subscription);
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -171,9 +168,8 @@ public class CachingPubsubPersistenceProviderNodeOperationsTest
         assertNull(secondNodeOperation.subscription);
         assertNull(secondNodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -212,9 +208,8 @@ public class CachingPubsubPersistenceProviderNodeOperationsTest
         assertNull(nodeOperation.subscription);
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -241,9 +236,8 @@ public class CachingPubsubPersistenceProviderNodeOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -281,9 +275,8 @@ public class CachingPubsubPersistenceProviderNodeOperationsTest
         assertNull(secondOperation.subscription);
         assertNull(secondOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -319,9 +312,8 @@ public class CachingPubsubPersistenceProviderNodeOperationsTest
         assertNull(nodeOperation.subscription);
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -356,9 +348,8 @@ public class CachingPubsubPersistenceProviderNodeOperationsTest
         assertNull(nodeOperation.subscription);
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
 
@@ -388,9 +379,8 @@ public class CachingPubsubPersistenceProviderNodeOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -431,8 +421,7 @@ public class CachingPubsubPersistenceProviderNodeOperationsTest
         assertNull(secondNodeOperation.subscription);
         assertNull(secondNodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2025 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2025-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -65,9 +65,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(subscriptionId, nodeOperation.subscription.getID());
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -98,9 +97,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(subscriptionId, nodeOperation.subscription.getID());
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -131,9 +129,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(subscriptionId, nodeOperation.subscription.getID());
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -177,9 +174,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(subscriptionId, secondNodeOperation.subscription.getID());
         assertNull(secondNodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -226,9 +222,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(secondSubscriber, secondNodeOperation.subscription.getOwner());
         assertNull(secondNodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -267,9 +262,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(NodeSubscription.State.subscribed, nodeOperation.subscription.getState()); // match the second subscription.
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -300,9 +294,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -343,9 +336,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(subscriptionId, secondOperation.subscription.getID());
         assertNull(secondOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -385,9 +377,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(subscriptionId, nodeOperation.subscription.getID());
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -425,9 +416,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(subscriptionId, nodeOperation.subscription.getID());
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
 
@@ -461,9 +451,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         final List<CachingPubsubPersistenceProvider.NodeOperation> pending = provider.nodesToProcess.computeIfAbsent(mockNode.getUniqueIdentifier(), id -> new ArrayList<>());
         assertEquals(0, pending.size());
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -507,9 +496,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(subscriptionId, firstNodeOperation.subscription.getID());
         assertNull(secondNodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -555,9 +543,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(secondSubscriptionId, secondNodeOperation.subscription.getID());
         assertNull(secondNodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -602,9 +589,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertEquals(secondSubscriptionId, secondNodeOperation.subscription.getID());
         assertNull(secondNodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -645,9 +631,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertNull(nodeOperation.subscription);
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -688,9 +673,8 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertNull(nodeOperation.subscription);
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 
     /**
@@ -731,8 +715,7 @@ public class CachingPubsubPersistenceProviderSubscriptionOperationsTest
         assertNull(nodeOperation.subscription);
         assertNull(nodeOperation.affiliate);
 
-        assertEquals(0, provider.itemsPending.size());
-        assertEquals(0, provider.itemsToAdd.size());
-        assertEquals(0, provider.itemsToDelete.size());
+        assertEquals(0, provider.getPendingItemAdditions().size());
+        assertEquals(0, provider.getPendingItemDeletions().size());
     }
 }
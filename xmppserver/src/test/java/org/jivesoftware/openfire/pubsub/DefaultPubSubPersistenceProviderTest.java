@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.pubsub;
+
+import org.dbunit.DBTestCase;
+import org.dbunit.PropertiesBasedJdbcDatabaseTester;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.xml.XmlDataSet;
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.database.DbConnectionManager;
+import org.jivesoftware.database.DefaultConnectionProvider;
+import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.mockito.ArgumentCaptor;
+import org.xmpp.packet.JID;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests that verify the loading of all nodes of a service by {@link DefaultPubSubPersistenceProvider}, in
+ * particular where nodes are read in multiple pages.
+ *
+ * Implementation-wise, this class extends for DBTestCase, which is as JUnit 3 derivative. Practically, this means that
+ * Junit 4 annotations in this class will be ignored.
+ */
+public class DefaultPubSubPersistenceProviderTest extends DBTestCase
+{
+    public static final String DRIVER = "org.hsqldb.jdbcDriver";
+    public static final String URL;
+    public static final String USERNAME = "sa";
+    public static final String PASSWORD = "";
+
+    private static final PubSubService.UniqueIdentifier SERVICE_ID = new PubSubService.UniqueIdentifier("test-service");
+    private static final JID OWNER = new JID("owner@example.org");
+
+    private PubSubModule service;
+
+    static {
+        final URL location = DefaultPubSubPersistenceProviderTest.class.getResource("/datasets/openfire.script");
+        assert location != null;
+        final String fileLocation = location.toString().substring(0, location.toString().lastIndexOf("/")+1) + "openfire";
+        URL = "jdbc:hsqldb:"+fileLocation+";ifexists=true";
+
+        // Setup database configuration of DBUnit.
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_DRIVER_CLASS, DRIVER );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_CONNECTION_URL, URL );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_USERNAME, USERNAME );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_PASSWORD, PASSWORD );
+    }
+
+    @Override
+    protected IDataSet getDataSet() throws Exception
+    {
+        // This dataset restores the state of the database to one that does not contain any pubsub nodes between each test.
+        return new XmlDataSet(getClass().getResourceAsStream("/datasets/clean-pubsub.xml"));
+    }
+
+    public void setUp() throws Exception
+    {
+        // Ensure that DB-Unit's setUp is called!
+        super.setUp();
+
+        // Initialize Openfire's cache framework.
+        CacheFactory.initialize();
+
+        // Mock the XMPPServer implementation that's used internally, with a pubsub service that the nodes belong to.
+        Fixtures.clearExistingProperties();
+        final XMPPServer xmppServer = Fixtures.mockXMPPServer();
+        service = mock(PubSubModule.class, withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+        doReturn(SERVICE_ID).when(service).getUniqueIdentifier();
+        doReturn(SERVICE_ID.getServiceId()).when(service).getServiceID();
+        doReturn(service).when(xmppServer).getPubSubModule();
+        XMPPServer.setInstance(xmppServer);
+
+        // Ensure that Openfire caches are reset before each test to avoid tests to affect each-other.
+        Arrays.stream(CacheFactory.getAllCaches()).forEach(Map::clear);
+
+        // Wire the database connection provider used by the persistence provider.
+        final DefaultConnectionProvider conProvider = new DefaultConnectionProvider();
+        conProvider.setDriver(DRIVER);
+        conProvider.setServerURL(URL);
+        conProvider.setUsername(USERNAME);
+        conProvider.setPassword(PASSWORD);
+        DbConnectionManager.setConnectionProvider(conProvider);
+    }
+
+    public void tearDown() throws Exception
+    {
+        super.tearDown();
+        Fixtures.clearExistingProperties();
+    }
+
+    /**
+     * Stores leaf nodes, each with an owner affiliation, in the database.
+     *
+     * @param provider the provider used to store the nodes.
+     * @param parent the parent of the nodes (can be null).
+     * @param nodeIDs the IDs of the nodes to create.
+     */
+    private static void createNodes(final DefaultPubSubPersistenceProvider provider, final CollectionNode parent, final String... nodeIDs)
+    {
+        for (final String nodeID : nodeIDs) {
+            final LeafNode node = new LeafNode(SERVICE_ID, parent, nodeID, OWNER, new DefaultNodeConfiguration(true));
+            provider.createNode(node);
+            final NodeAffiliate affiliate = new NodeAffiliate(node, OWNER);
+            affiliate.setAffiliation(NodeAffiliate.Affiliation.owner);
+            provider.createAffiliation(node, affiliate);
+        }
+    }
+
+    /**
+     * Loads all nodes of the test service, returning the nodes that were added to the service, by node ID.
+     */
+    private Map<String, Node> loadNodes(final DefaultPubSubPersistenceProvider provider)
+    {
+        provider.loadNodes(service);
+
+        final ArgumentCaptor<Node> captor = ArgumentCaptor.forClass(Node.class);
+        verify(service, atLeast(0)).addNode(captor.capture());
+        final Map<String, Node> result = new HashMap<>();
+        for (final Node node : captor.getAllValues()) {
+            result.put(node.getNodeID(), node);
+        }
+        return result;
+    }
+
+    /**
+     * Asserts that each of the nodes was loaded, including the affiliation that was stored for it.
+     */
+    private static void assertLoaded(final Map<String, Node> result, final String... nodeIDs)
+    {
+        assertEquals(nodeIDs.length, result.size());
+        for (final String nodeID : nodeIDs) {
+            final Node node = result.get(nodeID);
+            assertNotNull("Node should have been loaded: " + nodeID, node);
+            assertNotNull("Affiliation of node should have been loaded: " + nodeID, node.getAffiliate(OWNER));
+        }
+    }
+
+    /**
+     * Verifies that nodes, and the data associated with them, are loaded when all nodes fit in a single page.
+     */
+    public void testLoadSinglePage() throws Exception
+    {
+        // Setup test fixture.
+        DefaultPubSubPersistenceProvider.LOAD_PAGE_SIZE.setValue(10);
+        final DefaultPubSubPersistenceProvider provider = new DefaultPubSubPersistenceProvider();
+        createNodes(provider, null, "node-a", "node-b", "node-c");
+
+        // Execute system under test.
+        final Map<String, Node> result = loadNodes(provider);
+
+        // Verify result.
+        assertLoaded(result, "node-a", "node-b", "node-c");
+    }
+
+    /**
+     * Verifies that the data associated with nodes on either side of the boundary between pages is loaded with the
+     * correct page, when the last page is not full.
+     */
+    public void testLoadMultiplePages() throws Exception
+    {
+        // Setup test fixture.
+        DefaultPubSubPersistenceProvider.LOAD_PAGE_SIZE.setValue(2);
+        final DefaultPubSubPersistenceProvider provider = new DefaultPubSubPersistenceProvider();
+        createNodes(provider, null, "node-a", "node-b", "node-c", "node-d", "node-e");
+
+        // Execute system under test.
+        final Map<String, Node> result = loadNodes(provider);
+
+        // Verify result.
+        assertLoaded(result, "node-a", "node-b", "node-c", "node-d", "node-e");
+    }
+
+    /**
+     * Verifies that all nodes are loaded when the last page holds exactly as many nodes as fit on a page.
+     */
+    public void testLoadLastPageFull() throws Exception
+    {
+        // Setup test fixture.
+        DefaultPubSubPersistenceProvider.LOAD_PAGE_SIZE.setValue(2);
+        final DefaultPubSubPersistenceProvider provider = new DefaultPubSubPersistenceProvider();
+        createNodes(provider, null, "node-a", "node-b", "node-c", "node-d");
+
+        // Execute system under test.
+        final Map<String, Node> result = loadNodes(provider);
+
+        // Verify result.
+        assertLoaded(result, "node-a", "node-b", "node-c", "node-d");
+    }
+
+    /**
+     * Verifies that a node is associated with its parent, when both are loaded in different pages.
+     */
+    public void testLoadParentInOtherPage() throws Exception
+    {
+        // Setup test fixture.
+        DefaultPubSubPersistenceProvider.LOAD_PAGE_SIZE.setValue(1);
+        final DefaultPubSubPersistenceProvider provider = new DefaultPubSubPersistenceProvider();
+        final CollectionNode parent = new CollectionNode(SERVICE_ID, null, "node-a", OWNER, new DefaultNodeConfiguration(false));
+        provider.createNode(parent);
+        doReturn(parent).when(service).getNode("node-a");
+        createNodes(provider, parent, "node-b");
+
+        // Execute system under test.
+        final Map<String, Node> result = loadNodes(provider);
+
+        // Verify result.
+        assertEquals(2, result.size());
+        assertEquals(result.get("node-a"), result.get("node-b").getParent());
+    }
+
+    /**
+     * Verifies that no nodes are added when the service has no nodes.
+     */
+    public void testLoadNoNodes() throws Exception
+    {
+        // Setup test fixture.
+        DefaultPubSubPersistenceProvider.LOAD_PAGE_SIZE.setValue(2);
+        final DefaultPubSubPersistenceProvider provider = new DefaultPubSubPersistenceProvider();
+
+        // Execute system under test.
+        final Map<String, Node> result = loadNodes(provider);
+
+        // Verify result.
+        assertTrue(result.isEmpty());
+    }
+}
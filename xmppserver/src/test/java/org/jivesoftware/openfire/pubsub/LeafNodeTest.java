@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2020-2023 Ignite Realtime Foundation. All rights reserved.
+ * Copyright (C) 2020-2026 Ignite Realtime Foundation. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,12 +15,21 @@
  */
 package org.jivesoftware.openfire.pubsub;
 
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.pubsub.models.AccessModel;
 import org.jivesoftware.openfire.pubsub.models.PublisherModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.xmpp.packet.JID;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 /**
  * Verifies the implementation of {@link LeafNode}
@@ -59,4 +68,113 @@ public class LeafNodeTest
         assertTrue( result instanceof LeafNode );
         assertEquals( input, result );
     }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        Fixtures.clearExistingProperties();
+    }
+
+    private static PubSubModule mockPubSubModule( final PubSubService.UniqueIdentifier serviceId )
+    {
+        final XMPPServer xmppServer = Fixtures.mockXMPPServer();
+        final PubSubModule pubSubModule = mock(PubSubModule.class, withSettings().strictness(org.mockito.quality.Strictness.LENIENT));
+        doReturn(serviceId).when(pubSubModule).getUniqueIdentifier();
+        doReturn(pubSubModule).when(xmppServer).getPubSubModule();
+        XMPPServer.setInstance(xmppServer);
+        return pubSubModule;
+    }
+
+    /**
+     * Asserts that the affiliates to notify are cached, and recalculated after affiliations of the node change.
+     */
+    @Test
+    public void testAffiliatesToNotifyAreCached() throws Exception
+    {
+        // Setup fixture.
+        final PubSubService.UniqueIdentifier serviceId = new PubSubService.UniqueIdentifier( "test-service-id" );
+        mockPubSubModule( serviceId );
+
+        final DefaultNodeConfiguration config = new DefaultNodeConfiguration(true);
+        config.setAccessModel(AccessModel.open );
+        final LeafNode node = new LeafNode( serviceId, null, "test-node-id", new JID( "unit-test@example.org"), config);
+        node.addAffiliate( new NodeAffiliate( node, new JID( "alice@example.org" ) ) );
+
+        // Execute system under test.
+        final Set<NodeAffiliate> first = node.getAffiliatesToNotify();
+        final Set<NodeAffiliate> second = node.getAffiliatesToNotify();
+        node.addAffiliate( new NodeAffiliate( node, new JID( "bob@example.org" ) ) );
+        final Set<NodeAffiliate> third = node.getAffiliatesToNotify();
+
+        // Verify result.
+        assertEquals( 1, first.size() );
+        assertSame( first, second );
+        assertEquals( 2, third.size() );
+    }
+
+    /**
+     * Asserts that the affiliates to notify are not cached, by default, when the access model depends on presence.
+     */
+    @Test
+    public void testAffiliatesToNotifyAreNotCachedForPresenceAccess() throws Exception
+    {
+        // Setup fixture.
+        final PubSubService.UniqueIdentifier serviceId = new PubSubService.UniqueIdentifier( "test-service-id" );
+        mockPubSubModule( serviceId );
+
+        final DefaultNodeConfiguration config = new DefaultNodeConfiguration(true);
+        config.setAccessModel(AccessModel.presence );
+        final LeafNode node = new LeafNode( serviceId, null, "test-node-id", new JID( "unit-test@example.org"), config);
+        node.addAffiliate( new NodeAffiliate( node, new JID( "alice@example.org" ) ) );
+
+        // Execute system under test.
+        final Set<NodeAffiliate> uncached = node.getAffiliatesToNotify();
+        final Set<NodeAffiliate> uncachedAgain = node.getAffiliatesToNotify();
+        LeafNode.NOTIFICATION_TARGETS_MAX_AGE.setValue( Duration.ofHours( 1 ) );
+        final Set<NodeAffiliate> cached = node.getAffiliatesToNotify();
+        final Set<NodeAffiliate> cachedAgain = node.getAffiliatesToNotify();
+
+        // Verify result.
+        assertNotSame( uncached, uncachedAgain );
+        assertEquals( uncached, uncachedAgain );
+        assertSame( cached, cachedAgain );
+    }
+
+    /**
+     * Asserts that, for a node with presence-based delivery, only affiliates that have a subscriber that is available
+     * are considered when notifying affiliates.
+     */
+    @Test
+    public void testAvailableAffiliatesToNotifyForPresenceBasedDelivery() throws Exception
+    {
+        // Setup fixture.
+        final PubSubService.UniqueIdentifier serviceId = new PubSubService.UniqueIdentifier( "test-service-id" );
+        final PubSubModule pubSubModule = mockPubSubModule( serviceId );
+        doReturn( Map.of( new JID( "alice@example.org" ), Map.of( new JID( "alice@example.org/desktop" ), "online" ) ) ).when( pubSubModule ).getSubscriberPresences();
+
+        final DefaultNodeConfiguration config = new DefaultNodeConfiguration(true);
+        config.setAccessModel(AccessModel.open );
+        config.setPresenceBasedDelivery( true );
+        final LeafNode node = new LeafNode( serviceId, null, "test-node-id", new JID( "unit-test@example.org"), config);
+        final NodeAffiliate alice = new NodeAffiliate( node, new JID( "alice@example.org" ) );
+        final NodeAffiliate bob = new NodeAffiliate( node, new JID( "bob@example.org" ) );
+        node.addAffiliate( alice );
+        node.addAffiliate( bob );
+        node.addSubscription( new NodeSubscription( node, alice.getJID(), alice.getJID(), NodeSubscription.State.subscribed, "sub-alice" ) );
+        node.addSubscription( new NodeSubscription( node, bob.getJID(), bob.getJID(), NodeSubscription.State.subscribed, "sub-bob" ) );
+
+        // Execute system under test.
+        final Set<NodeAffiliate> result = node.getAvailableAffiliatesToNotify();
+
+        // Verify result.
+        assertEquals( 2, node.getAffiliatesToNotify().size() );
+        assertEquals( Set.of( alice ), result );
+    }
 }
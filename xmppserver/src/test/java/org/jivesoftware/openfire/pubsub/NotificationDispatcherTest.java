@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.pubsub;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the implementation of {@link NotificationDispatcher}
+ */
+public class NotificationDispatcherTest
+{
+    private static final Node.UniqueIdentifier NODE_A = new Node.UniqueIdentifier("test-service-id", "node-a");
+    private static final Node.UniqueIdentifier NODE_B = new Node.UniqueIdentifier("test-service-id", "node-b");
+
+    /**
+     * An executor that runs tasks only when instructed to do so.
+     */
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final NotificationDispatcher dispatcher = new NotificationDispatcher(tasks::add);
+
+    private void runAll()
+    {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Asserts that chunks of the same node are executed one at a time and in order, also when they were dispatched
+     * separately, while chunks of different nodes take turns.
+     */
+    @Test
+    public void testOrderPerNode() throws Exception
+    {
+        // Setup test fixture.
+        final List<String> executed = new ArrayList<>();
+        dispatcher.dispatch(NODE_A, List.of(() -> executed.add("a1"), () -> executed.add("a2")));
+        dispatcher.dispatch(NODE_B, List.of(() -> executed.add("b1"), () -> executed.add("b2")));
+        dispatcher.dispatch(NODE_A, List.of(() -> executed.add("a3")));
+
+        // Execute system under test.
+        final int pendingTasks = tasks.size();
+        final int depth = dispatcher.getQueueDepth();
+        final int depthA = dispatcher.getQueueDepth(NODE_A);
+        runAll();
+
+        // Verify results.
+        assertEquals(2, pendingTasks);
+        assertEquals(5, depth);
+        assertEquals(3, depthA);
+        assertEquals(List.of("a1", "b1", "a2", "b2", "a3"), executed);
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertEquals(0, dispatcher.getQueueDepth(NODE_A));
+    }
+
+    /**
+     * Asserts that a chunk that fails does not prevent later chunks of the same node from being executed, and that a
+     * node can be dispatched to again after its queue has been drained.
+     */
+    @Test
+    public void testContinuesAfterFailureAndRestarts() throws Exception
+    {
+        // Setup test fixture.
+        final List<String> executed = new ArrayList<>();
+        dispatcher.dispatch(NODE_A, List.of(() -> { throw new IllegalStateException("Thrown by unit test."); }, () -> executed.add("a2")));
+        runAll();
+
+        // Execute system under test.
+        dispatcher.dispatch(NODE_A, List.of(() -> executed.add("a3")));
+        final int pendingTasks = tasks.size();
+        runAll();
+
+        // Verify results.
+        assertEquals(1, pendingTasks);
+        assertEquals(List.of("a2", "a3"), executed);
+        assertFalse(dispatcher.getNotificationLag().isNegative());
+    }
+
+    /**
+     * Asserts that notifications that are delivered synchronously are delivered after a chunk of the same node that is
+     * being executed, even if it is the last chunk of that node.
+     */
+    @Test
+    public void testSynchronousDeliveryWaitsForRunningChunk() throws Exception
+    {
+        // Setup test fixture.
+        final List<String> executed = new ArrayList<>();
+        dispatcher.dispatch(NODE_A, List.of(() -> {
+            executed.add("a1-start");
+            dispatcher.execute(NODE_A, () -> executed.add("sync"));
+            executed.add("a1-end");
+        }));
+
+        // Execute system under test.
+        runAll();
+
+        // Verify results.
+        assertEquals(List.of("a1-start", "a1-end", "sync"), executed);
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    /**
+     * Asserts that notifications that are delivered synchronously are delivered immediately when no chunks of the
+     * same node are queued, and that chunks that are dispatched meanwhile are executed after them.
+     */
+    @Test
+    public void testSynchronousDeliveryWhenIdle() throws Exception
+    {
+        // Setup test fixture.
+        final List<String> executed = new ArrayList<>();
+
+        // Execute system under test.
+        dispatcher.execute(NODE_A, () -> {
+            dispatcher.dispatch(NODE_A, List.of(() -> executed.add("a1")));
+            executed.add("sync");
+        });
+        final List<String> executedInline = new ArrayList<>(executed);
+        final int pendingTasks = tasks.size();
+        runAll();
+
+        // Verify results.
+        assertEquals(List.of("sync"), executedInline);
+        assertEquals(1, pendingTasks);
+        assertEquals(List.of("sync", "a1"), executed);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.pubsub;
+
+import org.dom4j.Element;
+import org.dom4j.Node;
+import org.dom4j.QName;
+import org.jivesoftware.util.XMLWriter;
+import org.junit.jupiter.api.Test;
+import org.xmpp.packet.Message;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the implementation of {@link PublishedItemElement}
+ */
+public class PublishedItemElementTest
+{
+    private static final String PAYLOAD = "<data xmlns=\"urn:xmpp:avatar:data\">aGVsbG8=</data>";
+
+    private static Message createNotification()
+    {
+        final Message notification = new Message();
+        final Element items = notification.getElement().addElement("event", "http://jabber.org/protocol/pubsub#event").addElement("items");
+        final Element item = new PublishedItemElement(QName.get("item", items.getNamespace()), PAYLOAD);
+        item.addAttribute("id", "item-1");
+        items.add(item);
+        return notification;
+    }
+
+    /**
+     * Asserts that the serialized payload is included verbatim when a stanza that contains it is serialized.
+     */
+    @Test
+    public void testSerializedPayloadIsWrittenAsIs() throws Exception
+    {
+        // Setup test fixture.
+        final Message notification = createNotification();
+
+        // Execute system under test.
+        final String result = notification.toXML();
+
+        // Verify results.
+        assertTrue(result.contains("<item id=\"item-1\">" + PAYLOAD + "</item>"));
+    }
+
+    /**
+     * Asserts that the payload is parsed when the child elements of the item are accessed, after which it is still
+     * serialized in the same way.
+     */
+    @Test
+    public void testPayloadIsParsedOnAccess() throws Exception
+    {
+        // Setup test fixture.
+        final Message notification = createNotification();
+        final Element item = notification.getChildElement("event", "http://jabber.org/protocol/pubsub#event").element("items").element("item");
+
+        // Execute system under test.
+        final Element payload = item.element("data");
+
+        // Verify results.
+        assertNotNull(payload);
+        assertEquals("urn:xmpp:avatar:data", payload.getNamespaceURI());
+        assertEquals("aGVsbG8=", payload.getText());
+        assertTrue(notification.toXML().contains("<item id=\"item-1\">" + PAYLOAD + "</item>"));
+    }
+
+    /**
+     * Asserts that the serialized payload is included verbatim when a stanza that contains it is written by Openfire's
+     * XML writer.
+     */
+    @Test
+    public void testSerializedPayloadIsWrittenAsIsByXMLWriter() throws Exception
+    {
+        // Setup test fixture.
+        final Message notification = createNotification();
+        final StringWriter result = new StringWriter();
+
+        // Execute system under test.
+        final XMLWriter writer = new XMLWriter(result);
+        writer.write(notification.getElement());
+        writer.flush();
+
+        // Verify results.
+        assertTrue(result.toString().contains("<item id=\"item-1\">" + PAYLOAD + "</item>"));
+    }
+
+    /**
+     * Asserts that the payload is parsed when the content of the item is accessed as generic nodes.
+     */
+    @Test
+    public void testPayloadIsParsedOnContentAccess() throws Exception
+    {
+        // Setup test fixture.
+        final Element item = createNotification().getChildElement("event", "http://jabber.org/protocol/pubsub#event").element("items").element("item");
+
+        // Execute system under test.
+        final List<Node> content = item.content();
+
+        // Verify results.
+        assertEquals(1, content.size());
+        assertInstanceOf(Element.class, content.get(0));
+        assertEquals("data", content.get(0).getName());
+        assertInstanceOf(Element.class, item.node(0));
+        assertInstanceOf(Element.class, item.nodeIterator().next());
+    }
+
+    /**
+     * Asserts that the text value of the item is that of the parsed payload, rather than the serialized payload.
+     */
+    @Test
+    public void testStringValueIsThatOfParsedPayload() throws Exception
+    {
+        // Setup test fixture.
+        final Element item = createNotification().getChildElement("event", "http://jabber.org/protocol/pubsub#event").element("items").element("item");
+
+        // Execute system under test.
+        final String result = item.getStringValue();
+
+        // Verify results.
+        assertEquals("aGVsbG8=", result);
+    }
+
+    /**
+     * Asserts that XPath expressions are evaluated against the parsed payload.
+     */
+    @Test
+    public void testXPathIsEvaluatedAgainstParsedPayload() throws Exception
+    {
+        // Setup test fixture.
+        final Element item = createNotification().getChildElement("event", "http://jabber.org/protocol/pubsub#event").element("items").element("item");
+
+        // Execute system under test.
+        final List<Node> result = item.selectNodes("*[local-name()='data']");
+
+        // Verify results.
+        assertEquals(1, result.size());
+        assertEquals("aGVsbG8=", result.get(0).getText());
+    }
+
+    /**
+     * Asserts that copies of a stanza retain the payload, without affecting the original when accessed.
+     */
+    @Test
+    public void testCopiesRetainPayload() throws Exception
+    {
+        // Setup test fixture.
+        final Message notification = createNotification();
+
+        // Execute system under test.
+        final Message copy = notification.createCopy();
+        copy.getChildElement("event", "http://jabber.org/protocol/pubsub#event").element("items").element("item").element("data").setText("changed");
+
+        // Verify results.
+        assertTrue(notification.toXML().contains(PAYLOAD));
+        assertTrue(copy.toXML().contains("changed"));
+    }
+
+    /**
+     * Asserts that only payloads that do not depend on the namespace of the element that they're included in are
+     * considered to be self-contained.
+     */
+    @Test
+    public void testIsSelfContained() throws Exception
+    {
+        assertTrue(PublishedItem.isSelfContained(PAYLOAD));
+        assertTrue(PublishedItem.isSelfContained("<storage id='x' xmlns='storage:bookmarks'/>"));
+        assertTrue(PublishedItem.isSelfContained("<ns:foo xmlns:ns=\"urn:example\"/>"));
+        assertFalse(PublishedItem.isSelfContained("<foo/>"));
+        assertFalse(PublishedItem.isSelfContained("<foo xmlns=\"\"/>"));
+        assertFalse(PublishedItem.isSelfContained("<foo bar=\"xmlns='urn:example'\">text</foo>"));
+        assertFalse(PublishedItem.isSelfContained("text"));
+    }
+}
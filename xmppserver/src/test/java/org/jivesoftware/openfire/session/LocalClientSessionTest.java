@@ -15,14 +15,30 @@
  */
 package org.jivesoftware.openfire.session;
 
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.Connection;
+import org.jivesoftware.openfire.OfflineMessageStore;
+import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.openfire.spi.BasicStreamIDFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.xmpp.packet.Message;
+import org.xmpp.packet.Packet;
 
 import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 /**
  * Unit tests that verify the functionality of {@link LocalClientSession}
@@ -570,4 +586,111 @@ public class LocalClientSessionTest
         // Verify results.
         assertTrue(result);
     }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        Fixtures.clearExistingProperties();
+    }
+
+    /**
+     * Creates a session that records the stanzas that it delivers to its client.
+     */
+    private static LocalClientSession createSession(final List<Packet> delivered) throws Exception
+    {
+        //noinspection deprecation
+        XMPPServer.setInstance(Fixtures.mockXMPPServer());
+        final LocalClientSession session = spy(new LocalClientSession(Fixtures.XMPP_DOMAIN, mock(Connection.class, withSettings().lenient()), new BasicStreamIDFactory().createStreamID(), Locale.ENGLISH));
+        doReturn(true).when(session).canDeliver(any(Packet.class));
+        doAnswer(invocation -> delivered.add(invocation.getArgument(0))).when(session).deliver(any(Packet.class));
+        return session;
+    }
+
+    private static Message createMessage(final String body)
+    {
+        final Message message = new Message();
+        message.setBody(body);
+        return message;
+    }
+
+    /**
+     * Verifies that messages that are routed to a session while messages are held are delivered only when the hold is
+     * released, in the order in which they were routed.
+     */
+    @Test
+    public void testHeldMessagesDeliveredOnRelease() throws Exception
+    {
+        // Setup test fixture.
+        final List<Packet> delivered = new ArrayList<>();
+        final LocalClientSession session = createSession(delivered);
+        session.holdMessages();
+        session.process(createMessage("first"));
+        session.process(createMessage("second"));
+        assertTrue(delivered.isEmpty());
+
+        // Execute system under test.
+        session.releaseHeldMessages();
+
+        // Verify results.
+        assertEquals(List.of("first", "second"), delivered.stream().map(p -> ((Message) p).getBody()).toList());
+    }
+
+    /**
+     * Verifies that held messages are delivered, and messages are no longer held, when more messages are held than
+     * the configured maximum.
+     */
+    @Test
+    public void testHeldMessagesDeliveredWhenMaximumExceeded() throws Exception
+    {
+        // Setup test fixture.
+        OfflineMessageStore.DELIVERY_HOLD_MAX_MESSAGES.setValue(2);
+        final List<Packet> delivered = new ArrayList<>();
+        final LocalClientSession session = createSession(delivered);
+        session.holdMessages();
+        session.process(createMessage("first"));
+        session.process(createMessage("second"));
+        assertTrue(delivered.isEmpty());
+
+        // Execute system under test.
+        session.process(createMessage("third"));
+        session.process(createMessage("fourth"));
+
+        // Verify results.
+        assertEquals(List.of("first", "second", "third", "fourth"), delivered.stream().map(p -> ((Message) p).getBody()).toList());
+        session.releaseHeldMessages();
+        assertEquals(4, delivered.size());
+    }
+
+    /**
+     * Verifies that held messages are delivered when messages have been held for longer than the configured maximum,
+     * even though the hold was not released.
+     */
+    @Test
+    public void testHeldMessagesDeliveredAfterTimeout() throws Exception
+    {
+        // Setup test fixture.
+        OfflineMessageStore.DELIVERY_HOLD_TIMEOUT.setValue(Duration.ofMillis(50));
+        final List<Packet> delivered = Collections.synchronizedList(new ArrayList<>());
+        final LocalClientSession session = createSession(delivered);
+        session.holdMessages();
+        session.process(createMessage("first"));
+
+        // Execute system under test.
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (delivered.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Verify results.
+        assertEquals(1, delivered.size());
+        session.process(createMessage("second"));
+        assertEquals(2, delivered.size(), "Messages should no longer be held.");
+    }
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.util.cache;
+
+import org.jivesoftware.Fixtures;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Serializable;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link CacheSnapshotManager}
+ */
+public class CacheSnapshotManagerTest
+{
+    private static final String WARM_UP_CACHE_NAME = "unittest-snapshot-warmup";
+
+    @BeforeAll
+    public static void setUpClass() throws Exception
+    {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+        CacheFactory.initialize();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        Files.deleteIfExists(CacheSnapshotManager.getSnapshotPath(WARM_UP_CACHE_NAME));
+        Fixtures.clearExistingProperties();
+    }
+
+    private static Map<Serializable, Serializable> readAll(final CacheSnapshotManager.SnapshotReader snapshot) throws Exception
+    {
+        final Map<Serializable, Serializable> result = new LinkedHashMap<>();
+        Map.Entry<Serializable, Serializable> entry;
+        while ((entry = snapshot.next()) != null) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Asserts that a snapshot that includes values can be read back.
+     */
+    @Test
+    public void testSnapshotWithValues(@TempDir final Path tempDir) throws Exception
+    {
+        // Setup test fixture.
+        final DefaultCache<String, String> cache = new DefaultCache<>("unittest-snapshot-values", -1, -1);
+        cache.put("a", "valueA");
+        cache.put("b", "valueB");
+        final Path path = tempDir.resolve("test.snapshot");
+
+        // Execute system under test.
+        final int written = CacheSnapshotManager.writeSnapshot(cache, path, true);
+        final CacheSnapshotManager.SnapshotReader result = CacheSnapshotManager.openSnapshot(path);
+        final Map<Serializable, Serializable> entries = readAll(result);
+        result.close();
+
+        // Verify results.
+        assertEquals(2, written);
+        assertTrue(result.hasValues());
+        assertEquals(2, entries.size());
+        assertEquals("valueA", entries.get("a"));
+        assertEquals("valueB", entries.get("b"));
+        assertTrue(result.getCreated().isAfter(Instant.now().minus(Duration.ofMinutes(1))));
+    }
+
+    /**
+     * Asserts that a snapshot that does not include values contains only keys.
+     */
+    @Test
+    public void testSnapshotWithoutValues(@TempDir final Path tempDir) throws Exception
+    {
+        // Setup test fixture.
+        final DefaultCache<String, String> cache = new DefaultCache<>("unittest-snapshot-keys", -1, -1);
+        cache.put("a", "valueA");
+        cache.put("b", "valueB");
+        final Path path = tempDir.resolve("test.snapshot");
+
+        // Execute system under test.
+        CacheSnapshotManager.writeSnapshot(cache, path, false);
+        final CacheSnapshotManager.SnapshotReader result = CacheSnapshotManager.openSnapshot(path);
+        final Map<Serializable, Serializable> entries = readAll(result);
+        result.close();
+
+        // Verify results.
+        assertFalse(result.hasValues());
+        assertEquals(2, entries.size());
+        assertTrue(entries.containsKey("a"));
+        assertNull(entries.get("a"));
+    }
+
+    /**
+     * Asserts that writing a snapshot replaces a snapshot that was written earlier.
+     */
+    @Test
+    public void testSnapshotIsReplaced(@TempDir final Path tempDir) throws Exception
+    {
+        // Setup test fixture.
+        final DefaultCache<String, String> cache = new DefaultCache<>("unittest-snapshot-replace", -1, -1);
+        cache.put("a", "valueA");
+        final Path path = tempDir.resolve("test.snapshot");
+        CacheSnapshotManager.writeSnapshot(cache, path, true);
+        cache.remove("a");
+        cache.put("c", "valueC");
+
+        // Execute system under test.
+        CacheSnapshotManager.writeSnapshot(cache, path, true);
+        final CacheSnapshotManager.SnapshotReader result = CacheSnapshotManager.openSnapshot(path);
+        final Map<Serializable, Serializable> entries = readAll(result);
+        result.close();
+
+        // Verify results.
+        assertEquals(1, entries.size());
+        assertEquals("valueC", entries.get("c"));
+        assertEquals(1, tempDir.toFile().listFiles().length);
+    }
+
+    /**
+     * Asserts that entries of a class that is not allowed are not deserialized when a snapshot is read.
+     */
+    @Test
+    public void testDisallowedClassesAreSkipped(@TempDir final Path tempDir) throws Exception
+    {
+        // Setup test fixture.
+        final DefaultCache<String, Serializable> cache = new DefaultCache<>("unittest-snapshot-filter", -1, -1);
+        cache.put("a", "valueA");
+        cache.put("b", new URL("http://example.org"));
+        final Path path = tempDir.resolve("test.snapshot");
+        CacheSnapshotManager.writeSnapshot(cache, path, true);
+
+        // Execute system under test.
+        final Map<Serializable, Serializable> entries;
+        try (final CacheSnapshotManager.SnapshotReader result = CacheSnapshotManager.openSnapshot(path)) {
+            entries = readAll(result);
+        }
+
+        // Verify results.
+        assertEquals(1, entries.size());
+        assertEquals("valueA", entries.get("a"));
+    }
+
+    /**
+     * Writes a snapshot of a cache with three entries, after which the cache is emptied, so that it can be warmed up.
+     */
+    private static Cache<String, String> createWarmUpFixture() throws Exception
+    {
+        CacheSnapshotManager.ENABLED.setValue(true);
+        CacheSnapshotManager.INCLUDE_VALUES.setValue(true);
+        CacheSnapshotManager.CACHES.setValue(Set.of(WARM_UP_CACHE_NAME));
+        final Cache<String, String> cache = CacheFactory.createCache(WARM_UP_CACHE_NAME);
+        cache.put("a", "valueA");
+        cache.put("b", "valueB");
+        cache.put("c", "valueC");
+        CacheSnapshotManager.writeSnapshot(cache, CacheSnapshotManager.getSnapshotPath(WARM_UP_CACHE_NAME), true);
+        cache.clear();
+        return cache;
+    }
+
+    /**
+     * Asserts that the snapshot that is used to warm up a cache is not replaced by a snapshot of the partially filled
+     * cache, when the manager is stopped before warming up completed.
+     */
+    @Test
+    public void testNoFinalSnapshotBeforeWarmUpCompleted() throws Exception
+    {
+        // Setup test fixture.
+        createWarmUpFixture();
+        CacheSnapshotManager.WARM_UP_RATE.setValue(1);
+        final CacheSnapshotManager manager = new CacheSnapshotManager();
+
+        // Execute system under test.
+        manager.start();
+        manager.stop();
+
+        // Verify results.
+        try (final CacheSnapshotManager.SnapshotReader result = CacheSnapshotManager.openSnapshot(CacheSnapshotManager.getSnapshotPath(WARM_UP_CACHE_NAME))) {
+            assertEquals(3, readAll(result).size());
+        }
+    }
+
+    /**
+     * Asserts that a final snapshot is written when the manager is stopped after warming up completed.
+     */
+    @Test
+    public void testFinalSnapshotAfterWarmUpCompleted() throws Exception
+    {
+        // Setup test fixture.
+        final Cache<String, String> cache = createWarmUpFixture();
+        final CacheSnapshotManager manager = new CacheSnapshotManager();
+        manager.start();
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (manager.isWarmingUp() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, cache.size());
+        cache.put("d", "valueD");
+
+        // Execute system under test.
+        manager.stop();
+
+        // Verify results.
+        try (final CacheSnapshotManager.SnapshotReader result = CacheSnapshotManager.openSnapshot(CacheSnapshotManager.getSnapshotPath(WARM_UP_CACHE_NAME))) {
+            assertEquals(4, readAll(result).size());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.util.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link OffHeapCache}
+ */
+public class OffHeapCacheTest
+{
+    /**
+     * Asserts that entries that do not fit in the on-heap tier are retained off-heap.
+     */
+    @Test
+    public void testCulledEntriesAreDemoted() throws Exception
+    {
+        // Setup test fixture.
+        final OffHeapCache<String, String> cache = new OffHeapCache<>("unittest-offheap-demote", 1024, -1, 4 * OffHeapStore.PAGE_SIZE);
+
+        // Execute system under test.
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+
+        // Verify results.
+        assertTrue(cache.getDemotions() > 0);
+        assertEquals(100, cache.size());
+        assertEquals(100, cache.keySet().size());
+        assertEquals(cache.getDemotions(), cache.getOffHeapEntryCount());
+    }
+
+    /**
+     * Asserts that an entry that was demoted is promoted back to the on-heap tier when it is accessed.
+     */
+    @Test
+    public void testDemotedEntryIsPromotedOnGet() throws Exception
+    {
+        // Setup test fixture.
+        final OffHeapCache<String, String> cache = new OffHeapCache<>("unittest-offheap-promote", 1024, -1, 4 * OffHeapStore.PAGE_SIZE);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        final int offHeapBefore = cache.getOffHeapEntryCount();
+
+        // Execute system under test.
+        final String result = cache.get("key0");
+
+        // Verify results.
+        assertEquals("value0", result);
+        assertEquals(1, cache.getPromotions());
+        assertEquals(100, cache.size());
+        assertTrue(cache.getOffHeapEntryCount() >= offHeapBefore - 1);
+    }
+
+    /**
+     * Asserts that removing an entry that was demoted removes it from the off-heap tier.
+     */
+    @Test
+    public void testRemoveDemotedEntry() throws Exception
+    {
+        // Setup test fixture.
+        final OffHeapCache<String, String> cache = new OffHeapCache<>("unittest-offheap-remove", 1024, -1, 4 * OffHeapStore.PAGE_SIZE);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+
+        // Execute system under test.
+        final String result = cache.remove("key0");
+
+        // Verify results.
+        assertEquals("value0", result);
+        assertFalse(cache.containsKey("key0"));
+        assertNull(cache.get("key0"));
+        assertEquals(99, cache.size());
+    }
+
+    /**
+     * Asserts that putting a value for a key that was demoted replaces the demoted value, rather than adding a second
+     * entry for the key.
+     */
+    @Test
+    public void testPutReplacesDemotedEntry() throws Exception
+    {
+        // Setup test fixture.
+        final OffHeapCache<String, String> cache = new OffHeapCache<>("unittest-offheap-replace", 1024, -1, 4 * OffHeapStore.PAGE_SIZE);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        final int offHeapBefore = cache.getOffHeapEntryCount();
+
+        // Execute system under test.
+        final String result = cache.put("key0", "replaced");
+
+        // Verify results.
+        assertEquals("value0", result);
+        assertEquals("replaced", cache.get("key0"));
+        assertEquals(100, cache.size());
+        assertEquals(100, cache.values().size());
+        assertTrue(cache.getOffHeapEntryCount() <= offHeapBefore);
+    }
+
+    /**
+     * Asserts that the off-heap tier evicts entries when its capacity is exhausted.
+     */
+    @Test
+    public void testOffHeapCapacityIsRespected() throws Exception
+    {
+        // Setup test fixture.
+        final OffHeapCache<String, String> cache = new OffHeapCache<>("unittest-offheap-capacity", 1_000_000, -1, OffHeapStore.PAGE_SIZE);
+        final String largeValue = "x".repeat(60_000);
+
+        // Execute system under test.
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, largeValue + i);
+        }
+
+        // Verify results.
+        assertTrue(cache.getOffHeapAllocatedSize() <= OffHeapStore.PAGE_SIZE);
+        assertTrue(cache.getOffHeapEvictions() > 0);
+        assertEquals(largeValue + 99, cache.get("key99"));
+    }
+
+    /**
+     * Asserts that data is stored in the smallest slab class that fits.
+     */
+    @Test
+    public void testSlabClassSelection() throws Exception
+    {
+        assertEquals(0, OffHeapStore.slabClassFor(1));
+        assertEquals(0, OffHeapStore.slabClassFor(OffHeapStore.MIN_CHUNK_SIZE));
+        assertEquals(1, OffHeapStore.slabClassFor(OffHeapStore.MIN_CHUNK_SIZE + 1));
+        assertEquals(OffHeapStore.PAGE_SIZE, OffHeapStore.chunkSizeOf(OffHeapStore.slabClassFor(OffHeapStore.PAGE_SIZE)));
+        assertEquals(-1, OffHeapStore.slabClassFor(OffHeapStore.PAGE_SIZE + 1));
+    }
+}